@@ -0,0 +1,47 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.calc;
+
+import mondrian.olap.Evaluator;
+
+/**
+ * Compiled expression whose result is a <code>double</code>, and which can
+ * evaluate itself for a block of cells in one call.
+ *
+ * <p>Evaluating a block, rather than one cell at a time, visits each node of
+ * the expression tree once per block, and passes intermediate results in
+ * arrays of primitive values, not boxed objects.
+ *
+ * <p>When implementing this interface, it is convenient to extend
+ * {@link mondrian.calc.impl.AbstractDoubleBlockCalc}, but it is not
+ * required.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public interface DoubleBlockCalc extends DoubleCalc {
+    /**
+     * Evaluates this expression in each of several contexts.
+     *
+     * <p>The result for <code>evaluators[i]</code> is written to
+     * <code>values[i]</code>, and is the same as
+     * {@link #evaluateDouble(mondrian.olap.Evaluator)} would return; a null
+     * result is the special {@link mondrian.olap.fun.FunUtil#DoubleNull}
+     * value. Each evaluator is left in the state it was found.
+     *
+     * @param evaluators Evaluation contexts, one per cell
+     * @param values Array to receive results; its length is at least the
+     *   number of evaluators
+     */
+    void evaluateDoubleBlock(Evaluator[] evaluators, double[] values);
+}
+
+// End DoubleBlockCalc.java
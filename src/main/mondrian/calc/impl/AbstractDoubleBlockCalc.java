@@ -0,0 +1,130 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.calc.impl;
+
+import mondrian.calc.*;
+import mondrian.olap.*;
+
+/**
+ * Abstract implementation of the {@link mondrian.calc.DoubleBlockCalc}
+ * interface.
+ *
+ * <p>The derived class must implement both
+ * {@link #evaluateDouble(mondrian.olap.Evaluator)} and
+ * {@link #evaluateDoubleBlock(mondrian.olap.Evaluator[], double[])}. The
+ * {@link #evaluateBlock(mondrian.calc.Calc, mondrian.olap.Evaluator[],
+ * double[])} method evaluates a child expression, whether or not the child
+ * can evaluate blocks.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public abstract class AbstractDoubleBlockCalc
+    extends AbstractDoubleCalc
+    implements DoubleBlockCalc
+{
+    /**
+     * Creates an AbstractDoubleBlockCalc.
+     *
+     * @param exp Source expression
+     * @param calcs Child compiled expressions
+     */
+    protected AbstractDoubleBlockCalc(Exp exp, Calc[] calcs) {
+        super(exp, calcs);
+    }
+
+    /**
+     * Evaluates a numeric expression in each of several contexts.
+     *
+     * <p>If the expression is a {@link DoubleBlockCalc}, evaluates the
+     * whole block in one call; otherwise evaluates one context at a time.
+     *
+     * @param calc Numeric expression
+     * @param evaluators Evaluation contexts
+     * @param values Array to receive results
+     */
+    public static void evaluateBlock(
+        Calc calc,
+        Evaluator[] evaluators,
+        double[] values)
+    {
+        if (calc instanceof DoubleBlockCalc) {
+            ((DoubleBlockCalc) calc).evaluateDoubleBlock(evaluators, values);
+        } else if (calc instanceof DoubleCalc) {
+            final DoubleCalc doubleCalc = (DoubleCalc) calc;
+            for (int i = 0; i < evaluators.length; i++) {
+                values[i] = doubleCalc.evaluateDouble(evaluators[i]);
+            }
+        } else {
+            for (int i = 0; i < evaluators.length; i++) {
+                values[i] =
+                    GenericCalc.numberToDouble(
+                        (Number) calc.evaluate(evaluators[i]));
+            }
+        }
+    }
+
+    /**
+     * Abstract implementation of a numeric operator with two arguments,
+     * such as <code>+</code>.
+     *
+     * <p>The derived class implements
+     * {@link #apply(double, double)}, which is called once per cell.
+     */
+    public static abstract class Binary extends AbstractDoubleBlockCalc {
+        protected final DoubleCalc calc0;
+        protected final DoubleCalc calc1;
+
+        /**
+         * Creates a Binary.
+         *
+         * @param exp Source expression
+         * @param calc0 Compiled first argument
+         * @param calc1 Compiled second argument
+         */
+        protected Binary(Exp exp, DoubleCalc calc0, DoubleCalc calc1) {
+            super(exp, new Calc[] {calc0, calc1});
+            this.calc0 = calc0;
+            this.calc1 = calc1;
+        }
+
+        /**
+         * Computes the result from the values of the arguments.
+         *
+         * @param v0 Value of first argument, or
+         *   {@link mondrian.olap.fun.FunUtil#DoubleNull}
+         * @param v1 Value of second argument, or
+         *   {@link mondrian.olap.fun.FunUtil#DoubleNull}
+         * @return Result
+         */
+        protected abstract double apply(double v0, double v1);
+
+        public double evaluateDouble(Evaluator evaluator) {
+            final double v0 = calc0.evaluateDouble(evaluator);
+            final double v1 = calc1.evaluateDouble(evaluator);
+            return apply(v0, v1);
+        }
+
+        public void evaluateDoubleBlock(
+            Evaluator[] evaluators,
+            double[] values)
+        {
+            final double[] values1 = new double[evaluators.length];
+            evaluateBlock(calc0, evaluators, values);
+            evaluateBlock(calc1, evaluators, values1);
+            for (int i = 0; i < evaluators.length; i++) {
+                values[i] = apply(values[i], values1[i]);
+            }
+        }
+    }
+}
+
+// End AbstractDoubleBlockCalc.java
@@ -10,6 +10,7 @@
 package mondrian.calc.impl;
 
 import mondrian.calc.Calc;
+import mondrian.calc.DoubleBlockCalc;
 import mondrian.calc.MemberCalc;
 import mondrian.olap.*;
 import mondrian.olap.type.ScalarType;
@@ -30,7 +31,7 @@ import mondrian.olap.type.Type;
  * @version $Id$
  * @since Sep 27, 2005
  */
-public class MemberValueCalc extends GenericCalc {
+public class MemberValueCalc extends GenericCalc implements DoubleBlockCalc {
     private final MemberCalc[] memberCalcs;
     private final Member[] savedMembers;
 
@@ -72,6 +73,56 @@ public class MemberValueCalc extends GenericCalc {
         return result;
     }
 
+    public void evaluateDoubleBlock(Evaluator[] evaluators, double[] values) {
+        final Member[] members = constantMembers(evaluators[0]);
+        if (members == null) {
+            for (int i = 0; i < evaluators.length; i++) {
+                values[i] = numberToDouble((Number) evaluate(evaluators[i]));
+            }
+            return;
+        }
+        for (int i = 0; i < evaluators.length; i++) {
+            final Evaluator evaluator = evaluators[i];
+            for (int j = 0; j < members.length; j++) {
+                savedMembers[j] = evaluator.setContext(members[j]);
+            }
+            // As in evaluate, check after setting the context, because the
+            // outcome depends on the measure of each cell.
+            values[i] =
+                evaluator.needToReturnNullForUnrelatedDimension(members)
+                    ? numberToDouble(null)
+                    : numberToDouble((Number) evaluator.evaluateCurrent());
+            evaluator.setContext(savedMembers);
+        }
+    }
+
+    /**
+     * Returns the members to set in the context, if they are the same for
+     * every cell of a block; otherwise null.
+     *
+     * <p>Members are the same for every cell if all member expressions are
+     * constant. Returns null if a member is null; the caller then evaluates
+     * one cell at a time. Whether a cell is null because a member is of a
+     * dimension unrelated to the cube depends on the cell, so the caller
+     * checks that for each cell.
+     *
+     * @param evaluator Evaluation context of the first cell of the block
+     * @return Members, or null
+     */
+    private Member[] constantMembers(Evaluator evaluator) {
+        final Member[] members = new Member[memberCalcs.length];
+        for (int i = 0; i < memberCalcs.length; i++) {
+            if (!(memberCalcs[i] instanceof ConstantCalc)) {
+                return null;
+            }
+            members[i] = memberCalcs[i].evaluateMember(evaluator);
+            if (members[i] == null || members[i].isNull()) {
+                return null;
+            }
+        }
+        return members;
+    }
+
     public Calc[] getCalcs() {
         return memberCalcs;
     }
@@ -11,6 +11,7 @@ package mondrian.calc.impl;
 
 import mondrian.olap.*;
 import mondrian.calc.Calc;
+import mondrian.calc.DoubleBlockCalc;
 
 /**
  * Expression which yields the value of the current member in the current
@@ -22,7 +23,7 @@ import mondrian.calc.Calc;
  * @version $Id$
  * @since Sep 27, 2005
  */
-public class ValueCalc extends GenericCalc {
+public class ValueCalc extends GenericCalc implements DoubleBlockCalc {
     /**
      * Creates a ValueCalc.
      *
@@ -36,6 +37,13 @@ public class ValueCalc extends GenericCalc {
         return evaluator.evaluateCurrent();
     }
 
+    public void evaluateDoubleBlock(Evaluator[] evaluators, double[] values) {
+        for (int i = 0; i < evaluators.length; i++) {
+            values[i] =
+                numberToDouble((Number) evaluators[i].evaluateCurrent());
+        }
+    }
+
     public boolean dependsOn(Hierarchy hierarchy) {
         return true;
     }
@@ -218,6 +218,14 @@ public abstract class DelegatingSchemaReader implements SchemaReader {
         return schemaReader.getMemberChildren(members, context);
     }
 
+    public void prefetchMemberDescendants(
+        List<Member> members,
+        Level level,
+        Evaluator context)
+    {
+        schemaReader.prefetchMemberDescendants(members, level, context);
+    }
+
     public void getMemberAncestors(Member member, List<Member> ancestorList) {
         schemaReader.getMemberAncestors(member, ancestorList);
     }
@@ -229,6 +237,13 @@ public abstract class DelegatingSchemaReader implements SchemaReader {
             member, memberName, matchType);
     }
 
+    public void prefetchMembersByName(
+        Cube cube,
+        List<List<Id.Segment>> nameList)
+    {
+        schemaReader.prefetchMembersByName(cube, nameList);
+    }
+
     public NativeEvaluator getNativeSetEvaluator(
         FunDef fun, Exp[] args, Evaluator evaluator, Calc calc)
     {
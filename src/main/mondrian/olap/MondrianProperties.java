@@ -338,6 +338,22 @@ public class MondrianProperties extends TriggerableProperties {
     public transient final IntegerProperty HighCardChunkSize =
         new IntegerProperty(this, "mondrian.result.highCardChunkSize", 1);
 
+    /**
+     * Integer property that is the number of threads which remove empty
+     * positions from a <code>NON EMPTY</code> axis of a query result.
+     *
+     * <p>If greater than 1, and the axis has at least a few thousand
+     * positions, ranges of positions are checked in parallel by a shared
+     * pool of this many threads. The resulting axis is the same as if the
+     * positions were checked one at a time. Axes which contain a
+     * high-cardinality dimension are always checked by one thread.
+     *
+     * <p>The default, 1, checks positions on the thread executing the
+     * query.
+     */
+    public transient final IntegerProperty NonEmptyThreadCount =
+        new IntegerProperty(this, "mondrian.result.nonEmptyThreadCount", 1);
+
 
     // mondrian.test properties
 
@@ -604,6 +620,20 @@ public class MondrianProperties extends TriggerableProperties {
         new BooleanProperty(
             this, "mondrian.rolap.aggregates.ChooseByVolume", false);
 
+    /**
+     * Property that defines
+     * the name of the class used to estimate the cost of answering a segment
+     * request from the fact table or from an aggregate table.
+     *
+     * <p>If the value is non-null, it must name a class which implements
+     * {@link mondrian.spi.AggregateCostModel}. If unset,
+     * {@link mondrian.rolap.agg.AggregationManager.DefaultAggregateCostModel}
+     * is used.
+     */
+    public transient final StringProperty AggregateCostModelClass =
+        new StringProperty(
+            this, "mondrian.rolap.aggregates.costModel.class", null);
+
     /**
      * String property containing the name of the file which defines the rules
      * for recognizing an aggregate table. Can be either a resource in the
@@ -640,6 +670,28 @@ public class MondrianProperties extends TriggerableProperties {
         new BooleanProperty(
             this, "mondrian.rolap.aggregates.generateSql", false);
 
+    /**
+     * Boolean property that controls whether the aggregate table advisor
+     * records segment loads.
+     *
+     * <p>If set, each segment load is recorded (columns, measures, row count
+     * and SQL time) by {@link mondrian.rolap.aggmatcher.AggAdvisor}, which can
+     * then recommend aggregate tables for the recorded workload.
+     */
+    public transient final BooleanProperty AggregateAdvisor =
+        new BooleanProperty(
+            this, "mondrian.rolap.aggregates.advisor", false);
+
+    /**
+     * Integer property that is the number of most recent segment loads the
+     * aggregate table advisor retains.
+     *
+     * <p>Has no effect unless {@link #AggregateAdvisor} is set.
+     */
+    public transient final IntegerProperty AggregateAdvisorWindowSize =
+        new IntegerProperty(
+            this, "mondrian.rolap.aggregates.advisor.windowSize", 10000);
+
     //
     //////////////////////////////////////////////////////////////////////////
 
@@ -785,6 +837,22 @@ public class MondrianProperties extends TriggerableProperties {
         new BooleanProperty(
             this, "mondrian.native.filter.enable", true);
 
+    /**
+     * if enabled some Head() and Subset() of a set sorted by Order() will be
+     * computed in SQL
+     */
+    public transient final BooleanProperty EnableNativeOrder =
+        new BooleanProperty(
+            this, "mondrian.native.order.enable", true);
+
+    /**
+     * if enabled some Count(), Sum() and Aggregate() of a set will be
+     * computed in SQL
+     */
+    public transient final BooleanProperty EnableNativeAggregate =
+        new BooleanProperty(
+            this, "mondrian.native.aggregate.enable", false);
+
     /**
      * some NON EMPTY set operations like member.children, level.members and
      * member descendants will be computed in SQL
@@ -859,6 +927,25 @@ public class MondrianProperties extends TriggerableProperties {
         new IntegerProperty(
             this, "mondrian.rolap.maxConstraints", 1000);
 
+    /**
+     * Integer property that, if greater than zero, is the number of values
+     * in a list above which Mondrian binds the list as a single array
+     * parameter rather than generating a literal `IN' SQL clause. The
+     * default, 0, disables array parameters.
+     *
+     * <p>Applies only to SQL statements which load segments or read
+     * members, and only if the dialect can bind arrays (currently
+     * PostgreSQL and Greenplum). The text of such a statement does not
+     * depend on the number or values of the elements of the list, so the
+     * database can re-use its plan; and the list is not limited by
+     * {@link #MaxConstraints}.
+     *
+     * @see mondrian.spi.Dialect#supportsArrayInList
+     */
+    public transient final IntegerProperty ArrayInListThreshold =
+        new IntegerProperty(
+            this, "mondrian.rolap.arrayInListThreshold", 0);
+
     /**
      * Boolean property that determines whether Mondrian optimizes predicates.
      */
@@ -866,6 +953,55 @@ public class MondrianProperties extends TriggerableProperties {
         new BooleanProperty(
             this, "mondrian.rolap.aggregates.optimizePredicates", true);
 
+    /**
+     * Boolean property that determines whether Mondrian computes simple
+     * calculated measures of a cube in SQL.
+     *
+     * <p>If true, a calculated measure defined in the schema whose formula
+     * is a linear combination of summed stored measures of the same cube,
+     * such as <code>[Measures].[Store Sales] - [Measures].[Store
+     * Cost]</code>, is computed as a hidden stored measure. Its values are
+     * read in the same SQL statement as the other measures of a segment,
+     * and can be rolled up from cached segments, rather than being computed
+     * cell by cell. Aggregate tables have no column for the hidden measure,
+     * so segments which contain it are read from the fact table.
+     *
+     * <p>If the context of a cell contains a calculated member of another
+     * dimension, the formula is evaluated as usual, because the result may
+     * depend on the order in which the calculations are applied.
+     *
+     * <p>A row is null if the stored measures it references are all null;
+     * otherwise null values are treated as zero. The default is false.
+     */
+    public transient final BooleanProperty CompileCalculatedMeasures =
+        new BooleanProperty(
+            this, "mondrian.rolap.compileCalculatedMeasures", false);
+
+    /**
+     * Boolean property that determines whether Mondrian aggregates a measure
+     * over a range of time periods in a single cell request.
+     *
+     * <p>If true, <code>Sum</code> and <code>Aggregate</code> over a set of
+     * members of a time level, such as the set returned by
+     * <code>Ytd</code>, <code>PeriodsToDate</code> or
+     * <code>LastPeriods</code>, request one cell constrained by the set,
+     * rather than one cell per member. If the members' keys form a
+     * contiguous range, the SQL statement constrains the time column by
+     * <code>&gt;=</code> and <code>&lt;=</code> rather than by an
+     * <code>IN</code> list.
+     *
+     * <p>Applies only to stored measures whose aggregator is
+     * <code>sum</code>, <code>count</code>, <code>min</code> or
+     * <code>max</code>, and only if the set is the same for every cell of
+     * the query. Each distinct set needs its own SQL statement and cannot
+     * use aggregate tables, so if the set varies with the time members on
+     * an axis, the cells of the members are requested as usual. The
+     * default is false.
+     */
+    public transient final BooleanProperty TimeRangeAggregation =
+        new BooleanProperty(
+            this, "mondrian.rolap.timeRangeAggregation", false);
+
     /**
      * Boolean property that defines the
      * maximum number of passes allowable while evaluating an MDX expression.
@@ -877,6 +1013,23 @@ public class MondrianProperties extends TriggerableProperties {
         new IntegerProperty(
             this, "mondrian.rolap.evaluate.MaxEvalDepth", 10);
 
+    /**
+     * Integer property that is the maximum number of cells of the innermost
+     * axis of a query which are evaluated together.
+     *
+     * <p>If greater than zero, cells which are computed by the same
+     * calculated member, and whose compiled expression implements
+     * {@link mondrian.calc.DoubleBlockCalc}, are evaluated in blocks of up to
+     * this many cells. Arithmetic operators, <code>IIf</code>,
+     * <code>CoalesceEmpty</code> and references to measures can evaluate
+     * blocks. Blocks are used only if the slicer has a single position.
+     *
+     * <p>The default, 0, evaluates one cell at a time.
+     */
+    public transient final IntegerProperty EvaluateBlockSize =
+        new IntegerProperty(
+            this, "mondrian.rolap.evaluate.BlockSize", 0);
+
     /**
      * Property that defines the JdbcSchema factory class which
      * determines the list of tables and columns of a specific datasource.
@@ -905,6 +1058,104 @@ public class MondrianProperties extends TriggerableProperties {
     public transient final IntegerProperty QueryTimeout = new IntegerProperty(
         this, "mondrian.rolap.queryTimeout", 0);
 
+    /**
+     * Integer property that, if greater than zero, enables the cache of
+     * parsed, validated and compiled MDX statements, and limits the number
+     * of distinct statements which it holds per schema. The default, 0,
+     * disables the cache.
+     *
+     * <p>The olap4j driver and the XML/A server use the cache to avoid
+     * parsing and compiling statements which are executed repeatedly.
+     *
+     * @see mondrian.rolap.QueryPlanCache
+     */
+    public transient final IntegerProperty QueryPlanCacheSize =
+        new IntegerProperty(
+            this, "mondrian.rolap.queryPlanCache.size", 0);
+
+    /**
+     * Integer property that, if greater than zero, enables the cache of
+     * query results, and limits the estimated number of bytes which it
+     * holds per schema. The default, 0, disables the cache.
+     *
+     * <p>A query whose text, role, locale and parameter values are the same
+     * as a previous query returns the previous result, provided that no
+     * data used by the query has been flushed in the meantime.
+     *
+     * @see mondrian.rolap.RolapResultCache
+     */
+    public transient final IntegerProperty ResultCacheMaxBytes =
+        new IntegerProperty(
+            this, "mondrian.rolap.resultCache.maxBytes", 0);
+
+    /**
+     * Integer property that, if greater than zero, is the interval, in
+     * milliseconds, at which a schema's
+     * {@link mondrian.spi.DataSourceChangeListener} is polled in a background
+     * thread. The default, 0, calls the listener each time a query reads a
+     * cached member or aggregation.
+     *
+     * <p>When polling in the background, a query only checks whether a change
+     * has been detected since the previous query, so the listener does not
+     * add to the latency of queries; but a change is not seen until the
+     * next poll.
+     *
+     * @see mondrian.rolap.DataSourceChangeMonitor
+     */
+    public transient final IntegerProperty DataSourceChangePollMillis =
+        new IntegerProperty(
+            this, "mondrian.rolap.dataSourceChangePollMillis", 0);
+
+    /**
+     * Integer property that, if greater than zero, limits the estimated
+     * number of megabytes held by all of Mondrian's caches together. When
+     * the caches exceed the limit, the {@link mondrian.rolap.cache.CachePool}
+     * evicts entries, starting with the caches which are cheapest to
+     * rebuild. The default, 0, imposes no limit.
+     *
+     * @see mondrian.rolap.cache.CachePool
+     */
+    public transient final IntegerProperty CachePoolMaxMegabytes =
+        new IntegerProperty(
+            this, "mondrian.rolap.cachePool.maxMegabytes", 0);
+
+    /**
+     * Integer property that limits the number of rows in the in-memory copy
+     * of the data of a cube whose <code>inMemory</code> attribute is true.
+     * If the fact table, grouped by the columns used by the schema, has more
+     * rows, it is not held in memory, and cells are loaded using SQL. The
+     * default is 10,000,000; 0 means no limit.
+     *
+     * @see mondrian.rolap.agg.InMemoryPartition
+     */
+    public transient final IntegerProperty InMemoryPartitionMaxRows =
+        new IntegerProperty(
+            this, "mondrian.rolap.inMemory.maxRows", 10000000);
+
+    /**
+     * String property that is the name of the file in which Mondrian
+     * records the segment requests of queries, so that it can warm the
+     * cache when a schema is loaded or flushed. If not set, requests are
+     * not recorded.
+     *
+     * @see mondrian.rolap.CacheWarmer
+     */
+    public transient final StringProperty CacheWarmingLogFile =
+        new StringProperty(
+            this, "mondrian.rolap.cacheWarming.logFile", null);
+
+    /**
+     * Integer property that is the number of the most frequent recorded
+     * segment requests which Mondrian replays when a schema is loaded or a
+     * region of the cache is flushed. 0 means do not replay. The default
+     * is 100.
+     *
+     * @see #CacheWarmingLogFile
+     */
+    public transient final IntegerProperty CacheWarmingTopN =
+        new IntegerProperty(
+            this, "mondrian.rolap.cacheWarming.topN", 100);
+
     /**
      * Property that defines
      * whether non-existent member errors should be ignored during schema
@@ -29,6 +29,7 @@ import java.util.*;
 import org.olap4j.impl.IdentifierParser;
 
 import org.apache.commons.collections.collection.CompositeCollection;
+import org.apache.log4j.Logger;
 import org.olap4j.mdx.IdentifierNode;
 
 /**
@@ -64,6 +65,8 @@ import org.olap4j.mdx.IdentifierNode;
  */
 public class Query extends QueryPart {
 
+    private static final Logger LOGGER = Logger.getLogger(Query.class);
+
     /**
      * public-private: This must be public because it is still accessed in
      * rolap.RolapCube
@@ -100,7 +103,7 @@ public class Query extends QueryPart {
      */
     private final Cube cube;
 
-    private final Connection connection;
+    private Connection connection;
     public Calc[] axisCalcs;
     public Calc slicerCalc;
 
@@ -373,6 +376,37 @@ public class Query extends QueryPart {
         return connection;
     }
 
+    /**
+     * Prepares this query to be executed again, possibly by a different
+     * connection.
+     *
+     * <p>Resets the state left behind by a previous execution (cancel and
+     * out-of-memory flags, timeout, result style, evaluation cache and
+     * parameter values) but keeps the resolved and compiled expressions.
+     *
+     * <p>The new connection must have the same schema, role, locale and
+     * connect string as the connection which created this query; this
+     * method does not check. Used by {@link mondrian.rolap.QueryPlanCache}.
+     *
+     * @param connection Connection which will execute this query
+     */
+    public void reset(Connection connection) {
+        this.connection = connection;
+        this.isExecuting = false;
+        this.isCanceled = false;
+        this.outOfMemoryMsg = null;
+        this.queryTimeout =
+            MondrianProperties.instance().QueryTimeout.get() * 1000;
+        this.resultStyle =
+            Util.Retrowoven ? ResultStyle.LIST : ResultStyle.ITERABLE;
+        this.evalCache.clear();
+        for (Parameter parameter : parameters) {
+            if (parameter.isModifiable() && parameter.isSet()) {
+                parameter.unsetValue();
+            }
+        }
+    }
+
     /**
      * Issues a cancel request on this Query object.  Once the thread
      * running the query detects the cancel request, the query execution will
@@ -584,6 +618,27 @@ public class Query extends QueryPart {
         // Register all aliased expressions ('expr AS alias') as named sets.
         accept(new AliasedExpressionFinder());
 
+        // Read the members referenced by identifiers in bulk, rather than
+        // one name at a time as each identifier is validated. The prefetch
+        // is only an optimization: if it fails, log the error and let each
+        // identifier be looked up individually below.
+        final IdentifierFinder identifierFinder = new IdentifierFinder();
+        accept(identifierFinder);
+        if (identifierFinder.nameList.size() > 1) {
+            try {
+                validator.getSchemaReader().withoutAccessControl()
+                    .prefetchMembersByName(
+                        getCube(), identifierFinder.nameList);
+            } catch (ResultLimitExceededException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                LOGGER.warn(
+                    "Error while prefetching members by name; "
+                    + "falling back to lookup by member",
+                    e);
+            }
+        }
+
         // Validate formulas.
         if (formulas != null) {
             for (Formula formula : formulas) {
@@ -1920,6 +1975,23 @@ public class Query extends QueryPart {
         }
     }
 
+    /**
+     * Visitor which collects the compound identifiers in a query which may
+     * refer to members.
+     */
+    private static class IdentifierFinder extends MdxVisitorImpl {
+        final List<List<Id.Segment>> nameList =
+            new ArrayList<List<Id.Segment>>();
+
+        public Object visit(Id id) {
+            final List<Id.Segment> segments = id.getSegments();
+            if (segments.size() > 1) {
+                nameList.add(segments);
+            }
+            return null;
+        }
+    }
+
     /**
      * Visitor that locates and registers all aliased expressions
      * ('expr AS alias') as named sets. The resulting named sets have scope,
@@ -132,6 +132,25 @@ public interface SchemaReader {
      */
     List<Member> getMemberChildren(List<Member> members, Evaluator context);
 
+    /**
+     * Reads into the cache the descendants of each element of
+     * <code>members</code>, down to <code>level</code>, so that subsequent
+     * calls to {@link #getMemberChildren(List, Evaluator)} for those members
+     * and their descendants above <code>level</code> do not need to access
+     * the database.
+     *
+     * <p>This is a hint, and an implementation may ignore it. The members
+     * should belong to the same level.
+     *
+     * @param members Members whose descendants to read
+     * @param level Deepest level of descendants to read
+     * @param context Evaluation context, or null
+     */
+    void prefetchMemberDescendants(
+        List<Member> members,
+        Level level,
+        Evaluator context);
+
     /**
      * Returns a list of contributing children of a member of a parent-child
      * hierarchy.
@@ -419,6 +438,24 @@ public interface SchemaReader {
         Id.Segment childName,
         MatchType matchType);
 
+    /**
+     * Reads into the cache the members identified by a list of compound
+     * names, so that subsequent calls to
+     * {@link #lookupMemberChildByName(Member, Id.Segment, MatchType)} while
+     * resolving those names do not need to access the database one name at
+     * a time.
+     *
+     * <p>This is a hint, and an implementation may ignore it. A name that
+     * does not identify a member is ignored.
+     *
+     * @param cube Cube
+     * @param nameList List of compound names, for example
+     *   <code>[Customers].[USA].[CA].[Berkeley]</code>
+     */
+    void prefetchMembersByName(
+        Cube cube,
+        List<List<Id.Segment>> nameList);
+
     /**
      * Returns an object which can evaluate an expression in native SQL, or
      * null if this is not possible.
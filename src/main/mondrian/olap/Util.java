@@ -2107,6 +2107,38 @@ public class Util extends XOMUtil {
         return copy;
     }
 
+    /**
+     * Like <code>{@link java.util.Arrays}.copyOf(long[], int)</code>, but
+     * exists prior to JDK 1.6.
+     *
+     * @param original the array to be copied
+     * @param newLength the length of the copy to be returned
+     * @return a copy of the original array, truncated or padded with zeros
+     *     to obtain the specified length
+     */
+    public static long[] copyOf(long[] original, int newLength) {
+        long[] copy = new long[newLength];
+        System.arraycopy(
+            original, 0, copy, 0, Math.min(original.length, newLength));
+        return copy;
+    }
+
+    /**
+     * Like <code>{@link java.util.Arrays}.copyOf(boolean[], int)</code>, but
+     * exists prior to JDK 1.6.
+     *
+     * @param original the array to be copied
+     * @param newLength the length of the copy to be returned
+     * @return a copy of the original array, truncated or padded with
+     *     <code>false</code> to obtain the specified length
+     */
+    public static boolean[] copyOf(boolean[] original, int newLength) {
+        boolean[] copy = new boolean[newLength];
+        System.arraycopy(
+            original, 0, copy, 0, Math.min(original.length, newLength));
+        return copy;
+    }
+
     /**
      * Like <code>{@link java.util.Arrays}.copyOf(Object[], int)</code>, but
      * exists prior to JDK 1.6.
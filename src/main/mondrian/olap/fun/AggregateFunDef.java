@@ -12,7 +12,11 @@ package mondrian.olap.fun;
 import mondrian.calc.Calc;
 import mondrian.calc.ExpCompiler;
 import mondrian.calc.ListCalc;
+import mondrian.calc.MemberCalc;
+import mondrian.calc.ResultStyle;
+import mondrian.calc.impl.ConstantCalc;
 import mondrian.calc.impl.GenericCalc;
+import mondrian.calc.impl.MemberValueCalc;
 import mondrian.calc.impl.ValueCalc;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
@@ -66,7 +70,33 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
         }
 
         public Object evaluate(Evaluator evaluator) {
+            if (exp instanceof ResolvedFunCall) {
+                // Use a native evaluator, if more efficient.
+                final ResolvedFunCall call = (ResolvedFunCall) exp;
+                NativeEvaluator nativeEvaluator =
+                    evaluator.getSchemaReader().getNativeSetEvaluator(
+                        call.getFunDef(), call.getArgs(), evaluator, this);
+                if (nativeEvaluator != null) {
+                    return nativeEvaluator.execute(ResultStyle.VALUE);
+                }
+            }
             List list = evaluateCurrentList(listCalc, evaluator);
+            final Aggregator aggregator =
+                (Aggregator) evaluator.getProperty(
+                    Property.AGGREGATION_TYPE.name, null);
+            if (aggregator != null
+                && aggregator.getRollup() != null
+                && aggregator != RolapAggregator.DistinctCount
+                && aggregator != RolapAggregator.ApproxDistinctCount)
+            {
+                final Object o =
+                    aggregateTimeRange(
+                        listCalc, calc, evaluator, list,
+                        aggregator.getRollup());
+                if (o != null) {
+                    return o;
+                }
+            }
             return aggregate(calc, evaluator, list);
         }
 
@@ -99,12 +129,14 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
                     null,
                     "Don't know how to rollup aggregator '" + aggregator + "'");
             }
-            if (aggregator != RolapAggregator.DistinctCount) {
+            if (aggregator != RolapAggregator.DistinctCount
+                && aggregator != RolapAggregator.ApproxDistinctCount)
+            {
                 return rollup.aggregate(evaluator.push(false), list, calc);
             }
 
-            // All that follows is logic for distinct count. It's not like the
-            // other aggregators.
+            // All that follows is logic for distinct count (exact or
+            // approximate). It's not like the other aggregators.
             if (list.size() == 0) {
                 return DoubleNull;
             }
@@ -152,6 +184,159 @@ public class AggregateFunDef extends AbstractAggregateFunDef {
             return evaluator2.evaluateCurrent();
         }
 
+        /**
+         * Aggregates a stored measure over a list of members of a time level
+         * using a single cell request, or returns null if the list or the
+         * measure is not suitable.
+         *
+         * <p>The cell request is constrained by the list of members, in the
+         * same way as for a distinct-count measure. If the members form a
+         * range of keys, {@link RolapAggregationManager} constrains the
+         * request with a range predicate. The value is computed by one SQL
+         * statement, or read from the cache, rather than by a cell request
+         * for each member. This suits the sets returned by time functions
+         * such as <code>Ytd</code>, <code>PeriodsToDate</code> and
+         * <code>LastPeriods</code>.
+         *
+         * <p>Applies only if
+         * {@link MondrianProperties#TimeRangeAggregation} is set, and only if
+         * aggregating the values of the members gives the same result as
+         * aggregating the rows of the fact table: the measure's aggregator
+         * must be <code>sum</code>, <code>count</code>, <code>min</code> or
+         * <code>max</code>, and roll up to <code>rollup</code>.
+         *
+         * <p>Each distinct set is a separate cell request, read by its own
+         * SQL statement, and aggregate tables are not used for requests
+         * constrained by a set. Requests for the cells of the individual
+         * members, on the other hand, are batched. Therefore applies only
+         * if the set is the same for every cell of the query (see
+         * {@link #isSameForAllCells}); for example, not to <code>Ytd()</code>
+         * if months are on an axis.
+         *
+         * <p>Does not apply if the context contains a calculated member of
+         * another hierarchy, because that member would be evaluated in the
+         * aggregated context, rather than for each member of the set.
+         *
+         * @param listCalc Compiled expression for the set
+         * @param calc Compiled expression to aggregate
+         * @param evaluator Evaluation context
+         * @param list List of members
+         * @param rollup Aggregator with which to combine the values
+         * @return Aggregated value, {@link Util#nullValue} if there are no
+         *   values, or null if the list cannot be aggregated in one request
+         */
+        public static Object aggregateTimeRange(
+            Calc listCalc,
+            Calc calc,
+            Evaluator evaluator,
+            List list,
+            Aggregator rollup)
+        {
+            if (!MondrianProperties.instance().TimeRangeAggregation.get()
+                || list.size() < 2
+                || list.size()
+                    > MondrianProperties.instance().MaxConstraints.get()
+                || !(list.get(0) instanceof Member)
+                || !(evaluator instanceof RolapEvaluator)
+                || ((RolapEvaluator) evaluator).getAggregationLists() != null)
+            {
+                return null;
+            }
+            final Level level = ((Member) list.get(0)).getLevel();
+            if (!level.getLevelType().isTime()
+                || !isSameForAllCells(
+                    listCalc, evaluator, level.getHierarchy()))
+            {
+                return null;
+            }
+            for (Member member : evaluator.getMembers()) {
+                if (member.isCalculated()
+                    && !member.isMeasure()
+                    && member.getHierarchy() != level.getHierarchy())
+                {
+                    return null;
+                }
+            }
+            final Set<Member> memberSet = new HashSet<Member>();
+            for (Object o : list) {
+                final Member member = (Member) o;
+                if (member.getLevel() != level
+                    || member.isCalculated()
+                    || !memberSet.add(member))
+                {
+                    return null;
+                }
+            }
+
+            // Find the measure whose values are to be aggregated.
+            final Member measure;
+            if (calc instanceof ValueCalc) {
+                measure = evaluator.getMembers()[0];
+            } else if (calc instanceof MemberValueCalc) {
+                final Calc[] calcs = ((MemberValueCalc) calc).getCalcs();
+                if (calcs.length != 1
+                    || !(calcs[0] instanceof ConstantCalc))
+                {
+                    return null;
+                }
+                measure = ((MemberCalc) calcs[0]).evaluateMember(evaluator);
+            } else {
+                return null;
+            }
+            if (!(measure instanceof RolapStoredMeasure)) {
+                return null;
+            }
+            final RolapAggregator aggregator =
+                ((RolapStoredMeasure) measure).getAggregator();
+            if (aggregator != RolapAggregator.Sum
+                && aggregator != RolapAggregator.Count
+                && aggregator != RolapAggregator.Min
+                && aggregator != RolapAggregator.Max
+                || aggregator.getRollup() != rollup)
+            {
+                return null;
+            }
+
+            final Evaluator evaluator2 =
+                evaluator.pushAggregation(makeTupleList((List<Member>) list));
+            evaluator2.setContext(measure);
+            evaluator2.setNonEmpty(false);
+            final Object o = evaluator2.evaluateCurrent();
+            if (o == null || o == Util.nullValue) {
+                return Util.nullValue;
+            }
+            if (o instanceof Number && !(o instanceof Double)) {
+                return ((Number) o).doubleValue();
+            }
+            return o;
+        }
+
+        /**
+         * Returns whether a set is the same for every cell of the query:
+         * whether it does not depend on the context of the hierarchy of its
+         * members, or that hierarchy is not on any axis.
+         *
+         * @param listCalc Compiled expression for the set
+         * @param evaluator Evaluation context
+         * @param hierarchy Hierarchy of the members of the set
+         * @return Whether the set is the same for every cell
+         */
+        private static boolean isSameForAllCells(
+            Calc listCalc,
+            Evaluator evaluator,
+            Hierarchy hierarchy)
+        {
+            if (!listCalc.dependsOn(hierarchy)) {
+                return true;
+            }
+            for (QueryAxis axis : evaluator.getQuery().getAxes()) {
+                if (axis.getSet().getType().usesHierarchy(hierarchy, false)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         public static List<Member[]> optimizeTupleList(
             Evaluator evaluator,
             List<Member[]> tupleList)
@@ -1390,10 +1390,8 @@ public class BuiltinFunTable extends FunTableImpl {
             {
                 final DoubleCalc calc0 = compiler.compileDouble(call.getArg(0));
                 final DoubleCalc calc1 = compiler.compileDouble(call.getArg(1));
-                return new AbstractDoubleCalc(call, new Calc[] {calc0, calc1}) {
-                    public double evaluateDouble(Evaluator evaluator) {
-                        final double v0 = calc0.evaluateDouble(evaluator);
-                        final double v1 = calc1.evaluateDouble(evaluator);
+                return new AbstractDoubleBlockCalc.Binary(call, calc0, calc1) {
+                    protected double apply(double v0, double v1) {
                         if (v0 == DoubleNull) {
                             if (v1 == DoubleNull) {
                                 return DoubleNull;
@@ -1423,10 +1421,8 @@ public class BuiltinFunTable extends FunTableImpl {
             {
                 final DoubleCalc calc0 = compiler.compileDouble(call.getArg(0));
                 final DoubleCalc calc1 = compiler.compileDouble(call.getArg(1));
-                return new AbstractDoubleCalc(call, new Calc[] {calc0, calc1}) {
-                    public double evaluateDouble(Evaluator evaluator) {
-                        final double v0 = calc0.evaluateDouble(evaluator);
-                        final double v1 = calc1.evaluateDouble(evaluator);
+                return new AbstractDoubleBlockCalc.Binary(call, calc0, calc1) {
+                    protected double apply(double v0, double v1) {
                         if (v0 == DoubleNull) {
                             if (v1 == DoubleNull) {
                                 return DoubleNull;
@@ -1456,10 +1452,8 @@ public class BuiltinFunTable extends FunTableImpl {
             {
                 final DoubleCalc calc0 = compiler.compileDouble(call.getArg(0));
                 final DoubleCalc calc1 = compiler.compileDouble(call.getArg(1));
-                return new AbstractDoubleCalc(call, new Calc[] {calc0, calc1}) {
-                    public double evaluateDouble(Evaluator evaluator) {
-                        final double v0 = calc0.evaluateDouble(evaluator);
-                        final double v1 = calc1.evaluateDouble(evaluator);
+                return new AbstractDoubleBlockCalc.Binary(call, calc0, calc1) {
+                    protected double apply(double v0, double v1) {
                         // Multiply and divide return null if EITHER arg is
                         // null.
                         if (v0 == DoubleNull || v1 == DoubleNull) {
@@ -1496,12 +1490,10 @@ public class BuiltinFunTable extends FunTableImpl {
                 // Null. This is only used by certain applications and does not
                 // conform to MSAS behavior.
                 if (!isNullDenominatorProducesNull) {
-                    return new AbstractDoubleCalc(
-                        call, new Calc[] {calc0, calc1})
+                    return new AbstractDoubleBlockCalc.Binary(
+                        call, calc0, calc1)
                     {
-                        public double evaluateDouble(Evaluator evaluator) {
-                            final double v0 = calc0.evaluateDouble(evaluator);
-                            final double v1 = calc1.evaluateDouble(evaluator);
+                        protected double apply(double v0, double v1) {
                             // Null in numerator always returns DoubleNull.
                             //
                             if (v0 == DoubleNull) {
@@ -1515,12 +1507,10 @@ public class BuiltinFunTable extends FunTableImpl {
                         }
                     };
                 } else {
-                    return new AbstractDoubleCalc(
-                        call, new Calc[] {calc0, calc1})
+                    return new AbstractDoubleBlockCalc.Binary(
+                        call, calc0, calc1)
                     {
-                        public double evaluateDouble(Evaluator evaluator) {
-                            final double v0 = calc0.evaluateDouble(evaluator);
-                            final double v1 = calc1.evaluateDouble(evaluator);
+                        protected double apply(double v0, double v1) {
                             // Null in numerator or denominator returns
                             // DoubleNull.
                             if (v0 == DoubleNull || v1 == DoubleNull) {
@@ -1544,7 +1534,7 @@ public class BuiltinFunTable extends FunTableImpl {
             public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler)
             {
                 final DoubleCalc calc = compiler.compileDouble(call.getArg(0));
-                return new AbstractDoubleCalc(call, new Calc[] {calc}) {
+                return new AbstractDoubleBlockCalc(call, new Calc[] {calc}) {
                     public double evaluateDouble(Evaluator evaluator) {
                         final double v = calc.evaluateDouble(evaluator);
                         if (v == DoubleNull) {
@@ -1553,6 +1543,18 @@ public class BuiltinFunTable extends FunTableImpl {
                             return - v;
                         }
                     }
+
+                    public void evaluateDoubleBlock(
+                        Evaluator[] evaluators,
+                        double[] values)
+                    {
+                        evaluateBlock(calc, evaluators, values);
+                        for (int i = 0; i < evaluators.length; i++) {
+                            if (values[i] != DoubleNull) {
+                                values[i] = - values[i];
+                            }
+                        }
+                    }
                 };
             }
         });
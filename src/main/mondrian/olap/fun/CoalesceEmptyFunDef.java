@@ -11,6 +11,7 @@ package mondrian.olap.fun;
 
 import mondrian.olap.*;
 import mondrian.calc.*;
+import mondrian.calc.impl.AbstractDoubleBlockCalc;
 import mondrian.calc.impl.GenericCalc;
 import mondrian.mdx.ResolvedFunCall;
 
@@ -39,15 +40,12 @@ public class CoalesceEmptyFunDef extends FunDefBase {
         for (int i = 0; i < args.length; i++) {
             calcs[i] = compiler.compileScalar(args[i], true);
         }
+        if (getReturnCategory() == Category.Numeric) {
+            return new NumericCoalesceEmptyCalc(call, calcs);
+        }
         return new GenericCalc(call) {
             public Object evaluate(Evaluator evaluator) {
-                for (Calc calc : calcs) {
-                    final Object o = calc.evaluate(evaluator);
-                    if (o != null) {
-                        return o;
-                    }
-                }
-                return null;
+                return coalesce(calcs, evaluator);
             }
 
             public Calc[] getCalcs() {
@@ -56,6 +54,84 @@ public class CoalesceEmptyFunDef extends FunDefBase {
         };
     }
 
+    private static Object coalesce(Calc[] calcs, Evaluator evaluator) {
+        for (Calc calc : calcs) {
+            final Object o = calc.evaluate(evaluator);
+            if (o != null) {
+                return o;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compiled numeric <code>CoalesceEmpty</code> expression.
+     *
+     * <p>To evaluate a block of cells, evaluates the first argument for the
+     * block, then each subsequent argument for the cells which are still
+     * empty.
+     */
+    private static class NumericCoalesceEmptyCalc
+        extends GenericCalc
+        implements DoubleBlockCalc
+    {
+        private final Calc[] calcs;
+
+        NumericCoalesceEmptyCalc(ResolvedFunCall call, Calc[] calcs) {
+            super(call);
+            this.calcs = calcs;
+        }
+
+        public Object evaluate(Evaluator evaluator) {
+            return coalesce(calcs, evaluator);
+        }
+
+        public void evaluateDoubleBlock(
+            Evaluator[] evaluators,
+            double[] values)
+        {
+            AbstractDoubleBlockCalc.evaluateBlock(calcs[0], evaluators, values);
+            int[] indexes = null;
+            for (int k = 1; k < calcs.length; k++) {
+                // Collect the cells which are still empty.
+                int n = 0;
+                final int[] emptyIndexes = new int[evaluators.length];
+                if (indexes == null) {
+                    for (int i = 0; i < evaluators.length; i++) {
+                        if (values[i] == FunUtil.DoubleNull) {
+                            emptyIndexes[n++] = i;
+                        }
+                    }
+                } else {
+                    for (int index : indexes) {
+                        if (values[index] == FunUtil.DoubleNull) {
+                            emptyIndexes[n++] = index;
+                        }
+                    }
+                }
+                if (n == 0) {
+                    return;
+                }
+                indexes = new int[n];
+                System.arraycopy(emptyIndexes, 0, indexes, 0, n);
+                final Evaluator[] emptyEvaluators = new Evaluator[n];
+                for (int i = 0; i < n; i++) {
+                    emptyEvaluators[i] = evaluators[indexes[i]];
+                }
+                final double[] emptyValues = new double[n];
+                AbstractDoubleBlockCalc.evaluateBlock(
+                    calcs[k], emptyEvaluators, emptyValues);
+                for (int i = 0; i < n; i++) {
+                    values[indexes[i]] = emptyValues[i];
+                }
+            }
+        }
+
+        public Calc[] getCalcs() {
+            return calcs;
+        }
+    }
+
     private static class ResolverImpl extends ResolverBase {
         public ResolverImpl() {
             super(
@@ -39,7 +39,7 @@ class CountFunDef extends AbstractAggregateFunDef {
         super(dummyFunDef);
     }
 
-    public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler) {
+    public Calc compileCall(final ResolvedFunCall call, ExpCompiler compiler) {
         final Calc calc =
             compiler.compileAs(
                 call.getArg(0), null, ResultStyle.ITERABLE_ANY);
@@ -50,6 +50,14 @@ class CountFunDef extends AbstractAggregateFunDef {
         return new AbstractIntegerCalc(
                 call, new Calc[] {calc}) {
             public int evaluateInteger(Evaluator evaluator) {
+                // Use a native evaluator, if more efficient.
+                NativeEvaluator nativeEvaluator =
+                    evaluator.getSchemaReader().getNativeSetEvaluator(
+                        call.getFunDef(), call.getArgs(), evaluator, this);
+                if (nativeEvaluator != null) {
+                    return (Integer) nativeEvaluator.execute(
+                        ResultStyle.VALUE);
+                }
                 evaluator = evaluator.push(false);
                 if (calc instanceof IterCalc) {
                     IterCalc iterCalc = (IterCalc) calc;
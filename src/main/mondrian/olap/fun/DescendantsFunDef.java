@@ -199,6 +199,12 @@ class DescendantsFunDef extends FunDefBase {
         final boolean after,
         final Evaluator context)
     {
+        prefetch(
+            schemaReader, member,
+            after
+            ? Integer.MAX_VALUE
+            : member.getLevel().getDepth() + depthLimitFinal,
+            context);
         List<Member> children = new ArrayList<Member>();
         children.add(member);
         for (int depth = 0;; ++depth) {
@@ -245,6 +251,12 @@ class DescendantsFunDef extends FunDefBase {
             }
             return;
         }
+        prefetch(
+            schemaReader, member,
+            depthLimit == -1
+            ? Integer.MAX_VALUE
+            : member.getLevel().getDepth() + depthLimit + 1,
+            null);
         List<Member> children = new ArrayList<Member>();
         children.add(member);
         for (int depth = 0; depthLimit == -1 || depth <= depthLimit; ++depth) {
@@ -320,6 +332,9 @@ class DescendantsFunDef extends FunDefBase {
         // memory allocation.
         if (leaves) {
             assert !before && !self && !after;
+            // To know whether a member at the level is a leaf, we read its
+            // children.
+            prefetch(schemaReader, ancestor, levelDepth + 1, context);
             do {
                 List<Member> nextMembers = new ArrayList<Member>();
                 for (Member member : members) {
@@ -342,6 +357,10 @@ class DescendantsFunDef extends FunDefBase {
                 members = nextMembers;
             } while (members.size() > 0);
         } else {
+            prefetch(
+                schemaReader, ancestor,
+                after ? Integer.MAX_VALUE : levelDepth,
+                context);
             List<Member> fertileMembers = new ArrayList<Member>();
             do {
                 fertileMembers.clear();
@@ -373,6 +392,33 @@ class DescendantsFunDef extends FunDefBase {
         }
     }
 
+    /**
+     * Asks the schema reader to read the descendants of a member down to a
+     * given depth in one pass, rather than one level at a time. Does nothing
+     * unless the descendants span more than one level.
+     *
+     * @param schemaReader Schema reader
+     * @param member Member whose descendants will be read
+     * @param depth Depth of the deepest level that will be read; if greater
+     *   than the depth of the bottom level of the hierarchy, the bottom level
+     * @param context Evaluation context, or null
+     */
+    private static void prefetch(
+        SchemaReader schemaReader,
+        Member member,
+        int depth,
+        Evaluator context)
+    {
+        final Level[] levels = member.getHierarchy().getLevels();
+        if (depth >= levels.length) {
+            depth = levels.length - 1;
+        }
+        if (depth > member.getLevel().getDepth() + 1) {
+            schemaReader.prefetchMemberDescendants(
+                Collections.singletonList(member), levels[depth], context);
+        }
+    }
+
     /**
      * Enumeration of the flags allowed to the <code>DESCENDANTS</code>
      * function.
@@ -10,7 +10,6 @@
 package mondrian.olap.fun;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -90,10 +89,14 @@ class DistinctFunDef extends FunDefBase {
         public List<Member[]> evaluateTupleList(Evaluator evaluator) {
             List<Member[]> list =
                 ((TupleListCalc) listCalc).evaluateTupleList(evaluator);
-            Set<List<Member>> set = new HashSet<List<Member>>(list.size());
+            if (list.isEmpty()) {
+                return list;
+            }
+            final TupleKeys tupleKeys = new TupleKeys(list.get(0).length);
+            Set<TupleKeys.Key> set = new HashSet<TupleKeys.Key>(list.size());
             List<Member[]> result = new ArrayList<Member[]>();
             for (Member[] element : list) {
-                if (set.add(Arrays.asList(element))) {
+                if (set.add(tupleKeys.register(element))) {
                     result.add(element);
                 }
             }
@@ -85,6 +85,9 @@ class DrilldownLevelFunDef extends FunDefBase {
                     List<Member> result = new ArrayList<Member>();
                     final SchemaReader schemaReader =
                         evaluator.getSchemaReader();
+                    if (index == 0) {
+                        prefetchChildren(schemaReader, list);
+                    }
                     for (Member member : list) {
                         result.add(member);
                         if (index == 0) {
@@ -141,11 +144,12 @@ class DrilldownLevelFunDef extends FunDefBase {
             }
         }
 
-        List<Member> drilledSet = new ArrayList<Member>();
-
+        // First pass: find the members to drill, and read all of their
+        // children at once.
+        final boolean[] drills = new boolean[list.size()];
+        final List<Member> drillMembers = new ArrayList<Member>();
         for (int i = 0, m = list.size(); i < m; i++) {
             Member member = list.get(i);
-            drilledSet.add(member);
 
             Member nextMember =
                 i == (m - 1)
@@ -161,8 +165,20 @@ class DrilldownLevelFunDef extends FunDefBase {
             if (member.getLevel().getDepth() == searchDepth
                 && !FunUtil.isAncestorOf(member, nextMember, true))
             {
+                drills[i] = true;
+                drillMembers.add(member);
+            }
+        }
+        final SchemaReader schemaReader = evaluator.getSchemaReader();
+        prefetchChildren(schemaReader, drillMembers);
+
+        List<Member> drilledSet = new ArrayList<Member>();
+        for (int i = 0, m = list.size(); i < m; i++) {
+            Member member = list.get(i);
+            drilledSet.add(member);
+            if (drills[i]) {
                 final List<Member> childMembers =
-                    evaluator.getSchemaReader().getMemberChildren(member);
+                    schemaReader.getMemberChildren(member);
                 for (Member childMember : childMembers) {
                     drilledSet.add(childMember);
                 }
@@ -170,6 +186,39 @@ class DrilldownLevelFunDef extends FunDefBase {
         }
         return drilledSet;
     }
+
+    /**
+     * Asks the schema reader to read the children of a list of members in as
+     * few passes as possible, grouping the members by level.
+     *
+     * @param schemaReader Schema reader
+     * @param members Members whose children will be read
+     */
+    static void prefetchChildren(
+        SchemaReader schemaReader,
+        List<Member> members)
+    {
+        if (members.size() < 2) {
+            return;
+        }
+        final Map<Level, List<Member>> membersByLevel =
+            new LinkedHashMap<Level, List<Member>>();
+        for (Member member : members) {
+            List<Member> levelMembers = membersByLevel.get(member.getLevel());
+            if (levelMembers == null) {
+                levelMembers = new ArrayList<Member>();
+                membersByLevel.put(member.getLevel(), levelMembers);
+            }
+            levelMembers.add(member);
+        }
+        for (Map.Entry<Level, List<Member>> entry : membersByLevel.entrySet()) {
+            final Level childLevel = entry.getKey().getChildLevel();
+            if (childLevel != null && entry.getValue().size() > 1) {
+                schemaReader.prefetchMemberDescendants(
+                    entry.getValue(), childLevel, null);
+            }
+        }
+    }
 }
 
 // End DrilldownLevelFunDef.java
@@ -96,17 +96,24 @@ class ExceptFunDef extends FunDefBase {
         if (list0.size() == 0) {
             return list0;
         }
+        if (list1.isEmpty()) {
+            return list0;
+        }
         // Because the .equals and .hashCode methods of
-        // Member[] use identity, wrap each tuple in a list.
-        final Set<List<Member>> set = new HashSet<List<Member>>();
+        // Member[] use identity, key each tuple by its members' ordinals.
+        // A tuple containing a member which does not occur in list1 has no
+        // key, and is accepted without probing the set.
+        final TupleKeys tupleKeys = new TupleKeys(list1.get(0).length);
+        final Set<TupleKeys.Key> set = new HashSet<TupleKeys.Key>();
         for (Member[] members : list1) {
-            set.add(Arrays.asList(members));
+            set.add(tupleKeys.register(members));
         }
         return new FilteredIterableList<Member[]>(
                 list0,
                 new FilteredIterableList.Filter<Member[]>() {
                     public boolean accept(final Member[] o) {
-                        return !set.contains(Arrays.asList(o));
+                        final TupleKeys.Key key = tupleKeys.lookup(o);
+                        return key == null || !set.contains(key);
                     }
                 });
     }
@@ -625,11 +625,7 @@ public class FunUtil extends Util {
         int limit,
         boolean desc)
     {
-        MemberComparator comp = new BreakMemberComparator(evaluator, exp, desc);
-        Map<Member, Object> valueMap =
-            evaluateMembers(evaluator, exp, list, null, false);
-        comp.preloadValues(valueMap);
-        return stablePartialSort(list, comp.wrap(), limit);
+        return partiallySortByValue(evaluator, list, exp, limit, desc);
     }
 
     /**
@@ -709,12 +705,64 @@ public class FunUtil extends Util {
         boolean desc,
         int arity)
     {
-        Comparator<Member[]> comp =
-            new BreakArrayComparator(evaluator, exp, arity).wrap();
-        if (desc) {
-            comp = Collections.reverseOrder(comp);
+        return partiallySortByValue(evaluator, list, exp, limit, desc);
+    }
+
+    /**
+     * Partially sorts an iterable of members or tuples by the value of a
+     * numeric expression.
+     *
+     * <p>Makes a single pass over the iterable, and retains only the
+     * <i>limit</i> best items seen so far, in a {@link TopHeap}. Values are
+     * not kept in a map, and the iterable is not copied into a list, so this
+     * method is suitable for very large sets. Items with equal values are
+     * returned in their original order, as by {@link #stablePartialSort}.
+     *
+     * <p>NOTE: Does not preserve the contents of the evaluator.
+     *
+     * @param evaluator Evaluator
+     * @param iterable Members or tuples
+     * @param exp Numeric expression applied to each item to find its sort key
+     * @param limit Maximum count of items to return
+     * @param desc true to find the highest values (TopCount), false to find
+     *   the lowest (BottomCount)
+     * @return the top or bottom items, sorted, as a new list
+     */
+    public static <T> List<T> partiallySortByValue(
+        Evaluator evaluator,
+        Iterable<T> iterable,
+        Calc exp,
+        int limit,
+        boolean desc)
+    {
+        final TopHeap<T> heap = new TopHeap<T>(limit, desc);
+        for (T item : iterable) {
+            if (item instanceof Member) {
+                evaluator.setContext((Member) item);
+            } else {
+                evaluator.setContext((Member[]) item);
+            }
+            heap.add(item, toSortValue(exp.evaluate(evaluator)));
+        }
+        return heap.toList();
+    }
+
+    /**
+     * Converts the value of a numeric expression to a double for
+     * {@link TopHeap}. Null values, and values which are not available yet
+     * because they are not in the cache, become {@link #DoubleNull}.
+     */
+    private static double toSortValue(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value == null
+            || value == Util.nullValue
+            || value instanceof RuntimeException)
+        {
+            return DoubleNull;
+        } else {
+            throw Util.newInternal("cannot compare " + value);
         }
-        return stablePartialSort(list, comp, limit);
     }
 
     /**
@@ -736,8 +784,10 @@ public class FunUtil extends Util {
         if (memberList.get(0).getDimension().isHighCardinality()) {
             return;
         }
-        Comparator<Member> comparator = new HierarchizeComparator(post);
-        Collections.sort(memberList, comparator);
+        final int[] ranks = hierarchicalRanks(memberList, post);
+        final int[] order =
+            rankSort(identityOrder(memberList.size()), ranks, ranks.length);
+        permute(memberList, order);
     }
 
     /**
@@ -757,9 +807,110 @@ public class FunUtil extends Util {
         if (tupleList.isEmpty()) {
             return;
         }
-        Comparator<Member[]> comparator =
-            new HierarchizeArrayComparator(arity, post).wrap();
-        Collections.sort(tupleList, comparator);
+        // Rank the distinct members of each column, then radix sort on the
+        // ranks, least significant column first. Each pass is stable, so the
+        // result is the same as a lexicographic sort, but members are
+        // compared only while ranking.
+        final int n = tupleList.size();
+        int[] order = identityOrder(n);
+        final List<Member> column = new ArrayList<Member>(n);
+        for (int i = arity - 1; i >= 0; i--) {
+            column.clear();
+            for (Member[] tuple : tupleList) {
+                column.add(tuple[i]);
+            }
+            final int[] ranks = hierarchicalRanks(column, post);
+            order = rankSort(order, ranks, ranks.length);
+        }
+        permute(tupleList, order);
+    }
+
+    /**
+     * Assigns each member in a list its rank in hierarchical order.
+     *
+     * <p>Distinct members are sorted once using
+     * {@link #compareHierarchically(Member, Member, boolean)}; equal members
+     * receive the same rank.
+     *
+     * @param memberList List of members
+     * @param post Whether to rank in post order
+     * @return Rank of each member; ranks are less than the number of
+     *   members
+     */
+    private static int[] hierarchicalRanks(
+        List<Member> memberList,
+        boolean post)
+    {
+        final Map<Member, Integer> rankMap = new HashMap<Member, Integer>();
+        final List<Member> distinctList = new ArrayList<Member>();
+        for (Member member : memberList) {
+            final Member key = unwrapLimitedRollup(member);
+            if (!rankMap.containsKey(key)) {
+                rankMap.put(key, null);
+                distinctList.add(key);
+            }
+        }
+        Collections.sort(distinctList, new HierarchizeComparator(post));
+        for (int i = 0; i < distinctList.size(); i++) {
+            rankMap.put(distinctList.get(i), i);
+        }
+        final int[] ranks = new int[memberList.size()];
+        int i = 0;
+        for (Member member : memberList) {
+            ranks[i++] = rankMap.get(unwrapLimitedRollup(member));
+        }
+        return ranks;
+    }
+
+    private static Member unwrapLimitedRollup(Member member) {
+        if (member instanceof RolapHierarchy.LimitedRollupMember) {
+            return ((RolapHierarchy.LimitedRollupMember) member).member;
+        }
+        return member;
+    }
+
+    private static int[] identityOrder(int n) {
+        final int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Stable counting sort of an ordering by rank.
+     *
+     * @param order Indexes of elements, in their current order
+     * @param ranks Rank of each element, indexed by element
+     * @param rankCount Upper bound (exclusive) of the ranks
+     * @return Indexes of elements, sorted by rank
+     */
+    private static int[] rankSort(int[] order, int[] ranks, int rankCount) {
+        final int[] starts = new int[rankCount + 1];
+        for (int index : order) {
+            ++starts[ranks[index] + 1];
+        }
+        for (int i = 0; i < rankCount; i++) {
+            starts[i + 1] += starts[i];
+        }
+        final int[] sorted = new int[order.length];
+        for (int index : order) {
+            sorted[starts[ranks[index]]++] = index;
+        }
+        return sorted;
+    }
+
+    /**
+     * Rearranges a list so that its <code>i</code>th element is the element
+     * formerly at position <code>order[i]</code>.
+     */
+    private static <T> void permute(List<T> list, int[] order) {
+        final List<T> copy = new ArrayList<T>(list);
+        final ListIterator<T> iterator = list.listIterator();
+        for (int index : order) {
+            iterator.next();
+            iterator.set(copy.get(index));
+        }
     }
 
     static int sign(double d) {
@@ -3001,26 +3152,165 @@ public class FunUtil extends Util {
     }
 
     /**
-     * Compares arrays of {@link Member}s so as to convert them into hierarchical
-     * order. Applies lexicographic order to the array.
+     * Bounded heap which retains the <i>limit</i> items with the highest (or
+     * lowest) values added to it. Items with equal values rank in the order
+     * they were added, so the result is the same as that of
+     * {@link FunUtil#stablePartialSort}.
+     *
+     * <p>Values and ordinals are held in primitive arrays. The root of the
+     * heap is the worst item retained; each item added is compared with the
+     * root and, if better, replaces it, so adding <i>n</i> items costs
+     * O(<i>n</i> log <i>limit</i>) and uses O(<i>limit</i>) memory.
+     *
+     * <p>Values are compared as {@link FunUtil#compareValues(Object, Object)}
+     * compares numbers: {@link FunUtil#DoubleNull} is lower than any other
+     * value, including negative infinity.
      */
-    private static class HierarchizeArrayComparator extends ArrayComparator {
-        private final boolean post;
+    static class TopHeap<T> {
+        private final int limit;
+        private final boolean desc;
+        private Object[] items;
+        private double[] values;
+        private int[] ordinals;
+        private int size;
+        private int count;
 
-        HierarchizeArrayComparator(int arity, boolean post) {
-            super(arity);
-            this.post = post;
+        /**
+         * Creates a TopHeap.
+         *
+         * @param limit Maximum number of items to retain
+         * @param desc true to retain the highest values, false to retain the
+         *   lowest
+         */
+        TopHeap(int limit, boolean desc) {
+            assert limit >= 0;
+            this.limit = limit;
+            this.desc = desc;
+            final int capacity = Math.min(limit, 16);
+            this.items = new Object[capacity];
+            this.values = new double[capacity];
+            this.ordinals = new int[capacity];
         }
 
-        public int compare(Member[] a1, Member[] a2) {
-            for (int i = 0; i < arity; i++) {
-                Member m1 = a1[i], m2 = a2[i];
-                int c = FunUtil.compareHierarchically(m1, m2, post);
-                if (c != 0) {
-                    return c;
+        /**
+         * Adds an item.
+         *
+         * @param item Item
+         * @param value Value of item, or {@link FunUtil#DoubleNull}
+         */
+        void add(T item, double value) {
+            final int ordinal = count++;
+            if (size < limit) {
+                if (size == items.length) {
+                    grow();
                 }
+                set(size, item, value, ordinal);
+                siftUp(size++);
+            } else if (size > 0 && compare(value, ordinal, 0) > 0) {
+                set(0, item, value, ordinal);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Returns the items retained, best first, as a new mutable list.
+         *
+         * @return List of items
+         */
+        List<T> toList() {
+            final Object[] sorted = new Object[size];
+            while (size > 0) {
+                sorted[--size] = items[0];
+                move(size, 0);
+                siftDown(0);
+            }
+            //noinspection unchecked
+            return new ArrayList<T>((List<T>) Arrays.asList(sorted));
+        }
+
+        private void grow() {
+            final int capacity = (int) Math.min((long) limit, size * 2L);
+            final Object[] newItems = new Object[capacity];
+            final double[] newValues = new double[capacity];
+            final int[] newOrdinals = new int[capacity];
+            System.arraycopy(items, 0, newItems, 0, size);
+            System.arraycopy(values, 0, newValues, 0, size);
+            System.arraycopy(ordinals, 0, newOrdinals, 0, size);
+            items = newItems;
+            values = newValues;
+            ordinals = newOrdinals;
+        }
+
+        private void set(int i, Object item, double value, int ordinal) {
+            items[i] = item;
+            values[i] = value;
+            ordinals[i] = ordinal;
+        }
+
+        private void move(int from, int to) {
+            set(to, items[from], values[from], ordinals[from]);
+            items[from] = null;
+        }
+
+        private void swap(int i, int j) {
+            final Object item = items[i];
+            final double value = values[i];
+            final int ordinal = ordinals[i];
+            set(i, items[j], values[j], ordinals[j]);
+            set(j, item, value, ordinal);
+        }
+
+        /**
+         * Compares an item with the item at a given position in the heap.
+         * Returns a positive value if the item is better.
+         */
+        private int compare(double value, int ordinal, int i) {
+            int c;
+            if (value == DoubleNull) {
+                c = values[i] == DoubleNull ? 0 : -1;
+            } else if (values[i] == DoubleNull) {
+                c = 1;
+            } else {
+                c = FunUtil.compareValues(value, values[i]);
+            }
+            if (!desc) {
+                c = -c;
+            }
+            if (c == 0) {
+                // The item added earlier is better.
+                c = FunUtil.compareValues(ordinals[i], ordinal);
+            }
+            return c;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                final int parent = (i - 1) / 2;
+                if (compare(values[i], ordinals[i], parent) >= 0) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1;
+                     child <= 2 * i + 2 && child < size;
+                     child++)
+                {
+                    if (compare(values[child], ordinals[child], worst) < 0) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    break;
+                }
+                swap(i, worst);
+                i = worst;
             }
-            return 0;
         }
     }
 
@@ -15,6 +15,7 @@ import mondrian.calc.impl.ConstantCalc;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.Evaluator;
 import mondrian.olap.FunDef;
+import mondrian.olap.NativeEvaluator;
 import mondrian.util.UnsupportedList;
 
 import java.util.*;
@@ -49,7 +50,7 @@ class HeadTailFunDef extends FunDefBase {
         head = dummyFunDef.getName().equals("Head");
     }
 
-    public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler) {
+    public Calc compileCall(final ResolvedFunCall call, ExpCompiler compiler) {
         final ListCalc listCalc =
             compiler.compileList(call.getArg(0));
         final IntegerCalc integerCalc =
@@ -61,6 +62,14 @@ class HeadTailFunDef extends FunDefBase {
                 call, new Calc[] {listCalc, integerCalc})
             {
                 public List evaluateList(Evaluator evaluator) {
+                    // Use a native evaluator, if more efficient.
+                    NativeEvaluator nativeEvaluator =
+                        evaluator.getSchemaReader().getNativeSetEvaluator(
+                            call.getFunDef(), call.getArgs(), evaluator, this);
+                    if (nativeEvaluator != null) {
+                        return (List) nativeEvaluator.execute(
+                            ResultStyle.LIST);
+                    }
                     evaluator = evaluator.push(false);
                     List list = listCalc.evaluateList(evaluator);
                     int count = integerCalc.evaluateInteger(evaluator);
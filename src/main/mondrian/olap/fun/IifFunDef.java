@@ -137,21 +137,95 @@ public class IifFunDef extends FunDefBase {
                     compiler.compileBoolean(call.getArg(0));
                 final Calc calc1 = compiler.compileScalar(call.getArg(1), true);
                 final Calc calc2 = compiler.compileScalar(call.getArg(2), true);
-                return new GenericCalc(call) {
-                    public Object evaluate(Evaluator evaluator) {
-                        final boolean b =
-                            booleanCalc.evaluateBoolean(evaluator);
-                        Calc calc = b ? calc1 : calc2;
-                        return calc.evaluate(evaluator);
-                    }
-
-                    public Calc[] getCalcs() {
-                        return new Calc[] {booleanCalc, calc1, calc2};
-                    }
-                };
+                return new NumericIifCalc(call, booleanCalc, calc1, calc2);
             }
         };
 
+    /**
+     * Compiled numeric <code>IIf</code> expression.
+     *
+     * <p>To evaluate a block of cells, evaluates the condition for each cell,
+     * then evaluates each branch for the block of cells which take it.
+     */
+    private static class NumericIifCalc
+        extends GenericCalc
+        implements DoubleBlockCalc
+    {
+        private final BooleanCalc booleanCalc;
+        private final Calc calc1;
+        private final Calc calc2;
+
+        NumericIifCalc(
+            ResolvedFunCall call,
+            BooleanCalc booleanCalc,
+            Calc calc1,
+            Calc calc2)
+        {
+            super(call);
+            this.booleanCalc = booleanCalc;
+            this.calc1 = calc1;
+            this.calc2 = calc2;
+        }
+
+        public Object evaluate(Evaluator evaluator) {
+            final boolean b =
+                booleanCalc.evaluateBoolean(evaluator);
+            Calc calc = b ? calc1 : calc2;
+            return calc.evaluate(evaluator);
+        }
+
+        public void evaluateDoubleBlock(
+            Evaluator[] evaluators,
+            double[] values)
+        {
+            final int n = evaluators.length;
+            final int[] indexes = new int[n];
+            int trueCount = 0;
+            int falseIndex = n;
+            for (int i = 0; i < n; i++) {
+                if (booleanCalc.evaluateBoolean(evaluators[i])) {
+                    indexes[trueCount++] = i;
+                } else {
+                    indexes[--falseIndex] = i;
+                }
+            }
+            evaluateBranch(calc1, evaluators, values, indexes, 0, trueCount);
+            evaluateBranch(calc2, evaluators, values, indexes, trueCount, n);
+        }
+
+        /**
+         * Evaluates a branch for the cells whose indexes are in a range of
+         * an array, and writes the results to those cells.
+         */
+        private static void evaluateBranch(
+            Calc calc,
+            Evaluator[] evaluators,
+            double[] values,
+            int[] indexes,
+            int start,
+            int end)
+        {
+            final int n = end - start;
+            if (n == 0) {
+                return;
+            }
+            final Evaluator[] branchEvaluators = new Evaluator[n];
+            for (int i = 0; i < n; i++) {
+                branchEvaluators[i] = evaluators[indexes[start + i]];
+            }
+            final double[] branchValues = new double[n];
+            AbstractDoubleBlockCalc.evaluateBlock(
+                calc, branchEvaluators, branchValues);
+            for (int i = 0; i < n; i++) {
+                values[indexes[start + i]] = branchValues[i];
+            }
+        }
+
+        public Calc[] getCalcs() {
+            return new Calc[] {booleanCalc, calc1, calc2};
+        }
+    }
+
     // IIf(<Logical Expression>, <Tuple Expression>, <Tuple Expression>)
     static final FunDefBase TUPLE_INSTANCE =
         new IifFunDef(
@@ -117,15 +117,22 @@ class IntersectFunDef extends FunDefBase
                     if (rightList.isEmpty()) {
                         return Collections.emptyList();
                     }
-                    RetrievableSet<List<Member>> rightSet =
-                        buildSearchableCollection(rightList);
+                    // Key each tuple by its members' ordinals. A left tuple
+                    // containing a member which does not occur on the right
+                    // has no key, and is skipped without probing the map.
+                    final TupleKeys tupleKeys = new TupleKeys(arity);
+                    final Map<TupleKeys.Key, Member[]> rightMap =
+                        buildSearchableCollection(tupleKeys, rightList);
                     final List<Member[]> result = new ArrayList<Member[]>();
-                    final Set<List<Member>> resultSet =
-                        all ? null : new HashSet<List<Member>>();
+                    final Set<TupleKeys.Key> resultSet =
+                        all ? null : new HashSet<TupleKeys.Key>();
                     for (Member[] leftTuple : leftList) {
-                        List<Member> leftKey = Arrays.asList(leftTuple);
-                        List<Member> rightKey = rightSet.getKey(leftKey);
-                        if (rightKey == null) {
+                        TupleKeys.Key leftKey = tupleKeys.lookup(leftTuple);
+                        if (leftKey == null) {
+                            continue;
+                        }
+                        Member[] rightTuple = rightMap.get(leftKey);
+                        if (rightTuple == null) {
                             continue;
                         }
                         if (resultSet != null && !resultSet.add(leftKey)) {
@@ -133,7 +140,7 @@ class IntersectFunDef extends FunDefBase
                         }
                         result.add(
                             copyTupleWithVisualTotalsMembersOverriding(
-                                leftTuple, rightKey));
+                                leftTuple, rightTuple));
                     }
                     return result;
                 }
@@ -148,17 +155,17 @@ class IntersectFunDef extends FunDefBase
                  * members on the RHS.
                  *
                  * @param leftTuple Original tuple
-                 * @param rightKey Right tuple
+                 * @param rightTuple Right tuple
                  * @return Copy of original tuple, with any VisualTotalMembers
                  *   from right tuple overriding
                  */
                 private Member[] copyTupleWithVisualTotalsMembersOverriding(
                     Member[] leftTuple,
-                    List<Member> rightKey)
+                    Member[] rightTuple)
                 {
                     Member[] tuple = leftTuple;
-                    for (int i = 0; i < rightKey.size(); i++) {
-                        Member member = rightKey.get(i);
+                    for (int i = 0; i < rightTuple.length; i++) {
+                        Member member = rightTuple[i];
                         if (!(tuple[i]
                             instanceof VisualTotalsFunDef.VisualTotalMember)
                             && member instanceof
@@ -176,13 +183,14 @@ class IntersectFunDef extends FunDefBase
                     return tuple;
                 }
 
-                private RetrievableSet<List<Member>> buildSearchableCollection(
+                private Map<TupleKeys.Key, Member[]> buildSearchableCollection(
+                    TupleKeys tupleKeys,
                     List<Member[]> tuples)
                 {
-                    RetrievableSet<List<Member>> result =
-                        new RetrievableHashSet<List<Member>>(tuples.size());
+                    Map<TupleKeys.Key, Member[]> result =
+                        new HashMap<TupleKeys.Key, Member[]>(tuples.size());
                     for (Member[] tuple : tuples) {
-                        result.add(Arrays.asList(tuple));
+                        result.put(tupleKeys.register(tuple), tuple);
                     }
                     return result;
                 }
@@ -11,10 +11,12 @@ package mondrian.olap.fun;
 
 import mondrian.olap.FunDef;
 import mondrian.olap.Evaluator;
+import mondrian.olap.NativeEvaluator;
 import mondrian.calc.Calc;
 import mondrian.calc.ExpCompiler;
 import mondrian.calc.ListCalc;
 import mondrian.calc.IntegerCalc;
+import mondrian.calc.ResultStyle;
 import mondrian.calc.impl.AbstractListCalc;
 import mondrian.mdx.ResolvedFunCall;
 
@@ -40,7 +42,7 @@ class SubsetFunDef extends FunDefBase {
         super(dummyFunDef);
     }
 
-    public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler) {
+    public Calc compileCall(final ResolvedFunCall call, ExpCompiler compiler) {
         final ListCalc listCalc =
             compiler.compileList(call.getArg(0));
         final IntegerCalc startCalc =
@@ -53,6 +55,13 @@ class SubsetFunDef extends FunDefBase {
             call, new Calc[] {listCalc, startCalc, countCalc})
         {
             public List evaluateList(Evaluator evaluator) {
+                // Use a native evaluator, if more efficient.
+                NativeEvaluator nativeEvaluator =
+                    evaluator.getSchemaReader().getNativeSetEvaluator(
+                        call.getFunDef(), call.getArgs(), evaluator, this);
+                if (nativeEvaluator != null) {
+                    return (List) nativeEvaluator.execute(ResultStyle.LIST);
+                }
                 evaluator = evaluator.push(false);
                 final List list =
                         listCalc.evaluateList(evaluator);
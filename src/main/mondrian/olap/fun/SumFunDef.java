@@ -14,6 +14,7 @@ import mondrian.calc.*;
 import mondrian.calc.impl.ValueCalc;
 import mondrian.calc.impl.AbstractDoubleCalc;
 import mondrian.mdx.ResolvedFunCall;
+import mondrian.rolap.RolapAggregator;
 
 import java.util.List;
 
@@ -97,9 +98,20 @@ class SumFunDef extends AbstractAggregateFunDef {
     {
         return new AbstractDoubleCalc(call, new Calc[] {ncalc, calc}) {
             public double evaluateDouble(Evaluator evaluator) {
+                final Double nativeSum = sumNative(call, evaluator, this);
+                if (nativeSum != null) {
+                    return nativeSum;
+                }
                 IterCalc iterCalc = (IterCalc) ncalc;
                 Iterable iterable =
                     evaluateCurrentIterable(iterCalc, evaluator);
+                if (iterable instanceof List) {
+                    final Double rangeSum =
+                        sumTimeRange(evaluator, (List) iterable, ncalc, calc);
+                    if (rangeSum != null) {
+                        return rangeSum;
+                    }
+                }
                 return sumDouble(evaluator.push(), iterable, calc);
             }
 
@@ -114,8 +126,17 @@ class SumFunDef extends AbstractAggregateFunDef {
     {
         return new AbstractDoubleCalc(call, new Calc[] {ncalc, calc}) {
             public double evaluateDouble(Evaluator evaluator) {
+                final Double nativeSum = sumNative(call, evaluator, this);
+                if (nativeSum != null) {
+                    return nativeSum;
+                }
                 ListCalc listCalc = (ListCalc) ncalc;
                 List memberList = evaluateCurrentList(listCalc, evaluator);
+                final Double rangeSum =
+                    sumTimeRange(evaluator, memberList, ncalc, calc);
+                if (rangeSum != null) {
+                    return rangeSum;
+                }
                 return sumDouble(evaluator.push(false), memberList, calc);
             }
 
@@ -124,6 +145,60 @@ class SumFunDef extends AbstractAggregateFunDef {
             }
         };
     }
+
+    /**
+     * Computes the sum using a native evaluator, if the arguments allow it.
+     *
+     * @param call Call to Sum function
+     * @param evaluator Evaluator
+     * @param calc Compiled call
+     * @return Sum, or null if it cannot be computed natively
+     */
+    private static Double sumNative(
+        ResolvedFunCall call,
+        Evaluator evaluator,
+        Calc calc)
+    {
+        NativeEvaluator nativeEvaluator =
+            evaluator.getSchemaReader().getNativeSetEvaluator(
+                call.getFunDef(), call.getArgs(), evaluator, calc);
+        if (nativeEvaluator == null) {
+            return null;
+        }
+        final Object value = nativeEvaluator.execute(ResultStyle.VALUE);
+        return value == Util.nullValue
+            ? DoubleNull
+            : ((Number) value).doubleValue();
+    }
+
+    /**
+     * Computes the sum over a range of time periods in a single cell request,
+     * if the arguments allow it.
+     *
+     * @param evaluator Evaluator
+     * @param list List of members
+     * @param listCalc Compiled expression for the set
+     * @param calc Compiled expression to sum
+     * @return Sum, or null if it cannot be computed in a single request
+     *
+     * @see AggregateFunDef.AggregateCalc#aggregateTimeRange
+     */
+    private static Double sumTimeRange(
+        Evaluator evaluator,
+        List list,
+        Calc listCalc,
+        Calc calc)
+    {
+        final Object value =
+            AggregateFunDef.AggregateCalc.aggregateTimeRange(
+                listCalc, calc, evaluator, list, RolapAggregator.Sum);
+        if (value == null) {
+            return null;
+        }
+        return value instanceof Number
+            ? ((Number) value).doubleValue()
+            : DoubleNull;
+    }
 }
 
 // End SumFunDef.java
@@ -15,7 +15,6 @@ import mondrian.calc.impl.AbstractListCalc;
 import mondrian.calc.ResultStyle;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
-import mondrian.olap.type.SetType;
 
 import java.util.*;
 
@@ -60,20 +59,19 @@ class TopBottomCountFunDef extends FunDefBase {
     }
 
     public Calc compileCall(final ResolvedFunCall call, ExpCompiler compiler) {
-        // Compile the member list expression. Ask for a mutable list, because
-        // we're going to sort it later.
-        final ListCalc listCalc =
-                compiler.compileList(call.getArg(0), true);
+        // Compile the set expression as an iterable. Both with and without
+        // a sort expression, we make a single pass over the set, so there is
+        // no need to materialize it as a list.
+        final IterCalc iterCalc = compiler.compileIter(call.getArg(0));
         final IntegerCalc integerCalc =
                 compiler.compileInteger(call.getArg(1));
         final Calc orderCalc =
             call.getArgCount() > 2
             ? compiler.compileScalar(call.getArg(2), true)
             : null;
-        final int arity = ((SetType) call.getType()).getArity();
         return new AbstractListCalc(
             call,
-            new Calc[]{listCalc, integerCalc, orderCalc})
+            new Calc[]{iterCalc, integerCalc, orderCalc})
         {
             public List evaluateList(Evaluator evaluator) {
                 // Use a native evaluator, if more efficient.
@@ -88,10 +86,7 @@ class TopBottomCountFunDef extends FunDefBase {
 
                 // REVIEW mberkowitz Is it necessary to eval the list when n is
                 // null or zero?
-                List list = listCalc.evaluateList(evaluator);
-                if (list.isEmpty()) {
-                    return list;
-                }
+                Iterable iterable = iterCalc.evaluateIterable(evaluator);
 
                 int n = integerCalc.evaluateInteger(evaluator);
                 if (n == 0 || n == mondrian.olap.fun.FunUtil.IntegerNull) {
@@ -99,79 +94,35 @@ class TopBottomCountFunDef extends FunDefBase {
                 }
 
                 if (orderCalc == null) {
-                    if (list instanceof AbstractList && list.size() < n) {
-                        return list;
-                    } else {
-                        return list.subList(0, n);
+                    if (iterable instanceof List) {
+                        // Copy, because the caller may modify the result
+                        // (say Hierarchize), and the list may belong to a
+                        // named set or be cached.
+                        final List list = (List) iterable;
+                        return new ArrayList(
+                            list.size() <= n ? list : list.subList(0, n));
                     }
-                }
-
-                return partiallySortList(
-                    evaluator, list, hasHighCardDimension(list), n, arity);
-            }
-
-            private List partiallySortList(
-                Evaluator evaluator,
-                List list, boolean highCard, int n, int arity)
-            {
-                if (highCard) {
-                    // sort list in chunks, collect the results
-                    final int chunkSize = 6400; // what is this really?
-                    List allChunkResults = new ArrayList();
-                    Iterator listIter = list.iterator();
-                    while (listIter.hasNext()) {
-                        List chunk = new ArrayList();
-                        for (int count = 0;
-                             count < chunkSize
-                                 && listIter.hasNext();
-                             count++)
-                        {
-                            chunk.add(listIter.next());
+                    final List list = new ArrayList();
+                    for (Object o : iterable) {
+                        list.add(o);
+                        if (list.size() == n) {
+                            break;
                         }
-                        List chunkResult =
-                            partiallySortList(
-                                evaluator, chunk, false, n, arity);
-                        allChunkResults.addAll(chunkResult);
                     }
-                    // one last sort, to merge and cull
-                    return partiallySortList(
-                        evaluator, allChunkResults, false, n, arity);
+                    return list;
                 }
 
-                // normal case: no need for chunks
-                if (arity == 1) {
-                    return partiallySortMembers(
-                        evaluator.push(),
-                        (List<Member>) list,
-                        orderCalc, n, top);
-                } else {
-                    return partiallySortTuples(
-                        evaluator.push(),
-                        (List<Member[]>) list,
-                        orderCalc, n, top, arity);
-                }
+                // Keep only the n best items in a bounded heap, rather than
+                // evaluating every item into a map and then sorting. This is
+                // also why high-cardinality sets no longer need to be sorted
+                // in chunks.
+                return partiallySortByValue(
+                    evaluator.push(), iterable, orderCalc, n, top);
             }
 
-
             public boolean dependsOn(Hierarchy hierarchy) {
                 return anyDependsButFirst(getCalcs(), hierarchy);
             }
-
-            private boolean hasHighCardDimension(List l) {
-                final Object trial = l.get(0);
-                if (trial instanceof Member) {
-                    Member m = (Member) trial;
-                    return m.getHierarchy().getDimension().isHighCardinality();
-                } else {
-                    for (Member m : (Member[]) trial) {
-                        if (m.getHierarchy().getDimension().isHighCardinality())
-                        {
-                            return true;
-                        }
-                    }
-                    return false;
-                }
-            }
         };
     }
 }
@@ -0,0 +1,112 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.olap.fun;
+
+import mondrian.olap.Member;
+
+import java.util.*;
+
+/**
+ * Assigns an ordinal to each distinct member in each column of a set of
+ * tuples, so that tuples can be hashed and compared as arrays of ints.
+ *
+ * <p>Used by the <code>Distinct</code>, <code>Except</code> and
+ * <code>Intersect</code> functions. Each member is looked up once per tuple;
+ * thereafter, comparing two keys compares ints, and a key's hash code is
+ * computed once. Members which compare equal using
+ * {@link Object#equals(Object)}, such as a member and a visual total of that
+ * member, receive the same ordinal.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+class TupleKeys {
+    private final Map<Member, Integer>[] ordinalMaps;
+
+    /**
+     * Creates a TupleKeys.
+     *
+     * @param arity Number of members in each tuple
+     */
+    @SuppressWarnings({"unchecked"})
+    TupleKeys(int arity) {
+        ordinalMaps = new Map[arity];
+        for (int i = 0; i < arity; i++) {
+            ordinalMaps[i] = new HashMap<Member, Integer>();
+        }
+    }
+
+    /**
+     * Returns the key of a tuple, assigning ordinals to any members not seen
+     * before.
+     *
+     * @param tuple Tuple
+     * @return Key
+     */
+    Key register(Member[] tuple) {
+        final int[] ordinals = new int[ordinalMaps.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            final Map<Member, Integer> ordinalMap = ordinalMaps[i];
+            Integer ordinal = ordinalMap.get(tuple[i]);
+            if (ordinal == null) {
+                ordinal = ordinalMap.size();
+                ordinalMap.put(tuple[i], ordinal);
+            }
+            ordinals[i] = ordinal;
+        }
+        return new Key(ordinals);
+    }
+
+    /**
+     * Returns the key of a tuple, or null if the tuple contains a member which
+     * has not been registered. A tuple whose key is null is not equal to any
+     * tuple registered so far.
+     *
+     * @param tuple Tuple
+     * @return Key, or null
+     */
+    Key lookup(Member[] tuple) {
+        final int[] ordinals = new int[ordinalMaps.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            final Integer ordinal = ordinalMaps[i].get(tuple[i]);
+            if (ordinal == null) {
+                return null;
+            }
+            ordinals[i] = ordinal;
+        }
+        return new Key(ordinals);
+    }
+
+    /**
+     * Key of a tuple: the ordinals of its members.
+     */
+    static final class Key {
+        private final int[] ordinals;
+        private final int hashCode;
+
+        private Key(int[] ordinals) {
+            this.ordinals = ordinals;
+            this.hashCode = Arrays.hashCode(ordinals);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object obj) {
+            return obj instanceof Key
+                && hashCode == ((Key) obj).hashCode
+                && Arrays.equals(ordinals, ((Key) obj).ordinals);
+        }
+    }
+}
+
+// End TupleKeys.java
@@ -110,6 +110,19 @@ public class UdfResolver implements Resolver {
         return reservedWords == null ? emptyStringArray : reservedWords;
     }
 
+    /**
+     * Returns the user-defined function which a function definition adapts,
+     * or null if the function definition is not a user-defined function.
+     *
+     * @param funDef Function definition
+     * @return User-defined function, or null
+     */
+    public static UserDefinedFunction getUdf(FunDef funDef) {
+        return funDef instanceof UdfFunDef
+            ? ((UdfFunDef) funDef).getUdf()
+            : null;
+    }
+
     /**
      * Adapter which converts a {@link UserDefinedFunction} into a
      * {@link FunDef}.
@@ -129,6 +142,10 @@ public class UdfResolver implements Resolver {
             return returnType;
         }
 
+        UserDefinedFunction getUdf() {
+            return udf;
+        }
+
         public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler) {
             final Exp[] args = call.getArgs();
             Calc[] calcs = new Calc[args.length];
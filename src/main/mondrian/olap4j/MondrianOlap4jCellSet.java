@@ -14,6 +14,7 @@ import org.olap4j.Cell;
 import org.olap4j.Position;
 import mondrian.olap.*;
 import mondrian.olap.Axis;
+import mondrian.rolap.QueryPlanCache;
 
 import java.util.*;
 import java.sql.*;
@@ -245,7 +246,11 @@ abstract class MondrianOlap4jCellSet implements CellSet {
     }
 
     public void close() throws SQLException {
-        this.closed = true;
+        if (!closed) {
+            this.closed = true;
+            // Allow another statement to re-use the compiled query.
+            QueryPlanCache.checkIn(query);
+        }
     }
 
     public boolean wasNull() throws SQLException {
@@ -10,6 +10,7 @@
 package mondrian.olap4j;
 
 import mondrian.olap.*;
+import mondrian.rolap.QueryPlanCache;
 import org.olap4j.*;
 import org.olap4j.Cell;
 import org.olap4j.mdx.*;
@@ -281,7 +282,8 @@ class MondrianOlap4jStatement implements OlapStatement {
     public CellSet executeOlapQuery(String mdx) throws OlapException {
         Query query;
         try {
-            query = olap4jConnection.connection.parseQuery(mdx);
+            query =
+                QueryPlanCache.parseQuery(olap4jConnection.connection, mdx);
         } catch (MondrianException e) {
             throw olap4jConnection.helper.createException(
                 "mondrian gave exception while parsing query", e);
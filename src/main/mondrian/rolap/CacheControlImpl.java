@@ -151,11 +151,18 @@ public class CacheControlImpl implements CacheControl {
             throw MondrianResource.instance().CacheFlushRegionMustContainMembers
                 .ex();
         }
+        final List<RolapStar> starList = getStarList(region);
+        for (RolapStar star : starList) {
+            star.getSchema().getResultCache().flush(star);
+        }
         final UnionCellRegion union = normalize((CellRegionImpl) region);
         for (CellRegionImpl cellRegion : union.regions) {
             // Figure out the bits.
             flushNonUnion(cellRegion);
         }
+        for (RolapStar star : starList) {
+            CacheWarmer.instance().warm(star.getSchema(), star);
+        }
     }
 
     /**
@@ -460,6 +467,10 @@ public class CacheControlImpl implements CacheControl {
     public void flush(MemberSet memberSet) {
         // REVIEW How is flush(s) different to executing createDeleteCommand(s)?
         synchronized (MEMBER_CACHE_LOCK) {
+            // Compiled queries and cached results may refer to the members
+            // being flushed.
+            QueryPlanCache.invalidateAll();
+            RolapResultCache.invalidateAll();
             final List<CellRegion> cellRegionList = new ArrayList<CellRegion>();
             ((MemberSetPlus) memberSet).accept(
                 new MemberSetVisitorImpl() {
@@ -642,6 +653,8 @@ public class CacheControlImpl implements CacheControl {
                 + "property " + prop.getPath() + " is false");
         }
         synchronized (MEMBER_CACHE_LOCK) {
+            QueryPlanCache.invalidateAll();
+            RolapResultCache.invalidateAll();
             final List<CellRegion> cellRegionList =
                 new ArrayList<CellRegion>();
             ((MemberEditCommandPlus) cmd).execute(cellRegionList);
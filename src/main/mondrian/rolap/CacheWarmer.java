@@ -0,0 +1,845 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.rolap.agg.*;
+import mondrian.rolap.cache.CachePool;
+
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the segment requests issued by queries, and replays the most
+ * frequent of them to warm the cache after a schema is loaded or a region
+ * of the cache is flushed.
+ *
+ * <p>While {@link MondrianProperties#CacheWarmingLogFile} is set, each batch
+ * of cell requests which {@link FastBatchingCellReader} loads is appended
+ * to the log file as one line: the schema, cube and measures of the batch,
+ * and each constrained column with the values requested for it. Batches
+ * which are constrained by compound predicates (for example, a slicer
+ * containing a set) are not recorded.
+ *
+ * <p>The query thread only places the batch in a bounded queue; a
+ * background thread appends the queued batches to the log, one line per
+ * distinct batch with its count. If the queue is full, batches are dropped.
+ * If the log grows larger than {@link #MAX_LOG_BYTES}, the writer compacts
+ * it, so the log, and the memory needed to compact it, stay bounded.
+ *
+ * <p>{@link #warm(RolapSchema, RolapStar)} reads the log, adds up the number
+ * of times each distinct batch occurs, and rewrites the log in compact form,
+ * one line per distinct batch with its count. It then replays the
+ * {@link MondrianProperties#CacheWarmingTopN} most frequent batches of the
+ * schema, most frequent first, in a background thread of low priority:
+ * the cells are requested via a {@link FastBatchingCellReader}, which loads
+ * them into the global segment cache just as for a query; and the members
+ * of the levels of the batch's columns are read into the member cache, if
+ * there are not too many of them. Batches whose cube, measures or columns
+ * no longer exist are ignored.
+ *
+ * <p>Schemas are warmed when they are loaded, and stars when a region of
+ * their cells is flushed via {@link CacheControl}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class CacheWarmer {
+    private static final Logger LOGGER = Logger.getLogger(CacheWarmer.class);
+
+    /**
+     * Members of levels with more than this number of members are not read
+     * into the member cache.
+     */
+    private static final int MAX_LEVEL_CARDINALITY = 10000;
+
+    /**
+     * When the log is compacted, the number of distinct batches retained is
+     * this multiple of {@link MondrianProperties#CacheWarmingTopN}.
+     */
+    private static final int RETAIN_FACTOR = 10;
+
+    /**
+     * Maximum number of recorded batches waiting to be written to the log.
+     */
+    private static final int MAX_PENDING = 10000;
+
+    /**
+     * Size of the log, in bytes, above which it is compacted after a write.
+     */
+    static final long MAX_LOG_BYTES = 16L * 1024L * 1024L;
+
+    /** The singleton. */
+    private static final CacheWarmer instance = new CacheWarmer();
+
+    private ExecutorService executor;
+
+    private ExecutorService writerExecutor;
+
+    /**
+     * Signatures of recorded batches which have not yet been written to the
+     * log.
+     */
+    private final BlockingQueue<String> pending =
+        new LinkedBlockingQueue<String>(MAX_PENDING);
+
+    /**
+     * Whether {@link #writeTask} has been submitted and has not yet started
+     * to write.
+     */
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    /**
+     * Task which writes pending batches to the log.
+     */
+    private final Runnable writeTask =
+        new Runnable() {
+            public void run() {
+                // Clear the flag before draining, so that a batch recorded
+                // while this task writes schedules another write.
+                writeScheduled.set(false);
+                try {
+                    flushPending();
+                } catch (Throwable e) {
+                    LOGGER.warn("Error while writing cache warming log", e);
+                }
+            }
+        };
+
+    /**
+     * Whether the current thread is replaying batches. Batches which are
+     * loaded while replaying are not recorded.
+     */
+    private final ThreadLocal<Boolean> replaying = new ThreadLocal<Boolean>();
+
+    /** Returns the singleton. */
+    public static CacheWarmer instance() {
+        return instance;
+    }
+
+    private CacheWarmer() {
+    }
+
+    /**
+     * Returns the log file, or null if requests are not being recorded.
+     */
+    private static File getLogFile() {
+        final String fileName =
+            MondrianProperties.instance().CacheWarmingLogFile.get();
+        return fileName == null || fileName.length() == 0
+            ? null
+            : new File(fileName);
+    }
+
+    /**
+     * Returns whether segment requests should be recorded.
+     */
+    public static boolean isRecording() {
+        return getLogFile() != null;
+    }
+
+    /**
+     * Records a batch of cell requests.
+     *
+     * @param cube Cube whose query issued the requests
+     * @param columns Constrained columns
+     * @param valueSets Predicates on each column; each is a
+     *   {@link ValueColumnPredicate}
+     * @param measures Measures
+     */
+    void record(
+        RolapCube cube,
+        RolapStar.Column[] columns,
+        Set<StarColumnPredicate>[] valueSets,
+        List<RolapStar.Measure> measures)
+    {
+        final File file = getLogFile();
+        if (file == null
+            || measures.isEmpty()
+            || replaying.get() == Boolean.TRUE)
+        {
+            return;
+        }
+        final Batch batch =
+            new Batch(
+                cube.getSchema().getName(),
+                measures.get(0).getCubeName());
+        for (RolapStar.Measure measure : measures) {
+            batch.measureNames.add(measure.getName());
+        }
+        for (int i = 0; i < columns.length; i++) {
+            final List<Object> values = new ArrayList<Object>();
+            for (StarColumnPredicate predicate : valueSets[i]) {
+                if (!(predicate instanceof ValueColumnPredicate)) {
+                    return;
+                }
+                final Object value =
+                    ((ValueColumnPredicate) predicate).getValue();
+                if (!canEncode(value)) {
+                    return;
+                }
+                values.add(value);
+            }
+            batch.columns.add(
+                new ColumnValues(
+                    columns[i].getTable().getAlias(),
+                    columns[i].getName(),
+                    values));
+        }
+        if (!pending.offer(batch.signature())) {
+            LOGGER.debug("Cache warming log is behind; batch not recorded");
+            return;
+        }
+        if (writeScheduled.compareAndSet(false, true)) {
+            getWriterExecutor().execute(writeTask);
+        }
+    }
+
+    /**
+     * Writes pending batches to the log, and compacts the log if it has
+     * grown too large.
+     */
+    synchronized void flushPending() {
+        final File file = getLogFile();
+        if (file == null) {
+            pending.clear();
+            return;
+        }
+        if (writePending(file) && file.length() > MAX_LOG_BYTES) {
+            compact();
+        }
+    }
+
+    /**
+     * Appends pending batches to the log, one line per distinct batch.
+     * Caller must hold the lock on this warmer.
+     *
+     * @param file Log file
+     * @return Whether any batches were written
+     */
+    private boolean writePending(File file) {
+        final List<String> signatures = new ArrayList<String>();
+        pending.drainTo(signatures);
+        if (signatures.isEmpty()) {
+            return false;
+        }
+        final Map<String, int[]> counts =
+            new LinkedHashMap<String, int[]>();
+        for (String signature : signatures) {
+            final int[] count = counts.get(signature);
+            if (count == null) {
+                counts.put(signature, new int[] {1});
+            } else {
+                ++count[0];
+            }
+        }
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new FileWriter(file, true));
+            for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+                writer.write(
+                    entry.getValue()[0] + "\t" + entry.getKey() + "\n");
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while recording to " + file, e);
+        } finally {
+            close(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Warms the cache, in a background thread, with the most frequent
+     * recorded batches of a schema. Does nothing if requests are not being
+     * recorded.
+     *
+     * @param schema Schema
+     * @param star Star whose batches to replay, or null to replay batches
+     *   of every star in the schema
+     */
+    public void warm(final RolapSchema schema, final RolapStar star) {
+        if (getLogFile() == null
+            || MondrianProperties.instance().CacheWarmingTopN.get() <= 0)
+        {
+            return;
+        }
+        getExecutor().execute(
+            new Runnable() {
+                public void run() {
+                    try {
+                        replay(schema, star);
+                    } catch (Throwable e) {
+                        LOGGER.warn("Error while warming cache", e);
+                    }
+                }
+            }
+        );
+    }
+
+    private synchronized ExecutorService getWriterExecutor() {
+        if (writerExecutor == null) {
+            writerExecutor =
+                Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            final Thread thread =
+                                new Thread(
+                                    r, "mondrian.rolap.CacheWarmer.writer");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+                );
+        }
+        return writerExecutor;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor =
+                Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            final Thread thread =
+                                new Thread(r, "mondrian.rolap.CacheWarmer");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    }
+                );
+        }
+        return executor;
+    }
+
+    /**
+     * Replays the most frequent recorded batches of a schema in the current
+     * thread.
+     *
+     * @param schema Schema
+     * @param star Star whose batches to replay, or null to replay batches
+     *   of every star in the schema
+     * @return Number of batches replayed
+     */
+    int replay(RolapSchema schema, RolapStar star) {
+        final int topN = MondrianProperties.instance().CacheWarmingTopN.get();
+        int count = 0;
+        replaying.set(Boolean.TRUE);
+        try {
+            for (Batch batch : compact()) {
+                if (count >= topN) {
+                    break;
+                }
+                if (!batch.schemaName.equals(schema.getName())) {
+                    continue;
+                }
+                final Cube cube = schema.lookupCube(batch.cubeName, false);
+                if (!(cube instanceof RolapCube)
+                    || ((RolapCube) cube).isVirtual()
+                    || star != null && ((RolapCube) cube).getStar() != star)
+                {
+                    continue;
+                }
+                if (replay((RolapCube) cube, batch)) {
+                    ++count;
+                }
+            }
+        } finally {
+            replaying.remove();
+        }
+        CachePool.instance().checkBudget();
+        return count;
+    }
+
+    /**
+     * Replays a batch.
+     *
+     * @param cube Cube
+     * @param batch Batch
+     * @return Whether the batch's measures and columns were found
+     */
+    private boolean replay(RolapCube cube, Batch batch) {
+        final RolapStar star = cube.getStar();
+        final List<RolapStar.Measure> measures =
+            new ArrayList<RolapStar.Measure>();
+        for (String measureName : batch.measureNames) {
+            final RolapStar.Measure measure =
+                star.getFactTable().lookupMeasureByName(
+                    batch.cubeName, measureName);
+            if (measure == null) {
+                return false;
+            }
+            measures.add(measure);
+        }
+        final RolapStar.Column[] columns =
+            new RolapStar.Column[batch.columns.size()];
+        int valueCount = 0;
+        for (int i = 0; i < columns.length; i++) {
+            final ColumnValues columnValues = batch.columns.get(i);
+            columns[i] = lookupColumn(star, columnValues);
+            if (columns[i] == null || columnValues.values.isEmpty()) {
+                return false;
+            }
+            valueCount =
+                Math.max(valueCount, columnValues.values.size());
+        }
+
+        // Request enough cells that each value of each column occurs at
+        // least once. The reader collects them into the same batch as the
+        // one which was recorded.
+        final FastBatchingCellReader reader =
+            new FastBatchingCellReader(cube);
+        for (RolapStar.Measure measure : measures) {
+            for (int j = 0; j < Math.max(valueCount, 1); j++) {
+                final CellRequest request =
+                    new CellRequest(measure, false, false);
+                for (int i = 0; i < columns.length; i++) {
+                    final List<Object> values = batch.columns.get(i).values;
+                    request.addConstrainedColumn(
+                        columns[i],
+                        new ValueColumnPredicate(
+                            columns[i], values.get(j % values.size())));
+                }
+                if (AggregationManager.instance().getCellFromCache(request)
+                    == null)
+                {
+                    reader.recordCellRequest(request);
+                }
+            }
+        }
+        reader.loadAggregations();
+        star.pushAggregateModificationsToGlobalCache();
+
+        warmMembers(cube, columns);
+        return true;
+    }
+
+    /**
+     * Reads into the member cache the members of the levels of a cube
+     * whose key is one of a given list of columns.
+     *
+     * @param cube Cube
+     * @param columns Columns
+     */
+    private void warmMembers(RolapCube cube, RolapStar.Column[] columns) {
+        final List<RolapStar.Column> columnList = Arrays.asList(columns);
+        final SchemaReader schemaReader = cube.getSchemaReader(null);
+        for (RolapHierarchy hierarchy : cube.getHierarchies()) {
+            if (!(hierarchy instanceof RolapCubeHierarchy)) {
+                continue;
+            }
+            for (RolapCubeLevel level
+                : ((RolapCubeHierarchy) hierarchy).getLevels())
+            {
+                if (level.isAll()
+                    || !columnList.contains(level.getStarKeyColumn()))
+                {
+                    continue;
+                }
+                final int cardinality =
+                    schemaReader.getLevelCardinality(level, true, true);
+                if (cardinality <= MAX_LEVEL_CARDINALITY) {
+                    schemaReader.getLevelMembers(level, false);
+                }
+            }
+        }
+    }
+
+    static RolapStar.Column lookupColumn(
+        RolapStar star,
+        ColumnValues columnValues)
+    {
+        final RolapStar.Table table =
+            star.getFactTable().findDescendant(columnValues.tableAlias);
+        if (table == null) {
+            return null;
+        }
+        for (RolapStar.Column column : table.getColumns()) {
+            if (!(column instanceof RolapStar.Measure)
+                && columnValues.columnName.equals(column.getName()))
+            {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes pending batches, reads the log, adds up the count of each
+     * distinct batch, and rewrites the log with one line per distinct batch,
+     * retaining only the most frequent.
+     *
+     * @return Distinct batches, most frequent first
+     */
+    synchronized List<Batch> compact() {
+        final File file = getLogFile();
+        if (file == null) {
+            return Collections.emptyList();
+        }
+        writePending(file);
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        final Map<String, int[]> counts =
+            new LinkedHashMap<String, int[]>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+                final int count;
+                try {
+                    count = Integer.parseInt(line.substring(0, tab));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                final String signature = line.substring(tab + 1);
+                final int[] total = counts.get(signature);
+                if (total == null) {
+                    counts.put(signature, new int[] {count});
+                } else {
+                    total[0] += count;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while reading " + file, e);
+            return Collections.emptyList();
+        } finally {
+            close(reader);
+        }
+
+        final List<Map.Entry<String, int[]>> entries =
+            new ArrayList<Map.Entry<String, int[]>>(counts.entrySet());
+        Collections.sort(
+            entries,
+            new Comparator<Map.Entry<String, int[]>>() {
+                public int compare(
+                    Map.Entry<String, int[]> e0,
+                    Map.Entry<String, int[]> e1)
+                {
+                    final int c0 = e0.getValue()[0];
+                    final int c1 = e1.getValue()[0];
+                    return c0 > c1 ? -1 : c0 < c1 ? 1 : 0;
+                }
+            });
+        final int retain =
+            Math.max(
+                MondrianProperties.instance().CacheWarmingTopN.get(), 1)
+            * RETAIN_FACTOR;
+        while (entries.size() > retain) {
+            entries.remove(entries.size() - 1);
+        }
+
+        final List<Batch> batches = new ArrayList<Batch>();
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file, false);
+            for (Map.Entry<String, int[]> entry : entries) {
+                writer.write(
+                    entry.getValue()[0] + "\t" + entry.getKey() + "\n");
+                final Batch batch = Batch.parse(entry.getKey());
+                if (batch != null) {
+                    batches.add(batch);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Error while compacting " + file, e);
+        } finally {
+            close(writer);
+        }
+        return batches;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static boolean canEncode(Object value) {
+        return value == RolapUtil.sqlNullValue
+            || value instanceof Integer
+            || value instanceof Long
+            || value instanceof Double
+            || value instanceof BigDecimal
+            || value instanceof String
+            || value instanceof Boolean
+            || value instanceof java.sql.Date
+            || value instanceof java.sql.Timestamp
+            || value instanceof java.sql.Time;
+    }
+
+    /**
+     * Encodes a value as a type code followed by its string representation.
+     */
+    private static String encode(Object value) {
+        final char type;
+        if (value == RolapUtil.sqlNullValue) {
+            return "n";
+        } else if (value instanceof Integer) {
+            type = 'i';
+        } else if (value instanceof Long) {
+            type = 'l';
+        } else if (value instanceof Double) {
+            type = 'd';
+        } else if (value instanceof BigDecimal) {
+            type = 'b';
+        } else if (value instanceof Boolean) {
+            type = 'z';
+        } else if (value instanceof java.sql.Date) {
+            type = 'D';
+        } else if (value instanceof java.sql.Timestamp) {
+            type = 'T';
+        } else if (value instanceof java.sql.Time) {
+            type = 't';
+        } else {
+            type = 's';
+        }
+        return type + escape(value.toString());
+    }
+
+    /**
+     * Decodes a value encoded by {@link #encode(Object)}.
+     */
+    private static Object decode(String s) {
+        final String v = unescape(s.substring(1));
+        switch (s.charAt(0)) {
+        case 'n':
+            return RolapUtil.sqlNullValue;
+        case 'i':
+            return Integer.valueOf(v);
+        case 'l':
+            return Long.valueOf(v);
+        case 'd':
+            return Double.valueOf(v);
+        case 'b':
+            return new BigDecimal(v);
+        case 'z':
+            return Boolean.valueOf(v);
+        case 'D':
+            return java.sql.Date.valueOf(v);
+        case 'T':
+            return java.sql.Timestamp.valueOf(v);
+        case 't':
+            return java.sql.Time.valueOf(v);
+        case 's':
+            return v;
+        default:
+            throw new IllegalArgumentException("unknown type code in " + s);
+        }
+    }
+
+    /**
+     * Escapes the characters which separate fields and values in the log.
+     */
+    private static String escape(String s) {
+        final StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+            case '\\':
+                buf.append("\\\\");
+                break;
+            case '\t':
+                buf.append("\\t");
+                break;
+            case '\n':
+                buf.append("\\n");
+                break;
+            case '\r':
+                buf.append("\\r");
+                break;
+            case '|':
+                buf.append("\\p");
+                break;
+            default:
+                buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        final StringBuilder buf = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                switch (s.charAt(++i)) {
+                case 't':
+                    c = '\t';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 'p':
+                    c = '|';
+                    break;
+                default:
+                    c = s.charAt(i);
+                }
+            }
+            buf.append(c);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Splits a string on a separator which does not occur in escaped text.
+     */
+    private static List<String> split(String s, char separator) {
+        final List<String> list = new ArrayList<String>();
+        int start = 0;
+        for (int i = s.indexOf(separator); i >= 0;
+             i = s.indexOf(separator, start))
+        {
+            list.add(s.substring(start, i));
+            start = i + 1;
+        }
+        list.add(s.substring(start));
+        return list;
+    }
+
+    /**
+     * A recorded batch of cell requests.
+     *
+     * <p>Its signature has the form "schema TAB cube TAB measure|measure
+     * [TAB table TAB column TAB value|value ...]...", where each name and
+     * value is escaped, and each value is prefixed by a type code.
+     */
+    static class Batch {
+        final String schemaName;
+        final String cubeName;
+        final List<String> measureNames = new ArrayList<String>();
+        final List<ColumnValues> columns = new ArrayList<ColumnValues>();
+
+        Batch(String schemaName, String cubeName) {
+            this.schemaName = schemaName;
+            this.cubeName = cubeName;
+        }
+
+        String signature() {
+            final StringBuilder buf = new StringBuilder();
+            buf.append(escape(schemaName))
+                .append('\t')
+                .append(escape(cubeName))
+                .append('\t');
+            int k = 0;
+            for (String measureName : measureNames) {
+                if (k++ > 0) {
+                    buf.append('|');
+                }
+                buf.append(escape(measureName));
+            }
+            for (ColumnValues column : columns) {
+                buf.append('\t')
+                    .append(escape(column.tableAlias))
+                    .append('\t')
+                    .append(escape(column.columnName))
+                    .append('\t');
+                // Sort values so that the same batch always has the same
+                // signature.
+                final List<String> values = new ArrayList<String>();
+                for (Object value : column.values) {
+                    values.add(encode(value));
+                }
+                Collections.sort(values);
+                k = 0;
+                for (String value : values) {
+                    if (k++ > 0) {
+                        buf.append('|');
+                    }
+                    buf.append(value);
+                }
+            }
+            return buf.toString();
+        }
+
+        /**
+         * Parses a signature.
+         *
+         * @param signature Signature
+         * @return Batch, or null if the signature is not valid
+         */
+        static Batch parse(String signature) {
+            final List<String> fields = split(signature, '\t');
+            if (fields.size() < 3 || (fields.size() - 3) % 3 != 0) {
+                return null;
+            }
+            try {
+                final Batch batch =
+                    new Batch(
+                        unescape(fields.get(0)), unescape(fields.get(1)));
+                for (String measureName : split(fields.get(2), '|')) {
+                    batch.measureNames.add(unescape(measureName));
+                }
+                for (int i = 3; i < fields.size(); i += 3) {
+                    final List<Object> values = new ArrayList<Object>();
+                    for (String value : split(fields.get(i + 2), '|')) {
+                        values.add(decode(value));
+                    }
+                    batch.columns.add(
+                        new ColumnValues(
+                            unescape(fields.get(i)),
+                            unescape(fields.get(i + 1)),
+                            values));
+                }
+                return batch;
+            } catch (RuntimeException e) {
+                LOGGER.debug("Invalid batch in cache warming log", e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The values requested for a column in a recorded batch.
+     */
+    static class ColumnValues {
+        final String tableAlias;
+        final String columnName;
+        final List<Object> values;
+
+        ColumnValues(
+            String tableAlias,
+            String columnName,
+            List<Object> values)
+        {
+            this.tableAlias = tableAlias;
+            this.columnName = columnName;
+            this.values = values;
+        }
+    }
+}
+
+// End CacheWarmer.java
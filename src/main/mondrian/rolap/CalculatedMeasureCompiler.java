@@ -0,0 +1,277 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import mondrian.calc.Calc;
+import mondrian.calc.ExpCompiler;
+import mondrian.calc.impl.GenericCalc;
+import mondrian.mdx.MemberExpr;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.olap.fun.FunDefBase;
+import mondrian.rolap.sql.SqlQuery;
+import mondrian.spi.Dialect;
+
+/**
+ * Translates the formula of a calculated measure into a SQL expression
+ * which can be summed over the rows of the fact table.
+ *
+ * <p>A formula can be translated if it is a linear combination of stored
+ * measures of the same cube whose aggregator is <code>sum</code>; for
+ * example <code>[Measures].[Store Sales] - [Measures].[Store Cost]</code>
+ * or <code>([Measures].[Store Sales] - [Measures].[Store Cost]) /
+ * 2</code>. The sum of the expression over the rows of a cell is then
+ * equal to the value of the formula for that cell, so the measure can be
+ * loaded with the other measures of a segment, and rolled up like a stored
+ * measure.
+ *
+ * <p>As in Mondrian's arithmetic, a row whose measures are all null is
+ * null, and otherwise null values are treated as zero. A cell which has no
+ * rows, or whose rows are all null, remains empty. Constants are generated
+ * as decimal literals, so that dividing an integer column by a constant
+ * does not truncate.
+ *
+ * <p>The value of a stored measure is the same as the value of the formula
+ * only if the formula is evaluated before any calculated member of another
+ * dimension. The formula is therefore replaced by an expression (see
+ * {@link #createExpression}) which reads the stored measure if the context
+ * contains no other calculated member, and evaluates the formula
+ * otherwise.
+ *
+ * <p>Other formulas, such as ratios of measures or conditional expressions,
+ * cannot be summed, and are not translated.
+ *
+ * @see mondrian.olap.MondrianProperties#CompileCalculatedMeasures
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+class CalculatedMeasureCompiler {
+    private final RolapCube cube;
+    private final SqlQuery sqlQuery;
+
+    /**
+     * Creates a CalculatedMeasureCompiler.
+     *
+     * @param cube Cube whose stored measures may be referenced
+     * @param dialect Dialect in which to generate SQL
+     */
+    CalculatedMeasureCompiler(RolapCube cube, Dialect dialect) {
+        this.cube = cube;
+        this.sqlQuery = new SqlQuery(dialect);
+    }
+
+    /**
+     * Translates an expression into SQL, or returns null if the expression
+     * is not a linear combination of stored measures.
+     *
+     * @param exp Resolved expression
+     * @return SQL expression, or null
+     */
+    String compile(Exp exp) {
+        final Set<String> columns = new LinkedHashSet<String>();
+        final String sql = compile(exp, columns);
+        if (sql == null) {
+            return null;
+        }
+        final StringBuilder buf = new StringBuilder("case when ");
+        int i = 0;
+        for (String column : columns) {
+            if (i++ > 0) {
+                buf.append(" and ");
+            }
+            buf.append(column).append(" is null");
+        }
+        return buf.append(" then null else ").append(sql).append(" end")
+            .toString();
+    }
+
+    /**
+     * Creates the expression which replaces the formula of a compiled
+     * calculated measure.
+     *
+     * @param measure Hidden stored measure which computes the formula
+     * @param formula Formula of the calculated measure
+     * @return Expression
+     */
+    static Exp createExpression(Member measure, Exp formula) {
+        return new ResolvedFunCall(
+            CompiledMeasureFunDef.INSTANCE,
+            new Exp[] {new MemberExpr(measure), formula},
+            formula.getType());
+    }
+
+    /**
+     * Translates an expression into SQL, or returns null.
+     *
+     * @param exp Resolved expression
+     * @param columns Collects the column expressions of the stored measures
+     * @return SQL expression, or null
+     */
+    private String compile(Exp exp, Set<String> columns) {
+        if (exp instanceof MemberExpr) {
+            return compileMeasure(((MemberExpr) exp).getMember(), columns);
+        }
+        if (!(exp instanceof ResolvedFunCall)) {
+            return null;
+        }
+        final ResolvedFunCall call = (ResolvedFunCall) exp;
+        final String name = call.getFunName();
+        final Syntax syntax = call.getFunDef().getSyntax();
+        final Exp[] args = call.getArgs();
+        if (syntax == Syntax.Parentheses && args.length == 1) {
+            return compile(args[0], columns);
+        }
+        if (syntax == Syntax.Prefix && name.equals("-")) {
+            final String arg = compile(args[0], columns);
+            return arg == null ? null : "(- " + arg + ")";
+        }
+        if (syntax != Syntax.Infix || args.length != 2) {
+            return null;
+        }
+        if (name.equals("+") || name.equals("-")) {
+            // Both sides must contain a measure; "x + 1" would add 1 for
+            // each row.
+            final String left = compile(args[0], columns);
+            final String right = compile(args[1], columns);
+            if (left == null || right == null) {
+                return null;
+            }
+            return "(" + left + " " + name + " " + right + ")";
+        }
+        if (name.equals("*")) {
+            String constant = constant(args[0]);
+            String other = compile(args[1], columns);
+            if (constant == null) {
+                constant = constant(args[1]);
+                other = compile(args[0], columns);
+            }
+            if (constant == null || other == null) {
+                return null;
+            }
+            return "(" + constant + " * " + other + ")";
+        }
+        if (name.equals("/")) {
+            final String constant = constant(args[1]);
+            final String other = compile(args[0], columns);
+            if (constant == null
+                || other == null
+                || new BigDecimal(constant).signum() == 0)
+            {
+                return null;
+            }
+            return "(" + other + " / " + constant + ")";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the column expression of a stored measure, or null if the
+     * member is not a stored measure of this cube which is summed.
+     */
+    private String compileMeasure(Member member, Set<String> columns) {
+        if (!(member instanceof RolapBaseCubeMeasure)) {
+            return null;
+        }
+        final RolapBaseCubeMeasure measure = (RolapBaseCubeMeasure) member;
+        if (measure.getCube() != cube
+            || measure.getAggregator() != RolapAggregator.Sum
+            || measure.getMondrianDefExpression() == null)
+        {
+            return null;
+        }
+        final String column =
+            measure.getMondrianDefExpression().getExpression(sqlQuery);
+        columns.add(column);
+        return "coalesce(" + column + ", 0)";
+    }
+
+    /**
+     * Returns a numeric literal as a SQL decimal constant, such as
+     * <code>2.0</code>, or null if the expression is not a numeric literal.
+     */
+    private static String constant(Exp exp) {
+        if (!(exp instanceof Literal)) {
+            return null;
+        }
+        final Object value = ((Literal) exp).getValue();
+        if (!(value instanceof Number)) {
+            return null;
+        }
+        BigDecimal decimal = new BigDecimal(value.toString());
+        if (decimal.scale() <= 0) {
+            decimal = decimal.setScale(1);
+        }
+        return decimal.toPlainString();
+    }
+
+    /**
+     * Function which computes a compiled calculated measure. Its first
+     * argument is the hidden stored measure, and its second argument is the
+     * original formula.
+     *
+     * <p>If the context contains a calculated member of another dimension,
+     * this measure has won on solve order, and the formula must be applied
+     * to the values of the other member, so the formula is evaluated.
+     * Otherwise the stored measure is read.
+     *
+     * <p>The function unparses as the formula.
+     */
+    private static class CompiledMeasureFunDef extends FunDefBase {
+        static final CompiledMeasureFunDef INSTANCE =
+            new CompiledMeasureFunDef();
+
+        private CompiledMeasureFunDef() {
+            super(
+                "$CompiledMeasure",
+                "Computes a calculated measure using a stored measure;"
+                + " for internal use.",
+                "fnmn");
+        }
+
+        public void unparse(Exp[] args, PrintWriter pw) {
+            args[1].unparse(pw);
+        }
+
+        public Calc compileCall(ResolvedFunCall call, ExpCompiler compiler) {
+            final Calc measureCalc =
+                compiler.compileScalar(call.getArg(0), true);
+            final Calc formulaCalc =
+                compiler.compileScalar(call.getArg(1), true);
+            return new GenericCalc(call) {
+                public Object evaluate(Evaluator evaluator) {
+                    for (Member member : evaluator.getMembers()) {
+                        if (member.isCalculated() && !member.isMeasure()) {
+                            return formulaCalc.evaluate(evaluator);
+                        }
+                    }
+                    return measureCalc.evaluate(evaluator);
+                }
+
+                public Calc[] getCalcs() {
+                    return new Calc[] {measureCalc, formulaCalc};
+                }
+
+                public boolean dependsOn(Hierarchy hierarchy) {
+                    // Which calc is used depends on every hierarchy.
+                    return true;
+                }
+            };
+        }
+    }
+}
+
+// End CalculatedMeasureCompiler.java
@@ -9,7 +9,9 @@
 */
 package mondrian.rolap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import mondrian.olap.Id;
 import mondrian.rolap.sql.SqlQuery;
@@ -21,11 +23,15 @@ import mondrian.rolap.aggmatcher.AggStar;
  * [Customers].[USA].[CA]. Restricts the result to
  * the member we are searching for.
  *
+ * <p>A constraint may also search for several names at once, for the
+ * children of several parents; this is used to resolve many member
+ * identifiers in one statement.
+ *
  * @author avix
  * @version $Id$
  */
 class ChildByNameConstraint extends DefaultMemberChildrenConstraint {
-    private final String childName;
+    private final List<String> childNames;
     private final Object cacheKey;
 
     /**
@@ -34,10 +40,27 @@ class ChildByNameConstraint extends DefaultMemberChildrenConstraint {
      * @param childName Name of child
      */
     public ChildByNameConstraint(Id.Segment childName) {
-        this.childName = childName.name;
+        this.childNames = Arrays.asList(childName.name);
         this.cacheKey = Arrays.asList(ChildByNameConstraint.class, childName);
     }
 
+    /**
+     * Creates a <code>ChildByNameConstraint</code> which matches any of a
+     * list of names.
+     *
+     * @param childNames Names of children
+     */
+    public ChildByNameConstraint(List<Id.Segment> childNames) {
+        this.childNames = new ArrayList<String>();
+        for (Id.Segment childName : childNames) {
+            this.childNames.add(childName.name);
+        }
+        this.cacheKey =
+            Arrays.asList(
+                ChildByNameConstraint.class,
+                new ArrayList<Id.Segment>(childNames));
+    }
+
     @Override
     public int hashCode() {
         return getCacheKey().hashCode();
@@ -57,13 +80,22 @@ class ChildByNameConstraint extends DefaultMemberChildrenConstraint {
         RolapLevel level)
     {
         super.addLevelConstraint(query, baseCube, aggStar, level);
-        query.addWhere(
-            SqlConstraintUtils.constrainLevel(
-                level, query, baseCube, aggStar, childName, true));
+        if (childNames.size() == 1) {
+            query.addWhere(
+                SqlConstraintUtils.constrainLevel(
+                    level, query, baseCube, aggStar, childNames.get(0),
+                    true));
+        } else {
+            query.addWhere(
+                SqlConstraintUtils.constrainLevel(
+                    level, query, baseCube, aggStar, childNames, true));
+        }
     }
 
     public String toString() {
-        return "ChildByNameConstraint(" + childName + ")";
+        return "ChildByNameConstraint("
+            + (childNames.size() == 1 ? childNames.get(0) : childNames)
+            + ")";
     }
 
     public Object getCacheKey() {
@@ -0,0 +1,247 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.rolap.agg.Aggregation;
+import mondrian.rolap.agg.AggregationKey;
+import mondrian.spi.DataSourceChangeListener;
+
+import org.apache.log4j.Logger;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * Polls a schema's {@link DataSourceChangeListener} in a background thread,
+ * so that queries do not wait for the listener.
+ *
+ * <p>Without a monitor, the listener is called each time a query reads a
+ * cached member or aggregation. A listener which does real work, such as
+ * querying an ETL audit table, adds its latency to every query. A monitor
+ * calls the listener at a fixed interval (see
+ * {@link mondrian.olap.MondrianProperties#DataSourceChangePollMillis}) for
+ * each hierarchy which has a member cache and each aggregation in the
+ * global cache of each star, and records the changes it detects:<ul>
+ *
+ * <li>For each hierarchy, a {@link Watch} holds a change epoch, which is
+ *     incremented when the hierarchy changes. A member cache remembers the
+ *     epoch when it was last flushed; a query only compares that epoch with
+ *     the watch's current epoch.</li>
+ *
+ * <li>A changed aggregation is marked in its star (see
+ *     {@link RolapStar#markAggregationChanged}). The next query to start
+ *     replaces it, just as if the listener had been called at the start of
+ *     the query, so that a query which is running is not affected.</li>
+ *
+ * <li>Cached query results which may depend on changed data are discarded,
+ *     as they are when data is flushed via
+ *     {@link mondrian.olap.CacheControl}.</li>
+ *
+ * <li>The in-memory copy of the data of a changed star, if any, is read
+ *     again (see {@link RolapStar#refreshInMemoryPartition()}).</li>
+ * </ul>
+ *
+ * <p>As when the listener is called from queries, the first call for each
+ * hierarchy and aggregation registers it with the listener, and its result
+ * is ignored.
+ *
+ * <p>All monitors share a single daemon thread.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class DataSourceChangeMonitor {
+    private static final Logger LOGGER =
+        Logger.getLogger(DataSourceChangeMonitor.class);
+
+    private static Timer timer;
+
+    /**
+     * Schema. Weak, so that a schema which is no longer used can be
+     * garbage-collected even if its monitor is still scheduled.
+     */
+    private final WeakReference<RolapSchema> schemaRef;
+
+    private final DataSourceChangeListener listener;
+
+    /**
+     * Watches, by hierarchy. Guarded by itself.
+     */
+    private final Map<RolapHierarchy, Watch> watches =
+        new IdentityHashMap<RolapHierarchy, Watch>();
+
+    /**
+     * Aggregations which have been registered with the listener. Accessed
+     * only by {@link #poll()}.
+     */
+    private final Map<Aggregation, Boolean> registeredAggregations =
+        new WeakHashMap<Aggregation, Boolean>();
+
+    private TimerTask task;
+
+    /**
+     * Creates a DataSourceChangeMonitor. It does not poll until
+     * {@link #start(long)} is called.
+     *
+     * @param schema Schema
+     * @param listener Change listener
+     */
+    DataSourceChangeMonitor(
+        RolapSchema schema,
+        DataSourceChangeListener listener)
+    {
+        assert listener != null;
+        this.schemaRef = new WeakReference<RolapSchema>(schema);
+        this.listener = listener;
+    }
+
+    /**
+     * Starts polling the listener.
+     *
+     * @param periodMillis Interval between polls, in milliseconds
+     */
+    synchronized void start(long periodMillis) {
+        assert task == null;
+        task = new TimerTask() {
+            public void run() {
+                try {
+                    poll();
+                } catch (Throwable e) {
+                    // Keep polling; the listener may recover.
+                    LOGGER.error("Error while detecting data changes", e);
+                }
+            }
+        };
+        getTimer().schedule(task, periodMillis, periodMillis);
+    }
+
+    /**
+     * Stops polling the listener.
+     */
+    synchronized void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private static synchronized Timer getTimer() {
+        if (timer == null) {
+            timer = new Timer("mondrian.rolap.DataSourceChangeMonitor", true);
+        }
+        return timer;
+    }
+
+    /**
+     * Returns the watch for a given hierarchy, creating it if necessary.
+     *
+     * @param hierarchy Hierarchy
+     * @return Watch
+     */
+    public Watch watch(RolapHierarchy hierarchy) {
+        synchronized (watches) {
+            Watch watch = watches.get(hierarchy);
+            if (watch == null) {
+                watch = new Watch(hierarchy);
+                watches.put(hierarchy, watch);
+            }
+            return watch;
+        }
+    }
+
+    /**
+     * Calls the listener for each watched hierarchy and each aggregation
+     * in the global cache, and records the changes.
+     */
+    synchronized void poll() {
+        final RolapSchema schema = schemaRef.get();
+        if (schema == null) {
+            stop();
+            return;
+        }
+        final List<Watch> watchList;
+        synchronized (watches) {
+            watchList = new ArrayList<Watch>(watches.values());
+        }
+        boolean hierarchyChanged = false;
+        for (Watch watch : watchList) {
+            final boolean changed =
+                listener.isHierarchyChanged(watch.hierarchy);
+            if (!watch.registered) {
+                watch.registered = true;
+            } else if (changed) {
+                watch.epoch++;
+                hierarchyChanged = true;
+            }
+        }
+        if (hierarchyChanged) {
+            RolapResultCache.invalidateAll();
+        }
+        for (RolapStar star : schema.getStars()) {
+            boolean starChanged = false;
+            for (Map.Entry<AggregationKey, Aggregation> entry
+                : star.copySharedAggregations().entrySet())
+            {
+                final Aggregation aggregation = entry.getValue();
+                final boolean changed =
+                    listener.isAggregationChanged(aggregation);
+                if (registeredAggregations.put(aggregation, Boolean.TRUE)
+                    == null)
+                {
+                    continue;
+                }
+                if (changed) {
+                    star.markAggregationChanged(entry.getKey(), aggregation);
+                    starChanged = true;
+                }
+            }
+            if (starChanged) {
+                schema.getResultCache().flush(star);
+                star.refreshInMemoryPartition();
+            }
+        }
+    }
+
+    /**
+     * Change epoch of a hierarchy.
+     */
+    public static class Watch {
+        private final RolapHierarchy hierarchy;
+
+        /**
+         * Number of changes detected. Only the polling thread writes it.
+         */
+        private volatile int epoch;
+
+        /**
+         * Whether the hierarchy has been registered with the listener.
+         * Accessed only by the polling thread.
+         */
+        private boolean registered;
+
+        Watch(RolapHierarchy hierarchy) {
+            this.hierarchy = hierarchy;
+        }
+
+        /**
+         * Returns the number of changes detected in the hierarchy. A cache
+         * whose contents were read when the epoch had a lower value is
+         * stale.
+         *
+         * @return Change epoch
+         */
+        public int getEpoch() {
+            return epoch;
+        }
+    }
+}
+
+// End DataSourceChangeMonitor.java
@@ -73,11 +73,22 @@ public class FastBatchingCellReader implements CellReader {
     private final RolapAggregationManager.PinSet pinnedSegments =
         aggMgr.createPinSet();
 
+    /**
+     * Re-used to look up cells in the cache.
+     */
+    private final CellProbe probe = new CellProbe();
+
     /**
      * Indicates that the reader has given incorrect results.
      */
     private boolean dirty;
 
+    /**
+     * Query whose aggregations are being loaded by
+     * {@link #loadAggregations(Query)}, or null.
+     */
+    private Query query;
+
     public FastBatchingCellReader(RolapCube cube) {
         assert cube != null;
         this.cube = cube;
@@ -85,6 +96,20 @@ public class FastBatchingCellReader implements CellReader {
     }
 
     public Object get(RolapEvaluator evaluator) {
+        // Fast path: look up the cell without creating a request. If the
+        // cell is in the cache, this allocates no memory.
+        final boolean probed =
+            RolapAggregationManager.makeProbe(evaluator, probe);
+        if (probed) {
+            final Object o = aggMgr.getCellFromCache(probe, pinnedSegments);
+            if (o == Boolean.TRUE) {
+                return RolapUtil.valueNotReadyException;
+            }
+            if (o != null) {
+                return o;
+            }
+        }
+
         final CellRequest request =
             RolapAggregationManager.makeRequest(evaluator);
 
@@ -93,8 +118,12 @@ public class FastBatchingCellReader implements CellReader {
         }
 
         // Try to retrieve a cell and simultaneously pin the segment which
-        // contains it.
-        final Object o = aggMgr.getCellFromCache(request, pinnedSegments);
+        // contains it. (If the probe has just missed, so would the
+        // request.)
+        final Object o =
+            probed
+                ? null
+                : aggMgr.getCellFromCache(request, pinnedSegments);
 
         if (o == Boolean.TRUE) {
             // Aggregation is being loaded. (todo: Use better value, or
@@ -190,6 +219,10 @@ public class FastBatchingCellReader implements CellReader {
 
         batches.clear();
         dirty = false;
+        if (pinnedSegments instanceof AggregationManager.PinSetImpl) {
+            ((AggregationManager.PinSetImpl) pinnedSegments)
+                .clearAggregationsAbove();
+        }
 
         if (LOGGER.isDebugEnabled()) {
             final long t2 = System.currentTimeMillis();
@@ -203,7 +236,12 @@ public class FastBatchingCellReader implements CellReader {
         if (query != null) {
             query.checkCancelOrTimeout();
         }
-        batch.loadAggregation();
+        this.query = query;
+        try {
+            batch.loadAggregation();
+        } finally {
+            this.query = null;
+        }
     }
 
     List<CompositeBatch> groupBatches(List<Batch> batchList) {
@@ -342,7 +380,7 @@ public class FastBatchingCellReader implements CellReader {
         }
 
         SegmentLoader getSegmentLoader() {
-            return new SegmentLoader();
+            return new SegmentLoader(query);
         }
     }
 
@@ -436,6 +474,12 @@ public class FastBatchingCellReader implements CellReader {
             if (generateAggregateSql) {
                 generateAggregateSql();
             }
+            if (CacheWarmer.isRecording()
+                && batchKey.getCompoundPredicateList().isEmpty())
+            {
+                CacheWarmer.instance().record(
+                    cube, columns, valueSets, measuresList);
+            }
             final StarColumnPredicate[] predicates = initPredicates();
             final long t1 = System.currentTimeMillis();
 
@@ -483,7 +527,31 @@ public class FastBatchingCellReader implements CellReader {
                         batchKey,
                         predicates,
                         pinnedSegments,
-                        groupingSetsCollector);
+                        groupingSetsCollector,
+                        query);
+                    measuresList.remove(measure);
+                }
+            }
+
+            // Load approx-distinct-count measures individually, and without
+            // grouping sets. The query for such a measure groups by the
+            // measure's expression, and returns a row for each distinct
+            // value, so cannot share a query with other measures.
+            for (RolapStar.Measure measure
+                : new ArrayList<RolapStar.Measure>(measuresList))
+            {
+                if (measure.getAggregator()
+                    == RolapAggregator.ApproxDistinctCount)
+                {
+                    RolapStar.Measure[] measures = {measure};
+                    aggmgr.loadAggregation(
+                        measures,
+                        columns,
+                        batchKey,
+                        predicates,
+                        pinnedSegments,
+                        new GroupingSetsCollector(false),
+                        query);
                     measuresList.remove(measure);
                 }
             }
@@ -497,7 +565,8 @@ public class FastBatchingCellReader implements CellReader {
                         batchKey,
                         predicates,
                         pinnedSegments,
-                        groupingSetsCollector);
+                        groupingSetsCollector,
+                        query);
             }
 
             if (BATCH_LOGGER.isDebugEnabled()) {
@@ -547,7 +616,8 @@ public class FastBatchingCellReader implements CellReader {
                     batchKey,
                     predicates,
                     pinnedSegments,
-                    groupingSetsCollector);
+                    groupingSetsCollector,
+                    query);
             }
         }
 
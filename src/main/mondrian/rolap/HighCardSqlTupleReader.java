@@ -67,9 +67,10 @@ public class HighCardSqlTupleReader extends SqlTupleReader {
                         partialTargets.add(target);
                     }
                 }
-                String sql = makeLevelMembersSql(dataSource);
+                final List<Object> parameters = new ArrayList<Object>();
+                String sql = makeLevelMembersSql(dataSource, parameters);
                 stmt = RolapUtil.executeQuery(
-                    dataSource, sql, maxRows, 0,
+                    dataSource, sql, parameters, maxRows, 0,
                     "HighCardSqlTupleReader.readTuples " + partialTargets,
                     message, -1, -1);
             }
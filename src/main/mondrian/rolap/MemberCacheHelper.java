@@ -11,9 +11,11 @@
 */
 package mondrian.rolap;
 
+import mondrian.rolap.cache.CachePool;
 import mondrian.rolap.cache.SmartCache;
 import mondrian.rolap.cache.SoftSmartCache;
 import mondrian.rolap.sql.MemberChildrenConstraint;
+import mondrian.rolap.sql.SqlConstraint;
 import mondrian.rolap.sql.TupleConstraint;
 import mondrian.spi.DataSourceChangeListener;
 import mondrian.olap.Util;
@@ -24,10 +26,25 @@ import java.util.*;
 /**
  * Encapsulation of member caching.
  *
+ * <p>A member cache for a hierarchy registers itself with the
+ * {@link CachePool}, which may evict its lists of members to free memory.
+ *
  * @author Will Gorman
  * @version $Id$
  */
-public class MemberCacheHelper implements MemberCache {
+public class MemberCacheHelper implements MemberCache, CachePool.Cache {
+
+    /**
+     * Estimated number of bytes used by a cached member, including its
+     * entry in {@link #mapKeyToMember}.
+     */
+    private static final int MEMBER_BYTES = 160;
+
+    /**
+     * Estimated number of bytes used by each element of a cached list of
+     * members.
+     */
+    private static final int REFERENCE_BYTES = 8;
 
     private final SqlConstraintFactory sqlConstraintFactory =
         SqlConstraintFactory.instance();
@@ -41,6 +58,27 @@ public class MemberCacheHelper implements MemberCache {
     RolapHierarchy rolapHierarchy;
     DataSourceChangeListener changeListener;
 
+    /**
+     * Change epoch of the hierarchy, if a {@link DataSourceChangeMonitor}
+     * polls the change listener in the background; otherwise null.
+     */
+    private DataSourceChangeMonitor.Watch changeWatch;
+
+    /**
+     * Value of the epoch of {@link #changeWatch} when this cache was last
+     * flushed.
+     */
+    private int changeEpoch;
+
+    /**
+     * Total number of elements in the lists of members held in
+     * {@link #mapLevelToMembers} and {@link #mapMemberToChildren}. A list
+     * which replaces another list with the same key replaces its count.
+     * Lists which have been garbage-collected are counted until the cache is
+     * next flushed.
+     */
+    private volatile long listElementCount;
+
     /** maps a level to its members */
     final SmartMemberListCache<RolapLevel, List<RolapMember>>
         mapLevelToMembers;
@@ -60,8 +98,20 @@ public class MemberCacheHelper implements MemberCache {
             new SmartMemberListCache<RolapMember, List<RolapMember>>();
 
         if (rolapHierarchy != null) {
-            changeListener =
-                rolapHierarchy.getRolapSchema().getDataSourceChangeListener();
+            final RolapSchema schema = rolapHierarchy.getRolapSchema();
+            final DataSourceChangeMonitor monitor =
+                schema.getDataSourceChangeMonitor();
+            if (monitor != null) {
+                changeListener = null;
+                changeWatch = monitor.watch(rolapHierarchy);
+                changeEpoch = changeWatch.getEpoch();
+            } else {
+                changeListener = schema.getDataSourceChangeListener();
+            }
+            CachePool.instance().register(
+                "members:" + rolapHierarchy.getUniqueName(),
+                CachePool.MEMBER_PRIORITY,
+                this);
         } else {
             changeListener = null;
         }
@@ -98,11 +148,32 @@ public class MemberCacheHelper implements MemberCache {
     }
 
     public synchronized void checkCacheStatus() {
+        if (isHierarchyChanged()) {
+            flushCache();
+        }
+    }
+
+    /**
+     * Returns whether the hierarchy has changed since the previous call.
+     *
+     * <p>If a {@link DataSourceChangeMonitor} polls the change listener in
+     * the background, this method only reads the hierarchy's change epoch;
+     * otherwise it calls the change listener, if there is one.
+     *
+     * @return Whether hierarchy has changed
+     */
+    public synchronized boolean isHierarchyChanged() {
         if (changeListener != null) {
-            if (changeListener.isHierarchyChanged(rolapHierarchy)) {
-                flushCache();
+            return changeListener.isHierarchyChanged(rolapHierarchy);
+        }
+        if (changeWatch != null) {
+            final int epoch = changeWatch.getEpoch();
+            if (epoch != changeEpoch) {
+                changeEpoch = epoch;
+                return true;
             }
         }
+        return false;
     }
 
     /**
@@ -118,7 +189,9 @@ public class MemberCacheHelper implements MemberCache {
         TupleConstraint constraint,
         List<RolapMember> members)
     {
-        mapLevelToMembers.put(level, constraint, members);
+        final Object previous =
+            mapLevelToMembers.put(level, constraint, members);
+        countListElements(constraint, previous, members);
     }
 
     public synchronized List<RolapMember> getChildrenFromCache(
@@ -141,7 +214,34 @@ public class MemberCacheHelper implements MemberCache {
             constraint =
                 sqlConstraintFactory.getMemberChildrenConstraint(null);
         }
-        mapMemberToChildren.put(member, constraint, children);
+        final Object previous =
+            mapMemberToChildren.put(member, constraint, children);
+        countListElements(constraint, previous, children);
+    }
+
+    /**
+     * Updates {@link #listElementCount} after a list has been put into one
+     * of the caches of lists, replacing the previous list with the same key,
+     * if any. Caller must hold the lock on this cache.
+     *
+     * @param constraint Constraint; if its cache key is null, the list was
+     *   not cached
+     * @param previous Previous list, or null
+     * @param list List
+     */
+    private void countListElements(
+        SqlConstraint constraint,
+        Object previous,
+        List<RolapMember> list)
+    {
+        if (constraint.getCacheKey() == null) {
+            return;
+        }
+        long count = listElementCount + list.size();
+        if (previous != null) {
+            count -= ((List) previous).size();
+        }
+        listElementCount = count;
     }
 
     public synchronized List<RolapMember> getLevelMembersFromCache(
@@ -158,6 +258,30 @@ public class MemberCacheHelper implements MemberCache {
         mapMemberToChildren.clear();
         mapKeyToMember.clear();
         mapLevelToMembers.clear();
+        listElementCount = 0;
+    }
+
+    public long getByteCount() {
+        return (long) mapKeyToMember.size() * MEMBER_BYTES
+            + listElementCount * REFERENCE_BYTES;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Evicts only the lists of members. Members themselves are not
+     * evicted, because a query which is running may hold a member, and the
+     * same member read again would be a different object, so members would
+     * no longer be unique. The lists can be read again, and their elements
+     * are then found in {@link #mapKeyToMember}, which holds members via
+     * soft references.
+     */
+    public synchronized long evict(long byteCount) {
+        final long evicted = listElementCount * REFERENCE_BYTES;
+        mapMemberToChildren.clear();
+        mapLevelToMembers.clear();
+        listElementCount = 0;
+        return evicted;
     }
 
     public DataSourceChangeListener getChangeListener() {
@@ -192,8 +316,9 @@ public class MemberCacheHelper implements MemberCache {
         {
             if (entry.getKey().left.equals(level)) {
                 List<RolapMember> peers = entry.getValue();
-                boolean removedIt = peers.remove(member);
-                Util.discard(removedIt);
+                if (peers.remove(member)) {
+                    --listElementCount;
+                }
             }
         }
 
@@ -215,10 +340,13 @@ public class MemberCacheHelper implements MemberCache {
             if (Util.equals(member1, parent)) {
                 if (constraint == DefaultMemberChildrenConstraint.instance()) {
                     List<RolapMember> siblings = entry.getValue();
-                    boolean removedIt = siblings.remove(member);
-                    Util.discard(removedIt);
+                    if (siblings.remove(member)) {
+                        --listElementCount;
+                    }
                 } else {
+                    listElementCount -= entry.getValue().size();
                     iter.remove();
+                    continue;
                 }
             }
 
@@ -226,6 +354,7 @@ public class MemberCacheHelper implements MemberCache {
             // cache value is list of member's children;
             // remove cache entry
             if (Util.equals(member1, member)) {
+                listElementCount -= entry.getValue().size();
                 iter.remove();
             }
         }
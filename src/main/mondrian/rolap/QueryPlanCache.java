@@ -0,0 +1,297 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache of parsed, validated and compiled MDX statements.
+ *
+ * <p>Parsing a statement, resolving its identifiers and compiling its
+ * expressions can take longer than executing it, if the cell cache is
+ * warm. Applications such as dashboards execute the same statements
+ * over and over again. This cache lets them skip those steps.
+ *
+ * <p>Each {@link RolapSchema} has its own cache, so flushing a schema
+ * also discards its plans. Plans are keyed by the statement text (with
+ * insignificant white space removed), and by the role, locale and connect
+ * string of the connection, because a plan holds members and calculated
+ * members which were resolved using that connection's role.
+ *
+ * <p>A {@link Query} holds state while it is executing, so it cannot be
+ * executed by two threads at once. The cache therefore holds a pool of
+ * idle queries for each statement. {@link #parseQuery} checks out a query
+ * from the pool, or parses a new one if the pool is empty;
+ * {@link #checkIn} returns it to the pool when the caller has finished
+ * with the query and its result. A query which is never checked in is
+ * garbage-collected as normal.
+ *
+ * <p>The cache is enabled if
+ * {@link MondrianProperties#QueryPlanCacheSize} is greater than zero.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class QueryPlanCache {
+    private static final Logger LOGGER =
+        Logger.getLogger(QueryPlanCache.class);
+
+    /**
+     * Maximum number of idle queries held for each statement.
+     */
+    private static final int MAX_IDLE_PER_STATEMENT = 8;
+
+    /**
+     * Incremented by {@link #invalidateAll()}. Plans created in an earlier
+     * epoch are discarded.
+     */
+    private static final AtomicInteger epoch = new AtomicInteger();
+
+    /**
+     * Queries which have been checked out, and the keys they will be
+     * returned under. Weak, so that a query which is never checked in
+     * does not leak. Must be accessed under its own monitor.
+     */
+    private static final Map<Query, Key> checkedOut =
+        new WeakHashMap<Query, Key>();
+
+    private final Map<Key, Entry> map =
+        new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> e) {
+                return size()
+                    > MondrianProperties.instance().QueryPlanCacheSize.get();
+            }
+        };
+
+    /**
+     * Creates a QueryPlanCache.
+     */
+    QueryPlanCache() {
+    }
+
+    /**
+     * Returns whether the query plan cache is enabled.
+     *
+     * @return whether the cache is enabled
+     */
+    public static boolean isEnabled() {
+        return MondrianProperties.instance().QueryPlanCacheSize.get() > 0;
+    }
+
+    /**
+     * Parses an MDX query, or retrieves a previously compiled plan for the
+     * same query from the cache.
+     *
+     * <p>If the cache is disabled, or the connection is not a
+     * {@link RolapConnection}, or the connection has an active
+     * {@link mondrian.olap.Scenario}, just calls
+     * {@link Connection#parseQuery(String)}.
+     *
+     * <p>The caller should call {@link #checkIn(Query)} when it has finished
+     * with the query and its result.
+     *
+     * @param connection Connection
+     * @param mdx MDX text of query
+     * @return Query, ready to execute
+     */
+    public static Query parseQuery(Connection connection, String mdx) {
+        if (!isEnabled()
+            || !(connection instanceof RolapConnection)
+            || ((RolapConnection) connection).getScenario() != null)
+        {
+            return connection.parseQuery(mdx);
+        }
+        final RolapSchema schema = (RolapSchema) connection.getSchema();
+        final Key key = new Key(connection, mdx);
+        Query query = schema.getQueryPlanCache().checkOut(key);
+        if (query == null) {
+            query = connection.parseQuery(mdx);
+        } else {
+            query.reset(connection);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Re-using plan for statement: " + key.mdx);
+            }
+        }
+        synchronized (checkedOut) {
+            checkedOut.put(query, key);
+        }
+        return query;
+    }
+
+    /**
+     * Returns a query obtained from {@link #parseQuery} to the cache, so
+     * that it can be executed again. The caller must not use the query,
+     * or any result of executing it, afterwards.
+     *
+     * <p>Does nothing if the query did not come from {@link #parseQuery},
+     * or has already been checked in.
+     *
+     * @param query Query
+     */
+    public static void checkIn(Query query) {
+        final Key key;
+        synchronized (checkedOut) {
+            key = checkedOut.remove(query);
+        }
+        if (key == null) {
+            return;
+        }
+        final RolapSchema schema =
+            (RolapSchema) query.getConnection().getSchema();
+        schema.getQueryPlanCache().put(key, query);
+    }
+
+    /**
+     * Discards all plans in all caches. Called when members are flushed
+     * from the member cache, because plans may hold references to them.
+     */
+    public static void invalidateAll() {
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * Removes all plans from this cache.
+     */
+    synchronized void clear() {
+        map.clear();
+    }
+
+    private synchronized Query checkOut(Key key) {
+        final Entry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.epoch != epoch.get()) {
+            map.remove(key);
+            return null;
+        }
+        if (entry.idleQueries.isEmpty()) {
+            return null;
+        }
+        return entry.idleQueries.removeLast();
+    }
+
+    private synchronized void put(Key key, Query query) {
+        final int currentEpoch = epoch.get();
+        if (key.epoch != currentEpoch) {
+            // Query was parsed before the cache was invalidated.
+            return;
+        }
+        Entry entry = map.get(key);
+        if (entry == null || entry.epoch != currentEpoch) {
+            entry = new Entry(currentEpoch);
+            map.put(key, entry);
+        }
+        if (entry.idleQueries.size() < MAX_IDLE_PER_STATEMENT) {
+            entry.idleQueries.add(query);
+        }
+    }
+
+    /**
+     * Removes white space which is not significant from an MDX statement.
+     * Runs of white space outside string literals and bracketed identifiers
+     * are replaced with a single space, and leading and trailing white space
+     * is removed.
+     *
+     * @param mdx MDX statement
+     * @return Normalized statement
+     */
+    static String normalize(String mdx) {
+        final StringBuilder buf = new StringBuilder(mdx.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < mdx.length(); i++) {
+            final char c = mdx.charAt(i);
+            if (quote != 0) {
+                buf.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                space = buf.length() > 0;
+            } else {
+                if (space) {
+                    buf.append(' ');
+                    space = false;
+                }
+                buf.append(c);
+                switch (c) {
+                case '\'':
+                case '"':
+                    quote = c;
+                    break;
+                case '[':
+                    quote = ']';
+                    break;
+                }
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Key of a plan in the cache.
+     */
+    private static class Key {
+        private final String mdx;
+        private final String connectString;
+        private final Role role;
+        private final Locale locale;
+        private final int epoch;
+        private final int hashCode;
+
+        Key(Connection connection, String mdx) {
+            this.mdx = normalize(mdx);
+            this.connectString = connection.getConnectString();
+            this.role = connection.getRole();
+            this.locale = connection.getLocale();
+            this.epoch = QueryPlanCache.epoch.get();
+            int h = Util.hash(this.mdx.hashCode(), connectString);
+            h = Util.hash(h, locale);
+            this.hashCode = Util.hash(h, System.identityHashCode(role));
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return this.mdx.equals(that.mdx)
+                && Util.equals(this.connectString, that.connectString)
+                && this.role == that.role
+                && Util.equals(this.locale, that.locale);
+        }
+    }
+
+    /**
+     * Cache entry for a statement: the pool of idle queries, and the epoch
+     * in which they were created.
+     */
+    private static class Entry {
+        private final int epoch;
+        private final LinkedList<Query> idleQueries = new LinkedList<Query>();
+
+        Entry(int epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
+
+// End QueryPlanCache.java
@@ -156,7 +156,10 @@ public abstract class RolapAggregationManager {
                 return null;
             }
             compoundPredicate =
-                makeCompoundPredicate(compoundGroupMap, measure.getCube());
+                makeCompoundPredicate(
+                    compoundGroupMap,
+                    measure.getCube(),
+                    evaluator.getSchemaReader());
 
             if (compoundPredicate != null) {
                 /*
@@ -172,6 +175,63 @@ public abstract class RolapAggregationManager {
         return request;
     }
 
+    /**
+     * Fills a probe to look up the cell identified by the context specified
+     * in <code>evaluator</code>. Does the same work as
+     * {@link #makeRequest(RolapEvaluator)}, but allocates no memory.
+     *
+     * <p>Returns false if the cell cannot be described by a probe: if the
+     * measure is calculated, the context contains calculated members, the
+     * null member or compound members (such as a set in the slicer), or the
+     * request is unsatisfiable. The caller should then call
+     * {@link #makeRequest(RolapEvaluator)}.
+     *
+     * @param evaluator the cell specified by the evaluator context
+     * @param probe Probe to fill
+     * @return whether the probe describes the cell
+     */
+    public static boolean makeProbe(
+        RolapEvaluator evaluator,
+        CellProbe probe)
+    {
+        if (evaluator.getAggregationLists() != null) {
+            return false;
+        }
+        // Use all current members, rather than getNonAllMembers(), which
+        // allocates an array; 'all' members add no constraints.
+        return makeProbe(evaluator.getMembers(), probe);
+    }
+
+    /**
+     * Fills a probe to look up the cell identified by a set of members, the
+     * first of which is the measure.
+     *
+     * @param members Set of members which constrain the cell
+     * @param probe Probe to fill
+     * @return whether the probe describes the cell
+     */
+    static boolean makeProbe(Member[] members, CellProbe probe) {
+        if (members.length == 0
+            || !(members[0] instanceof RolapStoredMeasure))
+        {
+            return false;
+        }
+        final RolapStoredMeasure measure = (RolapStoredMeasure) members[0];
+        probe.reset((RolapStar.Measure) measure.getStarMeasure());
+        for (int i = 1; i < members.length; i++) {
+            if (!(members[i] instanceof RolapCubeMember)) {
+                continue;
+            }
+            final RolapCubeMember member = (RolapCubeMember) members[i];
+            if (member.getLevel().getLevelReader().constrainProbe(
+                    member, measure.getCube(), probe))
+            {
+                return false;
+            }
+        }
+        return !probe.isUnsatisfiable();
+    }
+
     private static CellRequest makeCellRequest(
         final Member[] members,
         boolean drillThrough,
@@ -505,17 +565,43 @@ public abstract class RolapAggregationManager {
      *            (state=OR AND city=Portland))
      * </blockquote>
      *
+     * <p>3. If {@link MondrianProperties#TimeRangeAggregation} is set, a
+     * group of members of the same level which are all of the members
+     * between two keys, such as
+     *
+     * <blockquote>
+     * [1997].[Q1].[1], [1997].[Q1].[2], [1997].[Q1].[3], [1997].[Q2].[4]
+     * </blockquote>
+     *
+     * is translated into a range:
+     *
+     * <blockquote>
+     * Year=1997 AND Month BETWEEN 1 AND 4
+     * </blockquote>
+     *
      * @param compoundGroupMap Map from dimensionality to groups
      * @param baseCube base cube if virtual
+     * @param schemaReader Schema reader
      * @return compound predicate for a tuple or a member
      */
     private static StarPredicate makeCompoundPredicate(
         Map<BitKey, List<RolapCubeMember[]>> compoundGroupMap,
-        RolapCube baseCube)
+        RolapCube baseCube,
+        SchemaReader schemaReader)
     {
+        final boolean range =
+            MondrianProperties.instance().TimeRangeAggregation.get();
         List<StarPredicate> compoundPredicateList =
             new ArrayList<StarPredicate> ();
         for (List<RolapCubeMember[]> group : compoundGroupMap.values()) {
+            if (range) {
+                final StarPredicate rangePredicate =
+                    makeRangePredicate(group, baseCube, schemaReader);
+                if (rangePredicate != null) {
+                    compoundPredicateList.add(rangePredicate);
+                    continue;
+                }
+            }
             /*
              * e.g.
              * {[USA].[CA], [Canada].[BC]}
@@ -563,6 +649,133 @@ public abstract class RolapAggregationManager {
         return compoundPredicate;
     }
 
+    /**
+     * Translates a group of members into a predicate which constrains the
+     * key column of their level to a range, or returns null if the group is
+     * not a range.
+     *
+     * <p>The members must belong to the same level, and be precisely the
+     * members, among the descendants of their lowest common ancestor, whose
+     * keys lie between the least and greatest key in the group. The range
+     * is ANDed with a predicate for the common ancestor, because keys need
+     * not be unique within a level; for example, the key of a month may be
+     * its number within the year.
+     *
+     * <p>Only numeric and date keys are supported, because the database may
+     * order strings differently from Java. If the common ancestor is the
+     * 'all' member, the level must be the first level of the hierarchy, so
+     * that checking the range does not read every member of the level.
+     *
+     * @param group List of tuples
+     * @param baseCube Base cube if virtual
+     * @param schemaReader Schema reader
+     * @return Range predicate, or null
+     */
+    private static StarPredicate makeRangePredicate(
+        List<RolapCubeMember[]> group,
+        RolapCube baseCube,
+        SchemaReader schemaReader)
+    {
+        if (group.size() < 2 || group.get(0).length != 1) {
+            return null;
+        }
+        final RolapCubeLevel level = group.get(0)[0].getLevel();
+        if (level.isAll()) {
+            return null;
+        }
+        final RolapStar.Column column = level.getBaseStarKeyColumn(baseCube);
+        if (column == null) {
+            return null;
+        }
+
+        // Find the least and greatest keys, and the lowest common ancestor.
+        final Set<Object> keySet = new HashSet<Object>();
+        Comparable<Object> min = null;
+        Comparable<Object> max = null;
+        Member ancestor = group.get(0)[0].getParentMember();
+        for (RolapCubeMember[] tuple : group) {
+            if (tuple.length != 1) {
+                return null;
+            }
+            final RolapCubeMember member = tuple[0];
+            if (member.getLevel() != level || member.isCalculated()) {
+                return null;
+            }
+            final Object key = member.getKey();
+            if (!(key instanceof Number || key instanceof Date)
+                || !(key instanceof Comparable)
+                || min != null && key.getClass() != min.getClass())
+            {
+                return null;
+            }
+            //noinspection unchecked
+            final Comparable<Object> c = (Comparable<Object>) key;
+            if (min == null) {
+                min = max = c;
+            } else if (c.compareTo(min) < 0) {
+                min = c;
+            } else if (c.compareTo(max) > 0) {
+                max = c;
+            }
+            keySet.add(key);
+            while (ancestor != null && !member.isChildOrEqualTo(ancestor)) {
+                ancestor = ancestor.getParentMember();
+            }
+        }
+
+        // Check that no other descendant of the ancestor has a key in the
+        // range. Access control is ignored, because the predicate would
+        // include the rows of hidden members too.
+        final SchemaReader reader = schemaReader.withoutAccessControl();
+        List<Member> members;
+        if (ancestor == null || ancestor.isAll()) {
+            if (level.getDepth() != (level.getHierarchy().hasAll() ? 1 : 0)) {
+                return null;
+            }
+            members = reader.getHierarchyRootMembers(level.getHierarchy());
+        } else {
+            members = Collections.singletonList(ancestor);
+            while (!members.isEmpty()
+                && members.get(0).getLevel().getDepth() < level.getDepth())
+            {
+                members = reader.getMemberChildren(members);
+            }
+        }
+        int count = 0;
+        for (Member member : members) {
+            if (member.getLevel().getDepth() != level.getDepth()) {
+                return null;
+            }
+            final Object key = ((RolapMember) member).getKey();
+            if (key == null || key.getClass() != min.getClass()) {
+                return null;
+            }
+            if (min.compareTo(key) <= 0 && max.compareTo(key) >= 0) {
+                if (!keySet.contains(key)) {
+                    return null;
+                }
+                ++count;
+            }
+        }
+        if (count != keySet.size()) {
+            return null;
+        }
+
+        StarPredicate predicate =
+            new RangeColumnPredicate(
+                column,
+                true,
+                new ValueColumnPredicate(column, min),
+                true,
+                new ValueColumnPredicate(column, max));
+        if (ancestor != null && !ancestor.isAll()) {
+            predicate =
+                makeCompoundPredicateForMember(
+                    (RolapCubeMember) ancestor, baseCube, predicate);
+        }
+        return predicate;
+    }
+
     private static StarPredicate makeCompoundPredicateForMember(
         RolapCubeMember member,
         RolapCube baseCube,
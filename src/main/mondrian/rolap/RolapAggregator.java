@@ -11,6 +11,7 @@ package mondrian.rolap;
 
 import mondrian.calc.Calc;
 import mondrian.olap.*;
+import mondrian.olap.fun.AggregateFunDef;
 import mondrian.olap.fun.FunUtil;
 
 import java.util.List;
@@ -98,12 +99,41 @@ public abstract class RolapAggregator
             }
         };
 
+    /**
+     * Aggregator which estimates the number of distinct values.
+     *
+     * <p>Each cell is loaded as a {@link mondrian.util.HyperLogLog} sketch,
+     * built from the distinct values of the measure's expression, or merged
+     * from the sketches stored in a column of an aggregate table. Unlike
+     * {@link #DistinctCount}, the result of a coarser request can be
+     * computed by merging the sketches of cells which are already cached.
+     * The SQL expression for the measure is therefore the operand itself;
+     * the values are aggregated in memory.
+     */
+    public static final RolapAggregator ApproxDistinctCount =
+        new RolapAggregator("approx-distinct-count", index++, false) {
+            public Object aggregate(Evaluator evaluator, List members, Calc exp)
+            {
+                // Cell values are estimates, and estimates cannot be added.
+                // Evaluate the measure over all of the members at once, so
+                // that their sketches are merged.
+                return AggregateFunDef.AggregateCalc.aggregate(
+                    exp, evaluator, members);
+            }
+
+            public String getExpression(String operand) {
+                return operand;
+            }
+        };
+
     /**
      * List of all valid aggregation operators.
      */
     public static final EnumeratedValues<RolapAggregator> enumeration =
         new EnumeratedValues<RolapAggregator>(
-            new RolapAggregator[] {Sum, Count, Min, Max, Avg, DistinctCount});
+            new RolapAggregator[] {
+                Sum, Count, Min, Max, Avg, DistinctCount, ApproxDistinctCount
+            });
 
     /**
      * This is the base class for implementing aggregators over sum and
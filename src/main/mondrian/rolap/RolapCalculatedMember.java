@@ -32,6 +32,7 @@ import java.util.Collections;
 public class RolapCalculatedMember extends RolapMemberBase {
     private final Formula formula;
     private Map<String, Annotation> annotationMap;
+    private Exp expression;
 
     /**
      * Creates a RolapCalculatedMember.
@@ -86,9 +87,22 @@ public class RolapCalculatedMember extends RolapMemberBase {
     }
 
     public Exp getExpression() {
+        if (expression != null) {
+            return expression;
+        }
         return formula.getExpression();
     }
 
+    /**
+     * Overrides the expression of the formula; for example, with a
+     * reference to a stored measure which computes the same values in SQL.
+     *
+     * @param expression Expression
+     */
+    void setExpression(Exp expression) {
+        this.expression = expression;
+    }
+
     public Formula getFormula() {
         return formula;
     }
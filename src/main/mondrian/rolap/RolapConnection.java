@@ -17,6 +17,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.*;
 import java.lang.reflect.Method;
 import java.lang.reflect.InvocationTargetException;
 
@@ -544,6 +545,9 @@ public class RolapConnection extends ConnectionBase {
     /**
      * Executes a Query.
      *
+     * <p>If the result cache is enabled, returns a cached result for an
+     * identical query if there is one; see {@link RolapResultCache}.
+     *
      * @throws ResourceLimitExceededException if some resource limit specified in the
      * property file was exceeded
      * @throws QueryCanceledException if query was canceled during execution
@@ -551,6 +555,19 @@ public class RolapConnection extends ConnectionBase {
      * the property file
      */
     public Result execute(Query query) {
+        if (RolapResultCache.isEnabled()) {
+            return schema.getResultCache().execute(this, query);
+        }
+        return executeInternal(query);
+    }
+
+    /**
+     * Executes a Query, bypassing the result cache.
+     *
+     * @param query Query
+     * @return Result
+     */
+    Result executeInternal(Query query) {
         class Listener implements MemoryMonitor.Listener {
             private final Query query;
 
@@ -762,12 +779,28 @@ public class RolapConnection extends ConnectionBase {
      * on a particular axis.
      */
     static class NonEmptyResult extends ResultBase {
+        /**
+         * Minimum number of positions checked by each thread when the
+         * positions of an axis are checked in parallel.
+         */
+        private static final int MIN_POSITIONS_PER_THREAD = 1000;
+
+        /**
+         * Threads which check positions for emptiness, shared by all
+         * results. Created once, and resized if
+         * {@link MondrianProperties#NonEmptyThreadCount} changes, but never
+         * shut down, so that a result which has obtained the executor can
+         * always submit tasks to it. Guarded by the NonEmptyResult class.
+         */
+        private static ThreadPoolExecutor executor;
 
         final Result underlying;
         private final int axis;
         private final Map<Integer, Integer> map;
         /** workspace. Synchronized access only. */
         private final int[] pos;
+        /** Whether the cells of this result can be read by several threads. */
+        private final boolean readConcurrently;
 
         /**
          * Creates a NonEmptyResult.
@@ -789,10 +822,14 @@ public class RolapConnection extends ConnectionBase {
                 underlying.getAxes()[axis].getPositions();
 
             final List<Position> positionsList;
+            boolean highCardinality = false;
             try {
+                final int threadCount =
+                    MondrianProperties.instance().NonEmptyThreadCount.get();
                 if (positions.get(0).get(0).getDimension()
                     .isHighCardinality())
                 {
+                    highCardinality = true;
                     positionsList =
                         new FilteredIterableList<Position>(
                             positions,
@@ -803,6 +840,17 @@ public class RolapConnection extends ConnectionBase {
                             }
                         }
                     );
+                } else if (threadCount > 1
+                    && positions.size() >= 2 * MIN_POSITIONS_PER_THREAD
+                    && canReadConcurrently(underlying))
+                {
+                    positionsList = new ArrayList<Position>();
+                    final List<Integer> offsets =
+                        nonEmptyOffsets(positions.size(), threadCount);
+                    for (int i : offsets) {
+                        map.put(positionsList.size(), i);
+                        positionsList.add(positions.get(i));
+                    }
                 } else {
                     positionsList = new ArrayList<Position>();
                     int i = -1;
@@ -821,6 +869,156 @@ public class RolapConnection extends ConnectionBase {
                     new RolapAxis.PositionList(
                             new ArrayList<Position>());
             }
+            this.readConcurrently =
+                !highCardinality && canReadConcurrently(underlying);
+        }
+
+        /**
+         * Returns the offsets of the non-empty positions of this result's
+         * axis, checking ranges of positions in parallel. The offsets are in
+         * ascending order, the same as if the positions were checked one at
+         * a time.
+         *
+         * @param positionCount Number of positions on the axis
+         * @param threadCount Number of threads
+         * @return Offsets of non-empty positions
+         */
+        private List<Integer> nonEmptyOffsets(
+            int positionCount,
+            int threadCount)
+        {
+            final int chunkSize =
+                Math.max(
+                    MIN_POSITIONS_PER_THREAD,
+                    (positionCount + threadCount - 1) / threadCount);
+            final List<Callable<List<Integer>>> tasks =
+                new ArrayList<Callable<List<Integer>>>();
+            for (int start = 0; start < positionCount; start += chunkSize) {
+                final int chunkStart = start;
+                final int chunkEnd =
+                    Math.min(positionCount, start + chunkSize);
+                tasks.add(
+                    new Callable<List<Integer>>() {
+                        public List<Integer> call() {
+                            return nonEmptyOffsetsInRange(
+                                chunkStart, chunkEnd);
+                        }
+                    }
+                );
+            }
+            final List<Integer> offsets = new ArrayList<Integer>();
+            try {
+                for (Future<List<Integer>> future
+                    : getExecutor(threadCount).invokeAll(tasks))
+                {
+                    offsets.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                throw Util.newError(
+                    e, "Interrupted while removing empty positions");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw Util.newError(
+                    e.getCause(), "Error while removing empty positions");
+            }
+            return offsets;
+        }
+
+        /**
+         * Returns the offsets of the non-empty positions in a range of this
+         * result's axis. Uses its own workspace, so may be called from
+         * several threads at once.
+         *
+         * @param start Offset of first position
+         * @param end Offset after last position
+         * @return Offsets of non-empty positions
+         */
+        private List<Integer> nonEmptyOffsetsInRange(int start, int end) {
+            final int[] pos = new int[underlying.getAxes().length];
+            final List<Integer> offsets = new ArrayList<Integer>();
+            for (int i = start; i < end; i++) {
+                pos[axis] = i;
+                if (!isEmptyRecurse(axis, pos.length - 1, pos, true)) {
+                    offsets.add(i);
+                }
+            }
+            return offsets;
+        }
+
+        private static synchronized ExecutorService getExecutor(
+            int threadCount)
+        {
+            if (executor == null) {
+                executor =
+                    new ThreadPoolExecutor(
+                        threadCount,
+                        threadCount,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactory() {
+                            public Thread newThread(Runnable r) {
+                                final Thread thread =
+                                    new Thread(
+                                        r, "mondrian.rolap.NonEmptyResult");
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        }
+                    );
+            } else if (threadCount > executor.getMaximumPoolSize()) {
+                // The maximum may not be less than the core size, so grow
+                // the maximum first.
+                executor.setMaximumPoolSize(threadCount);
+                executor.setCorePoolSize(threadCount);
+            } else if (threadCount < executor.getMaximumPoolSize()) {
+                // Tasks already queued or running still complete; surplus
+                // threads exit when idle.
+                executor.setCorePoolSize(threadCount);
+                executor.setMaximumPoolSize(threadCount);
+            }
+            return executor;
+        }
+
+        /**
+         * Returns whether several threads may check the cells of a result
+         * for emptiness at once.
+         *
+         * @param result Result
+         * @return whether {@link #isNull(Result, int[])} is thread-safe
+         */
+        private static boolean canReadConcurrently(Result result) {
+            if (result instanceof RolapResult) {
+                return ((RolapResult) result).canReadConcurrently();
+            } else if (result instanceof NonEmptyResult) {
+                return ((NonEmptyResult) result).readConcurrently;
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * Returns whether the cell of a result at a given position is empty,
+         * without modifying the result.
+         *
+         * @param result Result; {@link #canReadConcurrently(Result)} must
+         *   hold
+         * @param pos Cell coordinates
+         * @return whether the cell is empty
+         */
+        private static boolean isNull(Result result, int[] pos) {
+            if (result instanceof RolapResult) {
+                return ((RolapResult) result).isNull(pos);
+            } else {
+                final NonEmptyResult nonEmptyResult = (NonEmptyResult) result;
+                final int[] underlyingPos = pos.clone();
+                underlyingPos[nonEmptyResult.axis] =
+                    nonEmptyResult.mapOffsetToUnderlying(
+                        pos[nonEmptyResult.axis]);
+                return isNull(nonEmptyResult.underlying, underlyingPos);
+            }
         }
 
         protected Logger getLogger() {
@@ -838,21 +1036,29 @@ public class RolapConnection extends ConnectionBase {
         private boolean isEmpty(int offset, int fixedAxis) {
             int axisCount = getAxes().length;
             pos[fixedAxis] = offset;
-            return isEmptyRecurse(fixedAxis, axisCount - 1);
+            return isEmptyRecurse(fixedAxis, axisCount - 1, pos, false);
         }
 
-        private boolean isEmptyRecurse(int fixedAxis, int axis) {
+        private boolean isEmptyRecurse(
+            int fixedAxis,
+            int axis,
+            int[] pos,
+            boolean concurrent)
+        {
             if (axis < 0) {
+                if (concurrent) {
+                    return isNull(underlying, pos);
+                }
                 RolapCell cell = (RolapCell) underlying.getCell(pos);
                 return cell.isNull();
             } else if (axis == fixedAxis) {
-                return isEmptyRecurse(fixedAxis, axis - 1);
+                return isEmptyRecurse(fixedAxis, axis - 1, pos, concurrent);
             } else {
                 List<Position> positions = getAxes()[axis].getPositions();
                 final int positionCount = positions.size();
                 for (int i = 0; i < positionCount; i++) {
                     pos[axis] = i;
-                    if (!isEmptyRecurse(fixedAxis, axis - 1)) {
+                    if (!isEmptyRecurse(fixedAxis, axis - 1, pos, concurrent)) {
                         return false;
                     }
                 }
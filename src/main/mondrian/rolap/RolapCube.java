@@ -289,6 +289,9 @@ public class RolapCube extends CubeBase {
         this.measuresHierarchy.setDefaultMember(defaultMeasure);
         init(xmlCube.dimensions);
         init(xmlCube, measureList);
+        if (MondrianProperties.instance().CompileCalculatedMeasures.get()) {
+            compileCalculatedMeasures(xmlCube, measuresLevel, measureList);
+        }
 
         setMeasuresHierarchyMemberReader(
             new CacheMemberReader(
@@ -296,6 +299,76 @@ public class RolapCube extends CubeBase {
 
         checkOrdinals(xmlCube.name, measureList);
         loadAggGroup(xmlCube);
+
+        // As with caching, if several cubes share a fact table, any of them
+        // can put it in memory. The data is read after the schema has
+        // loaded, when the star knows all of its columns.
+        if (xmlCube.inMemory) {
+            star.setInMemory(true);
+        }
+    }
+
+    /**
+     * Replaces each calculated measure of this cube whose formula is a linear
+     * combination of stored measures with a reference to a hidden stored
+     * measure, so that its values are computed in SQL.
+     *
+     * @param xmlCube XML cube
+     * @param measuresLevel Level that all measures belong to
+     * @param measureList List of measures; hidden measures are added to it
+     *
+     * @see CalculatedMeasureCompiler
+     */
+    private void compileCalculatedMeasures(
+        MondrianDef.Cube xmlCube,
+        RolapLevel measuresLevel,
+        List<RolapMember> measureList)
+    {
+        final CalculatedMeasureCompiler compiler =
+            new CalculatedMeasureCompiler(this, star.getSqlQueryDialect());
+        final Set<String> names = new HashSet<String>();
+        int ordinal = 0;
+        for (RolapMember measure : measureList) {
+            names.add(measure.getName());
+            ordinal = Math.max(ordinal, measure.getOrdinal() + 1);
+        }
+        for (Formula formula : calculatedMemberList) {
+            Member member = formula.getMdxMember();
+            if (member instanceof RolapCubeMember) {
+                member = ((RolapCubeMember) member).getRolapMember();
+            }
+            if (!member.isMeasure()
+                || !(member instanceof RolapCalculatedMember))
+            {
+                continue;
+            }
+            final String sql = compiler.compile(formula.getExpression());
+            if (sql == null) {
+                continue;
+            }
+            final String name = "$" + member.getName();
+            if (!names.add(name)) {
+                continue;
+            }
+            final MondrianDef.SQL xmlSql = new MondrianDef.SQL();
+            xmlSql.dialect = "generic";
+            xmlSql.cdata = sql;
+            final MondrianDef.MeasureExpression xmlMeasureExp =
+                new MondrianDef.MeasureExpression();
+            xmlMeasureExp.expressions = new MondrianDef.SQL[] {xmlSql};
+            final MondrianDef.Measure xmlMeasure = new MondrianDef.Measure();
+            xmlMeasure.name = name;
+            xmlMeasure.aggregator = "sum";
+            xmlMeasure.datatype = "Numeric";
+            xmlMeasure.visible = false;
+            xmlMeasure.measureExp = xmlMeasureExp;
+            final RolapBaseCubeMeasure measure =
+                createMeasure(xmlCube, measuresLevel, ordinal++, xmlMeasure);
+            measureList.add(measure);
+            ((RolapCalculatedMember) member).setExpression(
+                CalculatedMeasureCompiler.createExpression(
+                    measure, formula.getExpression()));
+        }
     }
 
     /**
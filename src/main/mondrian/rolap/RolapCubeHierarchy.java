@@ -14,6 +14,7 @@ package mondrian.rolap;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -681,6 +682,56 @@ public class RolapCubeHierarchy extends RolapHierarchy {
             }
         }
 
+        public void prefetchDescendants(
+            List<RolapMember> parentMembers,
+            RolapLevel level,
+            MemberChildrenConstraint constraint)
+        {
+            // Members read with a join to the fact table are not shared, so
+            // there is no point reading them ahead; and the shared reader
+            // must be one with a cache.
+            if (constraint instanceof SqlContextConstraint
+                || !(rolapHierarchy.getMemberReader()
+                    instanceof SmartMemberReader))
+            {
+                return;
+            }
+            final List<RolapMember> rolapParentMembers =
+                new ArrayList<RolapMember>();
+            for (RolapMember parentMember : parentMembers) {
+                if (parentMember instanceof RolapCubeMember) {
+                    rolapParentMembers.add(
+                        ((RolapCubeMember) parentMember).getRolapMember());
+                }
+            }
+            ((SmartMemberReader) rolapHierarchy.getMemberReader())
+                .prefetchDescendants(
+                    rolapParentMembers,
+                    ((RolapCubeLevel) level).getRolapLevel(),
+                    constraint);
+        }
+
+        public void prefetchChildrenByName(
+            List<RolapMember> parentMembers,
+            Collection<Id.Segment> childNames)
+        {
+            // Lookups by name read children via the shared reader.
+            if (!(rolapHierarchy.getMemberReader()
+                instanceof SmartMemberReader))
+            {
+                return;
+            }
+            final List<RolapMember> rolapParentMembers =
+                new ArrayList<RolapMember>();
+            for (RolapMember parentMember : parentMembers) {
+                if (parentMember instanceof RolapCubeMember) {
+                    rolapParentMembers.add(
+                        ((RolapCubeMember) parentMember).getRolapMember());
+                }
+            }
+            ((SmartMemberReader) rolapHierarchy.getMemberReader())
+                .prefetchChildrenByName(rolapParentMembers, childNames);
+        }
 
         public List<RolapMember> getMembersInLevel(
             RolapLevel level,
@@ -806,27 +857,23 @@ public class RolapCubeHierarchy extends RolapHierarchy {
                 //   - local regular RolapMember cache, used when cube
                 //     specific joins occur
 
-                if (cacheHelper.getChangeListener() != null) {
-                    if (cacheHelper.getChangeListener().isHierarchyChanged(
-                        getHierarchy()))
-                    {
-                        cacheHelper.flushCache();
-                        rolapCubeCacheHelper.flushCache();
+                if (cacheHelper.isHierarchyChanged()) {
+                    cacheHelper.flushCache();
+                    rolapCubeCacheHelper.flushCache();
 
-                        if (rolapHierarchy.getMemberReader()
-                                instanceof SmartMemberReader)
+                    if (rolapHierarchy.getMemberReader()
+                            instanceof SmartMemberReader)
+                    {
+                        SmartMemberReader smartMemberReader =
+                            (SmartMemberReader)
+                                rolapHierarchy.getMemberReader();
+                        if (smartMemberReader.getMemberCache()
+                                instanceof MemberCacheHelper)
                         {
-                            SmartMemberReader smartMemberReader =
-                                (SmartMemberReader)
-                                    rolapHierarchy.getMemberReader();
-                            if (smartMemberReader.getMemberCache()
-                                    instanceof MemberCacheHelper)
-                            {
-                                MemberCacheHelper helper =
-                                    (MemberCacheHelper)
-                                        smartMemberReader.getMemberCache();
-                                helper.flushCache();
-                            }
+                            MemberCacheHelper helper =
+                                (MemberCacheHelper)
+                                    smartMemberReader.getMemberCache();
+                            helper.flushCache();
                         }
                     }
                 }
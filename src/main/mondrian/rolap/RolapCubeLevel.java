@@ -13,6 +13,7 @@
 package mondrian.rolap;
 
 import mondrian.olap.*;
+import mondrian.rolap.agg.CellProbe;
 import mondrian.rolap.agg.CellRequest;
 import mondrian.rolap.agg.MemberColumnPredicate;
 import mondrian.rolap.agg.MemberTuplePredicate;
@@ -298,6 +299,22 @@ public class RolapCubeLevel extends RolapLevel {
             RolapCube baseCube,
             CellRequest request);
 
+        /**
+         * Adds constraints to a cell probe for a member of this level.
+         *
+         * @param member Member to be constrained
+         * @param baseCube base cube if virtual level
+         * @param probe Probe to be constrained
+         *
+         * @return true if the cell cannot be looked up using a probe (for
+         * example, if the member is calculated or is the null member); the
+         * caller should use a {@link CellRequest} instead
+         */
+        boolean constrainProbe(
+            RolapCubeMember member,
+            RolapCube baseCube,
+            CellProbe probe);
+
         /**
          * Adds constraints to a cache region for a member of this level.
          *
@@ -400,6 +417,40 @@ public class RolapCubeLevel extends RolapLevel {
             }
         }
 
+        public boolean constrainProbe(
+            RolapCubeMember member,
+            RolapCube baseCube,
+            CellProbe probe)
+        {
+            // Follows the same logic as constrainRequest, but a calculated
+            // member or the null member requires a full request.
+            assert member.getLevel() == cubeLevel;
+            if (member.getKey() == null || member.isCalculated()) {
+                return true;
+            }
+            RolapStar.Column column = cubeLevel.getBaseStarKeyColumn(baseCube);
+            if (column == null) {
+                return member != cubeLevel.hierarchy.getDefaultMember()
+                    || cubeLevel.hierarchy.hasAll();
+            }
+            probe.addConstrainedColumn(column, member.getKey());
+            if (cubeLevel.isUnique()) {
+                return false;
+            }
+            RolapCubeMember parent = member.getParentMember();
+            while (true) {
+                if (parent == null) {
+                    return false;
+                }
+                final LevelReader levelReader = parent.getLevel().levelReader;
+                if (levelReader == this) {
+                    parent = parent.getParentMember();
+                    continue;
+                }
+                return levelReader.constrainProbe(parent, baseCube, probe);
+            }
+        }
+
         public void constrainRegion(
             StarColumnPredicate predicate,
             RolapCube baseCube,
@@ -530,6 +581,21 @@ public class RolapCubeLevel extends RolapLevel {
             }
         }
 
+        public boolean constrainProbe(
+            RolapCubeMember member,
+            RolapCube baseCube,
+            CellProbe probe)
+        {
+            if (member.getDataMember() == null) {
+                return regularLevelReader.constrainProbe(
+                    member, baseCube, probe);
+            } else {
+                // Substituting the closed peer creates members; use a
+                // request.
+                return true;
+            }
+        }
+
         public void constrainRegion(
             StarColumnPredicate predicate,
             RolapCube baseCube,
@@ -552,6 +618,14 @@ public class RolapCubeLevel extends RolapLevel {
             return false;
         }
 
+        public boolean constrainProbe(
+            RolapCubeMember member,
+            RolapCube baseCube,
+            CellProbe probe)
+        {
+            return false;
+        }
+
         public void constrainRegion(
             StarColumnPredicate predicate,
             RolapCube baseCube,
@@ -573,6 +647,14 @@ public class RolapCubeLevel extends RolapLevel {
             return true;
         }
 
+        public boolean constrainProbe(
+            RolapCubeMember member,
+            RolapCube baseCube,
+            CellProbe probe)
+        {
+            return true;
+        }
+
         public void constrainRegion(
             StarColumnPredicate predicate,
             RolapCube baseCube,
@@ -481,38 +481,46 @@ public class RolapEvaluator implements Evaluator {
         // Get the member in the current context which is (a) calculated, and
         // (b) has the highest solve order. If there are no calculated members,
         // go ahead and compute the cell.
-        RolapCalculation maxSolveMember;
-        switch (calcMemberCount) {
-        case 0:
+        final RolapCalculation maxSolveMember = getMaxSolveCalculation();
+        if (maxSolveMember == null) {
             final Object o = cellReader.get(this);
             if (o == Util.nullValue) {
                 return null;
             }
             return o;
+        }
+        final RolapEvaluator evaluator = maxSolveMember.pushSelf(this);
+        final Calc calc = maxSolveMember.getCompiledExpression(root);
+        final Object o = calc.evaluate(evaluator);
+        if (o == Util.nullValue) {
+            return null;
+        }
+        return o;
+    }
 
+    /**
+     * Returns the calculation which computes the current cell: the
+     * calculated member of the current context which has the highest solve
+     * order, or null if no member of the current context is calculated.
+     *
+     * @return Calculation with highest solve order, or null
+     */
+    final RolapCalculation getMaxSolveCalculation() {
+        switch (calcMemberCount) {
+        case 0:
+            return null;
         case 1:
-            maxSolveMember = calcMembers[0];
-            break;
-
+            return calcMembers[0];
         default:
             switch (root.solveOrderMode) {
             case ABSOLUTE:
-                maxSolveMember = getAbsoluteMaxSolveOrder();
-                break;
+                return getAbsoluteMaxSolveOrder();
             case SCOPED:
-                maxSolveMember = getScopedMaxSolveOrder();
-                break;
+                return getScopedMaxSolveOrder();
             default:
                 throw Util.unexpected(root.solveOrderMode);
             }
         }
-        final RolapEvaluator evaluator = maxSolveMember.pushSelf(this);
-        final Calc calc = maxSolveMember.getCompiledExpression(root);
-        final Object o = calc.evaluate(evaluator);
-        if (o == Util.nullValue) {
-            return null;
-        }
-        return o;
     }
 
     void setExpanding(Member member) {
@@ -0,0 +1,424 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+import javax.sql.DataSource;
+
+import mondrian.calc.ResultStyle;
+import mondrian.mdx.MemberExpr;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.rolap.cache.HardSmartCache;
+import mondrian.rolap.cache.SmartCache;
+import mondrian.rolap.cache.SoftSmartCache;
+import mondrian.rolap.sql.CrossJoinArg;
+import mondrian.rolap.sql.MemberListCrossJoinArg;
+import mondrian.rolap.sql.SqlQuery;
+
+/**
+ * Computes <code>Count</code>, <code>Sum</code> and <code>Aggregate</code>
+ * of a set in SQL.
+ *
+ * <p>Evaluates expressions of the form
+ * <code>Count(&lt;set&gt;, EXCLUDEEMPTY)</code>,
+ * <code>Count(NonEmptyCrossJoin(&lt;set&gt;, &lt;set&gt;))</code>,
+ * <code>Sum(&lt;set&gt;[, &lt;measure&gt;])</code> and
+ * <code>Aggregate(&lt;set&gt;[, &lt;measure&gt;])</code>, where the set can
+ * be expressed as a list of {@link CrossJoinArg}s, using a single statement
+ * which returns the result. The members of the set are not read, and no cell
+ * is requested for each of them.
+ *
+ * <p>Count is computed by counting the distinct keys of the set which join
+ * to the fact table. Sum and Aggregate are computed by applying the
+ * measure's aggregate function to the rows of the fact table which belong to
+ * the set; therefore only stored measures whose values can be rolled up in
+ * SQL are supported. Sum requires a measure whose aggregator is
+ * <code>sum</code> or <code>count</code>; Aggregate also allows
+ * <code>min</code> and <code>max</code>.
+ *
+ * <p>Results are cached by the constraint's cache key, as for other native
+ * sets, because the evaluator may compute the same cell more than once.
+ * Cached results of a star are discarded when its cells are flushed.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class RolapNativeAggregate extends RolapNativeSet {
+
+    private SmartCache<Object, Object> resultCache =
+        new SoftSmartCache<Object, Object>();
+
+    public RolapNativeAggregate() {
+        super.setEnabled(
+            MondrianProperties.instance().EnableNativeAggregate.get());
+    }
+
+    /**
+     * Constraint which restricts the rows of the fact table to the current
+     * context and to the members of the set.
+     */
+    static class AggregateConstraint extends SetConstraint {
+        AggregateConstraint(CrossJoinArg[] args, RolapEvaluator evaluator) {
+            super(args, evaluator, true);
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>The statement always reads from the fact table.
+         */
+        protected boolean isJoinRequired() {
+            return true;
+        }
+    }
+
+    protected boolean restrictMemberTypes() {
+        return true;
+    }
+
+    void useHardCache(boolean hard) {
+        super.useHardCache(hard);
+        if (hard) {
+            resultCache = new HardSmartCache<Object, Object>();
+        } else {
+            resultCache = new SoftSmartCache<Object, Object>();
+        }
+    }
+
+    NativeEvaluator createEvaluator(
+        RolapEvaluator evaluator,
+        FunDef fun,
+        Exp[] args)
+    {
+        if (!isEnabled()) {
+            return null;
+        }
+        if (evaluator.getCube().isVirtual()) {
+            return null;
+        }
+
+        // is this "Count(<set>, EXCLUDEEMPTY)",
+        // "Count(NonEmptyCrossJoin(<set>, <set>))",
+        // "Sum(<set>[, <measure>])" or "Aggregate(<set>[, <measure>])"
+        final String funName = fun.getName();
+        final boolean count;
+        final Member measure;
+        if ("Count".equalsIgnoreCase(funName)) {
+            if (!isExcludeEmpty(args)) {
+                return null;
+            }
+            count = true;
+            measure = evaluator.getMembers()[0];
+        } else if ("Sum".equalsIgnoreCase(funName)
+            || "Aggregate".equalsIgnoreCase(funName))
+        {
+            count = false;
+            if (args.length == 1) {
+                measure = evaluator.getMembers()[0];
+            } else if (args.length == 2 && args[1] instanceof MemberExpr) {
+                measure = ((MemberExpr) args[1]).getMember();
+            } else {
+                return null;
+            }
+        } else {
+            return null;
+        }
+
+        // the measure must be stored, and if its values are to be rolled
+        // up, its aggregator must allow it
+        if (!(measure instanceof RolapStoredMeasure)) {
+            return null;
+        }
+        final RolapStoredMeasure storedMeasure = (RolapStoredMeasure) measure;
+        if (storedMeasure.getCube() != evaluator.getCube()) {
+            return null;
+        }
+        if (!count && !canRollup(funName, storedMeasure.getAggregator())) {
+            return null;
+        }
+
+        // extract the set expression
+        List<CrossJoinArg[]> allArgs =
+            crossJoinArgFactory().checkCrossJoinArg(evaluator, args[0]);
+        if (allArgs == null || allArgs.isEmpty() || allArgs.get(0) == null) {
+            return null;
+        }
+        CrossJoinArg[] cjArgs = allArgs.get(0);
+        if (isPreferInterpreter(cjArgs, false)) {
+            return null;
+        }
+        for (CrossJoinArg arg : cjArgs) {
+            if (!isSupported(arg)) {
+                return null;
+            }
+        }
+        if (count && !evaluator.getDialect().allowsFromQuery()) {
+            return null;
+        }
+
+        // The set determines the members of its hierarchies, so the context
+        // needs to be valid only after those members have been reset. This
+        // allows, say, a calculated member of the Store hierarchy to
+        // aggregate the members of the Store hierarchy.
+        evaluator = overrideContext(evaluator, cjArgs, storedMeasure);
+        if (!AggregateConstraint.isValidContext(
+            evaluator, restrictMemberTypes()))
+        {
+            return null;
+        }
+        LOGGER.debug("using native aggregate");
+
+        CrossJoinArg[] combinedArgs = cjArgs;
+        if (allArgs.size() == 2 && allArgs.get(1) != null) {
+            combinedArgs = Util.appendArrays(cjArgs, allArgs.get(1));
+        }
+        final AggregateConstraint constraint =
+            new AggregateConstraint(combinedArgs, evaluator);
+        return new AggregateEvaluator(
+            count,
+            cjArgs,
+            constraint,
+            storedMeasure,
+            evaluator.getSchemaReader().getDataSource());
+    }
+
+    /**
+     * Returns whether the arguments of a call to <code>Count</code> ask for
+     * non-empty tuples only.
+     *
+     * @param args Arguments to Count
+     * @return Whether Count excludes empty tuples
+     */
+    private static boolean isExcludeEmpty(Exp[] args) {
+        if (args.length == 2
+            && args[1] instanceof Literal
+            && "EXCLUDEEMPTY".equalsIgnoreCase(
+                String.valueOf(((Literal) args[1]).getValue())))
+        {
+            return true;
+        }
+        return args[0] instanceof ResolvedFunCall
+            && "NonEmptyCrossJoin".equalsIgnoreCase(
+                ((ResolvedFunCall) args[0]).getFunName());
+    }
+
+    /**
+     * Returns whether the values of a measure can be rolled up by applying
+     * the measure's own aggregate function in SQL.
+     *
+     * @param funName Name of function, "Sum" or "Aggregate"
+     * @param aggregator Aggregator of measure
+     * @return Whether function can be computed in SQL
+     */
+    private static boolean canRollup(
+        String funName,
+        RolapAggregator aggregator)
+    {
+        if (aggregator == RolapAggregator.Sum
+            || aggregator == RolapAggregator.Count)
+        {
+            return true;
+        }
+        return "Aggregate".equalsIgnoreCase(funName)
+            && (aggregator == RolapAggregator.Min
+                || aggregator == RolapAggregator.Max);
+    }
+
+    /**
+     * Returns whether an argument of the set can be mapped to rows of the
+     * fact table such that each row belongs to at most one tuple of the set.
+     *
+     * @param arg Cross join argument
+     * @return Whether argument is supported
+     */
+    private static boolean isSupported(CrossJoinArg arg) {
+        final RolapLevel level = arg.getLevel();
+        if (level == null
+            || level.isParentChild()
+            || !(level instanceof RolapCubeLevel))
+        {
+            return false;
+        }
+        if (arg instanceof MemberListCrossJoinArg) {
+            final MemberListCrossJoinArg listArg =
+                (MemberListCrossJoinArg) arg;
+            if (listArg.hasCalcMembers() || listArg.hasAllMember()) {
+                return false;
+            }
+            // A member which occurs more than once is counted more than
+            // once by the interpreter.
+            final List<RolapMember> members = listArg.getMembers();
+            if (new HashSet<RolapMember>(members).size() != members.size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Native evaluator which computes the count, sum or aggregate of a set
+     * using one SQL statement.
+     */
+    class AggregateEvaluator implements NativeEvaluator {
+        private final boolean count;
+        private final CrossJoinArg[] args;
+        private final AggregateConstraint constraint;
+        private final RolapStoredMeasure measure;
+        private final DataSource dataSource;
+
+        AggregateEvaluator(
+            boolean count,
+            CrossJoinArg[] args,
+            AggregateConstraint constraint,
+            RolapStoredMeasure measure,
+            DataSource dataSource)
+        {
+            this.count = count;
+            this.args = args;
+            this.constraint = constraint;
+            this.measure = measure;
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Returns an {@link Integer} if counting, otherwise a
+         * {@link Double}, or {@link Util#nullValue} if the set has no data.
+         */
+        public Object execute(ResultStyle resultStyle) {
+            final RolapStar star =
+                ((RolapStar.Measure) measure.getStarMeasure()).getStar();
+            if (!star.isCacheValues()) {
+                return executeSql();
+            }
+            final List<Object> key = new ArrayList<Object>();
+            key.add(count);
+            key.addAll(Arrays.asList(args));
+            key.add(constraint.getCacheKey());
+            key.add(star.getFlushCount());
+            Object result = resultCache.get(key);
+            if (result != null) {
+                if (listener != null) {
+                    listener.foundInCache(new TupleEvent(this, null));
+                }
+                return result;
+            }
+            if (listener != null) {
+                listener.executingSql(new TupleEvent(this, null));
+            }
+            result = executeSql();
+            resultCache.put(key, result);
+            return result;
+        }
+
+        private Object executeSql() {
+            final String message =
+                "while computing " + (count ? "count" : "aggregate")
+                + " of set natively";
+            final String sql = generateSql(message);
+            final SqlStatement stmt =
+                RolapUtil.executeQuery(
+                    dataSource, sql, "RolapNativeAggregate.execute", message);
+            try {
+                ResultSet resultSet = stmt.getResultSet();
+                Util.assertTrue(resultSet.next());
+                ++stmt.rowCount;
+                if (count) {
+                    return resultSet.getInt(1);
+                }
+                final double value = resultSet.getDouble(1);
+                if (resultSet.wasNull()) {
+                    return Util.nullValue;
+                }
+                return value;
+            } catch (SQLException e) {
+                throw stmt.handle(e);
+            } finally {
+                stmt.close();
+            }
+        }
+
+        /**
+         * Generates the SQL statement. For example,
+         * <code>Count(Descendants([Store].[USA], [Store City]),
+         * EXCLUDEEMPTY)</code> generates <blockquote>
+         * <pre>select count(*) from (
+         *   select distinct "store"."store_state", "store"."store_city"
+         *   from "sales_fact_1997", "store"
+         *   where "sales_fact_1997"."store_id" = "store"."store_id"
+         *   and "store"."store_country" = 'USA') as "init"</pre>
+         * </blockquote> and <code>Sum([Store].[Store City].Members,
+         * [Measures].[Unit Sales])</code> generates <blockquote>
+         * <pre>select sum("sales_fact_1997"."unit_sales")
+         * from "sales_fact_1997", "store"
+         * where "sales_fact_1997"."store_id" = "store"."store_id"</pre>
+         * </blockquote>
+         *
+         * @param message Message to use if statement fails
+         * @return SQL statement
+         */
+        String generateSql(String message) {
+            final RolapCube cube = measure.getCube();
+            final RolapStar.Measure starMeasure =
+                (RolapStar.Measure) measure.getStarMeasure();
+            final SqlQuery sqlQuery = SqlQuery.newQuery(dataSource, message);
+            starMeasure.getTable().addToFrom(sqlQuery, false, true);
+            for (CrossJoinArg arg : args) {
+                final RolapLevel level = arg.getLevel();
+                final RolapHierarchy hierarchy = level.getHierarchy();
+                final RolapLevel[] levels =
+                    (RolapLevel[]) hierarchy.getLevels();
+                for (int i = level.getDepth(); i >= 0; i--) {
+                    final RolapLevel level2 = levels[i];
+                    if (level2.isAll()) {
+                        continue;
+                    }
+                    hierarchy.addToFrom(sqlQuery, level2.getKeyExp());
+                    if (count) {
+                        sqlQuery.addSelect(
+                            level2.getKeyExp().getExpression(sqlQuery));
+                    }
+                    if (level2.isUnique()) {
+                        break; // no further qualification needed
+                    }
+                }
+                SqlConstraintUtils.joinLevelTableToFactTable(
+                    sqlQuery, cube, null, constraint.getEvaluator(),
+                    (RolapCubeLevel) level);
+            }
+            constraint.addConstraint(sqlQuery, cube, null);
+            if (!count) {
+                final String expr =
+                    starMeasure.getExpression() == null
+                        ? "*"
+                        : starMeasure.generateExprString(sqlQuery);
+                sqlQuery.addSelect(
+                    starMeasure.getAggregator().getExpression(expr));
+                return sqlQuery.toString();
+            }
+            sqlQuery.setDistinct(true);
+            final SqlQuery countQuery = SqlQuery.newQuery(dataSource, message);
+            countQuery.addSelect("count(*)");
+            // Note: the "init" is for Postgres, which requires
+            // FROM-queries to have an alias
+            boolean failIfExists = true;
+            countQuery.addFrom(sqlQuery, "init", failIfExists);
+            return countQuery.toString();
+        }
+    }
+}
+
+// End RolapNativeAggregate.java
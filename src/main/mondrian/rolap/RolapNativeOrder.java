@@ -0,0 +1,246 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import mondrian.calc.ResultStyle;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.rolap.aggmatcher.AggStar;
+import mondrian.rolap.sql.CrossJoinArg;
+import mondrian.rolap.sql.MemberListCrossJoinArg;
+import mondrian.rolap.sql.SqlQuery;
+import mondrian.rolap.sql.TupleConstraint;
+
+/**
+ * Computes a page of a sorted set in SQL.
+ *
+ * <p>Evaluates expressions of the form
+ * <code>Head(Order(&lt;set&gt;, &lt;numeric expr&gt;, BDESC), n)</code> and
+ * <code>Subset(Order(&lt;set&gt;, &lt;numeric expr&gt;, BDESC), start,
+ * n)</code>, which client tools use to page through a sorted grid. The
+ * statement sorts on the numeric expression and, if the dialect supports it
+ * (see {@link mondrian.spi.Dialect#supportsLimitOffset()}), returns only the
+ * rows of the page; otherwise it stops reading after the last row of the
+ * page.
+ *
+ * <p>Like {@link RolapNativeTopCount}, the statement joins to the fact table,
+ * so tuples which have no data are not returned; this evaluator is
+ * therefore only used in a non-empty context. Only the BDESC flag is
+ * supported: in ascending order, empty tuples would sort first, and would
+ * change which tuples are on the page.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class RolapNativeOrder extends RolapNativeSet {
+
+    public RolapNativeOrder() {
+        super.setEnabled(
+            MondrianProperties.instance().EnableNativeOrder.get());
+    }
+
+    static class OrderConstraint
+        extends RolapNativeTopCount.TopCountConstraint
+    {
+        private final int offset;
+        private final boolean limitInSql;
+
+        /**
+         * Creates an OrderConstraint.
+         *
+         * @param offset Number of tuples to skip
+         * @param count Number of tuples to return
+         * @param args Cross join arguments
+         * @param evaluator Evaluator
+         * @param orderByExpr Expression to sort on
+         * @param limitInSql Whether to restrict the rows in SQL
+         */
+        public OrderConstraint(
+            int offset,
+            int count,
+            CrossJoinArg[] args,
+            RolapEvaluator evaluator,
+            Exp orderByExpr,
+            boolean limitInSql)
+        {
+            super(count, args, evaluator, orderByExpr, false);
+            this.offset = offset;
+            this.limitInSql = limitInSql;
+        }
+
+        public void addConstraint(
+            SqlQuery sqlQuery,
+            RolapCube baseCube,
+            AggStar aggStar)
+        {
+            super.addConstraint(sqlQuery, baseCube, aggStar);
+            if (limitInSql) {
+                sqlQuery.setLimit(topCount, offset);
+            }
+        }
+
+        public Object getCacheKey() {
+            List<Object> key = new ArrayList<Object>();
+            key.add(super.getCacheKey());
+            key.add(offset);
+            key.add(limitInSql);
+            return key;
+        }
+    }
+
+    protected boolean restrictMemberTypes() {
+        return true;
+    }
+
+    NativeEvaluator createEvaluator(
+        RolapEvaluator evaluator,
+        FunDef fun,
+        Exp[] args)
+    {
+        if (!isEnabled()) {
+            return null;
+        }
+        if (!evaluator.isNonEmpty()) {
+            return null;
+        }
+        if (!OrderConstraint.isValidContext(
+            evaluator, restrictMemberTypes()))
+        {
+            return null;
+        }
+
+        // is this "Head(<set>[, <count>])" or
+        // "Subset(<set>, <start>, <count>)"
+        final int offset;
+        final int count;
+        String funName = fun.getName();
+        if ("Head".equalsIgnoreCase(funName)) {
+            offset = 0;
+            if (args.length == 1) {
+                count = 1;
+            } else if (args.length == 2 && args[1] instanceof Literal) {
+                count = ((Literal) args[1]).getIntValue();
+            } else {
+                return null;
+            }
+        } else if ("Subset".equalsIgnoreCase(funName)) {
+            if (args.length != 3
+                || !(args[1] instanceof Literal)
+                || !(args[2] instanceof Literal))
+            {
+                return null;
+            }
+            offset = ((Literal) args[1]).getIntValue();
+            count = ((Literal) args[2]).getIntValue();
+        } else {
+            return null;
+        }
+        if (offset < 0 || count <= 0) {
+            return null;
+        }
+
+        // is the set "Order(<set>, <numeric expr>, BDESC)"
+        if (!(args[0] instanceof ResolvedFunCall)) {
+            return null;
+        }
+        final ResolvedFunCall orderCall = (ResolvedFunCall) args[0];
+        if (!"Order".equalsIgnoreCase(orderCall.getFunName())
+            || orderCall.getArgCount() != 3
+            || !(orderCall.getArg(2) instanceof Literal)
+            || !"BDESC".equalsIgnoreCase(
+                String.valueOf(((Literal) orderCall.getArg(2)).getValue())))
+        {
+            return null;
+        }
+        final Exp orderByExpr = orderCall.getArg(1);
+
+        // extract the set expression
+        List<CrossJoinArg[]> allArgs =
+            crossJoinArgFactory().checkCrossJoinArg(
+                evaluator, orderCall.getArg(0));
+        if (allArgs == null || allArgs.isEmpty() || allArgs.get(0) == null) {
+            return null;
+        }
+        CrossJoinArg[] cjArgs = allArgs.get(0);
+        if (isPreferInterpreter(cjArgs, false)) {
+            return null;
+        }
+        for (CrossJoinArg arg : cjArgs) {
+            // Calculated members are combined with the result of the SQL
+            // statement in Java, so the statement cannot be paged.
+            if (arg instanceof MemberListCrossJoinArg
+                && ((MemberListCrossJoinArg) arg).hasCalcMembers())
+            {
+                return null;
+            }
+        }
+
+        // generate the ORDER BY clause, to determine whether it can be
+        // created
+        SchemaReader schemaReader = evaluator.getSchemaReader();
+        DataSource ds = schemaReader.getDataSource();
+        SqlQuery sqlQuery = SqlQuery.newQuery(ds, "NativeOrder");
+        RolapNativeSql sql = new RolapNativeSql(sqlQuery, null);
+        if (sql.generateTopCountOrderBy(orderByExpr) == null) {
+            return null;
+        }
+        final boolean limitInSql =
+            sqlQuery.getDialect().supportsLimitOffset();
+        LOGGER.debug("using native order");
+        evaluator = overrideContext(evaluator, cjArgs, sql.getStoredMeasure());
+
+        CrossJoinArg[] combinedArgs = cjArgs;
+        if (allArgs.size() == 2 && allArgs.get(1) != null) {
+            combinedArgs = Util.appendArrays(cjArgs, allArgs.get(1));
+        }
+        TupleConstraint constraint =
+            new OrderConstraint(
+                offset, count, combinedArgs, evaluator, orderByExpr,
+                limitInSql);
+        SetEvaluator sev = new SetEvaluator(cjArgs, schemaReader, constraint);
+        if (limitInSql) {
+            sev.setMaxRows(count);
+            return sev;
+        }
+        sev.setMaxRows(offset + count);
+        return offset == 0 ? sev : new OffsetEvaluator(sev, offset);
+    }
+
+    /**
+     * Native evaluator which skips the first few tuples returned by another
+     * native evaluator. Used if the dialect cannot skip rows in SQL.
+     */
+    private static class OffsetEvaluator implements NativeEvaluator {
+        private final NativeEvaluator evaluator;
+        private final int offset;
+
+        OffsetEvaluator(NativeEvaluator evaluator, int offset) {
+            this.evaluator = evaluator;
+            this.offset = offset;
+        }
+
+        public Object execute(ResultStyle resultStyle) {
+            final List list = (List) evaluator.execute(resultStyle);
+            if (offset >= list.size()) {
+                return Collections.EMPTY_LIST;
+            }
+            return list.subList(offset, list.size());
+        }
+    }
+}
+
+// End RolapNativeOrder.java
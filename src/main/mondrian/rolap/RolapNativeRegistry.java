@@ -34,6 +34,14 @@ public class RolapNativeRegistry extends RolapNative {
         register("CrossJoin".toUpperCase(), new RolapNativeCrossJoin());
         register("TopCount".toUpperCase(), new RolapNativeTopCount());
         register("Filter".toUpperCase(), new RolapNativeFilter());
+        final RolapNativeOrder nativeOrder = new RolapNativeOrder();
+        register("Head".toUpperCase(), nativeOrder);
+        register("Subset".toUpperCase(), nativeOrder);
+        final RolapNativeAggregate nativeAggregate =
+            new RolapNativeAggregate();
+        register("Count".toUpperCase(), nativeAggregate);
+        register("Sum".toUpperCase(), nativeAggregate);
+        register("Aggregate".toUpperCase(), nativeAggregate);
     }
 
     /**
@@ -154,6 +154,12 @@ public class RolapNativeSql {
             if (measure.isCalculated()) {
                 return null; // ??
             }
+            if (measure.getAggregator()
+                == RolapAggregator.ApproxDistinctCount)
+            {
+                // estimated in memory; cannot be expressed in SQL
+                return null;
+            }
             if (!saveStoredMeasure(measure)) {
                 return null;
             }
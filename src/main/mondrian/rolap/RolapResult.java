@@ -14,6 +14,7 @@
 package mondrian.rolap;
 
 import mondrian.calc.*;
+import mondrian.calc.impl.AbstractDoubleBlockCalc;
 import mondrian.calc.impl.ValueCalc;
 import mondrian.calc.impl.GenericCalc;
 import mondrian.olap.*;
@@ -22,6 +23,7 @@ import mondrian.olap.fun.*;
 import mondrian.olap.type.*;
 import mondrian.resource.MondrianResource;
 import mondrian.rolap.agg.AggregationManager;
+import mondrian.rolap.cache.CachePool;
 import mondrian.util.ConcatenableList;
 import mondrian.util.Format;
 import mondrian.util.ObjectPool;
@@ -52,6 +54,8 @@ public class RolapResult extends ResultBase {
     private Modulos modulos = null;
     private final int maxEvalDepth =
             MondrianProperties.instance().MaxEvalDepth.get();
+    private final int blockSize =
+        MondrianProperties.instance().EvaluateBlockSize.get();
 
     private final Map<Integer, Boolean> positionsHighCardinality =
         new HashMap<Integer, Boolean>();
@@ -449,6 +453,10 @@ public class RolapResult extends ResultBase {
                 // cache so each thread can start using it
                 cube.pushAggregateModificationsToGlobalCache();
 
+                // Segments and members loaded by this query may have pushed
+                // the caches over their memory limit.
+                CachePool.instance().checkBudget();
+
                 // Expression cache duration is for each query. It is time to
                 // clear out the whole expression cache at the end of a query.
                 evaluator.clearExpResultCache(true);
@@ -706,6 +714,43 @@ public class RolapResult extends ResultBase {
         return new RolapCell(this, pos.clone(), ci);
     }
 
+    /**
+     * Returns whether several threads may call {@link #isNull(int[])} at
+     * once. This is the case once the result has been computed, unless an
+     * axis has a high-cardinality dimension, whose cells are computed on
+     * demand.
+     *
+     * @return whether cells can be read concurrently
+     */
+    boolean canReadConcurrently() {
+        if (cellInfos == null) {
+            return false;
+        }
+        for (int i = 0; i < axes.length; i++) {
+            if (Boolean.TRUE.equals(positionsHighCardinality.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the cell at a given position is empty.
+     *
+     * <p>Gives the same answer as calling {@link RolapCell#isNull()} on the
+     * result of {@link #getCell(int[])}, but does not modify this result, so
+     * can be called from several threads if {@link #canReadConcurrently()}.
+     *
+     * @param pos Cell coordinates
+     * @return whether the cell is empty
+     */
+    boolean isNull(int[] pos) {
+        final CellInfo ci = cellInfos.find(pos);
+        return ci == null
+            || ci.value == null
+            || ci.value == Util.nullValue;
+    }
+
     private Axis executeAxis(
         Evaluator evaluator,
         QueryAxis axis,
@@ -897,80 +942,7 @@ public class RolapResult extends ResultBase {
             for (Position position : positions) {
                 getQuery().checkCancelOrTimeout();
                 revaluator.setContext(position);
-                Object o;
-                try {
-                    o = revaluator.evaluateCurrent();
-                } catch (MondrianEvaluationException e) {
-                    LOGGER.warn("Mondrian: exception in executeStripe.", e);
-                    o = e;
-                }
-
-                CellInfo ci = null;
-
-                // Get the Cell's format string and value formatting
-                // Object.
-                try {
-                    // This code is a combination of the code found in
-                    // the old RolapResult
-                    // <code>getCellNoDefaultFormatString</code> method and
-                    // the old RolapCell <code>getFormattedValue</code> method.
-
-                    // Create a CellInfo object for the given position
-                    // integer array.
-                    ci = cellInfos.create(point.getOrdinals());
-
-                    String cachedFormatString = null;
-                    ValueFormatter valueFormatter;
-
-                    // Determine if there is a CellFormatter registered for
-                    // the current Cube's Measure's Dimension. If so,
-                    // then find or create a CellFormatterValueFormatter
-                    // for it. If not, then find or create a Locale based
-                    // FormatValueFormatter.
-                    final RolapCube cube = getCube();
-                    Hierarchy measuresHierarchy =
-                        cube.getMeasuresHierarchy();
-                    RolapMeasure m =
-                        (RolapMeasure) revaluator.getContext(measuresHierarchy);
-                    CellFormatter cf = m.getFormatter();
-                    if (cf != null) {
-                        valueFormatter = cellFormatters.get(cf);
-                        if (valueFormatter == null) {
-                            valueFormatter =
-                                new CellFormatterValueFormatter(cf);
-                            cellFormatters.put(cf, valueFormatter);
-                        }
-                    } else {
-                        cachedFormatString = revaluator.getFormatString();
-                        Locale locale = query.getConnection().getLocale();
-                        valueFormatter = formatValueFormatters.get(locale);
-                        if (valueFormatter == null) {
-                            valueFormatter = new FormatValueFormatter(locale);
-                            formatValueFormatters.put(locale, valueFormatter);
-                        }
-                    }
-
-                    ci.formatString = cachedFormatString;
-                    ci.valueFormatter = valueFormatter;
-                } catch (ResultLimitExceededException e) {
-                    // Do NOT ignore a ResultLimitExceededException!!!
-                    throw e;
-                } catch (MondrianEvaluationException e) {
-                    // ignore but warn
-                    LOGGER.warn("Mondrian: exception in executeStripe.", e);
-                } catch (Error e) {
-                    // Errors indicate fatal JVM problems; do not discard
-                    throw e;
-                } catch (Throwable e) {
-                    LOGGER.warn("Mondrian: exception in executeStripe.", e);
-                    Util.discard(e);
-                }
-
-                if (o == RolapUtil.valueNotReadyException) {
-                    continue;
-                }
-
-                ci.value = o;
+                storeCell(revaluator, evaluateCell(revaluator));
             }
         } else {
             Axis axis = axes[axisOrdinal];
@@ -1031,6 +1003,11 @@ public class RolapResult extends ResultBase {
                     executeStripe(axisOrdinal - 1, revaluator, pos);
                     pi++;
                 }
+            } else if (axisOrdinal == 0
+                && blockSize > 0
+                && slicerAxis.getPositions().size() == 1)
+            {
+                executeBlocks(revaluator, positions);
             } else {
                 int positionIndex = 0;
                 for (final Position position : positions) {
@@ -1044,6 +1021,204 @@ public class RolapResult extends ResultBase {
         }
     }
 
+    /**
+     * Evaluates the current cell.
+     *
+     * @param revaluator Evaluator whose context is the cell
+     * @return Value of the cell, or the exception thrown while evaluating it
+     */
+    private Object evaluateCell(RolapEvaluator revaluator) {
+        try {
+            return revaluator.evaluateCurrent();
+        } catch (MondrianEvaluationException e) {
+            LOGGER.warn("Mondrian: exception in executeStripe.", e);
+            return e;
+        }
+    }
+
+    /**
+     * Records the value of the cell at the current point, with its format
+     * string and value formatter.
+     *
+     * @param revaluator Evaluator whose context is the cell
+     * @param o Value of the cell
+     */
+    private void storeCell(RolapEvaluator revaluator, Object o) {
+        CellInfo ci = null;
+
+        // Get the Cell's format string and value formatting
+        // Object.
+        try {
+            // This code is a combination of the code found in
+            // the old RolapResult
+            // <code>getCellNoDefaultFormatString</code> method and
+            // the old RolapCell <code>getFormattedValue</code> method.
+
+            // Create a CellInfo object for the given position
+            // integer array.
+            ci = cellInfos.create(point.getOrdinals());
+
+            String cachedFormatString = null;
+            ValueFormatter valueFormatter;
+
+            // Determine if there is a CellFormatter registered for
+            // the current Cube's Measure's Dimension. If so,
+            // then find or create a CellFormatterValueFormatter
+            // for it. If not, then find or create a Locale based
+            // FormatValueFormatter.
+            final RolapCube cube = getCube();
+            Hierarchy measuresHierarchy =
+                cube.getMeasuresHierarchy();
+            RolapMeasure m =
+                (RolapMeasure) revaluator.getContext(measuresHierarchy);
+            CellFormatter cf = m.getFormatter();
+            if (cf != null) {
+                valueFormatter = cellFormatters.get(cf);
+                if (valueFormatter == null) {
+                    valueFormatter =
+                        new CellFormatterValueFormatter(cf);
+                    cellFormatters.put(cf, valueFormatter);
+                }
+            } else {
+                cachedFormatString = revaluator.getFormatString();
+                Locale locale = query.getConnection().getLocale();
+                valueFormatter = formatValueFormatters.get(locale);
+                if (valueFormatter == null) {
+                    valueFormatter = new FormatValueFormatter(locale);
+                    formatValueFormatters.put(locale, valueFormatter);
+                }
+            }
+
+            ci.formatString = cachedFormatString;
+            ci.valueFormatter = valueFormatter;
+        } catch (ResultLimitExceededException e) {
+            // Do NOT ignore a ResultLimitExceededException!!!
+            throw e;
+        } catch (MondrianEvaluationException e) {
+            // ignore but warn
+            LOGGER.warn("Mondrian: exception in executeStripe.", e);
+        } catch (Error e) {
+            // Errors indicate fatal JVM problems; do not discard
+            throw e;
+        } catch (Throwable e) {
+            LOGGER.warn("Mondrian: exception in executeStripe.", e);
+            Util.discard(e);
+        }
+
+        if (o == RolapUtil.valueNotReadyException) {
+            return;
+        }
+
+        ci.value = o;
+    }
+
+    /**
+     * Evaluates the cells of the innermost axis, a block at a time.
+     *
+     * <p>Cells which are computed by the same calculated member, and whose
+     * compiled expression can evaluate blocks, are evaluated in one call to
+     * {@link DoubleBlockCalc#evaluateDoubleBlock}; other cells are evaluated
+     * one at a time, as in {@link #executeStripe}. Called only if the slicer
+     * has one position.
+     *
+     * @param revaluator Evaluator
+     * @param positions Positions of the innermost axis
+     *
+     * @see MondrianProperties#EvaluateBlockSize
+     */
+    private void executeBlocks(
+        RolapEvaluator revaluator,
+        List<Position> positions)
+    {
+        final Position slicerPosition = slicerAxis.getPositions().get(0);
+        final int n = positions.size();
+        for (int start = 0; start < n; start += blockSize) {
+            final int count = Math.min(blockSize, n - start);
+            final RolapEvaluator[] evaluators = new RolapEvaluator[count];
+            final RolapCalculation[] calculations =
+                new RolapCalculation[count];
+            final Object[] values = new Object[count];
+            final Map<Calc, List<Integer>> blocks =
+                new LinkedHashMap<Calc, List<Integer>>();
+            for (int i = 0; i < count; i++) {
+                getQuery().checkCancelOrTimeout();
+                revaluator.setContext(positions.get(start + i));
+                revaluator.setContext(slicerPosition);
+                final RolapEvaluator evaluator = revaluator.push();
+                evaluators[i] = evaluator;
+                final RolapCalculation calculation =
+                    evaluator.getMaxSolveCalculation();
+                if (calculation != null) {
+                    final Calc calc =
+                        calculation.getCompiledExpression(evaluator.root);
+                    // Only an AbstractDoubleBlockCalc is certain to yield
+                    // the same boxed values as it would cell by cell.
+                    if (calc instanceof AbstractDoubleBlockCalc) {
+                        calculations[i] = calculation;
+                        List<Integer> block = blocks.get(calc);
+                        if (block == null) {
+                            block = new ArrayList<Integer>();
+                            blocks.put(calc, block);
+                        }
+                        block.add(i);
+                        continue;
+                    }
+                }
+                values[i] = evaluateCell(evaluator);
+            }
+            for (Map.Entry<Calc, List<Integer>> entry : blocks.entrySet()) {
+                executeBlock(
+                    (DoubleBlockCalc) entry.getKey(), entry.getValue(),
+                    evaluators, calculations, values);
+            }
+            for (int i = 0; i < count; i++) {
+                point.setAxis(0, start + i);
+                storeCell(evaluators[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Evaluates a block of cells which are computed by the same compiled
+     * expression. If evaluation fails, evaluates the cells one at a time, so
+     * that the error is recorded only against the cells which caused it.
+     *
+     * @param calc Compiled expression
+     * @param indexes Indexes of the cells within the block
+     * @param evaluators Evaluators for the cells of the block
+     * @param calculations Calculation which computes each cell
+     * @param values Array to receive the values of the cells
+     */
+    private void executeBlock(
+        DoubleBlockCalc calc,
+        List<Integer> indexes,
+        RolapEvaluator[] evaluators,
+        RolapCalculation[] calculations,
+        Object[] values)
+    {
+        final Evaluator[] blockEvaluators = new Evaluator[indexes.size()];
+        for (int i = 0; i < blockEvaluators.length; i++) {
+            final int index = indexes.get(i);
+            blockEvaluators[i] =
+                calculations[index].pushSelf(evaluators[index]);
+        }
+        final double[] blockValues = new double[blockEvaluators.length];
+        try {
+            calc.evaluateDoubleBlock(blockEvaluators, blockValues);
+        } catch (MondrianEvaluationException e) {
+            Util.discard(e);
+            for (int index : indexes) {
+                values[index] = evaluateCell(evaluators[index]);
+            }
+            return;
+        }
+        for (int i = 0; i < blockValues.length; i++) {
+            final double value = blockValues[i];
+            values[indexes.get(i)] =
+                value == FunUtil.DoubleNull ? null : new Double(value);
+        }
+    }
+
     /**
      * Converts a set of cell coordinates to a cell ordinal.
      *
@@ -1639,6 +1814,15 @@ public class RolapResult extends ResultBase {
          * @return the CellInfo found or null.
          */
         CellInfo lookup(int[] pos);
+        /**
+         * Gets the CellInfo object at the location <code>pos</code> without
+         * modifying the container, so that several threads can read a
+         * populated container at once.
+         *
+         * @param pos where to find the CellInfo object.
+         * @return the CellInfo found or null.
+         */
+        CellInfo find(int[] pos);
     }
 
     /**
@@ -1685,6 +1869,9 @@ public class RolapResult extends ResultBase {
             CellKey key = CellKey.Generator.newCellKey(pos);
             return this.cellInfoMap.get(key);
         }
+        public CellInfo find(int[] pos) {
+            return lookup(pos);
+        }
     }
 
     /**
@@ -1832,6 +2019,10 @@ public class RolapResult extends ResultBase {
             long key = this.cellKeyMaker.generate(pos);
             return this.cellInfoPool.add(new CellInfo(key));
         }
+        public CellInfo find(int[] pos) {
+            long key = this.cellKeyMaker.generate(pos);
+            return this.cellInfoPool.get(new CellInfo(key));
+        }
     }
 
     static Axis mergeAxes(
@@ -0,0 +1,653 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.mdx.*;
+import mondrian.olap.*;
+import mondrian.olap.fun.UdfResolver;
+import mondrian.rolap.cache.CachePool;
+import mondrian.spi.UserDefinedFunction;
+
+import org.apache.log4j.Logger;
+import org.olap4j.AllocationPolicy;
+import org.olap4j.Scenario;
+
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the results of MDX queries, shared by all connections to a
+ * schema.
+ *
+ * <p>The cell cache saves the cost of SQL, but executing a query still
+ * evaluates every axis, crossjoin and calculated member, and builds every
+ * cell. If the same query is executed again, with the same role, locale
+ * and parameter values, and no data has been flushed in the meantime, this
+ * cache returns the previous result.
+ *
+ * <p>Entries are keyed by the unparsed text of the query, the role, locale
+ * and connect string of the connection, the values of the query's
+ * parameters, and an epoch which is incremented by
+ * {@link #invalidateAll()}. Entries are discarded:<ul>
+ * <li>when a {@link CacheControl} flushes a region containing measures of a
+ *     star which the query's cube uses ({@link #flush(RolapStar)});</li>
+ * <li>when members are flushed or edited ({@link #invalidateAll()});</li>
+ * <li>when the schema is flushed;</li>
+ * <li>when a {@link DataSourceChangeMonitor} detects a change;</li>
+ * <li>in least-recently-used order, when the estimated size of the cached
+ *     results exceeds {@link MondrianProperties#ResultCacheMaxBytes}, or
+ *     when the {@link CachePool} needs to free memory.</li>
+ * </ul>
+ *
+ * <p>Queries are not cached if the connection has an active
+ * {@link Scenario}, if the schema has a {@link
+ * mondrian.spi.DataSourceChangeListener} which is called by queries rather
+ * than by a {@link DataSourceChangeMonitor} (because the data may change
+ * without a flush), if the query calls a volatile function such as
+ * <code>Now()</code> (see {@link #isVolatile(Query)}), or if an axis
+ * contains a high-cardinality dimension (because such results are
+ * evaluated lazily).
+ *
+ * <p>A cached result may be read by several threads at once. Each caller
+ * receives a wrapper whose {@link Result#getQuery()} is the caller's own
+ * query, and whose cells synchronize on the underlying result.
+ *
+ * <p>The cache is enabled if {@link MondrianProperties#ResultCacheMaxBytes}
+ * is greater than zero.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class RolapResultCache implements CachePool.Cache {
+    private static final Logger LOGGER =
+        Logger.getLogger(RolapResultCache.class);
+
+    /**
+     * Estimated number of bytes used by each cell of a result, including
+     * its value, its key and its entry in the cell map.
+     */
+    private static final int CELL_BYTES = 96;
+
+    /**
+     * Estimated number of bytes used by each position of an axis, not
+     * including the members, which are shared.
+     */
+    private static final int POSITION_BYTES = 32;
+
+    /**
+     * Estimated number of bytes used by each reference to a member.
+     */
+    private static final int REFERENCE_BYTES = 8;
+
+    /**
+     * Names of functions whose value depends on when they are called, not
+     * only on their arguments and the data.
+     */
+    private static final Set<String> VOLATILE_FUNCTION_NAMES =
+        new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        VOLATILE_FUNCTION_NAMES.addAll(
+            Arrays.asList(
+                "Now", "Date", "Time", "Timer",
+                "CurrentDateMember", "CurrentDateString"));
+    }
+
+    /**
+     * Incremented by {@link #invalidateAll()}. Results cached in an earlier
+     * epoch are discarded.
+     */
+    private static final AtomicInteger epoch = new AtomicInteger();
+
+    private final LinkedHashMap<Key, Entry> map =
+        new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    /**
+     * Sum of the estimated sizes of the cached results. Access only while
+     * holding the monitor of this cache.
+     */
+    private long byteCount;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a RolapResultCache.
+     */
+    RolapResultCache() {
+        CachePool.instance().register(
+            "results", CachePool.RESULT_PRIORITY, this);
+    }
+
+    /**
+     * Returns whether the result cache is enabled.
+     *
+     * @return whether the cache is enabled
+     */
+    public static boolean isEnabled() {
+        return MondrianProperties.instance().ResultCacheMaxBytes.get() > 0;
+    }
+
+    /**
+     * Discards all results in all caches. Called when members are flushed
+     * from the member cache.
+     */
+    public static void invalidateAll() {
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of queries which were answered from this cache.
+     *
+     * @return number of cache hits
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of cacheable queries which were not in this cache.
+     *
+     * @return number of cache misses
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the proportion of cacheable queries which were answered from
+     * this cache, between 0 and 1; or 0 if no queries have been executed.
+     *
+     * @return hit ratio
+     */
+    public double getHitRatio() {
+        final long hits = hitCount.get();
+        final long total = hits + missCount.get();
+        return total == 0 ? 0d : (double) hits / (double) total;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by cached results.
+     *
+     * @return estimated size of cache, in bytes
+     */
+    public synchronized long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * Returns the number of results in this cache.
+     *
+     * @return number of results
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * Executes a query, or returns the result of a previous execution of an
+     * identical query.
+     *
+     * @param connection Connection
+     * @param query Query
+     * @return Result
+     */
+    Result execute(RolapConnection connection, Query query) {
+        final RolapSchema schema = (RolapSchema) connection.getSchema();
+        if (connection.getScenario() != null
+            || schema.getDataSourceChangeListener() != null
+            && schema.getDataSourceChangeMonitor() == null
+            || isVolatile(query))
+        {
+            return connection.executeInternal(query);
+        }
+        final Key key = new Key(connection, query);
+        final Entry entry = get(key);
+        if (entry != null) {
+            hitCount.incrementAndGet();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                    "Result cache hit (hit ratio " + getHitRatio() + "): "
+                    + key.mdx);
+            }
+            return new SharedResult(query, entry.result);
+        }
+        missCount.incrementAndGet();
+        final Result result = connection.executeInternal(query);
+        if (!isCacheable(result)) {
+            return result;
+        }
+        final long size = estimateSize(result);
+        if (size > MondrianProperties.instance().ResultCacheMaxBytes.get()) {
+            return result;
+        }
+        put(key, new Entry(result, getStars(query), size));
+        CachePool.instance().checkBudget();
+        return new SharedResult(query, result);
+    }
+
+    /**
+     * Removes results which depend on a given star.
+     *
+     * @param star Star whose data has been flushed
+     */
+    public synchronized void flush(RolapStar star) {
+        for (Iterator<Entry> iterator = map.values().iterator();
+             iterator.hasNext();)
+        {
+            final Entry entry = iterator.next();
+            if (entry.stars.contains(star)) {
+                iterator.remove();
+                byteCount -= entry.size;
+            }
+        }
+    }
+
+    /**
+     * Removes all results from this cache.
+     */
+    public synchronized void clear() {
+        map.clear();
+        byteCount = 0;
+    }
+
+    private synchronized Entry get(Key key) {
+        final Entry entry = map.get(key);
+        if (entry == null || entry.epoch == key.epoch) {
+            return entry;
+        }
+        map.remove(key);
+        byteCount -= entry.size;
+        return null;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        if (key.epoch != epoch.get()) {
+            // Cache was invalidated while the query was executing.
+            return;
+        }
+        final Entry previous = map.put(key, entry);
+        if (previous != null) {
+            byteCount -= previous.size;
+        }
+        byteCount += entry.size;
+        final long maxBytes =
+            MondrianProperties.instance().ResultCacheMaxBytes.get();
+        if (byteCount > maxBytes) {
+            evict(byteCount - maxBytes);
+        }
+    }
+
+    /**
+     * Removes results, least recently used first, until at least a given
+     * number of bytes have been freed or the cache is empty.
+     *
+     * @param byteCount Number of bytes to free
+     * @return Number of bytes freed
+     */
+    public synchronized long evict(long byteCount) {
+        long evicted = 0;
+        for (Iterator<Entry> iterator = map.values().iterator();
+             evicted < byteCount && iterator.hasNext();)
+        {
+            final Entry eldest = iterator.next();
+            iterator.remove();
+            this.byteCount -= eldest.size;
+            evicted += eldest.size;
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns whether a result can be shared. Results whose axes contain
+     * high-cardinality dimensions are evaluated lazily, so cannot.
+     *
+     * @param result Result
+     * @return whether result can be cached
+     */
+    private static boolean isCacheable(Result result) {
+        for (Axis axis : result.getAxes()) {
+            final List<Position> positions = axis.getPositions();
+            if (positions.isEmpty()) {
+                continue;
+            }
+            for (Member member : positions.get(0)) {
+                if (member.getDimension().isHighCardinality()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether a query calls a function whose value depends on when
+     * it is called, such as <code>Now()</code> or
+     * <code>CurrentDateMember</code>. The result of such a query must not be
+     * returned to a later execution.
+     *
+     * <p>Looks in the query's axes, slicer and formulas, and in the
+     * formulas of the calculated members and named sets which they
+     * reference. User-defined functions other than Mondrian's own are
+     * assumed to be volatile, because there is no way to tell.
+     *
+     * @param query Query
+     * @return whether query calls a volatile function
+     */
+    static boolean isVolatile(Query query) {
+        final VolatileFunctionFinder finder = new VolatileFunctionFinder();
+        query.accept(finder);
+        return finder.found;
+    }
+
+    /**
+     * Returns whether a function is volatile.
+     *
+     * @param funDef Function definition
+     * @return whether function is volatile
+     *
+     * @see #isVolatile(Query)
+     */
+    private static boolean isVolatile(FunDef funDef) {
+        if (VOLATILE_FUNCTION_NAMES.contains(funDef.getName())) {
+            return true;
+        }
+        final UserDefinedFunction udf = UdfResolver.getUdf(funDef);
+        return udf != null
+            && !udf.getClass().getName().startsWith("mondrian.udf.");
+    }
+
+    /**
+     * Estimates the number of bytes used by a result.
+     *
+     * @param result Result
+     * @return Estimated size in bytes
+     */
+    static long estimateSize(Result result) {
+        long cellCount = 1;
+        long size = 0;
+        for (Axis axis : result.getAxes()) {
+            final List<Position> positions = axis.getPositions();
+            final int positionCount = positions.size();
+            final int width =
+                positionCount == 0 ? 0 : positions.get(0).size();
+            cellCount *= positionCount;
+            size += (long) positionCount
+                * (POSITION_BYTES + width * REFERENCE_BYTES);
+        }
+        return size + cellCount * CELL_BYTES;
+    }
+
+    /**
+     * Visitor which looks for calls to volatile functions, following
+     * references to calculated members and named sets.
+     */
+    private static class VolatileFunctionFinder extends MdxVisitorImpl {
+        private boolean found;
+        private final Set<Member> activeMembers = new HashSet<Member>();
+        private final Set<NamedSet> activeNamedSets = new HashSet<NamedSet>();
+
+        public Object visit(ResolvedFunCall call) {
+            if (isVolatile(call.getFunDef())) {
+                found = true;
+            }
+            return null;
+        }
+
+        public Object visit(MemberExpr memberExpr) {
+            final Member member = memberExpr.getMember();
+            if (member.isCalculated() && activeMembers.add(member)) {
+                final Exp exp = member.getExpression();
+                if (exp != null) {
+                    exp.accept(this);
+                }
+                activeMembers.remove(member);
+            }
+            return null;
+        }
+
+        public Object visit(NamedSetExpr namedSetExpr) {
+            final NamedSet namedSet = namedSetExpr.getNamedSet();
+            if (activeNamedSets.add(namedSet)) {
+                namedSet.getExp().accept(this);
+                activeNamedSets.remove(namedSet);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the stars whose data a query's result depends upon: the star
+     * of the query's cube, or, for a virtual cube, the stars of its base
+     * cubes.
+     *
+     * @param query Query
+     * @return Set of stars
+     */
+    private static Set<RolapStar> getStars(Query query) {
+        final RolapCube cube = (RolapCube) query.getCube();
+        final Set<RolapStar> stars = new HashSet<RolapStar>();
+        if (!cube.isVirtual()) {
+            stars.add(cube.getStar());
+            return stars;
+        }
+        for (RolapMember member : cube.getMeasuresMembers()) {
+            if (member instanceof RolapStoredMeasure) {
+                stars.add(((RolapStoredMeasure) member).getCube().getStar());
+            }
+        }
+        return stars;
+    }
+
+    /**
+     * Key of a result in the cache.
+     */
+    private static class Key {
+        private final String mdx;
+        private final String connectString;
+        private final Role role;
+        private final Locale locale;
+        private final List<Object> parameterValues;
+        private final int epoch;
+        private final int hashCode;
+
+        Key(Connection connection, Query query) {
+            this.mdx = QueryPlanCache.normalize(Util.unparse(query));
+            this.connectString = connection.getConnectString();
+            this.role = connection.getRole();
+            this.locale = connection.getLocale();
+            this.parameterValues = new ArrayList<Object>();
+            for (Parameter parameter : query.getParameters()) {
+                parameterValues.add(parameter.getName());
+                final Object value = parameter.getValue();
+                parameterValues.add(
+                    value instanceof Member
+                        ? ((Member) value).getUniqueName()
+                        : value);
+            }
+            this.epoch = RolapResultCache.epoch.get();
+            int h = Util.hash(mdx.hashCode(), connectString);
+            h = Util.hash(h, locale);
+            h = Util.hash(h, parameterValues);
+            this.hashCode = Util.hash(h, System.identityHashCode(role));
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) obj;
+            return this.mdx.equals(that.mdx)
+                && Util.equals(this.connectString, that.connectString)
+                && this.role == that.role
+                && Util.equals(this.locale, that.locale)
+                && this.parameterValues.equals(that.parameterValues);
+        }
+    }
+
+    /**
+     * Cached result, with the information needed to invalidate it.
+     */
+    private static class Entry {
+        private final Result result;
+        private final Set<RolapStar> stars;
+        private final long size;
+        private final int epoch;
+
+        Entry(Result result, Set<RolapStar> stars, long size) {
+            this.result = result;
+            this.stars = stars;
+            this.size = size;
+            this.epoch = RolapResultCache.epoch.get();
+        }
+    }
+
+    /**
+     * View of a cached result, for one caller.
+     *
+     * <p>Returns the caller's query, and does not close the underlying
+     * result.
+     */
+    private static class SharedResult implements Result {
+        private final Query query;
+        private final Result underlying;
+
+        SharedResult(Query query, Result underlying) {
+            this.query = query;
+            this.underlying = underlying;
+        }
+
+        public Query getQuery() {
+            return query;
+        }
+
+        public Axis[] getAxes() {
+            return underlying.getAxes();
+        }
+
+        public Axis getSlicerAxis() {
+            return underlying.getSlicerAxis();
+        }
+
+        public Cell getCell(int[] pos) {
+            synchronized (underlying) {
+                return new SharedCell(underlying, underlying.getCell(pos));
+            }
+        }
+
+        public void print(PrintWriter pw) {
+            synchronized (underlying) {
+                underlying.print(pw);
+            }
+        }
+
+        public void close() {
+            // The underlying result belongs to the cache.
+        }
+    }
+
+    /**
+     * Cell of a cached result. Evaluating a cell's properties uses the
+     * result's evaluator, which is not thread-safe, so each method
+     * synchronizes on the result.
+     */
+    private static class SharedCell implements Cell {
+        private final Result result;
+        private final Cell cell;
+
+        SharedCell(Result result, Cell cell) {
+            this.result = result;
+            this.cell = cell;
+        }
+
+        public List<Integer> getCoordinateList() {
+            return cell.getCoordinateList();
+        }
+
+        public Object getValue() {
+            synchronized (result) {
+                return cell.getValue();
+            }
+        }
+
+        public String getCachedFormatString() {
+            synchronized (result) {
+                return cell.getCachedFormatString();
+            }
+        }
+
+        public String getFormattedValue() {
+            synchronized (result) {
+                return cell.getFormattedValue();
+            }
+        }
+
+        public boolean isNull() {
+            synchronized (result) {
+                return cell.isNull();
+            }
+        }
+
+        public boolean isError() {
+            synchronized (result) {
+                return cell.isError();
+            }
+        }
+
+        public String getDrillThroughSQL(boolean extendedContext) {
+            synchronized (result) {
+                return cell.getDrillThroughSQL(extendedContext);
+            }
+        }
+
+        public boolean canDrillThrough() {
+            synchronized (result) {
+                return cell.canDrillThrough();
+            }
+        }
+
+        public int getDrillThroughCount() {
+            synchronized (result) {
+                return cell.getDrillThroughCount();
+            }
+        }
+
+        public Object getPropertyValue(String propertyName) {
+            synchronized (result) {
+                return cell.getPropertyValue(propertyName);
+            }
+        }
+
+        public Member getContextMember(Hierarchy hierarchy) {
+            synchronized (result) {
+                return cell.getContextMember(hierarchy);
+            }
+        }
+
+        public void setValue(
+            Scenario scenario,
+            Object newValue,
+            AllocationPolicy allocationPolicy,
+            Object... allocationArgs)
+        {
+            throw new UnsupportedOperationException(
+                "Cannot write back to a cached result");
+        }
+    }
+}
+
+// End RolapResultCache.java
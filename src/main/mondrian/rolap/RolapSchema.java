@@ -134,6 +134,12 @@ public class RolapSchema implements Schema {
 
     private DataSourceChangeListener dataSourceChangeListener;
 
+    /**
+     * Polls {@link #dataSourceChangeListener} in the background, or null if
+     * the listener is called by queries.
+     */
+    private DataSourceChangeMonitor dataSourceChangeMonitor;
+
     /**
      * Map containing column cardinality. The combination of
      * Mondrianef.Relation and MondrianDef.Expression uniquely
@@ -153,6 +159,16 @@ public class RolapSchema implements Schema {
     private final List<Exception> warningList = new ArrayList<Exception>();
     private Map<String, Annotation> annotationMap;
 
+    /**
+     * Cache of compiled MDX statements against this schema.
+     */
+    private final QueryPlanCache queryPlanCache = new QueryPlanCache();
+
+    /**
+     * Cache of results of MDX statements against this schema.
+     */
+    private final RolapResultCache resultCache = new RolapResultCache();
+
     /**
      * This is ONLY called by other constructors (and MUST be called
      * by them) and NEVER by the Pool.
@@ -183,6 +199,13 @@ public class RolapSchema implements Schema {
         this.aggTableManager = new AggTableManager(this);
         this.dataSourceChangeListener =
             createDataSourceChangeListener(connectInfo);
+        final int pollMillis =
+            MondrianProperties.instance().DataSourceChangePollMillis.get();
+        if (dataSourceChangeListener != null && pollMillis > 0) {
+            this.dataSourceChangeMonitor =
+                new DataSourceChangeMonitor(this, dataSourceChangeListener);
+            dataSourceChangeMonitor.start(pollMillis);
+        }
         this.relationExprCardinalityMap =
             new HashMap<
                 MondrianDef.Relation,
@@ -225,6 +248,11 @@ public class RolapSchema implements Schema {
             aggTableManager.finalCleanUp();
             aggTableManager = null;
         }
+        if (dataSourceChangeMonitor != null) {
+            dataSourceChangeMonitor.stop();
+        }
+        queryPlanCache.clear();
+        resultCache.clear();
     }
 
     protected void finalize() throws Throwable {
@@ -316,7 +344,11 @@ public class RolapSchema implements Schema {
         }
 
         aggTableManager.initialize();
+        for (RolapStar star : getStars()) {
+            star.refreshInMemoryPartition();
+        }
         setSchemaLoadDate();
+        CacheWarmer.instance().warm(this, null);
     }
 
     private void setSchemaLoadDate() {
@@ -1681,6 +1713,24 @@ System.out.println("RolapSchema.createMemberReader: CONTAINS NAME");
         return nativeRegistry;
     }
 
+    /**
+     * Returns the cache of compiled MDX statements against this schema.
+     *
+     * @return query plan cache
+     */
+    QueryPlanCache getQueryPlanCache() {
+        return queryPlanCache;
+    }
+
+    /**
+     * Returns the cache of results of MDX statements against this schema.
+     *
+     * @return result cache
+     */
+    public RolapResultCache getResultCache() {
+        return resultCache;
+    }
+
     /**
      * @return Returns the dataSourceChangeListener.
      */
@@ -1688,6 +1738,17 @@ System.out.println("RolapSchema.createMemberReader: CONTAINS NAME");
         return dataSourceChangeListener;
     }
 
+    /**
+     * Returns the monitor which polls this schema's data source change
+     * listener in the background, or null if the listener is called by
+     * queries.
+     *
+     * @return Data source change monitor, or null
+     */
+    public DataSourceChangeMonitor getDataSourceChangeMonitor() {
+        return dataSourceChangeMonitor;
+    }
+
     /**
      * @param dataSourceChangeListener The dataSourceChangeListener to set.
      */
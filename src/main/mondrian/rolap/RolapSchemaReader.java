@@ -15,8 +15,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -29,6 +32,7 @@ import mondrian.calc.ExpCompiler;
 import mondrian.calc.DummyExp;
 import mondrian.calc.impl.AbstractCalc;
 import mondrian.calc.impl.GenericCalc;
+import mondrian.util.Pair;
 
 import org.apache.log4j.Logger;
 import org.eigenbase.util.property.Property;
@@ -337,6 +341,33 @@ public class RolapSchemaReader
         }
     }
 
+    public void prefetchMemberDescendants(
+        List<Member> members,
+        Level level,
+        Evaluator context)
+    {
+        if (members.size() == 0) {
+            return;
+        }
+        final Hierarchy hierarchy = members.get(0).getHierarchy();
+        final MemberReader memberReader = getMemberReader(hierarchy);
+        // A reader which applies access control, or which does not cache,
+        // cannot prefetch.
+        if (memberReader instanceof SmartMemberReader) {
+            MemberChildrenConstraint constraint =
+                sqlConstraintFactory.getMemberChildrenConstraint(context);
+            final List<RolapMember> rolapMemberList =
+                new ArrayList<RolapMember>();
+            for (Member member : members) {
+                if (member instanceof RolapMember) {
+                    rolapMemberList.add((RolapMember) member);
+                }
+            }
+            ((SmartMemberReader) memberReader).prefetchDescendants(
+                rolapMemberList, (RolapLevel) level, constraint);
+        }
+    }
+
     public void getMemberAncestors(Member member, List<Member> ancestorList) {
         Member parentMember = getMemberParent(member);
         while (parentMember != null) {
@@ -455,6 +486,112 @@ public class RolapSchemaReader
         return null;
     }
 
+    public void prefetchMembersByName(
+        Cube cube,
+        List<List<Id.Segment>> nameList)
+    {
+        // Each pending lookup is a member and the names of the descendants
+        // below it that remain to be resolved.
+        List<Pair<Member, List<Id.Segment>>> pendingList =
+            new ArrayList<Pair<Member, List<Id.Segment>>>();
+        for (List<Id.Segment> names : nameList) {
+            if (names.size() < 2) {
+                continue;
+            }
+            final Hierarchy hierarchy = lookupHierarchy(cube, names.get(0));
+            if (hierarchy == null || !hierarchy.hasAll()) {
+                continue;
+            }
+            final Member allMember = hierarchy.getAllMember();
+            int start = 1;
+            if (Util.equalName(allMember.getName(), names.get(1).name)) {
+                ++start;
+            }
+            if (start < names.size()) {
+                pendingList.add(
+                    new Pair<Member, List<Id.Segment>>(
+                        allMember, names.subList(start, names.size())));
+            }
+        }
+
+        // Resolve one level of names per pass. Each pass reads, for each
+        // level, the children of all pending members with any of the
+        // pending names, in one statement.
+        while (!pendingList.isEmpty()) {
+            final Map<Level, Pair<Set<RolapMember>, Set<Id.Segment>>> map =
+                new LinkedHashMap<
+                    Level, Pair<Set<RolapMember>, Set<Id.Segment>>>();
+            for (Pair<Member, List<Id.Segment>> pending : pendingList) {
+                final Id.Segment name = pending.right.get(0);
+                if (name.quoting == Id.Quoting.KEY) {
+                    continue;
+                }
+                final Level level = pending.left.getLevel();
+                Pair<Set<RolapMember>, Set<Id.Segment>> pair = map.get(level);
+                if (pair == null) {
+                    pair =
+                        new Pair<Set<RolapMember>, Set<Id.Segment>>(
+                            new LinkedHashSet<RolapMember>(),
+                            new LinkedHashSet<Id.Segment>());
+                    map.put(level, pair);
+                }
+                pair.left.add((RolapMember) pending.left);
+                pair.right.add(name);
+            }
+            for (Map.Entry<Level, Pair<Set<RolapMember>, Set<Id.Segment>>>
+                entry : map.entrySet())
+            {
+                final MemberReader memberReader =
+                    getMemberReader(entry.getKey().getHierarchy());
+                if (memberReader instanceof SmartMemberReader) {
+                    ((SmartMemberReader) memberReader).prefetchChildrenByName(
+                        new ArrayList<RolapMember>(entry.getValue().left),
+                        entry.getValue().right);
+                }
+            }
+            final List<Pair<Member, List<Id.Segment>>> nextPendingList =
+                new ArrayList<Pair<Member, List<Id.Segment>>>();
+            for (Pair<Member, List<Id.Segment>> pending : pendingList) {
+                if (pending.right.size() < 2) {
+                    continue;
+                }
+                final Member child =
+                    lookupMemberChildByName(
+                        pending.left, pending.right.get(0), MatchType.EXACT);
+                if (child != null) {
+                    nextPendingList.add(
+                        new Pair<Member, List<Id.Segment>>(
+                            child,
+                            pending.right.subList(1, pending.right.size())));
+                }
+            }
+            pendingList = nextPendingList;
+        }
+    }
+
+    /**
+     * Returns the hierarchy of a cube whose name (or whose dimension's name,
+     * if the dimension has just one hierarchy) is a given segment, or null.
+     */
+    private static Hierarchy lookupHierarchy(Cube cube, Id.Segment name) {
+        final String uniqueName = Util.quoteMdxIdentifier(name.name);
+        for (Dimension dimension : cube.getDimensions()) {
+            if (dimension.isMeasures()) {
+                continue;
+            }
+            final Hierarchy[] hierarchies = dimension.getHierarchies();
+            for (Hierarchy hierarchy : hierarchies) {
+                if (Util.equalName(hierarchy.getUniqueName(), uniqueName)
+                    || hierarchies.length == 1
+                    && Util.equalName(dimension.getName(), name.name))
+                {
+                    return hierarchy;
+                }
+            }
+        }
+        return null;
+    }
+
     public Member getCalculatedMember(List<Id.Segment> nameParts) {
         // There are no calculated members defined against a schema.
         return null;
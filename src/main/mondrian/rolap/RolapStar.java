@@ -16,7 +16,10 @@ package mondrian.rolap;
 import mondrian.olap.*;
 import mondrian.rolap.agg.Aggregation;
 import mondrian.rolap.agg.AggregationKey;
+import mondrian.rolap.agg.InMemoryPartition;
+import mondrian.rolap.agg.ValueDictionary;
 import mondrian.rolap.aggmatcher.AggStar;
+import mondrian.rolap.cache.CachePool;
 import mondrian.rolap.sql.SqlQuery;
 import mondrian.spi.DataSourceChangeListener;
 import mondrian.spi.Dialect;
@@ -31,6 +34,10 @@ import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A <code>RolapStar</code> is a star schema. It is the means to read cell
@@ -138,6 +145,11 @@ public class RolapStar {
      */
     private boolean cacheAggregations;
 
+    /**
+     * Number of times cells of this star have been flushed.
+     */
+    private final AtomicInteger flushCount = new AtomicInteger();
+
     /**
      * Partially ordered list of AggStars associated with this RolapStar's fact
      * table
@@ -146,6 +158,173 @@ public class RolapStar {
 
     private DataSourceChangeListener changeListener;
 
+    /**
+     * Aggregations in the global cache which a
+     * {@link DataSourceChangeMonitor} has found to have changed, and which
+     * the next query will replace. Guarded by {@link #sharedAggregations}.
+     */
+    private final Map<AggregationKey, Aggregation> changedAggregations =
+        new HashMap<AggregationKey, Aggregation>();
+
+    /**
+     * Number of entries in {@link #changedAggregations}; read by each query
+     * without acquiring a lock.
+     */
+    private volatile int changedAggregationCount;
+
+    /**
+     * Segments in the global cache, as seen by the {@link CachePool}. The
+     * pool holds it via a weak reference, so the star must hold it.
+     */
+    private final CachePool.Cache segmentCache =
+        new CachePool.Cache() {
+            public long getByteCount() {
+                // Sum while holding the lock, rather than copying the map;
+                // an aggregation's list of segments needs no lock.
+                long byteCount = 0;
+                synchronized (sharedAggregations) {
+                    for (Aggregation aggregation
+                        : sharedAggregations.values())
+                    {
+                        byteCount += aggregation.getByteCount();
+                    }
+                }
+                return byteCount;
+            }
+
+            public long evict(long byteCount) {
+                return Aggregation.evictSegments(
+                    copySharedAggregations().values(), byteCount);
+            }
+        };
+
+    /**
+     * Dictionaries of the columns of this star, as seen by the
+     * {@link CachePool}. These are the current dictionaries of the columns,
+     * and earlier dictionaries which cached segments still use.
+     *
+     * <p>A dictionary which a segment uses is released only when the
+     * segment is evicted, so evicting replaces only the dictionaries which
+     * no segment uses, the largest first.
+     */
+    private final CachePool.Cache dictionaryCache =
+        new CachePool.Cache() {
+            public long getByteCount() {
+                final Set<ValueDictionary> dictionaries =
+                    getDictionariesInUse();
+                for (Column column : getAllColumns()) {
+                    dictionaries.add(column.getDictionary());
+                }
+                long byteCount = 0;
+                for (ValueDictionary dictionary : dictionaries) {
+                    byteCount += dictionary.getByteCount();
+                }
+                return byteCount;
+            }
+
+            public long evict(long byteCount) {
+                final Set<ValueDictionary> inUse = getDictionariesInUse();
+                final List<Column> columns = new ArrayList<Column>();
+                for (Column column : getAllColumns()) {
+                    if (!inUse.contains(column.getDictionary())) {
+                        columns.add(column);
+                    }
+                }
+                Collections.sort(
+                    columns,
+                    new Comparator<Column>() {
+                        public int compare(Column c0, Column c1) {
+                            final long size0 =
+                                c0.getDictionary().getByteCount();
+                            final long size1 =
+                                c1.getDictionary().getByteCount();
+                            return size0 > size1 ? -1
+                                : size0 < size1 ? 1
+                                : 0;
+                        }
+                    });
+                long evicted = 0;
+                for (Column column : columns) {
+                    if (evicted >= byteCount) {
+                        break;
+                    }
+                    evicted += column.clearDictionary().getByteCount();
+                }
+                return evicted;
+            }
+        };
+
+    /**
+     * Returns the dictionaries used by the segments of this star's global
+     * cache. (Segments in statements' local caches are not counted; they
+     * live only as long as their statement.)
+     *
+     * @return Set of dictionaries, which the caller may modify
+     */
+    private Set<ValueDictionary> getDictionariesInUse() {
+        final Set<ValueDictionary> dictionaries =
+            new HashSet<ValueDictionary>();
+        Aggregation.collectDictionaries(
+            copySharedAggregations().values(), dictionaries);
+        return dictionaries;
+    }
+
+    /**
+     * Whether to hold the data of this star in memory.
+     *
+     * @see #isInMemory()
+     */
+    private boolean inMemory;
+
+    /**
+     * In-memory copy of the data of this star, or null if it is not
+     * in-memory or its data has not been read yet.
+     */
+    private volatile InMemoryPartition inMemoryPartition;
+
+    /**
+     * Number of times {@link #refreshInMemoryPartition()} has been called.
+     * A background read stores its partition only if no later refresh has
+     * started. Guarded by this star.
+     */
+    private int inMemoryGeneration;
+
+    /**
+     * In-memory partition of this star, as seen by the {@link CachePool}.
+     * Evicting discards the partition; segments are then loaded using SQL
+     * until {@link #refreshInMemoryPartition()} is next called.
+     */
+    private final CachePool.Cache partitionCache =
+        new CachePool.Cache() {
+            public long getByteCount() {
+                final InMemoryPartition partition = inMemoryPartition;
+                return partition == null ? 0 : partition.getByteCount();
+            }
+
+            public long evict(long byteCount) {
+                final InMemoryPartition partition;
+                synchronized (RolapStar.this) {
+                    partition = inMemoryPartition;
+                    if (partition == null) {
+                        return 0;
+                    }
+                    // Prevent a read in progress from storing its partition.
+                    ++inMemoryGeneration;
+                    inMemoryPartition = null;
+                }
+                LOGGER.warn(
+                    "Discarded in-memory copy of star " + factTable.alias
+                    + " to free memory; its segments will be loaded using"
+                    + " SQL");
+                return partition.getByteCount();
+            }
+        };
+
+    /**
+     * Thread which reads in-memory partitions, shared by all stars.
+     */
+    private static ExecutorService inMemoryExecutor;
+
     // temporary model, should eventually use RolapStar.Table and
     // RolapStar.Column
     private StarNetworkNode factNode;
@@ -181,7 +360,25 @@ public class RolapStar {
 
         this.sqlQueryDialect = schema.getDialect();
 
-        this.changeListener = schema.getDataSourceChangeListener();
+        // If a monitor polls the listener in the background, queries do not
+        // call it.
+        this.changeListener =
+            schema.getDataSourceChangeMonitor() == null
+                ? schema.getDataSourceChangeListener()
+                : null;
+
+        CachePool.instance().register(
+            "segments:" + factTable.alias,
+            CachePool.SEGMENT_PRIORITY,
+            segmentCache);
+        CachePool.instance().register(
+            "dictionaries:" + factTable.alias,
+            CachePool.SEGMENT_PRIORITY,
+            dictionaryCache);
+        CachePool.instance().register(
+            "partition:" + factTable.alias,
+            CachePool.SEGMENT_PRIORITY,
+            partitionCache);
     }
 
     private static class StarNetworkNode {
@@ -496,6 +693,127 @@ public class RolapStar {
         return this.cacheAggregations;
     }
 
+    /**
+     * Returns whether a value computed from the data of this star may be
+     * cached outside the star's aggregations and used by later queries. It
+     * may not if aggregations are flushed after each query, or if a
+     * {@link DataSourceChangeListener} may report that the data has changed.
+     *
+     * @see #getFlushCount()
+     */
+    boolean isCacheValues() {
+        return cacheAggregations
+            && !RolapStar.disableCaching
+            && changeListener == null;
+    }
+
+    /**
+     * Returns the number of times cells of this star have been flushed. A
+     * value cached outside the star's aggregations is valid only while this
+     * number is unchanged.
+     *
+     * @see #isCacheValues()
+     */
+    int getFlushCount() {
+        return flushCount.get();
+    }
+
+    /**
+     * Sets whether to hold the data of this star in memory. Does not read
+     * the data; call {@link #refreshInMemoryPartition()} to do that.
+     *
+     * @param inMemory Whether to hold data in memory
+     */
+    void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
+
+    /**
+     * Returns whether the data of this star is held in memory. It is if the
+     * <code>inMemory</code> attribute of any cube based on this star is
+     * true.
+     *
+     * @see mondrian.rolap.agg.InMemoryPartition
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * Returns the in-memory copy of the data of this star, or null if this
+     * star is not in-memory, or its data has not been read yet, or it was
+     * too large.
+     *
+     * @return In-memory partition, or null
+     */
+    public InMemoryPartition getInMemoryPartition() {
+        return inMemoryPartition;
+    }
+
+    /**
+     * Discards the in-memory copy of the data of this star, and starts to
+     * read the data again in a background thread. Until the read completes,
+     * segments are loaded using SQL. Does nothing if this star is not
+     * in-memory.
+     */
+    public void refreshInMemoryPartition() {
+        if (!inMemory) {
+            return;
+        }
+        final int generation;
+        synchronized (this) {
+            generation = ++inMemoryGeneration;
+            inMemoryPartition = null;
+        }
+        getInMemoryExecutor().execute(
+            new Runnable() {
+                public void run() {
+                    synchronized (RolapStar.this) {
+                        if (generation != inMemoryGeneration) {
+                            // A later refresh will read the data.
+                            return;
+                        }
+                    }
+                    final InMemoryPartition partition;
+                    try {
+                        partition = InMemoryPartition.materialize(
+                            RolapStar.this);
+                    } catch (Throwable e) {
+                        LOGGER.error(
+                            "Error while reading star " + factTable.alias
+                            + " into memory; its segments will be loaded"
+                            + " using SQL",
+                            e);
+                        return;
+                    }
+                    synchronized (RolapStar.this) {
+                        if (generation == inMemoryGeneration) {
+                            inMemoryPartition = partition;
+                        }
+                    }
+                }
+            }
+        );
+    }
+
+    private static synchronized ExecutorService getInMemoryExecutor() {
+        if (inMemoryExecutor == null) {
+            inMemoryExecutor =
+                Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            final Thread thread =
+                                new Thread(
+                                    r, "mondrian.rolap.InMemoryPartition");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    }
+                );
+        }
+        return inMemoryExecutor;
+    }
+
     /**
      * Clears the aggregate cache. This only does something if aggregate caching
      * is disabled (see {@link #setCacheAggregations(boolean)}).
@@ -515,10 +833,12 @@ public class RolapStar {
             }
 
             if (forced) {
+                flushCount.incrementAndGet();
                 synchronized (sharedAggregations) {
                     sharedAggregations.clear();
                 }
                 localAggregations.get().clear();
+                clearDictionaries(null);
             } else {
                 // Only clear aggregation cache for the currect thread context.
                 localAggregations.get().clear();
@@ -585,6 +905,52 @@ public class RolapStar {
         return aggregation;
     }
 
+    /**
+     * Returns the aggregations, local to this thread or global, whose columns
+     * are a proper superset of a given set of columns.
+     *
+     * <p>Thread local aggregations take precedence over global aggregations
+     * with the same key.
+     *
+     * @param bitKey Columns
+     * @return List of aggregations
+     */
+    public List<Aggregation> lookupAggregationsAbove(BitKey bitKey) {
+        final Map<AggregationKey, Aggregation> map =
+            new LinkedHashMap<AggregationKey, Aggregation>();
+        for (Map.Entry<AggregationKey, Aggregation> entry
+            : localAggregations.get().entrySet())
+        {
+            addAggregationAbove(bitKey, entry, map);
+        }
+        if (cacheAggregations && !RolapStar.disableCaching) {
+            synchronized (sharedAggregations) {
+                for (Map.Entry<AggregationKey, Aggregation> entry
+                    : sharedAggregations.entrySet())
+                {
+                    if (!map.containsKey(entry.getKey())) {
+                        addAggregationAbove(bitKey, entry, map);
+                    }
+                }
+            }
+        }
+        return new ArrayList<Aggregation>(map.values());
+    }
+
+    private static void addAggregationAbove(
+        BitKey bitKey,
+        Map.Entry<AggregationKey, Aggregation> entry,
+        Map<AggregationKey, Aggregation> map)
+    {
+        final BitKey aggregationBitKey =
+            entry.getKey().getConstrainedColumnsBitKey();
+        if (aggregationBitKey.isSuperSetOf(bitKey)
+            && !aggregationBitKey.equals(bitKey))
+        {
+            map.put(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Checks whether an aggregation has changed since the last the time
      * loaded.
@@ -602,6 +968,10 @@ public class RolapStar {
         // is finished
         clearAggregationRequests();
 
+        if (changedAggregationCount > 0) {
+            replaceChangedAggregations();
+        }
+
         if (changeListener != null) {
             if (cacheAggregations && !RolapStar.disableCaching) {
                 synchronized (sharedAggregations) {
@@ -628,6 +998,67 @@ public class RolapStar {
         }
     }
 
+    /**
+     * Replaces, with new thread local aggregations, the aggregations in the
+     * global cache which have been marked as changed.
+     */
+    private void replaceChangedAggregations() {
+        if (!cacheAggregations || RolapStar.disableCaching) {
+            return;
+        }
+        synchronized (sharedAggregations) {
+            final Iterator<Map.Entry<AggregationKey, Aggregation>> it =
+                changedAggregations.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<AggregationKey, Aggregation> e = it.next();
+                final AggregationKey aggregationKey = e.getKey();
+                if (sharedAggregations.get(aggregationKey) != e.getValue()) {
+                    // Aggregation has already been replaced in the global
+                    // cache.
+                    it.remove();
+                    continue;
+                }
+                if (!localAggregations.get().containsKey(aggregationKey)) {
+                    localAggregations.get().put(
+                        aggregationKey, new Aggregation(aggregationKey));
+                }
+            }
+            changedAggregationCount = changedAggregations.size();
+        }
+    }
+
+    /**
+     * Marks an aggregation in the global cache as changed. The next query to
+     * start on any thread will replace it with a new aggregation. Called by
+     * a {@link DataSourceChangeMonitor}.
+     *
+     * @param aggregationKey Key of aggregation
+     * @param aggregation Aggregation
+     */
+    void markAggregationChanged(
+        AggregationKey aggregationKey,
+        Aggregation aggregation)
+    {
+        synchronized (sharedAggregations) {
+            if (sharedAggregations.get(aggregationKey) == aggregation) {
+                changedAggregations.put(aggregationKey, aggregation);
+                changedAggregationCount = changedAggregations.size();
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the global cache of aggregations.
+     *
+     * @return Map of aggregations in the global cache
+     */
+    Map<AggregationKey, Aggregation> copySharedAggregations() {
+        synchronized (sharedAggregations) {
+            return new HashMap<AggregationKey, Aggregation>(
+                sharedAggregations);
+        }
+    }
+
     /**
      * Checks whether changed modifications may be pushed into global cache.
      *
@@ -728,6 +1159,8 @@ public class RolapStar {
      */
     private void recordAggregationRequest(AggregationKey aggregationKey) {
         if (!localAggregationRequests.get().contains(aggregationKey)) {
+            // The key may belong to a cell probe, which will modify it.
+            aggregationKey = aggregationKey.toImmutable();
             synchronized (aggregationRequests) {
                 aggregationRequests.add(aggregationKey);
             }
@@ -929,7 +1362,13 @@ public class RolapStar {
             }
             final String columnName = columnNameList.get(k);
             String alias = query.addSelect(columnExpr, columnName);
-            if (!(column instanceof Measure)) {
+            if (!(column instanceof Measure)
+                || ((Measure) column).getAggregator()
+                    == RolapAggregator.ApproxDistinctCount)
+            {
+                // An approx-distinct-count measure is populated with the
+                // distinct values, which are merged into sketches as they
+                // are read.
                 query.addGroupBy(columnExpr, alias);
             }
         }
@@ -994,9 +1433,34 @@ public class RolapStar {
         // Translate the region into a set of (column, value) constraints.
         final RolapCacheRegion cacheRegion =
             RolapAggregationManager.makeCacheRegion(this, region);
+        flushCount.incrementAndGet();
         for (Aggregation aggregation : sharedAggregations.values()) {
             aggregation.flush(cacheControl, cacheRegion);
         }
+        clearDictionaries(cacheRegion.getConstrainedColumnsBitKey());
+        refreshInMemoryPartition();
+    }
+
+    /**
+     * Returns a list of the columns of this star, including measures.
+     */
+    private List<Column> getAllColumns() {
+        final List<Column> columns = new ArrayList<Column>();
+        collectColumns(columns, factTable, null);
+        return columns;
+    }
+
+    /**
+     * Clears the dictionaries of columns whose segments have been flushed.
+     *
+     * @param bitKey Columns to clear, or null to clear all columns
+     */
+    private void clearDictionaries(BitKey bitKey) {
+        for (Column column : getAllColumns()) {
+            if (bitKey == null || bitKey.get(column.getBitPosition())) {
+                column.clearDictionary();
+            }
+        }
     }
 
     /**
@@ -1053,6 +1517,12 @@ public class RolapStar {
 
         private int cardinality = -1;
 
+        /**
+         * Codes of the values of this column which appear on segment axes.
+         * Replaced by its successor when the column's segments are flushed.
+         */
+        private volatile ValueDictionary dictionary = new ValueDictionary();
+
         private Column(
             String name,
             Table table,
@@ -1128,6 +1598,29 @@ public class RolapStar {
             return bitPosition;
         }
 
+        /**
+         * Returns the dictionary which assigns codes to the values of this
+         * column.
+         *
+         * @return Dictionary of values
+         */
+        public ValueDictionary getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * Replaces this column's dictionary with an empty one. Segments
+         * which were loaded using the previous dictionary keep it, and are
+         * searched by value; it is garbage-collected with them.
+         *
+         * @return Previous dictionary
+         */
+        ValueDictionary clearDictionary() {
+            final ValueDictionary previous = dictionary;
+            dictionary = new ValueDictionary();
+            return previous;
+        }
+
         public RolapStar getStar() {
             return table.star;
         }
@@ -222,11 +222,50 @@ public class RolapUtil {
         String message,
         int resultSetType,
         int resultSetConcurrency)
+    {
+        return executeQuery(
+            dataSource, sql, Collections.<Object>emptyList(), maxRowCount,
+            firstRowOrdinal, component, message, resultSetType,
+            resultSetConcurrency);
+    }
+
+    /**
+     * Executes a query with parameters.
+     *
+     * <p>As {@link #executeQuery(javax.sql.DataSource, String, int, int,
+     * String, String, int, int)}, but binds the values of the query's
+     * parameters.
+     *
+     * @param dataSource DataSource
+     * @param sql SQL string
+     * @param parameters Values of parameters; see
+     *   {@link mondrian.rolap.sql.SqlQuery#getParameters()}
+     * @param maxRowCount Maximum number of rows to retrieve, <= 0 if unlimited
+     * @param firstRowOrdinal Ordinal of row to skip to (1-based), or 0 to
+     *   start from beginning
+     * @param component Description of a the component executing the query,
+     *   generally a method name, e.g. "SqlTupleReader.readTuples"
+     * @param message Description of the purpose of this statement, to be
+     *   printed if there is an error
+     * @param resultSetType Result set type, or -1 to use default
+     * @param resultSetConcurrency Result set concurrency, or -1 to use default
+     * @return ResultSet
+     */
+    public static SqlStatement executeQuery(
+        DataSource dataSource,
+        String sql,
+        List<Object> parameters,
+        int maxRowCount,
+        int firstRowOrdinal,
+        String component,
+        String message,
+        int resultSetType,
+        int resultSetConcurrency)
     {
         SqlStatement stmt =
             new SqlStatement(
-                dataSource, sql, maxRowCount, firstRowOrdinal, component,
-                message, resultSetType, resultSetConcurrency);
+                dataSource, sql, parameters, maxRowCount, firstRowOrdinal,
+                component, message, resultSetType, resultSetConcurrency);
         stmt.execute();
         return stmt;
     }
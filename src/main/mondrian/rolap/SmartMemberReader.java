@@ -14,10 +14,14 @@
 
 package mondrian.rolap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import mondrian.olap.Id;
 import mondrian.olap.Util;
@@ -25,6 +29,7 @@ import mondrian.rolap.TupleReader.MemberBuilder;
 import mondrian.rolap.sql.MemberChildrenConstraint;
 import mondrian.rolap.sql.TupleConstraint;
 import mondrian.util.ConcatenableList;
+import mondrian.util.Pair;
 
 /**
  * <code>SmartMemberReader</code> implements {@link MemberReader} by keeping a
@@ -212,6 +217,270 @@ public class SmartMemberReader implements MemberReader {
         }
     }
 
+    /**
+     * Reads into the cache the descendants of a list of members, down to a
+     * given level, using one SQL statement.
+     *
+     * <p>Without prefetch, an expression such as <code>Descendants</code>
+     * reads the members one level at a time, and a caller which asks for the
+     * children of parents one at a time issues one statement per parent.
+     * This method reads the members of <code>level</code> which are
+     * descendants of the parents, and with them their ancestors, and stores
+     * the children of each parent and of each intermediate member in the
+     * cache.
+     *
+     * <p>Does nothing if the parents do not all belong to the same level, if
+     * the hierarchy is ragged, or if any of the levels involved is
+     * parent-child; in these cases a member's children cannot be deduced
+     * from the members of a lower level.
+     *
+     * @param parentMembers Members whose descendants to read
+     * @param level Deepest level of descendants to read
+     * @param constraint Constraint on children
+     */
+    public void prefetchDescendants(
+        List<RolapMember> parentMembers,
+        RolapLevel level,
+        MemberChildrenConstraint constraint)
+    {
+        synchronized (cacheHelper) {
+            checkCacheStatus();
+
+            RolapLevel parentLevel = null;
+            List<RolapMember> missed = new ArrayList<RolapMember>();
+            for (RolapMember parentMember : parentMembers) {
+                if (parentMember.isCalculated() || parentMember.isNull()) {
+                    continue;
+                }
+                if (parentLevel == null) {
+                    parentLevel = parentMember.getLevel();
+                } else if (parentMember.getLevel() != parentLevel) {
+                    return;
+                }
+                if (cacheHelper.getChildrenFromCache(parentMember, constraint)
+                    == null)
+                {
+                    missed.add(parentMember);
+                }
+            }
+            if (missed.isEmpty() || !canPrefetch(parentLevel, level)) {
+                return;
+            }
+            if (level.getDepth() == parentLevel.getDepth() + 1) {
+                // The usual path reads the children of one parent in one
+                // statement; only a batch of parents gains anything.
+                if (missed.size() > 1) {
+                    readMemberChildren(
+                        missed, new ArrayList<RolapMember>(), constraint);
+                }
+                return;
+            }
+            final List<RolapMember> descendants =
+                source.getMembersInLevel(
+                    level, 0, Integer.MAX_VALUE,
+                    sqlConstraintFactory.getDescendantsConstraint(
+                        missed, constraint));
+            putDescendants(missed, parentLevel, descendants, constraint);
+        }
+    }
+
+    /**
+     * Returns whether the children of members of a given level and of the
+     * levels beneath it, down to another level, can be deduced from the
+     * members of the lower level.
+     */
+    private static boolean canPrefetch(
+        RolapLevel parentLevel,
+        RolapLevel level)
+    {
+        if (parentLevel.getHierarchy() != level.getHierarchy()
+            || level.getDepth() <= parentLevel.getDepth()
+            || level.getHierarchy().isRagged())
+        {
+            return false;
+        }
+        final RolapLevel[] levels =
+            (RolapLevel[]) level.getHierarchy().getLevels();
+        for (int i = parentLevel.getDepth(); i <= level.getDepth(); i++) {
+            if (levels[i].isParentChild()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores in the cache the children of a list of parents, and of their
+     * descendants above a given level, deduced from the descendants at that
+     * level.
+     *
+     * @param parentMembers Parents, all of the same level
+     * @param parentLevel Level of parents
+     * @param descendants Descendants of the parents at a lower level, in
+     *   hierarchical order
+     * @param constraint Constraint on children
+     */
+    private void putDescendants(
+        List<RolapMember> parentMembers,
+        RolapLevel parentLevel,
+        List<RolapMember> descendants,
+        MemberChildrenConstraint constraint)
+    {
+        final Map<RolapMember, List<RolapMember>> childrenMap =
+            new HashMap<RolapMember, List<RolapMember>>();
+        for (RolapMember parentMember : parentMembers) {
+            childrenMap.put(parentMember, new ArrayList<RolapMember>());
+        }
+        final HashSet<RolapMember> seen = new HashSet<RolapMember>();
+        for (RolapMember member : descendants) {
+            RolapMember child = member;
+            while (child.getDepth() > parentLevel.getDepth()
+                && seen.add(child))
+            {
+                final RolapMember parent = child.getParentMember();
+                List<RolapMember> children = childrenMap.get(parent);
+                if (children == null) {
+                    if (parent.getLevel() == parentLevel) {
+                        // Not one of the parents we asked for.
+                        break;
+                    }
+                    children = new ArrayList<RolapMember>();
+                    childrenMap.put(parent, children);
+                }
+                if (child.getKey() == RolapUtil.sqlNullValue) {
+                    // As in SqlMemberSource, the null member comes first.
+                    children.add(0, child);
+                } else {
+                    children.add(child);
+                }
+                child = parent;
+            }
+        }
+        for (Map.Entry<RolapMember, List<RolapMember>> entry
+            : childrenMap.entrySet())
+        {
+            final RolapMember member = entry.getKey();
+            if (cacheHelper.getChildrenFromCache(member, constraint) == null) {
+                cacheHelper.putChildren(member, constraint, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads into the cache the children of several parents that have given
+     * names, using one SQL statement.
+     *
+     * <p>Looking up a member by name, for example [Customers].[USA].[CA],
+     * reads the children of each ancestor that have the next name in the
+     * identifier. After this method, such lookups for the given parents
+     * and names are answered from the cache.
+     *
+     * <p>Does nothing if the parents do not belong to the same level, or if
+     * children are not looked up by name in this hierarchy.
+     *
+     * @param parentMembers Parent members
+     * @param childNames Names of children
+     */
+    public void prefetchChildrenByName(
+        List<RolapMember> parentMembers,
+        Collection<Id.Segment> childNames)
+    {
+        synchronized (cacheHelper) {
+            checkCacheStatus();
+
+            final Set<RolapMember> missedParents =
+                new LinkedHashSet<RolapMember>();
+            final Set<Id.Segment> missedNames =
+                new LinkedHashSet<Id.Segment>();
+            RolapLevel parentLevel = null;
+            for (RolapMember parentMember : parentMembers) {
+                if (parentMember.isCalculated() || parentMember.isNull()) {
+                    continue;
+                }
+                if (parentLevel == null) {
+                    parentLevel = parentMember.getLevel();
+                    if (parentLevel.isParentChild()
+                        || parentLevel.getChildLevel() == null
+                        || ((RolapLevel) parentLevel.getChildLevel())
+                            .isParentChild())
+                    {
+                        return;
+                    }
+                } else if (parentMember.getLevel() != parentLevel) {
+                    return;
+                }
+                for (Id.Segment childName : childNames) {
+                    final MemberChildrenConstraint constraint =
+                        sqlConstraintFactory.getChildByNameConstraint(
+                            parentMember, childName);
+                    if (!(constraint instanceof ChildByNameConstraint)) {
+                        // Lookups in this hierarchy read all children.
+                        return;
+                    }
+                    if (cacheHelper.getChildrenFromCache(
+                            parentMember, constraint) == null)
+                    {
+                        missedParents.add(parentMember);
+                        missedNames.add(childName);
+                    }
+                }
+            }
+            if (missedParents.size() + missedNames.size() <= 2) {
+                // One parent and one name; the usual path is just as good.
+                return;
+            }
+            final List<RolapMember> children = new ArrayList<RolapMember>();
+            source.getMemberChildren(
+                new ArrayList<RolapMember>(missedParents),
+                children,
+                new ChildByNameConstraint(
+                    new ArrayList<Id.Segment>(missedNames)));
+
+            // A child may match more than one name, and several children
+            // may have the same name.
+            final Map<Pair<RolapMember, Id.Segment>, List<RolapMember>> map =
+                new HashMap<Pair<RolapMember, Id.Segment>, List<RolapMember>>();
+            for (RolapMember child : children) {
+                for (Id.Segment childName : missedNames) {
+                    if (!Util.equalName(child.getName(), childName.name)) {
+                        continue;
+                    }
+                    final Pair<RolapMember, Id.Segment> key =
+                        new Pair<RolapMember, Id.Segment>(
+                            child.getParentMember(), childName);
+                    List<RolapMember> list = map.get(key);
+                    if (list == null) {
+                        list = new ArrayList<RolapMember>();
+                        map.put(key, list);
+                    }
+                    list.add(child);
+                }
+            }
+
+            // Only cache the names that were found. A name that was not
+            // found may still match a member by some rule that the database
+            // applies but this method does not, so leave it to the usual
+            // path.
+            for (Map.Entry<Pair<RolapMember, Id.Segment>, List<RolapMember>>
+                entry : map.entrySet())
+            {
+                final RolapMember parentMember = entry.getKey().left;
+                if (!missedParents.contains(parentMember)) {
+                    continue;
+                }
+                final MemberChildrenConstraint constraint =
+                    sqlConstraintFactory.getChildByNameConstraint(
+                        parentMember, entry.getKey().right);
+                if (cacheHelper.getChildrenFromCache(parentMember, constraint)
+                    == null)
+                {
+                    cacheHelper.putChildren(
+                        parentMember, constraint, entry.getValue());
+                }
+            }
+        }
+    }
+
     public RolapMember lookupMember(
         List<Id.Segment> uniqueNameParts,
         boolean failIfNotFound)
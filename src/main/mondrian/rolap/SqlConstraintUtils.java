@@ -21,6 +21,7 @@ import mondrian.rolap.agg.*;
 import mondrian.rolap.sql.SqlQuery;
 import mondrian.rolap.aggmatcher.AggStar;
 import mondrian.util.FilteredIterableList;
+import mondrian.util.Pair;
 import mondrian.spi.Dialect;
 
 /**
@@ -730,6 +731,155 @@ public class SqlConstraintUtils {
         AggStar aggStar,
         String columnValue,
         boolean caseSensitive)
+    {
+        final Pair<String, Dialect.Datatype> pair =
+            levelNameExpression(level, query, baseCube, aggStar);
+        String columnString = pair.left;
+        final Dialect.Datatype datatype = pair.right;
+
+        String constraint;
+
+        if (RolapUtil.mdxNullLiteral().equalsIgnoreCase(columnValue)) {
+            constraint = columnString + " is " + RolapUtil.sqlNullLiteral;
+        } else {
+            if (datatype.isNumeric()) {
+                // make sure it can be parsed
+                Double.valueOf(columnValue);
+            }
+            final StringBuilder buf = new StringBuilder();
+            query.getDialect().quote(buf, columnValue, datatype);
+            String value = buf.toString();
+            if (caseSensitive && datatype == Dialect.Datatype.String) {
+                // Some databases (like DB2) compare case-sensitive. We convert
+                // the value to upper-case in the DBMS (e.g. UPPER('Foo'))
+                // rather than in Java (e.g. 'FOO') in case the DBMS is running
+                // a different locale.
+                if (!MondrianProperties.instance().CaseSensitive.get()) {
+                    columnString = query.getDialect().toUpper(columnString);
+                    value = query.getDialect().toUpper(value);
+                }
+            }
+
+            constraint = columnString + " = " + value;
+        }
+
+        return constraint;
+    }
+
+    /**
+     * Generates a sql expression constraining a level to any of a list of
+     * values. Like the method which constrains a level to a single value,
+     * but generates an IN list.
+     *
+     * <p>Values which cannot match the level, such as non-numeric values
+     * for a numeric level, are ignored. Unless the dialect supports unlimited
+     * value lists, the values are split into IN lists of at most
+     * {@link MondrianProperties#MaxConstraints} values each, joined with
+     * OR.
+     *
+     * @param level the level
+     * @param query the query that the sql expression will be added to
+     * @param baseCube base cube for virtual levels
+     * @param aggStar aggregate star if available
+     * @param columnValues values constraining the level
+     * @param caseSensitive if true, need to handle case sensitivity of the
+     * member value
+     *
+     * @return generated string corresponding to the expression
+     */
+    public static String constrainLevel(
+        RolapLevel level,
+        SqlQuery query,
+        RolapCube baseCube,
+        AggStar aggStar,
+        Collection<String> columnValues,
+        boolean caseSensitive)
+    {
+        final Pair<String, Dialect.Datatype> pair =
+            levelNameExpression(level, query, baseCube, aggStar);
+        String columnString = pair.left;
+        final Dialect.Datatype datatype = pair.right;
+        final boolean upper =
+            caseSensitive
+            && datatype == Dialect.Datatype.String
+            && !MondrianProperties.instance().CaseSensitive.get();
+        if (upper) {
+            columnString = query.getDialect().toUpper(columnString);
+        }
+
+        final int maxConstraints =
+            query.getDialect().supportsUnlimitedValueList()
+                ? Integer.MAX_VALUE
+                : Math.max(
+                    1, MondrianProperties.instance().MaxConstraints.get());
+        boolean hasNull = false;
+        final List<String> inConstraints = new ArrayList<String>();
+        final StringBuilder buf = new StringBuilder();
+        int count = 0;
+        for (String columnValue : columnValues) {
+            if (RolapUtil.mdxNullLiteral().equalsIgnoreCase(columnValue)) {
+                hasNull = true;
+                continue;
+            }
+            if (datatype.isNumeric()) {
+                try {
+                    Double.valueOf(columnValue);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+            }
+            if (count == maxConstraints) {
+                inConstraints.add(columnString + " in (" + buf + ")");
+                buf.setLength(0);
+                count = 0;
+            }
+            final StringBuilder valueBuf = new StringBuilder();
+            query.getDialect().quote(valueBuf, columnValue, datatype);
+            buf.append(count++ == 0 ? "" : ", ")
+                .append(
+                    upper
+                    ? query.getDialect().toUpper(valueBuf.toString())
+                    : valueBuf.toString());
+        }
+        if (count > 0) {
+            inConstraints.add(columnString + " in (" + buf + ")");
+        }
+        if (hasNull) {
+            inConstraints.add(columnString + " is " + RolapUtil.sqlNullLiteral);
+        }
+
+        switch (inConstraints.size()) {
+        case 0:
+            return "1 = 0";
+        case 1:
+            return inConstraints.get(0);
+        default:
+            final StringBuilder orBuf = new StringBuilder("(");
+            for (int i = 0; i < inConstraints.size(); i++) {
+                if (i > 0) {
+                    orBuf.append(" or ");
+                }
+                orBuf.append(inConstraints.get(i));
+            }
+            return orBuf.append(")").toString();
+        }
+    }
+
+    /**
+     * Returns the expression by which members of a level are matched by
+     * name, and its datatype.
+     *
+     * @param level the level
+     * @param query the query that the sql expression will be added to
+     * @param baseCube base cube for virtual levels
+     * @param aggStar aggregate star if available
+     * @return expression and its datatype
+     */
+    private static Pair<String, Dialect.Datatype> levelNameExpression(
+        RolapLevel level,
+        SqlQuery query,
+        RolapCube baseCube,
+        AggStar aggStar)
     {
         // this method can be called within the context of shared members,
         // outside of the normal rolap star, therefore we need to
@@ -773,34 +923,7 @@ public class SqlConstraintUtils {
             }
             columnString = exp.getExpression(query);
         }
-
-        String constraint;
-
-        if (RolapUtil.mdxNullLiteral().equalsIgnoreCase(columnValue)) {
-            constraint = columnString + " is " + RolapUtil.sqlNullLiteral;
-        } else {
-            if (datatype.isNumeric()) {
-                // make sure it can be parsed
-                Double.valueOf(columnValue);
-            }
-            final StringBuilder buf = new StringBuilder();
-            query.getDialect().quote(buf, columnValue, datatype);
-            String value = buf.toString();
-            if (caseSensitive && datatype == Dialect.Datatype.String) {
-                // Some databases (like DB2) compare case-sensitive. We convert
-                // the value to upper-case in the DBMS (e.g. UPPER('Foo'))
-                // rather than in Java (e.g. 'FOO') in case the DBMS is running
-                // a different locale.
-                if (!MondrianProperties.instance().CaseSensitive.get()) {
-                    columnString = query.getDialect().toUpper(columnString);
-                    value = query.getDialect().toUpper(value);
-                }
-            }
-
-            constraint = columnString + " = " + value;
-        }
-
-        return constraint;
+        return new Pair<String, Dialect.Datatype>(columnString, datatype);
     }
 
     /**
@@ -1157,7 +1280,10 @@ public class SqlConstraintUtils {
             if (!dialect.supportsUnlimitedValueList()
                 && cc instanceof ListColumnPredicate
                 && ((ListColumnPredicate) cc).getPredicates().size()
-                > maxConstraints)
+                > maxConstraints
+                && !sqlQuery.shouldBindArray(
+                    level.getDatatype(),
+                    ((ListColumnPredicate) cc).getPredicates().size()))
             {
                 // Simply get them all, do not create where-clause.
                 // Below are two alternative approaches (and code). They
@@ -10,6 +10,7 @@
 package mondrian.rolap;
 
 import mondrian.olap.Util;
+import mondrian.rolap.sql.SqlQuery;
 import mondrian.util.DelegatingInvocationHandler;
 
 import javax.sql.DataSource;
@@ -55,6 +56,7 @@ public class SqlStatement {
     private Connection jdbcConnection;
     private ResultSet resultSet;
     private final String sql;
+    private final List<Object> parameters;
     private final int maxRows;
     private final int firstRowOrdinal;
     private final String component;
@@ -77,6 +79,8 @@ public class SqlStatement {
      *
      * @param dataSource Data source
      * @param sql SQL
+     * @param parameters Values of parameters of SQL; see
+     *   {@link mondrian.rolap.sql.SqlQuery#getParameters()}
      * @param maxRows Maximum rows; <= 0 means no maximum
      * @param firstRowOrdinal Ordinal of first row to skip to; <= 0 do not skip
      * @param component Description of component/purpose of this statement
@@ -87,6 +91,7 @@ public class SqlStatement {
     SqlStatement(
         DataSource dataSource,
         String sql,
+        List<Object> parameters,
         int maxRows,
         int firstRowOrdinal,
         String component,
@@ -96,6 +101,7 @@ public class SqlStatement {
     {
         this.dataSource = dataSource;
         this.sql = sql;
+        this.parameters = parameters;
         this.maxRows = maxRows;
         this.firstRowOrdinal = firstRowOrdinal;
         this.component = component;
@@ -130,6 +136,10 @@ public class SqlStatement {
                 }
                 sqllog.append(sql);
                 sqllog.append(']');
+                if (!parameters.isEmpty()) {
+                    sqllog.append(" with parameters ")
+                        .append(parameters);
+                }
                 RolapUtil.SQL_LOGGER.debug(sqllog.toString());
             }
 
@@ -139,7 +149,19 @@ public class SqlStatement {
                 hook.onExecuteQuery(sql);
             }
             startTime = System.currentTimeMillis();
-            if (resultSetType < 0 || resultSetConcurrency < 0) {
+            PreparedStatement preparedStatement = null;
+            if (!parameters.isEmpty()) {
+                if (resultSetType < 0 || resultSetConcurrency < 0) {
+                    preparedStatement = jdbcConnection.prepareStatement(sql);
+                } else {
+                    preparedStatement = jdbcConnection.prepareStatement(
+                        sql,
+                        resultSetType,
+                        resultSetConcurrency);
+                }
+                statement = preparedStatement;
+                bindParameters(preparedStatement);
+            } else if (resultSetType < 0 || resultSetConcurrency < 0) {
                 statement = jdbcConnection.createStatement();
             } else {
                 statement = jdbcConnection.createStatement(
@@ -149,7 +171,11 @@ public class SqlStatement {
             if (maxRows > 0) {
                 statement.setMaxRows(maxRows);
             }
-            this.resultSet = statement.executeQuery(sql);
+            if (preparedStatement != null) {
+                this.resultSet = preparedStatement.executeQuery();
+            } else {
+                this.resultSet = statement.executeQuery(sql);
+            }
 
             // skip to first row specified in request
             this.done = false;
@@ -201,6 +227,26 @@ public class SqlStatement {
         }
     }
 
+    /**
+     * Binds the values of this statement's parameters.
+     *
+     * @param preparedStatement Prepared statement
+     * @throws SQLException on error
+     */
+    private void bindParameters(PreparedStatement preparedStatement)
+        throws SQLException
+    {
+        for (int i = 0; i < parameters.size(); i++) {
+            final Object parameter = parameters.get(i);
+            if (parameter instanceof SqlQuery.ArrayParameter) {
+                ((SqlQuery.ArrayParameter) parameter).bind(
+                    preparedStatement, i + 1);
+            } else {
+                preparedStatement.setObject(i + 1, parameter);
+            }
+        }
+    }
+
     /**
      * Closes all resources (statement, result set) held by this
      * SqlStatement.
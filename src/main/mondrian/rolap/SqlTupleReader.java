@@ -368,10 +368,11 @@ public class SqlTupleReader implements TupleReader {
                         partialTargets.add(target);
                     }
                 }
-                String sql = makeLevelMembersSql(dataSource);
+                final List<Object> parameters = new ArrayList<Object>();
+                String sql = makeLevelMembersSql(dataSource, parameters);
                 assert sql != null && !sql.equals("");
                 stmt = RolapUtil.executeQuery(
-                    dataSource, sql, maxRows, 0,
+                    dataSource, sql, parameters, maxRows, 0,
                     "SqlTupleReader.readTuples " + partialTargets,
                     message,
                     -1, -1);
@@ -649,7 +650,19 @@ public class SqlTupleReader implements TupleReader {
         partialResult.add(row);
     }
 
-    String makeLevelMembersSql(DataSource dataSource) {
+    /**
+     * Generates the SQL statement to read the members of the levels of this
+     * reader's targets.
+     *
+     * @param dataSource Data source
+     * @param parameters List to which to add the values of the statement's
+     *   parameters
+     * @return SQL statement string
+     */
+    String makeLevelMembersSql(
+        DataSource dataSource,
+        List<Object> parameters)
+    {
         // In the case of a virtual cube, if we need to join to the fact
         // table, we do not necessarily have a single underlying fact table,
         // as the underlying base cubes in the virtual cube may all reference
@@ -705,7 +718,7 @@ public class SqlTupleReader implements TupleReader {
                         ? WhichSelect.LAST : WhichSelect.NOT_LAST;
                 selectString.append(prependString);
                 selectString.append(generateSelectForLevels(
-                    dataSource, baseCube, whichSelect));
+                    dataSource, baseCube, whichSelect, parameters));
                 prependString = UNION;
             }
 
@@ -713,7 +726,8 @@ public class SqlTupleReader implements TupleReader {
             constraint.getEvaluator().setContext(originalMeasure);
             return selectString.toString();
         } else {
-            return generateSelectForLevels(dataSource, cube, WhichSelect.ONLY);
+            return generateSelectForLevels(
+                dataSource, cube, WhichSelect.ONLY, parameters);
         }
     }
 
@@ -764,12 +778,15 @@ public class SqlTupleReader implements TupleReader {
      * @param baseCube this is the cube object for regular cubes, and the
      *   underlying base cube for virtual cubes
      * @param whichSelect Position of this select statement in a union
+     * @param parameters List to which to add the values of the statement's
+     *   parameters
      * @return SQL statement string
      */
     String generateSelectForLevels(
         DataSource dataSource,
         RolapCube baseCube,
-        WhichSelect whichSelect)
+        WhichSelect whichSelect,
+        List<Object> parameters)
     {
         String s =
             "while generating query to retrieve members of level(s) " + targets;
@@ -777,6 +794,7 @@ public class SqlTupleReader implements TupleReader {
         // Allow query to use optimization hints from the table definition
         SqlQuery sqlQuery = SqlQuery.newQuery(dataSource, s);
         sqlQuery.setAllowHints(true);
+        sqlQuery.setAllowParameters(true);
 
 
         Evaluator evaluator = getEvaluator(constraint);
@@ -798,7 +816,9 @@ public class SqlTupleReader implements TupleReader {
 
         constraint.addConstraint(sqlQuery, baseCube, aggStar);
 
-        return sqlQuery.toString();
+        final String sql = sqlQuery.toString();
+        parameters.addAll(sqlQuery.getParameters());
+        return sql;
     }
 
     boolean targetIsOnBaseCube(TargetBase target, RolapCube baseCube) {
@@ -10,6 +10,7 @@
 
 package mondrian.rolap.agg;
 
+import mondrian.rolap.RolapAggregator;
 import mondrian.rolap.RolapStar;
 import mondrian.rolap.StarColumnPredicate;
 import mondrian.rolap.StarPredicate;
@@ -73,7 +74,13 @@ public abstract class AbstractQuerySpec implements QuerySpec {
                 ? "*"
                 : measure.generateExprString(sqlQuery);
         String exprOuter = measure.getAggregator().getExpression(exprInner);
-        sqlQuery.addSelect(exprOuter, getMeasureAlias(i));
+        final String alias = sqlQuery.addSelect(exprOuter, getMeasureAlias(i));
+        if (measure.getAggregator() == RolapAggregator.ApproxDistinctCount
+            && isAggregate())
+        {
+            // Return each distinct value; they are counted in memory.
+            sqlQuery.addGroupBy(exprOuter, alias);
+        }
     }
 
     protected abstract boolean isAggregate();
@@ -155,8 +162,26 @@ public abstract class AbstractQuerySpec implements QuerySpec {
     }
 
     public String generateSqlQuery() {
+        return generateSqlQuery(newSqlQuery());
+    }
+
+    /**
+     * Generates a SQL query which may bind long lists of values as array
+     * parameters.
+     *
+     * @param parameters List to which to add the values of the query's
+     *   parameters
+     * @return SQL query
+     */
+    String generateSqlQuery(List<Object> parameters) {
         SqlQuery sqlQuery = newSqlQuery();
+        sqlQuery.setAllowParameters(true);
+        final String sql = generateSqlQuery(sqlQuery);
+        parameters.addAll(sqlQuery.getParameters());
+        return sql;
+    }
 
+    private String generateSqlQuery(SqlQuery sqlQuery) {
         int k = getDistinctMeasureCount();
         final Dialect dialect = sqlQuery.getDialect();
         if (!dialect.allowsCountDistinct() && k > 0
@@ -235,6 +260,7 @@ public abstract class AbstractQuerySpec implements QuerySpec {
         //    and dim2.k = f.k2) as dummyname
 
         final SqlQuery innerSqlQuery = newSqlQuery();
+        innerSqlQuery.setEnclosingQuery(outerSqlQuery);
         if (databaseProduct == Dialect.DatabaseProduct.GREENPLUM) {
             innerSqlQuery.setDistinct(false);
         } else {
@@ -12,6 +12,7 @@
 */
 package mondrian.rolap.agg;
 
+import mondrian.rolap.RolapAggregator;
 import mondrian.rolap.RolapStar;
 import mondrian.rolap.StarColumnPredicate;
 import mondrian.rolap.aggmatcher.AggStar;
@@ -113,6 +114,23 @@ class AggQuerySpec {
         return sqlQuery.toString();
     }
 
+    /**
+     * Generates a SQL query which may bind long lists of values as array
+     * parameters.
+     *
+     * @param parameters List to which to add the values of the query's
+     *   parameters
+     * @return SQL query
+     */
+    String generateSqlQuery(List<Object> parameters) {
+        SqlQuery sqlQuery = newSqlQuery();
+        sqlQuery.setAllowParameters(true);
+        generateSql(sqlQuery);
+        final String sql = sqlQuery.toString();
+        parameters.addAll(sqlQuery.getParameters());
+        return sql;
+    }
+
     private void addGroupingSets(SqlQuery sqlQuery) {
         List<RolapStar.Column[]> groupingSetsColumns =
             groupingSetsList.getGroupingSetsColumns();
@@ -145,7 +163,14 @@ class AggQuerySpec {
         } else {
             expr = column.generateExprString(query);
         }
-        query.addSelect(expr, alias);
+        final String selectAlias = query.addSelect(expr, alias);
+        if (rollup
+            && column.getAggregator() == RolapAggregator.ApproxDistinctCount)
+        {
+            // Return each distinct value or sketch; they are merged in
+            // memory.
+            query.addGroupBy(expr, selectAlias);
+        }
     }
 
     protected void generateSql(final SqlQuery sqlQuery) {
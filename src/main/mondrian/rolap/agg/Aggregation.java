@@ -15,6 +15,8 @@ package mondrian.rolap.agg;
 
 import mondrian.olap.*;
 import mondrian.rolap.*;
+import mondrian.rolap.sql.SqlQuery;
+import mondrian.util.HyperLogLog;
 
 import java.io.PrintWriter;
 import java.lang.ref.SoftReference;
@@ -70,11 +72,19 @@ public class Aggregation {
     /**
      * List of soft references to segments.  This List implementation should be
      * thread-safe on all mutative operations (add, set, and so on). Access to
-     * this list is not synchronized in the code.  This is the only mutable
-     * field in the class.
+     * this list is not synchronized in the code.
      */
     private final List<SoftReference<Segment>> segmentRefs;
 
+    /**
+     * Index of {@link #segmentRefs}, or null if segments have been added or
+     * removed since it was built. Must be assigned holding
+     * {@link #segmentIndexLock}.
+     */
+    private volatile SegmentIndex segmentIndex;
+
+    private final Object segmentIndexLock = new Object();
+
     /**
      * Timestamp of when the aggregation was created. (We use
      * {@link java.util.Date} rather than {@link java.sql.Timestamp} because it
@@ -133,13 +143,21 @@ public class Aggregation {
      * measures = {unit_sales, store_sales},
      * state = {CA, OR},
      * gender = unconstrained</pre></blockquote>
+     *
+     * @param columns Columns
+     * @param measures Measures
+     * @param predicates Constraint on each column
+     * @param pinnedSegments Set of pinned segments
+     * @param groupingSetsCollector Grouping sets collector
+     * @param query Query on whose behalf segments are loaded, or null
      */
     public void load(
         RolapStar.Column[] columns,
         RolapStar.Measure[] measures,
         StarColumnPredicate[] predicates,
         RolapAggregationManager.PinSet pinnedSegments,
-        GroupingSetsCollector groupingSetsCollector)
+        GroupingSetsCollector groupingSetsCollector,
+        Query query)
     {
         // all constrained columns
         if (this.columns == null) {
@@ -154,7 +172,9 @@ public class Aggregation {
         // this set of measures and constraints
         Aggregation.Axis[] axes = new Aggregation.Axis[axisCount];
         for (int i = 0; i < axisCount; i++) {
-            axes[i] = new Aggregation.Axis(predicates[i]);
+            axes[i] =
+                new Aggregation.Axis(
+                    predicates[i], columns[i].getDictionary());
         }
         List<Segment> segments =
             addSegmentsToAggregation(
@@ -169,7 +189,7 @@ public class Aggregation {
             // Segments are loaded using group by grouping sets
             // by CompositeBatch.loadAggregation
         } else {
-            new SegmentLoader().load(
+            new SegmentLoader(query).load(
                 Collections.singletonList(groupingSet),
                 pinnedSegments,
                 compoundPredicateList);
@@ -192,6 +212,7 @@ public class Aggregation {
             segmentRefs.add(ref);
             ((AggregationManager.PinSetImpl) pinnedSegments).add(segment);
         }
+        invalidateSegmentIndex();
         return segments;
     }
 
@@ -238,11 +259,18 @@ public class Aggregation {
                 continue;
             }
 
-            if (valueCount > maxConstraints) {
+            if (valueCount > maxConstraints
+                && !SqlQuery.shouldBindArray(
+                    star.getSqlQueryDialect(),
+                    columns[i].getDatatype(),
+                    valueCount))
+            {
                 // Some databases can handle only a limited number of elements
                 // in 'WHERE IN (...)'. This set is greater than this database
                 // can handle, so we drop this constraint. Hopefully there are
-                // other constraints that will limit the result.
+                // other constraints that will limit the result. (If the list
+                // can be bound as an array parameter, its length is not
+                // limited.)
                 bloats[i] = 1.0; // will be optimized away
                 continue;
             }
@@ -657,6 +685,35 @@ public class Aggregation {
         // TODO: Replace segmentRefs, don't copy.
         segmentRefs.clear();
         segmentRefs.addAll(newSegmentRefs);
+        invalidateSegmentIndex();
+    }
+
+    /**
+     * Returns the index of this aggregation's segments, building it if
+     * necessary.
+     */
+    private SegmentIndex getSegmentIndex() {
+        SegmentIndex index = segmentIndex;
+        if (index == null) {
+            synchronized (segmentIndexLock) {
+                index = segmentIndex;
+                if (index == null) {
+                    index = new SegmentIndex(segmentRefs);
+                    segmentIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Discards the index of this aggregation's segments. Must be called
+     * after segments are added to or removed from {@link #segmentRefs}.
+     */
+    private void invalidateSegmentIndex() {
+        synchronized (segmentIndexLock) {
+            segmentIndex = null;
+        }
     }
 
     /**
@@ -678,17 +735,51 @@ public class Aggregation {
         Object[] keys,
         RolapAggregationManager.PinSet pinSet)
     {
-        for (SoftReference<Segment> segmentref : segmentRefs) {
+        return getCellValue(measure, keys, pinSet, null);
+    }
+
+    /**
+     * Retrieves the value identified by <code>keys</code>, as
+     * {@link #getCellValue(RolapStar.Measure, Object[],
+     * RolapAggregationManager.PinSet)}. If <code>probe</code> is not null,
+     * uses its work areas, so that a cache hit does not allocate memory.
+     */
+    Object getCellValue(
+        RolapStar.Measure measure,
+        Object[] keys,
+        RolapAggregationManager.PinSet pinSet,
+        CellProbe probe)
+    {
+        // Only consider segments of this measure whose predicates accept
+        // the keys.
+        final SegmentIndex.MeasureIndex measureIndex =
+            getSegmentIndex().get(measure);
+        if (measureIndex == null) {
+            return null;
+        }
+        final BitSet candidates =
+            probe == null
+                ? measureIndex.getCandidates(keys)
+                : measureIndex.getCandidates(
+                    keys, probe.candidates, probe.scratch);
+        for (int i = candidates.nextSetBit(0);
+             i >= 0;
+             i = candidates.nextSetBit(i + 1))
+        {
+            final SoftReference<Segment> segmentref = measureIndex.get(i);
             Segment segment = segmentref.get();
             if (segment == null) {
                 segmentRefs.remove(segmentref);
+                invalidateSegmentIndex();
                 continue; // it's being garbage-collected
             }
-            if (segment.measure != measure) {
-                continue;
-            }
             if (segment.isReady()) {
-                Object o = segment.getCellValue(keys);
+                Object o =
+                    probe == null
+                        ? segment.getCellValue(keys)
+                        : segment.getCellValue(
+                            keys, probe.getCodes(), probe.getDictionaries(),
+                            probe.getCellKey(keys.length));
                 if (o != null) {
                     if (pinSet != null) {
                         ((AggregationManager.PinSetImpl) pinSet).add(segment);
@@ -714,6 +805,177 @@ public class Aggregation {
         return null;
     }
 
+    /**
+     * Computes the value of a cell of an
+     * {@link mondrian.rolap.RolapAggregator#ApproxDistinctCount} measure by
+     * merging the sketches of cells in this aggregation. The cell's columns
+     * must be a subset of this aggregation's columns.
+     *
+     * <p>Returns <code>null</code> if no loaded segment contains every cell
+     * which contributes to the value.
+     *
+     * @param measure Measure
+     * @param bitKey Columns of the cell
+     * @param keys Key values of the cell, in order of bit position
+     * @param pinSet Set of pinned segments, or null
+     * @return Cell value, {@link Util#nullValue} if no cells contribute, or
+     *   null
+     */
+    Object rollupSketch(
+        RolapStar.Measure measure,
+        BitKey bitKey,
+        Object[] keys,
+        RolapAggregationManager.PinSet pinSet)
+    {
+        assert constrainedColumnsBitKey.isSuperSetOf(bitKey);
+        if (!compoundPredicateList.isEmpty()) {
+            return null;
+        }
+        final SegmentIndex.MeasureIndex measureIndex =
+            getSegmentIndex().get(measure);
+        if (measureIndex == null) {
+            return null;
+        }
+        final int[] axisOrdinals = new int[keys.length];
+        int axisOrdinal = 0;
+        int k = 0;
+        for (int bit = constrainedColumnsBitKey.nextSetBit(0);
+             bit >= 0;
+             bit = constrainedColumnsBitKey.nextSetBit(bit + 1))
+        {
+            if (bitKey.get(bit)) {
+                axisOrdinals[k++] = axisOrdinal;
+            }
+            ++axisOrdinal;
+        }
+        for (int i = 0; i < measureIndex.size(); i++) {
+            final Segment segment = measureIndex.get(i).get();
+            if (segment == null) {
+                continue;
+            }
+            final HyperLogLog sketch =
+                segment.rollupSketch(axisOrdinals, keys);
+            if (sketch != null) {
+                if (pinSet != null) {
+                    ((AggregationManager.PinSetImpl) pinSet).add(segment);
+                }
+                final long estimate = sketch.estimate();
+                return estimate == 0 ? Util.nullValue : (double) estimate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by the loaded segments of
+     * this aggregation.
+     *
+     * @return Estimated size, in bytes
+     */
+    public long getByteCount() {
+        long byteCount = 0;
+        for (SoftReference<Segment> segmentRef : segmentRefs) {
+            final Segment segment = segmentRef.get();
+            if (segment != null) {
+                byteCount += segment.getByteCount();
+            }
+        }
+        return byteCount;
+    }
+
+    /**
+     * Adds to a set the dictionaries which code the axes of the segments of
+     * a collection of aggregations. While a segment is cached, the memory
+     * used by its dictionaries cannot be freed.
+     *
+     * @param aggregations Aggregations
+     * @param dictionaries Set of dictionaries to add to
+     */
+    public static void collectDictionaries(
+        Collection<Aggregation> aggregations,
+        Set<ValueDictionary> dictionaries)
+    {
+        for (Aggregation aggregation : aggregations) {
+            for (SoftReference<Segment> segmentRef : aggregation.segmentRefs) {
+                final Segment segment = segmentRef.get();
+                if (segment != null) {
+                    for (Axis axis : segment.axes) {
+                        dictionaries.add(axis.getDictionary());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes loaded segments from a collection of aggregations, least
+     * recently used first, until a given number of bytes have been freed.
+     * Segments which are pinned by a query are not removed.
+     *
+     * <p>Removing a segment has the same effect as if the garbage collector
+     * had cleared its soft reference: the next query which needs its cells
+     * loads them again.
+     *
+     * @param aggregations Aggregations
+     * @param byteCount Number of bytes to free
+     * @return Estimated number of bytes freed
+     */
+    public static long evictSegments(
+        Collection<Aggregation> aggregations,
+        long byteCount)
+    {
+        final Set<Segment> pinnedSegments =
+            AggregationManager.PinSetImpl.getPinnedSegments();
+        final List<Segment> segments = new ArrayList<Segment>();
+        for (Aggregation aggregation : aggregations) {
+            for (SoftReference<Segment> segmentRef : aggregation.segmentRefs) {
+                final Segment segment = segmentRef.get();
+                if (segment != null
+                    && segment.isReady()
+                    && !pinnedSegments.contains(segment))
+                {
+                    segments.add(segment);
+                }
+            }
+        }
+        Collections.sort(
+            segments,
+            new Comparator<Segment>() {
+                public int compare(Segment s0, Segment s1) {
+                    final long t0 = s0.getLastPinnedMillis();
+                    final long t1 = s1.getLastPinnedMillis();
+                    return t0 < t1 ? -1 : t0 > t1 ? 1 : 0;
+                }
+            });
+        long evicted = 0;
+        for (Segment segment : segments) {
+            if (evicted >= byteCount) {
+                break;
+            }
+            if (segment.aggregation.removeSegment(segment)) {
+                evicted += segment.getByteCount();
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Removes a segment from this aggregation.
+     *
+     * @param segment Segment
+     * @return Whether the segment was found
+     */
+    private boolean removeSegment(Segment segment) {
+        for (SoftReference<Segment> segmentRef : segmentRefs) {
+            if (segmentRef.get() == segment) {
+                segmentRefs.remove(segmentRef);
+                invalidateSegmentIndex();
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * This is called during Sql generation.
      */
@@ -746,19 +1008,29 @@ public class Aggregation {
         private final StarColumnPredicate predicate;
 
         /**
-         * Map holding the position of each key value.
-         *
-         * <p>TODO: Hold keys in a sorted array, then deduce ordinal by doing
-         * binary search.
+         * Dictionary which assigns codes to the values of this axis' column.
          */
-        private final Map<Comparable<?>, Integer> mapKeyToOffset =
-            new HashMap<Comparable<?>, Integer>();
+        private final ValueDictionary dictionary;
 
         /**
          * Actual key values retrieved.
          */
         private Comparable<?>[] keys;
 
+        /**
+         * Dictionary code of each key, indexed by offset.
+         */
+        private int[] codes;
+
+        /**
+         * Open-addressing hash table which maps the code of each key to its
+         * offset. <code>codeTable</code> holds codes (-1 for an empty
+         * slot), and <code>offsetTable</code> the corresponding offsets.
+         * Null until keys are loaded.
+         */
+        private int[] codeTable;
+        private int[] offsetTable;
+
         private static final Integer ZERO = Integer.valueOf(0);
         private static final Integer ONE = Integer.valueOf(1);
 
@@ -769,10 +1041,28 @@ public class Aggregation {
          *                  axis. (If a key passes the predicate but
          *                  is not in the list, every cell with that
          *                  key is assumed to have a null value.)
+         * @param dictionary Dictionary of values of this axis' column
          */
-        Axis(StarColumnPredicate predicate) {
+        Axis(StarColumnPredicate predicate, ValueDictionary dictionary) {
             this.predicate = predicate;
+            this.dictionary = dictionary;
             assert predicate != null;
+            assert dictionary != null;
+        }
+
+        /**
+         * Creates an empty Axis, using the dictionary of the predicate's
+         * column, or a private dictionary if the predicate has no column.
+         *
+         * @param predicate Predicate defining which keys should appear on
+         *                  axis
+         */
+        Axis(StarColumnPredicate predicate) {
+            this(
+                predicate,
+                predicate.getConstrainedColumn() == null
+                    ? new ValueDictionary()
+                    : predicate.getConstrainedColumn().getDictionary());
         }
 
         /**
@@ -782,28 +1072,41 @@ public class Aggregation {
          *                  axis. (If a key passes the predicate but
          *                  is not in the list, every cell with that
          *                  key is assumed to have a null value.)
+         * @param dictionary Dictionary of values of this axis' column
          * @param keys      Keys
          */
-        Axis(StarColumnPredicate predicate, Comparable[] keys) {
-            this(predicate);
-            this.keys = keys;
-            for (int i = 0; i < keys.length; i++) {
-                Comparable<?> key = keys[i];
-                mapKeyToOffset.put(key, i);
+        Axis(
+            StarColumnPredicate predicate,
+            ValueDictionary dictionary,
+            Comparable[] keys)
+        {
+            this(predicate, dictionary);
+            for (int i = 1; i < keys.length; i++) {
                 //noinspection unchecked
-                assert i == 0
-                       || keys[i - 1].compareTo(keys[i]) < 0;
+                assert keys[i - 1].compareTo(keys[i]) < 0;
             }
+            setKeys(keys);
         }
 
         StarColumnPredicate getPredicate() {
             return predicate;
         }
 
+        ValueDictionary getDictionary() {
+            return dictionary;
+        }
+
         Comparable<?>[] getKeys() {
             return this.keys;
         }
 
+        /**
+         * Returns the dictionary code of each key, indexed by offset.
+         */
+        int[] getCodes() {
+            return codes;
+        }
+
         /**
          * Loads keys into the axis.
          *
@@ -818,18 +1121,53 @@ public class Aggregation {
             if (hasNull) {
                 size++;
             }
-            keys = new Comparable<?>[size];
+            Comparable<?>[] keys = new Comparable<?>[size];
 
             valueSet.toArray(keys);
             if (hasNull) {
                 keys[size - 1] = RolapUtil.sqlNullValue;
             }
 
+            setKeys(keys);
+            return size;
+        }
+
+        /**
+         * Sets the keys of this axis, assigning each a code and building the
+         * table from code to offset.
+         *
+         * @param keys Keys
+         */
+        private void setKeys(Comparable<?>[] keys) {
+            final int size = keys.length;
+            final int[] codes = new int[size];
+            int tableSize = 4;
+            while (tableSize < size * 2) {
+                tableSize <<= 1;
+            }
+            final int[] codeTable = new int[tableSize];
+            final int[] offsetTable = new int[tableSize];
+            Arrays.fill(codeTable, -1);
+            final int mask = tableSize - 1;
             for (int i = 0; i < size; i++) {
-                mapKeyToOffset.put(keys[i], i);
+                final int code = dictionary.code(keys[i]);
+                codes[i] = code;
+                int slot = slot(code, mask);
+                while (codeTable[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                codeTable[slot] = code;
+                offsetTable[slot] = i;
             }
+            this.keys = keys;
+            this.codes = codes;
+            this.offsetTable = offsetTable;
+            this.codeTable = codeTable;
+        }
 
-            return size;
+        private static int slot(int code, int mask) {
+            int h = code * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
         }
 
         static Comparable wrap(Object o) {
@@ -846,11 +1184,37 @@ public class Aggregation {
         }
 
         final int getOffset(Comparable key) {
-            Integer ordinal = mapKeyToOffset.get(key);
-            if (ordinal == null) {
+            final int code = dictionary.lookup(key);
+            if (code < 0) {
                 return -1;
             }
-            return ordinal.intValue();
+            return getOffsetForCode(code);
+        }
+
+        /**
+         * Returns the offset of the key with a given dictionary code, or -1
+         * if the key is not on this axis.
+         *
+         * @param code Dictionary code of key
+         * @return Offset of key, or -1
+         */
+        final int getOffsetForCode(int code) {
+            final int[] codeTable = this.codeTable;
+            if (codeTable == null) {
+                return -1;
+            }
+            final int mask = codeTable.length - 1;
+            int slot = slot(code, mask);
+            while (true) {
+                final int c = codeTable[slot];
+                if (c == code) {
+                    return offsetTable[slot];
+                }
+                if (c < 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
         }
 
         /**
@@ -42,9 +42,9 @@ public class AggregationKey
      * SegmentArrayQuerySpec addMeasure Util.assertTrue being
      * triggered (which is what happened).
      */
-    private final RolapStar star;
+    private RolapStar star;
 
-    private final BitKey constrainedColumnsBitKey;
+    private BitKey constrainedColumnsBitKey;
 
     /*
     * This map must be deternimistic; otherwise different runs generate SQL
@@ -56,6 +56,12 @@ public class AggregationKey
 
     private int hashCode;
 
+    /**
+     * Whether this key belongs to a {@link CellProbe}, and is therefore
+     * modified after each lookup.
+     */
+    private final boolean probe;
+
     /**
      * Creates an AggregationKey.
      *
@@ -65,6 +71,52 @@ public class AggregationKey
         this.constrainedColumnsBitKey = request.getConstrainedColumnsBitKey();
         this.star = request.getMeasure().getStar();
         this.compoundPredicateMap = request.getCompoundPredicateMap();
+        this.probe = false;
+    }
+
+    /**
+     * Creates an immutable copy of a probe's key.
+     *
+     * @param key Key
+     */
+    private AggregationKey(AggregationKey key) {
+        this.constrainedColumnsBitKey = key.constrainedColumnsBitKey.copy();
+        this.star = key.star;
+        this.compoundPredicateMap = key.compoundPredicateMap;
+        this.hashCode = key.hashCode;
+        this.probe = false;
+    }
+
+    /**
+     * Creates a key for a {@link CellProbe}. Its star and columns are set
+     * by {@link #set} before each lookup.
+     */
+    AggregationKey() {
+        this.compoundPredicateMap = null;
+        this.probe = true;
+    }
+
+    /**
+     * Sets the star and columns of a probe's key.
+     *
+     * @param star Star
+     * @param constrainedColumnsBitKey Constrained columns
+     */
+    void set(RolapStar star, BitKey constrainedColumnsBitKey) {
+        assert probe;
+        this.star = star;
+        this.constrainedColumnsBitKey = constrainedColumnsBitKey;
+        this.hashCode = 0;
+    }
+
+    /**
+     * Returns a key which can safely be stored in a collection: this key,
+     * or, if this key belongs to a {@link CellProbe}, a copy of it.
+     *
+     * @return Immutable key equal to this
+     */
+    public AggregationKey toImmutable() {
+        return probe ? new AggregationKey(this) : this;
     }
 
     public int computeHashCode() {
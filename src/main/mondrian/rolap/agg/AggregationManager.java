@@ -16,9 +16,15 @@ package mondrian.rolap.agg;
 import mondrian.olap.*;
 import mondrian.rolap.*;
 import mondrian.rolap.aggmatcher.AggStar;
+import mondrian.spi.AggregateCostModel;
+import mondrian.util.CreationException;
+import mondrian.util.ObjectFactory;
+import mondrian.util.Pair;
 
 import org.apache.log4j.Logger;
+import org.eigenbase.util.property.StringProperty;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
@@ -77,6 +83,7 @@ public class AggregationManager extends RolapAggregationManager {
      * @param predicates Array of constraints on each column
      * @param pinnedSegments Set of pinned segments
      * @param groupingSetsCollector grouping sets collector
+     * @param query Query on whose behalf the aggregation is loaded, or null
      */
     public void loadAggregation(
         RolapStar.Measure[] measures,
@@ -84,7 +91,8 @@ public class AggregationManager extends RolapAggregationManager {
         AggregationKey aggregationKey,
         StarColumnPredicate[] predicates,
         PinSet pinnedSegments,
-        GroupingSetsCollector groupingSetsCollector)
+        GroupingSetsCollector groupingSetsCollector,
+        Query query)
     {
         RolapStar star = measures[0].getStar();
         Aggregation aggregation =
@@ -95,7 +103,7 @@ public class AggregationManager extends RolapAggregationManager {
         predicates = aggregation.optimizePredicates(columns, predicates);
         aggregation.load(
             columns, measures, predicates, pinnedSegments,
-            groupingSetsCollector);
+            groupingSetsCollector, query);
     }
 
     public Object getCellFromCache(CellRequest request) {
@@ -111,13 +119,94 @@ public class AggregationManager extends RolapAggregationManager {
         final Aggregation aggregation =
             measure.getStar().lookupAggregation(aggregationKey);
 
-        if (aggregation == null) {
-            // cell is not in any aggregation
-            return null;
-        } else {
-            return aggregation.getCellValue(
+        Object o = null;
+        if (aggregation != null) {
+            o = aggregation.getCellValue(
                 measure, request.getSingleValues(), pinSet);
         }
+        if (o == null
+            && measure.getAggregator() == RolapAggregator.ApproxDistinctCount
+            && request.getCompoundPredicateMap() == null)
+        {
+            o = rollupSketch(
+                measure,
+                request.getConstrainedColumnsBitKey(),
+                request.getSingleValues(),
+                pinSet);
+        }
+        return o;
+    }
+
+    /**
+     * Retrieves the value of a cell from the cache, using a probe.
+     *
+     * <p>Unlike {@link #getCellFromCache(CellRequest, PinSet)}, does not
+     * allocate memory if the cell is in the cache.
+     *
+     * @param probe Probe describing the cell; must be satisfiable
+     * @param pinSet Set of pinned segments, or null
+     * @return Cell value, or null if cell is not in any aggregation in cache,
+     *   or {@link Util#nullValue} if cell's value is null
+     */
+    public Object getCellFromCache(CellProbe probe, PinSet pinSet) {
+        assert !probe.isUnsatisfiable();
+        final RolapStar.Measure measure = probe.getMeasure();
+        final AggregationKey aggregationKey = probe.getAggregationKey();
+        final Aggregation aggregation =
+            measure.getStar().lookupAggregation(aggregationKey);
+        Object o = null;
+        if (aggregation != null) {
+            o = aggregation.getCellValue(
+                measure, probe.getKeys(), pinSet, probe);
+        }
+        if (o == null
+            && measure.getAggregator() == RolapAggregator.ApproxDistinctCount)
+        {
+            o = rollupSketch(
+                measure,
+                aggregationKey.getConstrainedColumnsBitKey(),
+                probe.getKeys(),
+                pinSet);
+        }
+        return o;
+    }
+
+    /**
+     * Computes the value of a cell of an
+     * {@link RolapAggregator#ApproxDistinctCount} measure which is not in
+     * the cache, by merging the sketches of cached cells of finer
+     * granularity.
+     *
+     * <p>If a pin set is given, the aggregations which are candidates to
+     * compute the cell are looked up once per batch of requests, rather than
+     * for every cell.
+     *
+     * @param measure Measure
+     * @param bitKey Columns of the cell
+     * @param keys Key values of the cell, in order of bit position
+     * @param pinSet Set of pinned segments, or null
+     * @return Cell value, or null if the cell cannot be computed from the
+     *   cache, or {@link Util#nullValue} if cell's value is null
+     */
+    private Object rollupSketch(
+        RolapStar.Measure measure,
+        BitKey bitKey,
+        Object[] keys,
+        PinSet pinSet)
+    {
+        final List<Aggregation> aggregations =
+            pinSet instanceof PinSetImpl
+                ? ((PinSetImpl) pinSet).getAggregationsAbove(
+                    measure.getStar(), bitKey)
+                : measure.getStar().lookupAggregationsAbove(bitKey);
+        for (Aggregation aggregation : aggregations) {
+            final Object o =
+                aggregation.rollupSketch(measure, bitKey, keys, pinSet);
+            if (o != null) {
+                return o;
+            }
+        }
+        return null;
     }
 
     public String getDrillThroughSql(
@@ -147,6 +236,24 @@ public class AggregationManager extends RolapAggregationManager {
     public String generateSql(
         GroupingSetsList groupingSetsList,
         List<StarPredicate> compoundPredicateList)
+    {
+        return generateSql(groupingSetsList, compoundPredicateList, null);
+    }
+
+    /**
+     * Generates the query to retrieve the cells for a list of segments,
+     * optionally binding long lists of values as array parameters.
+     *
+     * @param groupingSetsList Grouping sets
+     * @param compoundPredicateList Compound predicates
+     * @param parameters List to which to add the values of the query's
+     *   parameters, or null to generate a query without parameters
+     * @return SQL query
+     */
+    public String generateSql(
+        GroupingSetsList groupingSetsList,
+        List<StarPredicate> compoundPredicateList,
+        List<Object> parameters)
     {
         BitKey levelBitKey = groupingSetsList.getDefaultLevelBitKey();
         BitKey measureBitKey = groupingSetsList.getDefaultMeasureBitKey();
@@ -162,8 +269,14 @@ public class AggregationManager extends RolapAggregationManager {
         {
             RolapStar star = groupingSetsList.getStar();
 
+            final List<StarColumnPredicate> predicates =
+                new ArrayList<StarColumnPredicate>();
+            for (Aggregation.Axis axis : groupingSetsList.getDefaultAxes()) {
+                predicates.add(axis.getPredicate());
+            }
             final boolean[] rollup = {false};
-            AggStar aggStar = findAgg(star, levelBitKey, measureBitKey, rollup);
+            AggStar aggStar =
+                findAgg(star, levelBitKey, measureBitKey, predicates, rollup);
 
             if (aggStar != null) {
                 // Got a match, hot damn
@@ -198,7 +311,10 @@ public class AggregationManager extends RolapAggregationManager {
                 AggQuerySpec aggQuerySpec =
                     new AggQuerySpec(
                         aggStar, rollup[0], groupingSetsList);
-                String sql = aggQuerySpec.generateSqlQuery();
+                String sql =
+                    parameters == null
+                        ? aggQuerySpec.generateSqlQuery()
+                        : aggQuerySpec.generateSqlQuery(parameters);
 
                 if (getLogger().isDebugEnabled()) {
                     getLogger().debug(
@@ -226,7 +342,10 @@ public class AggregationManager extends RolapAggregationManager {
         SegmentArrayQuerySpec spec =
             new SegmentArrayQuerySpec(groupingSetsList, compoundPredicateList);
 
-        String sql = spec.generateSqlQuery();
+        String sql =
+            parameters == null
+                ? spec.generateSqlQuery()
+                : spec.generateSqlQuery(parameters);
 
         if (getLogger().isDebugEnabled()) {
             getLogger().debug(
@@ -258,6 +377,112 @@ public class AggregationManager extends RolapAggregationManager {
         final BitKey levelBitKey,
         final BitKey measureBitKey,
         boolean[] rollup)
+    {
+        return findAgg(
+            star, levelBitKey, measureBitKey,
+            Collections.<StarColumnPredicate>emptyList(), rollup);
+    }
+
+    /**
+     * Finds the cheapest aggregate table in the given star which has the
+     * desired levels and measures. Returns null if no aggregate table is
+     * suitable, or if the fact table is cheaper than every suitable aggregate
+     * table.
+     *
+     * <p>The cost of each table is estimated by the
+     * {@link AggregateCostModel} defined by
+     * {@link MondrianProperties#AggregateCostModelClass}. Of tables with equal
+     * cost, the smallest is chosen.
+     *
+     * @param star Star
+     * @param levelBitKey Set of levels
+     * @param measureBitKey Set of measures
+     * @param predicates Predicates on the requested columns
+     * @param rollup Out parameter, is set to true if the aggregate is not
+     *   an exact match
+     * @return An aggregate, or null if none is suitable.
+     */
+    public AggStar findAgg(
+        RolapStar star,
+        final BitKey levelBitKey,
+        final BitKey measureBitKey,
+        List<StarColumnPredicate> predicates,
+        boolean[] rollup)
+    {
+        assert rollup != null;
+        final List<AggStar> aggStars = star.getAggStars();
+        if (aggStars.isEmpty()) {
+            return null;
+        }
+        final AggregateCostModel costModel =
+            AggregateCostModelFactory.getCostModel();
+        final StringBuilder trace =
+            getLogger().isDebugEnabled()
+                ? new StringBuilder(256)
+                : null;
+
+        AggStar bestAggStar = null;
+        double bestCost =
+            costModel.computeCost(
+                star, null, levelBitKey, measureBitKey, false, predicates);
+        if (trace != null) {
+            trace.append("findAgg: foreign=").append(levelBitKey)
+                .append(", measure=").append(measureBitKey).append(Util.nl)
+                .append("   ").append(star.getFactTable().getAlias())
+                .append(": cost=").append(bestCost).append(Util.nl);
+        }
+
+        // The AggStars are already ordered from smallest to largest, so
+        // in case of a tie, the first one wins.
+        for (AggStar aggStar : aggStars) {
+            if (!isSuitable(aggStar, levelBitKey, measureBitKey)) {
+                continue;
+            }
+            final boolean aggRollup =
+                !aggStar.getLevelBitKey().equals(levelBitKey);
+            final double cost =
+                costModel.computeCost(
+                    star, aggStar, levelBitKey, measureBitKey, aggRollup,
+                    predicates);
+            if (trace != null) {
+                trace.append("   ").append(aggStar.getFactTable().getName())
+                    .append(": size=").append(aggStar.getSize())
+                    .append(", rollup=").append(aggRollup)
+                    .append(", cost=").append(cost).append(Util.nl);
+            }
+            if (cost < bestCost
+                || bestAggStar == null
+                && cost == bestCost
+                && cost != Double.POSITIVE_INFINITY)
+            {
+                bestAggStar = aggStar;
+                bestCost = cost;
+                rollup[0] = aggRollup;
+            }
+        }
+        if (trace != null) {
+            trace.append("   chose ")
+                .append(
+                    bestAggStar == null
+                        ? star.getFactTable().getAlias()
+                        : bestAggStar.getFactTable().getName());
+            getLogger().debug(trace.toString());
+        }
+        return bestAggStar;
+    }
+
+    /**
+     * Returns whether an aggregate table has the desired levels and measures.
+     *
+     * @param aggStar Aggregate table
+     * @param levelBitKey Set of levels
+     * @param measureBitKey Set of measures
+     * @return Whether the aggregate table can answer the request
+     */
+    private boolean isSuitable(
+        AggStar aggStar,
+        final BitKey levelBitKey,
+        final BitKey measureBitKey)
     {
         // If there is no distinct count measure, isDistinct == false,
         // then all we want is an AggStar whose BitKey is a superset
@@ -268,61 +493,56 @@ public class AggregationManager extends RolapAggregationManager {
         // whose measure BitKey is a superset of the measure BitKey,
         // whose level BitKey is an exact match and the aggregate table
         // can NOT have any foreign keys.
-        assert rollup != null;
         BitKey fullBitKey = levelBitKey.or(measureBitKey);
 
-        // The AggStars are already ordered from smallest to largest so
-        // we need only find the first one and return it.
-        for (AggStar aggStar : star.getAggStars()) {
-            // superset match
-            if (!aggStar.superSetMatch(fullBitKey)) {
-                continue;
-            }
+        // superset match
+        if (!aggStar.superSetMatch(fullBitKey)) {
+            return false;
+        }
 
-            boolean isDistinct = measureBitKey.intersects(
-                aggStar.getDistinctMeasureBitKey());
+        boolean isDistinct = measureBitKey.intersects(
+            aggStar.getDistinctMeasureBitKey());
 
-            // The AggStar has no "distinct count" measures so
-            // we can use it without looking any further.
-            if (!isDistinct) {
-                rollup[0] = !aggStar.getLevelBitKey().equals(levelBitKey);
-                return aggStar;
-            }
+        // The AggStar has no "distinct count" measures so
+        // we can use it without looking any further.
+        if (!isDistinct) {
+            return true;
+        }
 
-            // If there are distinct measures, we can only rollup in limited
-            // circumstances.
-
-            // No foreign keys (except when its used as a distinct count
-            //   measure).
-            // Level key exact match.
-            // Measure superset match.
-
-            // Compute the core levels -- those which can be safely
-            // rolled up to. For example,
-            // if the measure is 'distinct customer count',
-            // and the agg table has levels customer_id,
-            // then gender is a core level.
-            final BitKey distinctMeasuresBitKey =
-                measureBitKey.and(aggStar.getDistinctMeasureBitKey());
-            final BitSet distinctMeasures = distinctMeasuresBitKey.toBitSet();
-            BitKey combinedLevelBitKey = null;
-            for (int k = distinctMeasures.nextSetBit(0); k >= 0;
-                k = distinctMeasures.nextSetBit(k + 1))
-            {
-                final AggStar.FactTable.Measure distinctMeasure =
-                    aggStar.lookupMeasure(k);
-                BitKey rollableLevelBitKey =
-                    distinctMeasure.getRollableLevelBitKey();
-                if (combinedLevelBitKey == null) {
-                    combinedLevelBitKey = rollableLevelBitKey;
-                } else {
-                    // TODO use '&=' to remove unnecessary copy
-                    combinedLevelBitKey =
-                        combinedLevelBitKey.and(rollableLevelBitKey);
-                }
+        // If there are distinct measures, we can only rollup in limited
+        // circumstances.
+
+        // No foreign keys (except when its used as a distinct count
+        //   measure).
+        // Level key exact match.
+        // Measure superset match.
+
+        // Compute the core levels -- those which can be safely
+        // rolled up to. For example,
+        // if the measure is 'distinct customer count',
+        // and the agg table has levels customer_id,
+        // then gender is a core level.
+        final BitKey distinctMeasuresBitKey =
+            measureBitKey.and(aggStar.getDistinctMeasureBitKey());
+        final BitSet distinctMeasures = distinctMeasuresBitKey.toBitSet();
+        BitKey combinedLevelBitKey = null;
+        for (int k = distinctMeasures.nextSetBit(0); k >= 0;
+            k = distinctMeasures.nextSetBit(k + 1))
+        {
+            final AggStar.FactTable.Measure distinctMeasure =
+                aggStar.lookupMeasure(k);
+            BitKey rollableLevelBitKey =
+                distinctMeasure.getRollableLevelBitKey();
+            if (combinedLevelBitKey == null) {
+                combinedLevelBitKey = rollableLevelBitKey;
+            } else {
+                // TODO use '&=' to remove unnecessary copy
+                combinedLevelBitKey =
+                    combinedLevelBitKey.and(rollableLevelBitKey);
             }
+        }
 
-            if (aggStar.hasForeignKeys()) {
+        if (aggStar.hasForeignKeys()) {
 /*
                     StringBuilder buf = new StringBuilder(256);
                     buf.append("");
@@ -354,41 +574,33 @@ public class AggregationManager extends RolapAggregationManager {
                     }
 System.out.println(buf.toString());
 */
-                // This is a little pessimistic. If the measure is
-                // 'count(distinct customer_id)' and one of the foreign keys is
-                // 'customer_id' then it is OK to roll up.
-
-                // Some of the measures in this query are distinct count.
-                // Get all of the foreign key columns.
-                // For each such measure, is it based upon a foreign key.
-                // Are there any foreign keys left over. No, can use AggStar.
-                BitKey fkBitKey = aggStar.getForeignKeyBitKey().copy();
-                for (AggStar.FactTable.Measure measure
-                    : aggStar.getFactTable().getMeasures())
-                {
-                    if (measure.isDistinct()) {
-                        if (measureBitKey.get(measure.getBitPosition())) {
-                            fkBitKey.clear(measure.getBitPosition());
-                        }
+            // This is a little pessimistic. If the measure is
+            // 'count(distinct customer_id)' and one of the foreign keys is
+            // 'customer_id' then it is OK to roll up.
+
+            // Some of the measures in this query are distinct count.
+            // Get all of the foreign key columns.
+            // For each such measure, is it based upon a foreign key.
+            // Are there any foreign keys left over. No, can use AggStar.
+            BitKey fkBitKey = aggStar.getForeignKeyBitKey().copy();
+            for (AggStar.FactTable.Measure measure
+                : aggStar.getFactTable().getMeasures())
+            {
+                if (measure.isDistinct()) {
+                    if (measureBitKey.get(measure.getBitPosition())) {
+                        fkBitKey.clear(measure.getBitPosition());
                     }
                 }
-                if (!fkBitKey.isEmpty()) {
-                    // there are foreign keys left so we can not use this
-                    // AggStar.
-                    continue;
-                }
             }
-
-            if (!aggStar.select(
-                levelBitKey, combinedLevelBitKey, measureBitKey))
-            {
-                continue;
+            if (!fkBitKey.isEmpty()) {
+                // there are foreign keys left so we can not use this
+                // AggStar.
+                return false;
             }
-
-            rollup[0] = !aggStar.getLevelBitKey().equals(levelBitKey);
-            return aggStar;
         }
-        return null;
+
+        return aggStar.select(
+            levelBitKey, combinedLevelBitKey, measureBitKey);
     }
 
     public PinSet createPinSet() {
@@ -398,11 +610,316 @@ System.out.println(buf.toString());
     /**
      * Implementation of {@link mondrian.rolap.RolapAggregationManager.PinSet}
      * using a {@link HashSet}.
+     *
+     * <p>Segments in a pin set are in use by a query, and must not be
+     * evicted from the cache. Each pin set is therefore recorded, via a weak
+     * reference, so that {@link #getPinnedSegments()} can find the segments
+     * which are pinned by any query still alive. Only the thread which owns
+     * a pin set adds segments to it.
      */
     public static class PinSetImpl
         extends HashSet<Segment>
         implements RolapAggregationManager.PinSet
     {
+        /**
+         * Pin sets which may still be in use. Guarded by itself.
+         */
+        private static final List<WeakReference<PinSetImpl>> pinSets =
+            new ArrayList<WeakReference<PinSetImpl>>();
+
+        /**
+         * Size of {@link #pinSets} after it was last purged of pin sets
+         * which have been garbage-collected.
+         */
+        private static int purgedSize;
+
+        /**
+         * Aggregations which can compute cells of each combination of star
+         * and columns by rollup; see {@link #getAggregationsAbove}. Accessed
+         * only by the thread which owns this pin set.
+         */
+        private final Map<Pair<RolapStar, BitKey>, List<Aggregation>>
+            aggregationsAbove =
+            new HashMap<Pair<RolapStar, BitKey>, List<Aggregation>>();
+
+        public PinSetImpl() {
+            synchronized (pinSets) {
+                if (pinSets.size() > 2 * purgedSize + 16) {
+                    purge();
+                }
+                pinSets.add(new WeakReference<PinSetImpl>(this));
+            }
+        }
+
+        public synchronized boolean add(Segment segment) {
+            if (!super.add(segment)) {
+                return false;
+            }
+            segment.pinned();
+            return true;
+        }
+
+        /**
+         * Returns the aggregations of a star which are at a finer granularity
+         * than a given set of columns. The result is computed the first time
+         * a combination of star and columns is seen, and remembered until
+         * {@link #clearAggregationsAbove()} is called.
+         *
+         * @param star Star
+         * @param bitKey Columns
+         * @return List of aggregations
+         *
+         * @see RolapStar#lookupAggregationsAbove(BitKey)
+         */
+        List<Aggregation> getAggregationsAbove(RolapStar star, BitKey bitKey) {
+            final Pair<RolapStar, BitKey> key =
+                new Pair<RolapStar, BitKey>(star, bitKey);
+            List<Aggregation> aggregations = aggregationsAbove.get(key);
+            if (aggregations == null) {
+                aggregations = star.lookupAggregationsAbove(bitKey);
+                aggregationsAbove.put(key, aggregations);
+            }
+            return aggregations;
+        }
+
+        /**
+         * Forgets the aggregations remembered by
+         * {@link #getAggregationsAbove(RolapStar, BitKey)}. Called when a
+         * batch of requests has been loaded, and therefore the aggregations
+         * in the cache may have changed.
+         */
+        public void clearAggregationsAbove() {
+            aggregationsAbove.clear();
+        }
+
+        /**
+         * Returns the segments which are pinned by pin sets which have not
+         * been garbage-collected.
+         *
+         * @return Set of pinned segments
+         */
+        static Set<Segment> getPinnedSegments() {
+            final List<PinSetImpl> list = new ArrayList<PinSetImpl>();
+            synchronized (pinSets) {
+                purge();
+                for (WeakReference<PinSetImpl> ref : pinSets) {
+                    final PinSetImpl pinSet = ref.get();
+                    if (pinSet != null) {
+                        list.add(pinSet);
+                    }
+                }
+            }
+            final Set<Segment> segments = new HashSet<Segment>();
+            for (PinSetImpl pinSet : list) {
+                synchronized (pinSet) {
+                    segments.addAll(pinSet);
+                }
+            }
+            return segments;
+        }
+
+        /**
+         * Removes pin sets which have been garbage-collected from
+         * {@link #pinSets}. Caller must hold its lock.
+         */
+        private static void purge() {
+            for (Iterator<WeakReference<PinSetImpl>> iterator =
+                     pinSets.iterator();
+                 iterator.hasNext();)
+            {
+                if (iterator.next().get() == null) {
+                    iterator.remove();
+                }
+            }
+            purgedSize = pinSets.size();
+        }
+    }
+
+    /**
+     * Default implementation of {@link AggregateCostModel}, used if
+     * {@link MondrianProperties#AggregateCostModelClass} is not set.
+     *
+     * <p>The cost of an aggregate table is the number of rows scanned (its
+     * size, as returned by {@link AggStar#getSize()}), increased by
+     * {@link #JOIN_WEIGHT} for each dimension table which must be joined to
+     * access a requested column, plus, if the aggregate table must be rolled
+     * up, the estimated number of rows which satisfy the request's predicates
+     * (the input to the GROUP BY). Predicate selectivity is estimated from the
+     * number of values in each predicate and the cardinality of its column.
+     *
+     * <p>The fact table has infinite cost, so an aggregate table is always
+     * used if one is suitable.
+     */
+    public static class DefaultAggregateCostModel
+        implements AggregateCostModel
+    {
+        /**
+         * Additional cost, as a fraction of the aggregate table's size, for
+         * each dimension table which must be joined.
+         */
+        protected static final double JOIN_WEIGHT = 0.1;
+
+        /**
+         * Estimated selectivity of a range predicate.
+         */
+        protected static final double RANGE_SELECTIVITY = 1d / 3d;
+
+        public double computeCost(
+            RolapStar star,
+            AggStar aggStar,
+            BitKey levelBitKey,
+            BitKey measureBitKey,
+            boolean rollup,
+            List<StarColumnPredicate> predicates)
+        {
+            if (aggStar == null) {
+                return Double.POSITIVE_INFINITY;
+            }
+            final double size = getSize(aggStar);
+            final Set<AggStar.Table> joinedTables =
+                new HashSet<AggStar.Table>();
+            for (int bitPos = levelBitKey.nextSetBit(0); bitPos >= 0;
+                 bitPos = levelBitKey.nextSetBit(bitPos + 1))
+            {
+                final AggStar.Table table =
+                    aggStar.lookupColumn(bitPos).getTable();
+                if (!(table instanceof AggStar.FactTable)) {
+                    joinedTables.add(table);
+                }
+            }
+            double cost = size * (1d + JOIN_WEIGHT * joinedTables.size());
+            if (rollup) {
+                double selectivity = 1d;
+                for (StarColumnPredicate predicate : predicates) {
+                    selectivity *= selectivity(predicate);
+                }
+                cost += size * selectivity;
+            }
+            return cost;
+        }
+
+        /**
+         * Returns the cost of scanning an aggregate table: its number of
+         * rows, or its volume, as returned by {@link AggStar#getSize()}.
+         *
+         * @param aggStar Aggregate table
+         * @return Size of aggregate table
+         */
+        protected double getSize(AggStar aggStar) {
+            return aggStar.getSize();
+        }
+
+        /**
+         * Estimates the fraction of rows which satisfy a predicate.
+         *
+         * @param predicate Predicate
+         * @return Selectivity, between 0 and 1
+         */
+        protected double selectivity(StarColumnPredicate predicate) {
+            if (predicate instanceof LiteralStarPredicate) {
+                return ((LiteralStarPredicate) predicate).getValue() ? 1d : 0d;
+            }
+            if (predicate instanceof RangeColumnPredicate) {
+                return RANGE_SELECTIVITY;
+            }
+            final RolapStar.Column column = predicate.getConstrainedColumn();
+            if (column == null) {
+                return 1d;
+            }
+            final List<Object> values = new ArrayList<Object>();
+            try {
+                predicate.values(values);
+            } catch (UnsupportedOperationException e) {
+                return 1d;
+            }
+            final int cardinality = column.getCardinality();
+            if (cardinality <= 0 || values.size() >= cardinality) {
+                return 1d;
+            }
+            return (double) values.size() / cardinality;
+        }
+    }
+
+    /**
+     * Creates the {@link AggregateCostModel} used by
+     * {@link AggregationManager#findAgg}.
+     *
+     * <p>The name of the class is drawn from
+     * {@link mondrian.olap.MondrianProperties#AggregateCostModelClass}
+     * in mondrian.properties. If unset, it defaults to
+     * {@link AggregationManager.DefaultAggregateCostModel}.
+     */
+    public static final class AggregateCostModelFactory
+        extends ObjectFactory.Singleton<AggregateCostModel>
+    {
+        /**
+         * Single instance of the <code>AggregateCostModelFactory</code>.
+         */
+        private static final AggregateCostModelFactory factory;
+        static {
+            factory = new AggregateCostModelFactory();
+        }
+
+        /**
+         * Access the <code>AggregateCostModel</code> instance.
+         *
+         * @return the <code>AggregateCostModel</code>.
+         */
+        public static AggregateCostModel getCostModel() {
+            return factory.getObject();
+        }
+
+        /**
+         * ThreadLocal used to hold the class name of an
+         * <code>AggregateCostModel</code> implementation. Generally, this
+         * should only be used for testing.
+         */
+        private static final ThreadLocal<String> ClassName =
+            new ThreadLocal<String>();
+
+        /**
+         * Sets the class name of an <code>AggregateCostModel</code>
+         * implementation to be used by the current thread. Generally, this is
+         * only used for testing.
+         *
+         * @param className Class name
+         */
+        public static void setThreadLocalClassName(String className) {
+            ClassName.set(className);
+        }
+
+        /**
+         * Clears the class name (regardless of whether a class name was set).
+         */
+        public static void clearThreadLocalClassName() {
+            ClassName.set(null);
+            factory.testSingleInstance = null;
+        }
+
+        /**
+         * The constructor for the <code>AggregateCostModelFactory</code>.
+         * This passes the <code>AggregateCostModel</code> class to the
+         * <code>ObjectFactory</code> base class.
+         */
+        private AggregateCostModelFactory() {
+            super(AggregateCostModel.class);
+        }
+
+        protected String getClassName() {
+            return ClassName.get();
+        }
+
+        protected StringProperty getStringProperty() {
+            return MondrianProperties.instance().AggregateCostModelClass;
+        }
+
+        protected AggregateCostModel getDefault(
+            Class[] parameterTypes,
+            Object[] parameterValues)
+            throws CreationException
+        {
+            return new DefaultAggregateCostModel();
+        }
     }
 }
 
@@ -0,0 +1,316 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.rolap.*;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reusable lookup of a cell in the cache.
+ *
+ * <p>A {@link CellRequest} is a general description of a cell: it can hold
+ * compound predicates, unconstrained columns and drill-through context, and
+ * it is created afresh for every cell. A <code>CellProbe</code> handles the
+ * common case, where every column is constrained to a single value, and
+ * re-uses the same key arrays, {@link BitKey}, {@link AggregationKey} and
+ * {@link CellKey} for every cell. It looks up each key's code in its
+ * column's {@link ValueDictionary} once, so that each candidate segment
+ * coded by the same dictionary can find the cell by comparing integers. If
+ * the cell is in the cache, looking it up via a probe allocates no objects
+ * (except, for some datasets, a boxed value).
+ *
+ * <p>A probe is not thread-safe; each {@link mondrian.rolap.CellReader}
+ * owns one.
+ *
+ * <p>Usage:<ol>
+ * <li>Call {@link #reset(RolapStar.Measure)}.</li>
+ * <li>Call {@link #addConstrainedColumn(RolapStar.Column, Object)} for
+ *     each constrained column.</li>
+ * <li>If {@link #isUnsatisfiable()} is false, call
+ *     {@link AggregationManager#getCellFromCache(CellProbe,
+ *     RolapAggregationManager.PinSet)}.</li>
+ * </ol>
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public final class CellProbe {
+    private final Map<RolapStar, StarState> starStates =
+        new IdentityHashMap<RolapStar, StarState>();
+
+    private final AggregationKey aggregationKey = new AggregationKey();
+
+    private RolapStar.Measure measure;
+    private StarState starState;
+    private int columnCount;
+    private boolean unsatisfiable;
+    private Object[] keys;
+    private int[] codes;
+    private ValueDictionary[] dictionaries;
+
+    private CellKey[] cellKeys = new CellKey[0];
+
+    /**
+     * Work areas for {@link SegmentIndex.MeasureIndex#getCandidates}.
+     */
+    final BitSet candidates = new BitSet();
+    final BitSet scratch = new BitSet();
+
+    /**
+     * Creates a CellProbe.
+     */
+    public CellProbe() {
+    }
+
+    /**
+     * Prepares this probe to look up a cell of a given measure.
+     *
+     * @param measure Measure
+     */
+    public void reset(RolapStar.Measure measure) {
+        this.measure = measure;
+        final RolapStar star = measure.getStar();
+        if (starState == null || starState.star != star) {
+            starState = starStates.get(star);
+        }
+        if (starState == null
+            || starState.values.length < star.getColumnCount())
+        {
+            // First cell of this star, or columns have been added to it.
+            starState = new StarState(star);
+            starStates.put(star, starState);
+        }
+        starState.bitKey.clear();
+        columnCount = 0;
+        unsatisfiable = false;
+        keys = null;
+        codes = null;
+        dictionaries = null;
+    }
+
+    /**
+     * Constrains a column to a single value. If the column is already
+     * constrained to a different value, the probe becomes unsatisfiable.
+     *
+     * @param column Column
+     * @param value Value; never null
+     */
+    public void addConstrainedColumn(RolapStar.Column column, Object value) {
+        assert value != null;
+        assert keys == null;
+        final int bitPosition = column.getBitPosition();
+        if (starState.bitKey.get(bitPosition)) {
+            if (!value.equals(starState.values[bitPosition])) {
+                unsatisfiable = true;
+            }
+            return;
+        }
+        starState.bitKey.set(bitPosition);
+        starState.values[bitPosition] = value;
+        final ValueDictionary dictionary = column.getDictionary();
+        starState.dictionaries[bitPosition] = dictionary;
+        starState.codes[bitPosition] = dictionary.lookup(value);
+        ++columnCount;
+    }
+
+    /**
+     * Returns whether two constraints on the same column conflict, and
+     * therefore the cell has no value.
+     *
+     * @return whether probe is unsatisfiable
+     */
+    public boolean isUnsatisfiable() {
+        return unsatisfiable;
+    }
+
+    /**
+     * Returns the measure.
+     *
+     * @return Measure
+     */
+    public RolapStar.Measure getMeasure() {
+        return measure;
+    }
+
+    /**
+     * Returns the key of the aggregation which would hold this cell. The key
+     * is owned by this probe, and is modified by the next call to
+     * {@link #reset}.
+     *
+     * @return Aggregation key
+     */
+    AggregationKey getAggregationKey() {
+        aggregationKey.set(measure.getStar(), starState.bitKey);
+        return aggregationKey;
+    }
+
+    /**
+     * Returns the values of the constrained columns, in order of bit
+     * position. The array is owned by this probe.
+     *
+     * @return Key values
+     */
+    Object[] getKeys() {
+        if (keys == null) {
+            keys = starState.keys(columnCount);
+            final BitKey bitKey = starState.bitKey;
+            int i = 0;
+            for (int bit = bitKey.nextSetBit(0);
+                 bit >= 0;
+                 bit = bitKey.nextSetBit(bit + 1))
+            {
+                keys[i++] = starState.values[bit];
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the dictionary codes of the values of the constrained columns,
+     * in order of bit position, or -1 for a value which has no code. The
+     * array is owned by this probe.
+     *
+     * @return Codes of key values
+     */
+    int[] getCodes() {
+        if (codes == null) {
+            codes = starState.codes(columnCount);
+            dictionaries = starState.dictionaries(columnCount);
+            final BitKey bitKey = starState.bitKey;
+            int i = 0;
+            for (int bit = bitKey.nextSetBit(0);
+                 bit >= 0;
+                 bit = bitKey.nextSetBit(bit + 1))
+            {
+                codes[i] = starState.codes[bit];
+                dictionaries[i] = starState.dictionaries[bit];
+                ++i;
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Returns the dictionary which assigned each of the codes returned by
+     * {@link #getCodes()}, in order of bit position. The array is owned by
+     * this probe.
+     *
+     * @return Dictionaries of key values
+     */
+    ValueDictionary[] getDictionaries() {
+        getCodes();
+        return dictionaries;
+    }
+
+    /**
+     * Returns a cell key of a given arity, owned by this probe.
+     *
+     * @param arity Number of axes
+     * @return Cell key
+     */
+    CellKey getCellKey(int arity) {
+        if (arity >= cellKeys.length) {
+            final CellKey[] newCellKeys = new CellKey[arity + 1];
+            System.arraycopy(cellKeys, 0, newCellKeys, 0, cellKeys.length);
+            cellKeys = newCellKeys;
+        }
+        CellKey cellKey = cellKeys[arity];
+        if (cellKey == null) {
+            cellKey = CellKey.Generator.newCellKey(arity);
+            cellKeys[arity] = cellKey;
+        }
+        return cellKey;
+    }
+
+    /**
+     * Work areas for probing cells of one star.
+     */
+    private static class StarState {
+        private final RolapStar star;
+        private final BitKey bitKey;
+
+        /**
+         * Value of each constrained column, indexed by bit position.
+         */
+        private final Object[] values;
+
+        /**
+         * Dictionary code of the value of each constrained column, indexed
+         * by bit position.
+         */
+        private final int[] codes;
+
+        /**
+         * Dictionary which assigned each code, indexed by bit position.
+         */
+        private final ValueDictionary[] dictionaries;
+
+        /**
+         * Key arrays, indexed by length.
+         */
+        private final Object[][] keysByLength;
+
+        /**
+         * Code arrays, indexed by length.
+         */
+        private final int[][] codesByLength;
+
+        /**
+         * Dictionary arrays, indexed by length.
+         */
+        private final ValueDictionary[][] dictionariesByLength;
+
+        StarState(RolapStar star) {
+            this.star = star;
+            final int columnCount = star.getColumnCount();
+            this.bitKey = BitKey.Factory.makeBitKey(columnCount);
+            this.values = new Object[columnCount];
+            this.codes = new int[columnCount];
+            this.dictionaries = new ValueDictionary[columnCount];
+            this.keysByLength = new Object[columnCount + 1][];
+            this.codesByLength = new int[columnCount + 1][];
+            this.dictionariesByLength =
+                new ValueDictionary[columnCount + 1][];
+        }
+
+        Object[] keys(int length) {
+            Object[] keys = keysByLength[length];
+            if (keys == null) {
+                keys = new Object[length];
+                keysByLength[length] = keys;
+            }
+            return keys;
+        }
+
+        int[] codes(int length) {
+            int[] codes = codesByLength[length];
+            if (codes == null) {
+                codes = new int[length];
+                codesByLength[length] = codes;
+            }
+            return codes;
+        }
+
+        ValueDictionary[] dictionaries(int length) {
+            ValueDictionary[] dictionaries = dictionariesByLength[length];
+            if (dictionaries == null) {
+                dictionaries = new ValueDictionary[length];
+                dictionariesByLength[length] = dictionaries;
+            }
+            return dictionaries;
+        }
+    }
+}
+
+// End CellProbe.java
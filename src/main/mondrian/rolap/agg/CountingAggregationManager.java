@@ -58,6 +58,18 @@ public class CountingAggregationManager extends AggregationManager {
         return obj;
     }
 
+    /**
+     * Calls super method and sets counters.
+     */
+    public Object getCellFromCache(CellProbe probe, PinSet pinSet) {
+        requestCount.increment();
+        Object obj = super.getCellFromCache(probe, pinSet);
+        if (obj == null) {
+            missCount.increment();
+        }
+        return obj;
+    }
+
     /**
      * Returns total number of cache requests.
      *
@@ -0,0 +1,912 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.olap.Query;
+import mondrian.olap.Util;
+import mondrian.rolap.*;
+import mondrian.rolap.sql.SqlQuery;
+
+import org.apache.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Columnar, in-memory copy of the data of a star, from which segments are
+ * loaded without executing SQL.
+ *
+ * <p>A partition is created by {@link #materialize(RolapStar)}, which
+ * executes one query that groups the fact table, joined to its dimension
+ * tables, by every column of the star, and computes every measure which can
+ * be rolled up: those whose aggregator is <code>sum</code>,
+ * <code>count</code>, <code>min</code> or <code>max</code>. The partition
+ * stores each column as an array of codes into a dictionary of the column's
+ * values, using one, two or four bytes per code, and each measure as an
+ * array of doubles. Values of a measure are returned with the same type as
+ * the SQL statement would return: for example, a <code>DECIMAL</code>
+ * measure's values are returned as {@link BigDecimal} with the column's
+ * scale.
+ *
+ * <p>{@link #load} answers a request from {@link SegmentLoader} by scanning
+ * the partition in batches of rows: for each batch, it narrows a selection
+ * vector of rows by each column's predicate, evaluated once per dictionary
+ * value rather than once per row; computes the group key of each selected
+ * row; then accumulates each measure. It returns the same rows as the SQL
+ * statement which {@link SegmentLoader} would have executed. If the
+ * partition does not contain every column and measure of the request, or the
+ * request uses grouping sets, {@link #load} returns null and the segments
+ * are loaded using SQL. The scan checks, once per batch, whether the query
+ * has been canceled or has timed out.
+ *
+ * <p>A partition is immutable, so may be used by several threads at once.
+ * Its star registers it with the {@link mondrian.rolap.cache.CachePool},
+ * which may discard it to free memory (see {@link #getByteCount()}).
+ *
+ * @see RolapStar#isInMemory()
+ * @see MondrianProperties#InMemoryPartitionMaxRows
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class InMemoryPartition {
+    private static final Logger LOGGER =
+        Logger.getLogger(InMemoryPartition.class);
+
+    /**
+     * Number of rows processed at a time by {@link #load}.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    /**
+     * Estimated number of bytes used by each value in the dictionary of a
+     * key column.
+     */
+    private static final int VALUE_BYTES = 48;
+
+    private final int rowCount;
+    private final Map<RolapStar.Column, KeyColumn> keyColumns;
+    private final Map<RolapStar.Measure, MeasureColumn> measureColumns;
+
+    private InMemoryPartition(
+        int rowCount,
+        Map<RolapStar.Column, KeyColumn> keyColumns,
+        Map<RolapStar.Measure, MeasureColumn> measureColumns)
+    {
+        this.rowCount = rowCount;
+        this.keyColumns = keyColumns;
+        this.measureColumns = measureColumns;
+    }
+
+    /**
+     * Returns the number of rows in this partition.
+     *
+     * @return Number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by this partition.
+     *
+     * @return Estimated size, in bytes
+     */
+    public long getByteCount() {
+        long byteCount = 0;
+        for (KeyColumn keyColumn : keyColumns.values()) {
+            byteCount += keyColumn.getByteCount();
+        }
+        for (MeasureColumn measureColumn : measureColumns.values()) {
+            byteCount += measureColumn.getByteCount();
+        }
+        return byteCount;
+    }
+
+    /**
+     * Returns whether a measure's values can be held in a partition, that
+     * is, whether the values of a cell can be computed from the values of
+     * the finer-grained cells which make it up.
+     *
+     * @param measure Measure
+     * @return Whether measure can be materialized
+     */
+    static boolean canMaterialize(RolapStar.Measure measure) {
+        final RolapAggregator aggregator = measure.getAggregator();
+        return measure.getDatatype().isNumeric()
+            && (aggregator == RolapAggregator.Sum
+                || aggregator == RolapAggregator.Count
+                || aggregator == RolapAggregator.Min
+                || aggregator == RolapAggregator.Max);
+    }
+
+    /**
+     * Reads the data of a star into a new partition.
+     *
+     * <p>Returns null if the data has more rows than
+     * {@link MondrianProperties#InMemoryPartitionMaxRows}.
+     *
+     * @param star Star
+     * @return Partition, or null
+     */
+    public static InMemoryPartition materialize(RolapStar star) {
+        final List<RolapStar.Column> columns =
+            new ArrayList<RolapStar.Column>();
+        RolapStar.collectColumns(columns, star.getFactTable(), null);
+        final List<RolapStar.Column> keyList =
+            new ArrayList<RolapStar.Column>();
+        final List<RolapStar.Measure> measureList =
+            new ArrayList<RolapStar.Measure>();
+        final SqlQuery sqlQuery = star.getSqlQuery();
+        sqlQuery.addFrom(
+            star.getFactTable().getRelation(),
+            star.getFactTable().getAlias(),
+            false);
+        for (RolapStar.Column column : columns) {
+            if (column instanceof RolapStar.Measure
+                || column.getTable().isFunky())
+            {
+                continue;
+            }
+            column.getTable().addToFrom(sqlQuery, false, true);
+            final String expr = column.generateExprString(sqlQuery);
+            final String alias = sqlQuery.addSelect(expr);
+            sqlQuery.addGroupBy(expr, alias);
+            keyList.add(column);
+        }
+        for (RolapStar.Column column : columns) {
+            if (!(column instanceof RolapStar.Measure)) {
+                continue;
+            }
+            final RolapStar.Measure measure = (RolapStar.Measure) column;
+            if (!canMaterialize(measure)) {
+                continue;
+            }
+            final String expr =
+                measure.getExpression() == null
+                    ? "*"
+                    : measure.generateExprString(sqlQuery);
+            sqlQuery.addSelect(measure.getAggregator().getExpression(expr));
+            measureList.add(measure);
+        }
+
+        final int maxRows =
+            MondrianProperties.instance().InMemoryPartitionMaxRows.get();
+        final SqlStatement stmt =
+            RolapUtil.executeQuery(
+                star.getDataSource(), sqlQuery.toString(),
+                "InMemoryPartition.materialize",
+                "Error while materializing star");
+        try {
+            final List<SqlStatement.Type> types = stmt.guessTypes();
+            final ResultSet resultSet = stmt.getResultSet();
+            final KeyColumnBuilder[] keyBuilders =
+                new KeyColumnBuilder[keyList.size()];
+            for (int i = 0; i < keyBuilders.length; i++) {
+                keyBuilders[i] = new KeyColumnBuilder(types.get(i));
+            }
+            final MeasureColumnBuilder[] measureBuilders =
+                new MeasureColumnBuilder[measureList.size()];
+            for (int i = 0; i < measureBuilders.length; i++) {
+                measureBuilders[i] =
+                    new MeasureColumnBuilder(
+                        measureList.get(i).getAggregator(),
+                        types.get(keyBuilders.length + i));
+            }
+            int rowCount = 0;
+            while (resultSet.next()) {
+                if (maxRows > 0 && rowCount >= maxRows) {
+                    LOGGER.warn(
+                        "Star " + star.getFactTable().getAlias()
+                        + " has more than " + maxRows + " rows; it will"
+                        + " not be materialized");
+                    return null;
+                }
+                for (int i = 0; i < keyBuilders.length; i++) {
+                    keyBuilders[i].add(resultSet, i + 1);
+                }
+                for (int i = 0; i < measureBuilders.length; i++) {
+                    measureBuilders[i].add(
+                        resultSet, keyBuilders.length + i + 1);
+                }
+                ++rowCount;
+            }
+            final Map<RolapStar.Column, KeyColumn> keyColumns =
+                new HashMap<RolapStar.Column, KeyColumn>();
+            for (int i = 0; i < keyBuilders.length; i++) {
+                keyColumns.put(keyList.get(i), keyBuilders[i].build());
+            }
+            final Map<RolapStar.Measure, MeasureColumn> measureColumns =
+                new HashMap<RolapStar.Measure, MeasureColumn>();
+            for (int i = 0; i < measureBuilders.length; i++) {
+                measureColumns.put(
+                    measureList.get(i), measureBuilders[i].build());
+            }
+            return new InMemoryPartition(
+                rowCount, keyColumns, measureColumns);
+        } catch (SQLException e) {
+            throw stmt.handle(e);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Computes the rows which would be returned by the SQL statement which
+     * loads a list of grouping sets, or returns null if this partition
+     * cannot.
+     *
+     * <p>As {@link SegmentLoader#processData}, populates
+     * <code>axisValueSets</code> with the distinct key values of each
+     * column, and sets <code>axisContainsNull</code> for each column which
+     * has a null key value.
+     *
+     * @param groupingSetsList Grouping sets
+     * @param compoundPredicateList Compound predicates
+     * @param axisContainsNull Whether each axis contains a null value
+     * @param axisValueSets Distinct values of each axis
+     * @param query Query on whose behalf the rows are computed, or null;
+     *   checked for cancel or timeout once per batch of rows
+     * @return Rows, or null
+     */
+    SegmentLoader.RowList load(
+        GroupingSetsList groupingSetsList,
+        List<StarPredicate> compoundPredicateList,
+        boolean[] axisContainsNull,
+        SortedSet<Comparable<?>>[] axisValueSets,
+        Query query)
+    {
+        if (groupingSetsList.useGroupingSets()) {
+            return null;
+        }
+        final RolapStar.Column[] columns =
+            groupingSetsList.getDefaultColumns();
+        final Aggregation.Axis[] axes = groupingSetsList.getDefaultAxes();
+        final List<Segment> segments = groupingSetsList.getDefaultSegments();
+        final int arity = columns.length;
+
+        // Resolve columns, evaluate each axis's predicate on each value in
+        // the column's dictionary, and compute the radix of each column in
+        // the group key.
+        final KeyColumn[] keys = new KeyColumn[arity];
+        final boolean[][] accepts = new boolean[arity][];
+        final long[] strides = new long[arity];
+        long stride = 1;
+        for (int i = arity - 1; i >= 0; i--) {
+            keys[i] = keyColumns.get(columns[i]);
+            if (keys[i] == null) {
+                return null;
+            }
+            accepts[i] = keys[i].accept(axes[i].getPredicate());
+            strides[i] = stride;
+            final int valueCount = Math.max(keys[i].values.length, 1);
+            if (stride > Long.MAX_VALUE / valueCount) {
+                return null;
+            }
+            stride *= valueCount;
+        }
+        final MeasureColumn[] measures = new MeasureColumn[segments.size()];
+        for (int i = 0; i < measures.length; i++) {
+            measures[i] = measureColumns.get(segments.get(i).measure);
+            if (measures[i] == null) {
+                return null;
+            }
+        }
+        final List<CompoundFilter> compoundFilters =
+            new ArrayList<CompoundFilter>();
+        for (StarPredicate predicate : compoundPredicateList) {
+            final List<RolapStar.Column> predicateColumns =
+                predicate.getConstrainedColumnList();
+            final KeyColumn[] predicateKeys =
+                new KeyColumn[predicateColumns.size()];
+            for (int i = 0; i < predicateKeys.length; i++) {
+                predicateKeys[i] = keyColumns.get(predicateColumns.get(i));
+                if (predicateKeys[i] == null) {
+                    return null;
+                }
+            }
+            compoundFilters.add(new CompoundFilter(predicate, predicateKeys));
+        }
+
+        // Scan.
+        final GroupTable groups = new GroupTable(measures.length);
+        final int[] selection = new int[BATCH_SIZE];
+        final int[] codes = new int[BATCH_SIZE];
+        final long[] groupKeys = new long[BATCH_SIZE];
+        final int[] groupOrdinals = new int[BATCH_SIZE];
+        for (int start = 0; start < rowCount; start += BATCH_SIZE) {
+            if (query != null) {
+                query.checkCancelOrTimeout();
+            }
+            final int n = Math.min(BATCH_SIZE, rowCount - start);
+            int selected = n;
+            for (int i = 0; i < n; i++) {
+                selection[i] = i;
+                groupKeys[i] = 0;
+            }
+            for (int j = 0; j < arity && selected > 0; j++) {
+                keys[j].codes.get(start, n, codes);
+                final boolean[] accept = accepts[j];
+                final long s = strides[j];
+                int k = 0;
+                for (int i = 0; i < selected; i++) {
+                    final int row = selection[i];
+                    final int code = codes[row];
+                    if (accept == null || accept[code]) {
+                        selection[k++] = row;
+                        groupKeys[row] += code * s;
+                    }
+                }
+                selected = k;
+            }
+            for (CompoundFilter filter : compoundFilters) {
+                int k = 0;
+                for (int i = 0; i < selected; i++) {
+                    final int row = selection[i];
+                    if (filter.evaluate(start + row)) {
+                        selection[k++] = row;
+                    }
+                }
+                selected = k;
+            }
+            for (int i = 0; i < selected; i++) {
+                final int row = selection[i];
+                groupOrdinals[row] = groups.lookup(groupKeys[row]);
+            }
+            for (int m = 0; m < measures.length; m++) {
+                measures[m].accumulate(
+                    start, selection, selected, groupOrdinals,
+                    groups.values[m], groups.seen[m]);
+            }
+        }
+
+        // Convert groups to rows.
+        final List<SqlStatement.Type> types =
+            new ArrayList<SqlStatement.Type>();
+        for (int i = 0; i < arity; i++) {
+            types.add(SqlStatement.Type.OBJECT);
+        }
+        for (MeasureColumn measure : measures) {
+            types.add(measure.type);
+        }
+        final SegmentLoader.RowList rows =
+            new SegmentLoader.RowList(types, Math.max(groups.size, 16));
+        for (int g = 0; g < groups.size; g++) {
+            rows.createRow();
+            final long groupKey = groups.keys[g];
+            for (int j = 0; j < arity; j++) {
+                final Object[] values = keys[j].values;
+                final int code =
+                    (int) ((groupKey / strides[j])
+                        % Math.max(values.length, 1));
+                final Object value = values[code];
+                if (value == null) {
+                    axisContainsNull[j] = true;
+                    rows.setObject(j, RolapUtil.sqlNullValue);
+                } else {
+                    axisValueSets[j].add(Aggregation.Axis.wrap(value));
+                    rows.setObject(j, value);
+                }
+            }
+            for (int m = 0; m < measures.length; m++) {
+                final int column = arity + m;
+                final double value = groups.values[m][g];
+                final boolean seen = groups.seen[m][g];
+                switch (measures[m].type) {
+                case INT:
+                    rows.setInt(column, (int) value);
+                    rows.setNull(column, !seen);
+                    break;
+                case DOUBLE:
+                    rows.setDouble(column, value);
+                    rows.setNull(column, !seen);
+                    break;
+                default:
+                    rows.setObject(
+                        column,
+                        seen ? measures[m].toObject(value) : Util.nullValue);
+                    break;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Column of keys, each stored as a code into a dictionary of the
+     * column's values.
+     */
+    private static class KeyColumn {
+        /**
+         * Distinct values of the column; null represents the SQL NULL
+         * value.
+         */
+        final Object[] values;
+        final Codes codes;
+
+        KeyColumn(Object[] values, Codes codes) {
+            this.values = values;
+            this.codes = codes;
+        }
+
+        /**
+         * Returns the estimated number of bytes used by this column.
+         */
+        long getByteCount() {
+            return (long) values.length * VALUE_BYTES + codes.getByteCount();
+        }
+
+        /**
+         * Evaluates a predicate on each value of this column.
+         *
+         * @param predicate Predicate
+         * @return Array indicating whether the predicate accepts the value
+         *   with each code, or null if it accepts all values
+         */
+        boolean[] accept(StarColumnPredicate predicate) {
+            if (predicate instanceof LiteralStarPredicate
+                && ((LiteralStarPredicate) predicate).getValue())
+            {
+                return null;
+            }
+            final boolean[] accept = new boolean[values.length];
+            for (int i = 0; i < values.length; i++) {
+                accept[i] =
+                    predicate.evaluate(
+                        values[i] == null
+                            ? RolapUtil.sqlNullValue
+                            : values[i]);
+            }
+            return accept;
+        }
+    }
+
+    /**
+     * Builds a {@link KeyColumn} from the rows of a result set.
+     */
+    private static class KeyColumnBuilder {
+        private final SqlStatement.Type type;
+        private final Map<Object, Integer> dictionary =
+            new HashMap<Object, Integer>();
+        private final List<Object> values = new ArrayList<Object>();
+        private int[] codes = new int[1024];
+        private int size;
+
+        KeyColumnBuilder(SqlStatement.Type type) {
+            this.type = type;
+        }
+
+        void add(ResultSet resultSet, int column) throws SQLException {
+            // Read values as SegmentLoader.processData does, so that they
+            // have the same types as the keys of segments loaded via SQL.
+            Object value;
+            switch (type) {
+            case INT:
+                final int intValue = resultSet.getInt(column);
+                value = intValue == 0 && resultSet.wasNull()
+                    ? null
+                    : (Object) intValue;
+                break;
+            case DOUBLE:
+                final double doubleValue = resultSet.getDouble(column);
+                value = doubleValue == 0 && resultSet.wasNull()
+                    ? null
+                    : (Object) doubleValue;
+                break;
+            default:
+                value = resultSet.getObject(column);
+                break;
+            }
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                code = values.size();
+                dictionary.put(value, code);
+                values.add(value);
+            }
+            if (size == codes.length) {
+                codes = Util.copyOf(codes, size * 2);
+            }
+            codes[size++] = code;
+        }
+
+        KeyColumn build() {
+            return new KeyColumn(
+                values.toArray(), Codes.create(codes, size, values.size()));
+        }
+    }
+
+    /**
+     * Array of dictionary codes, stored in the smallest primitive type
+     * which can hold the largest code.
+     */
+    private static abstract class Codes {
+        static Codes create(int[] codes, int size, int valueCount) {
+            if (valueCount <= 256) {
+                final byte[] bytes = new byte[size];
+                for (int i = 0; i < size; i++) {
+                    bytes[i] = (byte) codes[i];
+                }
+                return new ByteCodes(bytes);
+            } else if (valueCount <= 65536) {
+                final short[] shorts = new short[size];
+                for (int i = 0; i < size; i++) {
+                    shorts[i] = (short) codes[i];
+                }
+                return new ShortCodes(shorts);
+            } else {
+                return new IntCodes(Util.copyOf(codes, size));
+            }
+        }
+
+        /**
+         * Copies <code>n</code> codes, starting at row <code>start</code>,
+         * into a buffer.
+         */
+        abstract void get(int start, int n, int[] buf);
+
+        /**
+         * Returns the code in a given row.
+         */
+        abstract int get(int row);
+
+        /**
+         * Returns the number of bytes used by the codes.
+         */
+        abstract long getByteCount();
+    }
+
+    private static class ByteCodes extends Codes {
+        private final byte[] codes;
+
+        ByteCodes(byte[] codes) {
+            this.codes = codes;
+        }
+
+        void get(int start, int n, int[] buf) {
+            for (int i = 0; i < n; i++) {
+                buf[i] = codes[start + i] & 0xFF;
+            }
+        }
+
+        int get(int row) {
+            return codes[row] & 0xFF;
+        }
+
+        long getByteCount() {
+            return codes.length;
+        }
+    }
+
+    private static class ShortCodes extends Codes {
+        private final short[] codes;
+
+        ShortCodes(short[] codes) {
+            this.codes = codes;
+        }
+
+        void get(int start, int n, int[] buf) {
+            for (int i = 0; i < n; i++) {
+                buf[i] = codes[start + i] & 0xFFFF;
+            }
+        }
+
+        int get(int row) {
+            return codes[row] & 0xFFFF;
+        }
+
+        long getByteCount() {
+            return codes.length * 2L;
+        }
+    }
+
+    private static class IntCodes extends Codes {
+        private final int[] codes;
+
+        IntCodes(int[] codes) {
+            this.codes = codes;
+        }
+
+        void get(int start, int n, int[] buf) {
+            System.arraycopy(codes, start, buf, 0, n);
+        }
+
+        int get(int row) {
+            return codes[row];
+        }
+
+        long getByteCount() {
+            return codes.length * 4L;
+        }
+    }
+
+    /**
+     * Column of the values of a measure.
+     */
+    private static class MeasureColumn {
+        /**
+         * Aggregator which combines values, for example <code>sum</code>
+         * for a <code>count</code> measure.
+         */
+        final RolapAggregator rollup;
+
+        /**
+         * Type of the measure in the result of a SQL statement.
+         */
+        final SqlStatement.Type type;
+
+        final double[] values;
+
+        /**
+         * Rows whose value is null.
+         */
+        final BitSet nulls;
+
+        /**
+         * Class of the values returned by the SQL statement, if
+         * {@link #type} is {@link SqlStatement.Type#OBJECT}; otherwise
+         * null.
+         */
+        final Class<?> valueClass;
+
+        /**
+         * Largest scale of the values, if they are {@link BigDecimal}.
+         */
+        final int scale;
+
+        MeasureColumn(
+            RolapAggregator rollup,
+            SqlStatement.Type type,
+            double[] values,
+            BitSet nulls,
+            Class<?> valueClass,
+            int scale)
+        {
+            this.rollup = rollup;
+            this.type = type;
+            this.values = values;
+            this.nulls = nulls;
+            this.valueClass = valueClass;
+            this.scale = scale;
+        }
+
+        /**
+         * Returns the estimated number of bytes used by this column.
+         */
+        long getByteCount() {
+            return values.length * 8L + nulls.size() / 8;
+        }
+
+        /**
+         * Converts an accumulated value to the type which the SQL statement
+         * would have returned for this measure.
+         *
+         * <p>The sum of values of scale <i>s</i> has scale <i>s</i>, so
+         * rounding a sum of {@link BigDecimal} values to that scale removes
+         * any error introduced by adding them as doubles.
+         *
+         * @param value Accumulated value
+         * @return Value as an object of the same class as the SQL statement's
+         */
+        Object toObject(double value) {
+            if (valueClass == BigDecimal.class) {
+                return BigDecimal.valueOf(value).setScale(
+                    scale, BigDecimal.ROUND_HALF_EVEN);
+            } else if (valueClass == Long.class) {
+                return Math.round(value);
+            } else if (valueClass == Integer.class) {
+                return (int) Math.round(value);
+            } else {
+                return value;
+            }
+        }
+
+        /**
+         * Accumulates the value of each selected row into its group.
+         *
+         * @param start Ordinal of first row of batch
+         * @param selection Offsets of selected rows within batch
+         * @param selected Number of selected rows
+         * @param groupOrdinals Group of each row within batch
+         * @param groupValues Value of each group
+         * @param groupSeen Whether each group has a non-null value
+         */
+        void accumulate(
+            int start,
+            int[] selection,
+            int selected,
+            int[] groupOrdinals,
+            double[] groupValues,
+            boolean[] groupSeen)
+        {
+            for (int i = 0; i < selected; i++) {
+                final int row = start + selection[i];
+                if (nulls.get(row)) {
+                    continue;
+                }
+                final int g = groupOrdinals[selection[i]];
+                final double value = values[row];
+                if (!groupSeen[g]) {
+                    groupSeen[g] = true;
+                    groupValues[g] = value;
+                } else if (rollup == RolapAggregator.Sum) {
+                    groupValues[g] += value;
+                } else if (rollup == RolapAggregator.Min) {
+                    groupValues[g] = Math.min(groupValues[g], value);
+                } else {
+                    groupValues[g] = Math.max(groupValues[g], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a {@link MeasureColumn} from the rows of a result set.
+     */
+    private static class MeasureColumnBuilder {
+        private final RolapAggregator aggregator;
+        private final SqlStatement.Type type;
+        private double[] values = new double[1024];
+        private final BitSet nulls = new BitSet();
+        private int size;
+        private Class<?> valueClass;
+        private int scale;
+
+        MeasureColumnBuilder(
+            RolapAggregator aggregator,
+            SqlStatement.Type type)
+        {
+            this.aggregator = aggregator;
+            this.type = type;
+        }
+
+        void add(ResultSet resultSet, int column) throws SQLException {
+            if (size == values.length) {
+                values = Util.copyOf(values, size * 2);
+            }
+            if (type == SqlStatement.Type.OBJECT) {
+                // Remember the class of the values, as SegmentLoader would
+                // return them, so that load can return the same class.
+                final Object o = resultSet.getObject(column);
+                if (o == null) {
+                    nulls.set(size);
+                } else {
+                    values[size] = ((Number) o).doubleValue();
+                    if (valueClass == null) {
+                        valueClass = o.getClass();
+                    }
+                    if (o instanceof BigDecimal) {
+                        scale = Math.max(scale, ((BigDecimal) o).scale());
+                    }
+                }
+            } else {
+                values[size] = resultSet.getDouble(column);
+                if (resultSet.wasNull()) {
+                    nulls.set(size);
+                }
+            }
+            ++size;
+        }
+
+        MeasureColumn build() {
+            return new MeasureColumn(
+                (RolapAggregator) aggregator.getRollup(),
+                type,
+                Util.copyOf(values, size),
+                nulls,
+                valueClass,
+                scale);
+        }
+    }
+
+    /**
+     * Predicate on several columns, evaluated on a row of the partition.
+     */
+    private static class CompoundFilter {
+        private final StarPredicate predicate;
+        private final KeyColumn[] keys;
+        private final List<Object> valueList;
+        private final Object[] valueArray;
+
+        CompoundFilter(StarPredicate predicate, KeyColumn[] keys) {
+            this.predicate = predicate;
+            this.keys = keys;
+            this.valueArray = new Object[keys.length];
+            this.valueList = Arrays.asList(valueArray);
+        }
+
+        boolean evaluate(int row) {
+            for (int i = 0; i < keys.length; i++) {
+                final Object value = keys[i].values[keys[i].codes.get(row)];
+                valueArray[i] =
+                    value == null ? RolapUtil.sqlNullValue : value;
+            }
+            return predicate.evaluate(valueList);
+        }
+    }
+
+    /**
+     * Hash table from group key to group ordinal, which also holds the
+     * accumulated value of each measure for each group.
+     */
+    private static class GroupTable {
+        /** Group key of each group, by ordinal. */
+        long[] keys = new long[16];
+        /** Accumulated value of each measure, by group ordinal. */
+        final double[][] values;
+        /** Whether each measure has a non-null value, by group ordinal. */
+        final boolean[][] seen;
+        int size;
+
+        /** Open-addressing table of group ordinal + 1; 0 means empty. */
+        private int[] slots = new int[32];
+
+        GroupTable(int measureCount) {
+            values = new double[measureCount][16];
+            seen = new boolean[measureCount][16];
+        }
+
+        /**
+         * Returns the ordinal of the group with a given key, creating it if
+         * necessary.
+         */
+        int lookup(long key) {
+            int mask = slots.length - 1;
+            int i = hash(key) & mask;
+            while (true) {
+                final int slot = slots[i];
+                if (slot == 0) {
+                    break;
+                }
+                if (keys[slot - 1] == key) {
+                    return slot - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            final int ordinal = size++;
+            if (ordinal == keys.length) {
+                final int capacity = keys.length * 2;
+                keys = Util.copyOf(keys, capacity);
+                for (int m = 0; m < values.length; m++) {
+                    values[m] = Util.copyOf(values[m], capacity);
+                    seen[m] = Util.copyOf(seen[m], capacity);
+                }
+            }
+            keys[ordinal] = key;
+            slots[i] = ordinal + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return ordinal;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            final int mask = slots.length - 1;
+            for (int ordinal = 0; ordinal < size; ordinal++) {
+                int i = hash(keys[ordinal]) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = ordinal + 1;
+            }
+        }
+
+        private static int hash(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+}
+
+// End InMemoryPartition.java
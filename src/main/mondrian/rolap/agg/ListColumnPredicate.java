@@ -299,6 +299,10 @@ public class ListColumnPredicate extends AbstractColumnPredicate {
         int notNullCount = 0;
         final RolapStar.Column column = getConstrainedColumn();
         final String expr = column.generateExprString(sqlQuery);
+        if (sqlQuery.shouldBindArray(column.getDatatype(), predicates.size())) {
+            arrayToSql(sqlQuery, buf, column, expr);
+            return;
+        }
         final int marker = buf.length(); // to allow backtrack later
         buf.append(expr);
         ValueColumnPredicate firstNotNull = null;
@@ -367,6 +371,52 @@ public class ListColumnPredicate extends AbstractColumnPredicate {
             break;
         }
     }
+
+    /**
+     * Generates SQL for this predicate which binds the values as a single
+     * array parameter; for example, "x = ANY (?)", or
+     * "(x = ANY (?) or x is null)" if one of the values is null.
+     *
+     * @param sqlQuery Query
+     * @param buf Buffer to append SQL to
+     * @param column Constrained column
+     * @param expr SQL expression for column
+     */
+    private void arrayToSql(
+        SqlQuery sqlQuery,
+        StringBuilder buf,
+        RolapStar.Column column,
+        String expr)
+    {
+        final List<Object> values = new ArrayList<Object>();
+        boolean containsNull = false;
+        for (StarColumnPredicate predicate : getPredicates()) {
+            final Object key = ((ValueColumnPredicate) predicate).getValue();
+            if (key == RolapUtil.sqlNullValue) {
+                containsNull = true;
+            } else {
+                values.add(key);
+            }
+        }
+        if (values.isEmpty()) {
+            buf.append(expr);
+            buf.append(" is null");
+            return;
+        }
+        final String parameter =
+            sqlQuery.addArrayParameter(column.getDatatype(), values.toArray());
+        final String condition =
+            sqlQuery.getDialect().generateArrayInList(expr, parameter);
+        if (containsNull) {
+            buf.append('(');
+            buf.append(condition);
+            buf.append(" or ");
+            buf.append(expr);
+            buf.append(" is null)");
+        } else {
+            buf.append(condition);
+        }
+    }
 }
 
 // End ListColumnPredicate.java
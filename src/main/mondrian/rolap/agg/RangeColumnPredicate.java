@@ -9,9 +9,11 @@
 */
 package mondrian.rolap.agg;
 
+import mondrian.olap.Util;
 import mondrian.rolap.StarPredicate;
 import mondrian.rolap.StarColumnPredicate;
 import mondrian.rolap.RolapStar;
+import mondrian.rolap.sql.SqlQuery;
 
 import java.util.Collection;
 
@@ -61,10 +63,11 @@ public class RangeColumnPredicate extends AbstractColumnPredicate {
     }
 
     public int hashCode() {
-        int h = lowerInclusive ? 2 : 1;
-        h = 31 * h + lowerBound.hashCode();
+        int h = getConstrainedColumnBitKey().hashCode();
+        h = 31 * h + (lowerInclusive ? 2 : 1);
+        h = Util.hash(h, lowerBound);
         h = 31 * h + (upperInclusive ? 2 : 1);
-        h = 31 * h + upperBound.hashCode();
+        h = Util.hash(h, upperBound);
         return h;
     }
 
@@ -72,15 +75,21 @@ public class RangeColumnPredicate extends AbstractColumnPredicate {
         if (obj instanceof RangeColumnPredicate) {
             RangeColumnPredicate that =
                 (RangeColumnPredicate) obj;
-            return this.lowerInclusive == that.lowerInclusive
-                && this.lowerBound.equals(that.lowerBound)
+            return getConstrainedColumnBitKey().equals(
+                    that.getConstrainedColumnBitKey())
+                && this.lowerInclusive == that.lowerInclusive
+                && Util.equals(this.lowerBound, that.lowerBound)
                 && this.upperInclusive == that.upperInclusive
-                && this.upperBound.equals(that.upperBound);
+                && Util.equals(this.upperBound, that.upperBound);
         } else {
             return false;
         }
     }
 
+    public boolean equalConstraint(StarPredicate that) {
+        return equals(that);
+    }
+
     public void values(Collection<Object> collection) {
         // Besides the end points, don't know what values may be in the range.
         // FIXME: values() is only a half-useful method. Replace it?
@@ -127,6 +136,37 @@ public class RangeColumnPredicate extends AbstractColumnPredicate {
         buf.append(")");
     }
 
+    public void toSql(SqlQuery sqlQuery, StringBuilder buf) {
+        final RolapStar.Column column = getConstrainedColumn();
+        final String expr = column.generateExprString(sqlQuery);
+        if (lowerBound == null && upperBound == null) {
+            buf.append("true");
+            return;
+        }
+        final boolean both = lowerBound != null && upperBound != null;
+        if (both) {
+            buf.append("(");
+        }
+        if (lowerBound != null) {
+            buf.append(expr)
+                .append(lowerInclusive ? " >= " : " > ");
+            sqlQuery.getDialect().quote(
+                buf, lowerBound.getValue(), column.getDatatype());
+        }
+        if (both) {
+            buf.append(" and ");
+        }
+        if (upperBound != null) {
+            buf.append(expr)
+                .append(upperInclusive ? " <= " : " < ");
+            sqlQuery.getDialect().quote(
+                buf, upperBound.getValue(), column.getDatatype());
+        }
+        if (both) {
+            buf.append(")");
+        }
+    }
+
     public Overlap intersect(StarColumnPredicate predicate) {
         throw new UnsupportedOperationException();
     }
@@ -14,6 +14,7 @@ package mondrian.rolap.agg;
 
 import mondrian.olap.*;
 import mondrian.rolap.*;
+import mondrian.util.HyperLogLog;
 
 import java.util.*;
 import java.util.concurrent.CountDownLatch;
@@ -133,6 +134,13 @@ class Segment {
      */
     private final List<Region> excludedRegions;
 
+    /**
+     * Time, in milliseconds, at which a query last pinned this segment. The
+     * {@link mondrian.rolap.cache.CachePool} evicts segments which have not
+     * been used recently first.
+     */
+    private volatile long lastPinnedMillis = System.currentTimeMillis();
+
     private static final Logger LOGGER = Logger.getLogger(Segment.class);
 
     /**
@@ -234,6 +242,29 @@ class Segment {
         return (compareState(State.Failed));
     }
 
+    /**
+     * Records that a query has pinned this segment.
+     */
+    void pinned() {
+        lastPinnedMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the time, in milliseconds, at which a query last pinned this
+     * segment, or at which it was created if it has never been pinned.
+     */
+    long getLastPinnedMillis() {
+        return lastPinnedMillis;
+    }
+
+    /**
+     * Returns the estimated number of bytes used by this segment's data, or
+     * 0 if it is not loaded.
+     */
+    long getByteCount() {
+        return isReady() ? (long) data.getBytes() : 0L;
+    }
+
     private void makeDescription(StringBuilder buf, boolean values) {
         final String sep = Util.nl + "    ";
         buf.append(printSegmentHeaderInfo(sep));
@@ -312,12 +343,51 @@ class Segment {
      *
      */
     Object getCellValue(Object[] keys) {
+        return getCellValue(
+            keys, null, null, CellKey.Generator.newCellKey(axes.length));
+    }
+
+    /**
+     * Retrieves the value at the location identified by
+     * <code>keys</code>, using a given cell key as a work area.
+     *
+     * <p>If <code>codes</code> is not null, it holds the dictionary code of
+     * each key (see {@link ValueDictionary}), or -1 if the key had no code
+     * when the caller looked it up, and <code>dictionaries</code> holds the
+     * dictionary which assigned each code. An axis which was coded by the
+     * same dictionary is searched by code, which is cheaper than searching
+     * by value; any other axis is searched by value.
+     *
+     * @param keys Key values, one per axis
+     * @param codes Dictionary codes of key values, or null
+     * @param dictionaries Dictionaries which assigned the codes, or null if
+     *   <code>codes</code> is null
+     * @param cellKey Cell key with one axis per key; overwritten
+     * @return Cell value, {@link Util#nullValue}, or null, as
+     *   {@link #getCellValue(Object[])}
+     */
+    Object getCellValue(
+        Object[] keys,
+        int[] codes,
+        ValueDictionary[] dictionaries,
+        CellKey cellKey)
+    {
         assert keys.length == axes.length;
+        assert codes == null || codes.length == axes.length;
+        assert codes == null || dictionaries.length == axes.length;
+        assert cellKey.size() == axes.length;
         int missed = 0;
-        CellKey cellKey = CellKey.Generator.newCellKey(axes.length);
         for (int i = 0; i < keys.length; i++) {
             Object key = keys[i];
-            int offset = axes[i].getOffset(key);
+            // A code is valid only in the dictionary which assigned it. If
+            // the axis was coded by an earlier dictionary of its column, or
+            // by a private dictionary, search it by value.
+            int offset =
+                codes == null
+                || codes[i] < 0
+                || axes[i].getDictionary() != dictionaries[i]
+                    ? axes[i].getOffset(key)
+                    : axes[i].getOffsetForCode(codes[i]);
             if (offset < 0) {
                 if (axes[i].getPredicate().evaluate(key)) {
                     // see whether this segment should contain this value
@@ -352,6 +422,76 @@ class Segment {
         }
     }
 
+    /**
+     * Merges the sketches of the cells of this segment which have given
+     * values on some of its axes, and any value on the other axes. This
+     * computes the value of a cell of an
+     * {@link RolapAggregator#ApproxDistinctCount} measure at a coarser
+     * granularity than this segment.
+     *
+     * <p>Returns null if this segment is not loaded, or does not contain
+     * every cell which contributes to the result: that is, if the predicate
+     * of any other axis is not <code>true</code>, if any key is outside the
+     * predicate of its axis, or if any region has been excluded from this
+     * segment. A sketch is allocated only if this segment qualifies.
+     *
+     * @param axisOrdinals Ordinal of the axis of each key
+     * @param keys Key values
+     * @return Merged sketch, or null if this segment does not contain all
+     *   cells which contribute
+     */
+    HyperLogLog rollupSketch(
+        int[] axisOrdinals,
+        Object[] keys)
+    {
+        if (!isReady()
+            || !excludedRegions.isEmpty()
+            || !(data instanceof SketchSegmentDataset))
+        {
+            return null;
+        }
+        final int[] offsets = new int[axes.length];
+        final BitSet keyAxes = new BitSet(axes.length);
+        boolean empty = false;
+        for (int i = 0; i < keys.length; i++) {
+            final Aggregation.Axis axis = axes[axisOrdinals[i]];
+            if (!axis.getPredicate().evaluate(keys[i])) {
+                return null;
+            }
+            keyAxes.set(axisOrdinals[i]);
+            offsets[axisOrdinals[i]] = axis.getOffset(keys[i]);
+            if (offsets[axisOrdinals[i]] < 0) {
+                // Key is in the segment, but has no data.
+                empty = true;
+            }
+        }
+        for (int i = 0; i < axes.length; i++) {
+            if (!keyAxes.get(i)
+                && !LiteralStarPredicate.TRUE.equals(axes[i].getPredicate()))
+            {
+                return null;
+            }
+        }
+        final HyperLogLog sketch = new HyperLogLog();
+        if (empty) {
+            return sketch;
+        }
+        final SketchSegmentDataset sketchData = (SketchSegmentDataset) data;
+        entries:
+        for (Map.Entry<CellKey, HyperLogLog> entry
+            : sketchData.sketchEntrySet())
+        {
+            final CellKey cellKey = entry.getKey();
+            for (int axisOrdinal : axisOrdinals) {
+                if (cellKey.getAxis(axisOrdinal) != offsets[axisOrdinal]) {
+                    continue entries;
+                }
+            }
+            sketch.merge(entry.getValue());
+        }
+        return sketch;
+    }
+
     /**
      * Returns whether the given set of key values will be in this segment
      * when it finishes loading.
@@ -519,7 +659,8 @@ class Segment {
                 assert newAxisKeys.length > 0;
             }
             final Aggregation.Axis newAxis =
-                new Aggregation.Axis(newPredicate, newAxisKeys);
+                new Aggregation.Axis(
+                    newPredicate, axis.getDictionary(), newAxisKeys);
             newAxes[j] = newAxis;
             valueCount *= newAxisKeys.length;
         }
@@ -578,6 +719,9 @@ class Segment {
         SqlStatement.Type type,
         int size)
     {
+        if (measure.getAggregator() == RolapAggregator.ApproxDistinctCount) {
+            return new SketchSegmentDataset();
+        }
         if (sparse) {
             return new SparseSegmentDataset(this);
         } else {
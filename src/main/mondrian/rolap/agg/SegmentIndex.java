@@ -0,0 +1,249 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.StarColumnPredicate;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * Index of the segments in an {@link Aggregation}, which allows
+ * {@link Aggregation#getCellValue} to find the segments which might contain
+ * a cell without testing every segment.
+ *
+ * <p>Segments are grouped by measure. Within each measure, every segment
+ * has an ordinal, and each axis has a map from key value to the set of
+ * segments whose predicate on that axis accepts that value. A segment whose
+ * predicate on an axis cannot be enumerated (say an unconstrained axis, or
+ * a range) is in the axis's set of wildcard segments, and accepts every
+ * value. The candidates for a cell are the intersection, over all axes, of
+ * the segments accepting the cell's key on that axis.
+ *
+ * <p>The index is a filter: a candidate segment might still not contain the
+ * cell (for example, if the cell is in one of the segment's excluded
+ * regions), but a segment which is not a candidate certainly does not
+ * contain it.
+ *
+ * <p>An index is immutable. When segments are added to or removed from an
+ * aggregation, the aggregation discards its index and builds a new one
+ * when it is next needed.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+class SegmentIndex {
+    private final Map<RolapStar.Measure, MeasureIndex> measureIndexes =
+        new HashMap<RolapStar.Measure, MeasureIndex>();
+
+    /**
+     * Creates a SegmentIndex.
+     *
+     * @param segmentRefs References to segments; those which have been
+     *   garbage-collected are ignored
+     */
+    SegmentIndex(List<SoftReference<Segment>> segmentRefs) {
+        for (SoftReference<Segment> segmentRef : segmentRefs) {
+            final Segment segment = segmentRef.get();
+            if (segment == null) {
+                continue;
+            }
+            MeasureIndex measureIndex = measureIndexes.get(segment.measure);
+            if (measureIndex == null) {
+                measureIndex = new MeasureIndex(segment.axes.length);
+                measureIndexes.put(segment.measure, measureIndex);
+            }
+            measureIndex.add(segmentRef, segment);
+        }
+    }
+
+    /**
+     * Returns the index of the segments for a given measure, or null if
+     * there are no segments for that measure.
+     *
+     * @param measure Measure
+     * @return Index of segments for measure, or null
+     */
+    MeasureIndex get(RolapStar.Measure measure) {
+        return measureIndexes.get(measure);
+    }
+
+    /**
+     * Adds the values accepted by a predicate to a collection, and returns
+     * whether the predicate accepts only those values. Returns false if the
+     * predicate's values cannot be enumerated.
+     *
+     * @param predicate Predicate
+     * @param values Collection to add values to
+     * @return Whether predicate accepts only a finite set of values
+     */
+    private static boolean addValues(
+        StarColumnPredicate predicate,
+        Collection<Object> values)
+    {
+        if (predicate instanceof ValueColumnPredicate) {
+            values.add(((ValueColumnPredicate) predicate).getValue());
+            return true;
+        }
+        if (predicate instanceof ListColumnPredicate) {
+            for (StarColumnPredicate child
+                : ((ListColumnPredicate) predicate).getPredicates())
+            {
+                if (!addValues(child, values)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (predicate instanceof LiteralStarPredicate) {
+            // FALSE accepts no values; TRUE accepts all.
+            return !((LiteralStarPredicate) predicate).getValue();
+        }
+        return false;
+    }
+
+    /**
+     * Index of the segments of one measure.
+     */
+    static class MeasureIndex {
+        private final List<SoftReference<Segment>> segmentRefs =
+            new ArrayList<SoftReference<Segment>>();
+        private final AxisIndex[] axisIndexes;
+
+        /**
+         * Set of all segments.
+         */
+        private final BitSet all = new BitSet();
+
+        MeasureIndex(int axisCount) {
+            axisIndexes = new AxisIndex[axisCount];
+            for (int i = 0; i < axisCount; i++) {
+                axisIndexes[i] = new AxisIndex();
+            }
+        }
+
+        private void add(SoftReference<Segment> segmentRef, Segment segment) {
+            final int ordinal = segmentRefs.size();
+            segmentRefs.add(segmentRef);
+            all.set(ordinal);
+            final List<Object> values = new ArrayList<Object>();
+            for (int i = 0; i < axisIndexes.length; i++) {
+                final AxisIndex axisIndex = axisIndexes[i];
+                values.clear();
+                if (!addValues(segment.axes[i].getPredicate(), values)) {
+                    axisIndex.wildcards.set(ordinal);
+                    continue;
+                }
+                for (Object value : values) {
+                    BitSet bitSet = axisIndex.valueSegments.get(value);
+                    if (bitSet == null) {
+                        bitSet = new BitSet();
+                        axisIndex.valueSegments.put(value, bitSet);
+                    }
+                    bitSet.set(ordinal);
+                }
+            }
+        }
+
+        /**
+         * Returns the number of segments in this index.
+         *
+         * @return Number of segments
+         */
+        int size() {
+            return segmentRefs.size();
+        }
+
+        /**
+         * Returns the reference to the segment with a given ordinal.
+         *
+         * @param ordinal Ordinal of segment
+         * @return Reference to segment
+         */
+        SoftReference<Segment> get(int ordinal) {
+            return segmentRefs.get(ordinal);
+        }
+
+        /**
+         * Returns the ordinals of the segments which might contain a cell.
+         * The caller may modify the returned set.
+         *
+         * @param keys Key values of cell, one per axis
+         * @return Ordinals of candidate segments
+         */
+        BitSet getCandidates(Object[] keys) {
+            return getCandidates(keys, new BitSet(), new BitSet());
+        }
+
+        /**
+         * Computes the ordinals of the segments which might contain a cell,
+         * into a given bit set. Once the bit sets have grown to the number
+         * of segments, does not allocate memory.
+         *
+         * @param keys Key values of cell, one per axis
+         * @param candidates Bit set to hold result; overwritten
+         * @param scratch Work area; overwritten
+         * @return <code>candidates</code>, holding the ordinals of candidate
+         *   segments
+         */
+        BitSet getCandidates(
+            Object[] keys,
+            BitSet candidates,
+            BitSet scratch)
+        {
+            assert keys.length == axisIndexes.length;
+            candidates.clear();
+            candidates.or(all);
+            for (int i = 0; i < axisIndexes.length; i++) {
+                final AxisIndex axisIndex = axisIndexes[i];
+                if (axisIndex.valueSegments.isEmpty()) {
+                    // Every segment accepts every value on this axis.
+                    continue;
+                }
+                final BitSet valueSegments =
+                    axisIndex.valueSegments.get(keys[i]);
+                if (valueSegments == null) {
+                    candidates.and(axisIndex.wildcards);
+                } else {
+                    scratch.clear();
+                    scratch.or(axisIndex.wildcards);
+                    scratch.or(valueSegments);
+                    candidates.and(scratch);
+                }
+                if (candidates.isEmpty()) {
+                    break;
+                }
+            }
+            return candidates;
+        }
+    }
+
+    /**
+     * Index of the segments of one measure on one axis.
+     */
+    private static class AxisIndex {
+        /**
+         * For each key value, the segments whose predicate on this axis
+         * accepts that value.
+         */
+        private final Map<Object, BitSet> valueSegments =
+            new HashMap<Object, BitSet>();
+
+        /**
+         * Segments whose predicate on this axis cannot be enumerated, and
+         * which must therefore be considered for every value.
+         */
+        private final BitSet wildcards = new BitSet();
+    }
+}
+
+// End SegmentIndex.java
@@ -10,6 +10,7 @@
 package mondrian.rolap.agg;
 
 import mondrian.rolap.*;
+import mondrian.rolap.aggmatcher.AggAdvisor;
 import mondrian.olap.*;
 
 import java.sql.*;
@@ -63,10 +64,28 @@ public class SegmentLoader {
         }
     }
 
+    /**
+     * Query on whose behalf segments are loaded, or null.
+     */
+    private final Query query;
+
     /**
      * Creates a SegmentLoader.
      */
     public SegmentLoader() {
+        this(null);
+    }
+
+    /**
+     * Creates a SegmentLoader which loads segments on behalf of a query.
+     * Long operations which do not execute SQL, such as scanning an
+     * in-memory partition, check whether the query has been canceled or
+     * has timed out.
+     *
+     * @param query Query, or null
+     */
+    public SegmentLoader(Query query) {
+        this.query = query;
     }
 
     /**
@@ -107,21 +126,46 @@ public class SegmentLoader {
             groupingSetsList.getDefaultColumns();
         SqlStatement stmt = null;
         try {
-            stmt = createExecuteSql(
-                groupingSetsList,
-                compoundPredicateList);
             int arity = defaultColumns.length;
             SortedSet<Comparable<?>>[] axisValueSets =
                 getDistinctValueWorkspace(arity);
 
             boolean[] axisContainsNull = new boolean[arity];
 
-            RowList rows =
-                processData(
-                    stmt,
-                    axisContainsNull,
-                    axisValueSets,
-                    groupingSetsList);
+            // If the star's data is in memory, and the partition can answer
+            // the request, there is no need to execute SQL.
+            RowList rows = null;
+            final InMemoryPartition partition =
+                groupingSetsList.getStar().getInMemoryPartition();
+            if (partition != null) {
+                rows =
+                    partition.load(
+                        groupingSetsList,
+                        compoundPredicateList,
+                        axisContainsNull,
+                        axisValueSets,
+                        query);
+            }
+
+            if (rows == null) {
+                final long startTime = System.currentTimeMillis();
+                stmt = createExecuteSql(
+                    groupingSetsList,
+                    compoundPredicateList);
+                rows =
+                    processData(
+                        stmt,
+                        axisContainsNull,
+                        axisValueSets,
+                        groupingSetsList);
+
+                if (AggAdvisor.isEnabled()) {
+                    recordLoad(
+                        groupingSetsList,
+                        rows.size(),
+                        System.currentTimeMillis() - startTime);
+                }
+            }
 
             boolean sparse =
                 setAxisDataAndDecideSparseUse(
@@ -153,6 +197,32 @@ public class SegmentLoader {
         }
     }
 
+    /**
+     * Records a load with the aggregate table advisor.
+     *
+     * @param groupingSetsList Grouping sets which were loaded
+     * @param rowCount Number of rows returned
+     * @param sqlMillis Time spent executing SQL and fetching rows
+     */
+    private void recordLoad(
+        GroupingSetsList groupingSetsList,
+        int rowCount,
+        long sqlMillis)
+    {
+        final List<RolapStar.Measure> measures =
+            new ArrayList<RolapStar.Measure>();
+        for (Segment segment : groupingSetsList.getDefaultSegments()) {
+            measures.add(segment.measure);
+        }
+        AggAdvisor.instance().recordLoad(
+            groupingSetsList.getDefaultColumns(),
+            groupingSetsList.getDefaultLevelBitKey(),
+            measures,
+            groupingSetsList.getDefaultMeasureBitKey(),
+            rowCount,
+            sqlMillis);
+    }
+
     void setFailOnStillLoadingSegments(GroupingSetsList groupingSetsList) {
         for (GroupingSet groupingset : groupingSetsList.getGroupingSets()) {
             for (Segment segment : groupingset.getSegments()) {
@@ -375,12 +445,13 @@ public class SegmentLoader {
         List<StarPredicate> compoundPredicateList)
     {
         RolapStar star = groupingSetsList.getStar();
+        final List<Object> parameters = new ArrayList<Object>();
         String sql =
             AggregationManager.instance().generateSql(
-                groupingSetsList, compoundPredicateList);
+                groupingSetsList, compoundPredicateList, parameters);
         return RolapUtil.executeQuery(
-            star.getDataSource(), sql, "Segment.load",
-            "Error while loading segment");
+            star.getDataSource(), sql, parameters, 0, 0, "Segment.load",
+            "Error while loading segment", -1, -1);
     }
 
     RowList processData(
@@ -479,11 +550,16 @@ public class SegmentLoader {
                 }
             }
 
-            // pre-compute which measures are numeric
+            // pre-compute which measures are numeric; the values of
+            // approx-distinct-count measures are keys or sketches, to be
+            // merged, not numbers
             final boolean[] numeric = new boolean[measureCount];
             int k = 0;
             for (Segment segment : segments) {
-                numeric[k++] = segment.measure.getDatatype().isNumeric();
+                numeric[k++] =
+                    segment.measure.getDatatype().isNumeric()
+                    && segment.measure.getAggregator()
+                        != RolapAggregator.ApproxDistinctCount;
             }
 
             // get the measure
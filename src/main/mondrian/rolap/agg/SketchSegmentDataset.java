@@ -0,0 +1,163 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.olap.Util;
+import mondrian.rolap.CellKey;
+import mondrian.rolap.RolapUtil;
+import mondrian.rolap.SqlStatement;
+import mondrian.util.HyperLogLog;
+import mondrian.util.Pair;
+
+import java.util.*;
+
+/**
+ * Dataset which holds a {@link HyperLogLog} sketch for each cell of a
+ * segment of an
+ * {@link mondrian.rolap.RolapAggregator#ApproxDistinctCount} measure.
+ *
+ * <p>The SQL statement which loads the segment returns several rows for
+ * each cell: one for each distinct value of the measure's expression, or, if
+ * the segment is loaded from an aggregate table, one for each sketch stored
+ * in the table. The dataset merges them into the cell's sketch. The value
+ * of a cell is the estimated number of distinct values, as a
+ * {@link Double}, like other numeric measures.
+ *
+ * <p>NOTE: This class is not synchronized.</p>
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+class SketchSegmentDataset implements SegmentDataset {
+    private final Map<CellKey, HyperLogLog> sketches =
+        new HashMap<CellKey, HyperLogLog>();
+
+    /**
+     * Creates a SketchSegmentDataset.
+     */
+    SketchSegmentDataset() {
+    }
+
+    public Object getObject(CellKey pos) {
+        final HyperLogLog sketch = sketches.get(pos);
+        return sketch == null ? null : (double) sketch.estimate();
+    }
+
+    public int getInt(CellKey pos) {
+        throw new UnsupportedOperationException();
+    }
+
+    public double getDouble(CellKey pos) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean isNull(CellKey pos) {
+        return !sketches.containsKey(pos);
+    }
+
+    public boolean exists(CellKey pos) {
+        return sketches.containsKey(pos);
+    }
+
+    /**
+     * Returns the sketch at a given coordinate, or null if there is none.
+     *
+     * @param pos Coordinate position
+     * @return Sketch, or null
+     */
+    HyperLogLog getSketch(CellKey pos) {
+        return sketches.get(pos);
+    }
+
+    /**
+     * Returns the cells of this dataset and their sketches.
+     *
+     * @return Cells and sketches
+     */
+    Set<Map.Entry<CellKey, HyperLogLog>> sketchEntrySet() {
+        return sketches.entrySet();
+    }
+
+    public double getBytes() {
+        // assume a slot, key, and sketch header are each 4 bytes
+        int bytes = sketches.size() * 12;
+        for (HyperLogLog sketch : sketches.values()) {
+            bytes += 1 << sketch.getPrecision();
+        }
+        return bytes;
+    }
+
+    public void populateFrom(int[] pos, SegmentDataset data, CellKey key) {
+        final HyperLogLog sketch =
+            ((SketchSegmentDataset) data).getSketch(key);
+        if (sketch != null) {
+            sketches.put(CellKey.Generator.newCellKey(pos), sketch.copy());
+        }
+    }
+
+    public void populateFrom(
+        int[] pos, SegmentLoader.RowList rowList, int column)
+    {
+        final Object o = rowList.getObject(column);
+        if (o == null
+            || o == Util.nullValue
+            || o == RolapUtil.sqlNullValue)
+        {
+            // Null values are not counted, as in "count(distinct x)".
+            return;
+        }
+        final CellKey key = CellKey.Generator.newCellKey(pos);
+        HyperLogLog sketch = sketches.get(key);
+        if (o instanceof byte[]) {
+            // A sketch stored in an aggregate table.
+            final HyperLogLog stored = HyperLogLog.fromBytes((byte[]) o);
+            if (sketch == null) {
+                sketches.put(key, stored);
+            } else {
+                sketch.merge(stored);
+            }
+        } else {
+            if (sketch == null) {
+                sketch = new HyperLogLog();
+                sketches.put(key, sketch);
+            }
+            sketch.add(o);
+        }
+    }
+
+    public SqlStatement.Type getType() {
+        return SqlStatement.Type.OBJECT;
+    }
+
+    public Iterator<Map.Entry<CellKey, Object>> iterator() {
+        final Iterator<Map.Entry<CellKey, HyperLogLog>> iterator =
+            sketches.entrySet().iterator();
+        return new Iterator<Map.Entry<CellKey, Object>>() {
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public Map.Entry<CellKey, Object> next() {
+                final Map.Entry<CellKey, HyperLogLog> entry =
+                    iterator.next();
+                return new Pair<CellKey, Object>(
+                    entry.getKey(),
+                    (double) entry.getValue().estimate());
+            }
+
+            public void remove() {
+                iterator.remove();
+            }
+        };
+    }
+}
+
+// End SketchSegmentDataset.java
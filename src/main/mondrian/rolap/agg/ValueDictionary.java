@@ -0,0 +1,112 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dictionary which assigns a small integer code to each distinct value of a
+ * column.
+ *
+ * <p>Each {@link mondrian.rolap.RolapStar.Column} has one dictionary, shared
+ * by all segments. A segment axis stores the code of each of its keys, and
+ * looks up a cell by code rather than by comparing key objects. A value
+ * receives its code the first time it is loaded into a segment axis.
+ *
+ * <p>When a column's segments are flushed, or the {@link
+ * mondrian.rolap.cache.CachePool} needs memory, the column replaces its
+ * dictionary with a new, empty one. Each dictionary assigns codes from 0, so
+ * the same code may identify different values in different dictionaries. A
+ * code is therefore meaningful only together with the dictionary which
+ * assigned it: a segment axis remembers the dictionary which coded it, and
+ * is searched by value if asked about a code from any other dictionary.
+ *
+ * <p>Codes are not ordered: the code of a value says nothing about its
+ * position relative to other values.
+ *
+ * <p>This class is thread-safe.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public final class ValueDictionary {
+    private final ConcurrentMap<Object, Integer> codes =
+        new ConcurrentHashMap<Object, Integer>();
+    private final AtomicInteger nextCode = new AtomicInteger();
+
+    /**
+     * Estimated number of bytes used by each value: the map entry, the boxed
+     * code, and a small key object.
+     */
+    private static final int BYTES_PER_VALUE = 80;
+
+    /**
+     * Creates an empty ValueDictionary.
+     */
+    public ValueDictionary() {
+    }
+
+    /**
+     * Returns the code of a value, assigning a new code if the value has
+     * not been seen before.
+     *
+     * @param value Value; not null
+     * @return Code, non-negative
+     */
+    public int code(Object value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            final Integer newCode = nextCode.getAndIncrement();
+            code = codes.putIfAbsent(value, newCode);
+            if (code == null) {
+                code = newCode;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Returns the code of a value, or -1 if the value has no code (and
+     * therefore is not on any segment axis). Does not assign codes.
+     *
+     * @param value Value
+     * @return Code, or -1
+     */
+    public int lookup(Object value) {
+        if (value == null) {
+            return -1;
+        }
+        final Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the number of values which have been assigned codes.
+     *
+     * @return Number of values
+     */
+    public int size() {
+        return codes.size();
+    }
+
+    /**
+     * Returns the estimated number of bytes used by this dictionary.
+     *
+     * @return Estimated size in bytes
+     */
+    public long getByteCount() {
+        return (long) codes.size() * BYTES_PER_VALUE;
+    }
+}
+
+// End ValueDictionary.java
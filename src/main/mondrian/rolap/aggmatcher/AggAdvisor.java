@@ -0,0 +1,522 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.aggmatcher;
+
+import mondrian.olap.MondrianProperties;
+import mondrian.rolap.*;
+import mondrian.rolap.agg.AggregationManager;
+import mondrian.rolap.sql.SqlQuery;
+
+import org.apache.log4j.Logger;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Workload-driven aggregate table advisor.
+ *
+ * <p>While the {@link MondrianProperties#AggregateAdvisor} property is set,
+ * {@link mondrian.rolap.agg.SegmentLoader} records every segment load: the
+ * star, the columns and measures loaded, the number of rows returned and the
+ * time spent in SQL. The advisor retains the most recent
+ * {@link MondrianProperties#AggregateAdvisorWindowSize} loads.
+ *
+ * <p>{@link #recommend(int)} treats each distinct set of columns in the
+ * window as a candidate aggregate table. A candidate can answer every
+ * recorded load whose columns are a subset of its own (an exact match if the
+ * load contains a distinct-count measure). Its size is estimated from the
+ * cardinalities of its columns, capped by the row count of the fact table,
+ * and its benefit is the SQL time of the loads it can answer scaled by the
+ * fraction of fact rows it saves. Candidates are ranked by benefit.
+ *
+ * <p>For each recommendation, {@link AggGen} generates the SQL to create and
+ * populate a "collapsed" dimension aggregate table and the schema
+ * <code>&lt;AggName&gt;</code> element which maps it. A collapsed table is
+ * grouped by the candidate's level columns, copied from the dimension
+ * tables, so its size is the one estimated; a "lost" dimension table would
+ * be grouped by the fact table's foreign keys, and be far larger. The table
+ * names match the default recognition rule,
+ * <code>agg_.+_${fact_table_name}</code>.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class AggAdvisor {
+    private static final Logger LOGGER = Logger.getLogger(AggAdvisor.class);
+
+    /**
+     * Candidates whose estimated size is more than this fraction of the fact
+     * table are not worth materializing.
+     */
+    private static final double MAX_SIZE_RATIO = 0.5;
+
+    /** The singleton. */
+    private static final AggAdvisor instance = new AggAdvisor();
+
+    /** Recorded segment loads, oldest first. */
+    private final LinkedList<Load> loads = new LinkedList<Load>();
+
+    /** Returns the singleton. */
+    public static AggAdvisor instance() {
+        return instance;
+    }
+
+    private AggAdvisor() {
+    }
+
+    /**
+     * Returns whether segment loads should be recorded.
+     */
+    public static boolean isEnabled() {
+        return MondrianProperties.instance().AggregateAdvisor.get();
+    }
+
+    /**
+     * Records a segment load.
+     *
+     * @param columns Columns the segments were grouped by
+     * @param levelBitKey Bit key of the columns
+     * @param measures Measures loaded
+     * @param measureBitKey Bit key of the measures
+     * @param rowCount Number of rows returned by the SQL statement
+     * @param sqlMillis Time spent executing and fetching, in milliseconds
+     */
+    public void recordLoad(
+        RolapStar.Column[] columns,
+        BitKey levelBitKey,
+        List<RolapStar.Measure> measures,
+        BitKey measureBitKey,
+        int rowCount,
+        long sqlMillis)
+    {
+        if (measures.isEmpty()) {
+            return;
+        }
+        boolean distinct = false;
+        for (RolapStar.Measure measure : measures) {
+            if (measure.getAggregator().isDistinct()) {
+                distinct = true;
+                break;
+            }
+        }
+        final Load load =
+            new Load(
+                measures.get(0).getStar(),
+                measures.get(0).getCubeName(),
+                columns.clone(),
+                levelBitKey,
+                measureBitKey,
+                distinct,
+                rowCount,
+                sqlMillis);
+        final int windowSize =
+            MondrianProperties.instance().AggregateAdvisorWindowSize.get();
+        synchronized (loads) {
+            loads.add(load);
+            while (loads.size() > windowSize) {
+                loads.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of segment loads currently recorded.
+     */
+    public int getLoadCount() {
+        synchronized (loads) {
+            return loads.size();
+        }
+    }
+
+    /**
+     * Discards all recorded segment loads.
+     */
+    public void clear() {
+        synchronized (loads) {
+            loads.clear();
+        }
+    }
+
+    /**
+     * Ranks candidate aggregate tables for the recorded workload.
+     *
+     * <p>This method may execute SQL to count the rows in fact tables and to
+     * compute column cardinalities.
+     *
+     * @param maxCount Maximum number of recommendations to return
+     * @return Recommendations, most beneficial first
+     */
+    public List<Recommendation> recommend(int maxCount) {
+        final List<Load> loadList;
+        synchronized (loads) {
+            loadList = new ArrayList<Load>(loads);
+        }
+
+        // One candidate per distinct (star, columns) combination.
+        final Map<RolapStar, Map<BitKey, Recommendation>> candidateMap =
+            new LinkedHashMap<RolapStar, Map<BitKey, Recommendation>>();
+        for (Load load : loadList) {
+            if (load.columns.length == 0) {
+                // The fact table total is cheap to compute and already
+                // cached; an aggregate table would not help.
+                continue;
+            }
+            Map<BitKey, Recommendation> map = candidateMap.get(load.star);
+            if (map == null) {
+                map = new LinkedHashMap<BitKey, Recommendation>();
+                candidateMap.put(load.star, map);
+            }
+            if (!map.containsKey(load.levelBitKey)) {
+                map.put(
+                    load.levelBitKey,
+                    new Recommendation(
+                        load.star, load.cubeName, load.columns,
+                        load.levelBitKey));
+            }
+        }
+
+        final List<Recommendation> list = new ArrayList<Recommendation>();
+        for (Map.Entry<RolapStar, Map<BitKey, Recommendation>> entry
+            : candidateMap.entrySet())
+        {
+            final RolapStar star = entry.getKey();
+            final long factRowCount = getFactRowCount(star);
+            if (factRowCount <= 0) {
+                continue;
+            }
+            for (Recommendation candidate : entry.getValue().values()) {
+                if (isAlreadyMatched(candidate, loadList)) {
+                    continue;
+                }
+                candidate.estimatedRowCount =
+                    estimateRowCount(candidate.columns, factRowCount);
+                final double ratio =
+                    (double) candidate.estimatedRowCount / factRowCount;
+                if (ratio > MAX_SIZE_RATIO) {
+                    continue;
+                }
+                for (Load load : loadList) {
+                    if (load.star != star || !candidate.canAnswer(load)) {
+                        continue;
+                    }
+                    ++candidate.loadCount;
+                    candidate.benefit += load.sqlMillis * (1d - ratio);
+                    candidate.measureBitKey =
+                        candidate.measureBitKey == null
+                            ? load.measureBitKey
+                            : candidate.measureBitKey.or(load.measureBitKey);
+                }
+                list.add(candidate);
+            }
+        }
+
+        Collections.sort(
+            list,
+            new Comparator<Recommendation>() {
+                public int compare(Recommendation o1, Recommendation o2) {
+                    if (o1.benefit != o2.benefit) {
+                        return o1.benefit > o2.benefit ? -1 : 1;
+                    }
+                    if (o1.estimatedRowCount != o2.estimatedRowCount) {
+                        return o1.estimatedRowCount < o2.estimatedRowCount
+                            ? -1 : 1;
+                    }
+                    return 0;
+                }
+            });
+        if (list.size() > maxCount) {
+            list.subList(maxCount, list.size()).clear();
+        }
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).ordinal = i;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "recommend: " + loadList.size() + " loads, "
+                + list.size() + " recommendations");
+        }
+        return list;
+    }
+
+    /**
+     * Ranks candidate aggregate tables for the recorded workload and
+     * generates a script containing, for each, the SQL to create and populate
+     * it and the schema element which maps it.
+     *
+     * @param maxCount Maximum number of aggregate tables
+     * @return Script
+     */
+    public String generateScript(int maxCount) {
+        StringWriter sw = new StringWriter(4096);
+        PrintWriter pw = new PrintWriter(sw);
+        for (Recommendation recommendation : recommend(maxCount)) {
+            final AggGen aggGen = recommendation.getAggGen();
+            pw.print("-- ");
+            pw.println(recommendation);
+            if (!aggGen.isReady()) {
+                pw.println("-- AggGen failed; see log for details");
+                pw.println();
+                continue;
+            }
+            pw.println(aggGen.createCollapsed());
+            pw.println(aggGen.insertIntoCollapsed());
+            pw.println("/*");
+            pw.print(aggGen.createCollapsedAggName());
+            pw.println("*/");
+            pw.println();
+        }
+        pw.flush();
+        return sw.toString();
+    }
+
+    /**
+     * Returns whether an existing aggregate table already exactly matches a
+     * candidate, in which case there is no point in recommending it.
+     */
+    private boolean isAlreadyMatched(
+        Recommendation candidate,
+        List<Load> loadList)
+    {
+        if (!MondrianProperties.instance().UseAggregates.get()) {
+            return false;
+        }
+        for (Load load : loadList) {
+            if (load.star == candidate.star
+                && load.levelBitKey.equals(candidate.levelBitKey))
+            {
+                final boolean[] rollup = {false};
+                final AggStar aggStar =
+                    AggregationManager.instance().findAgg(
+                        load.star, load.levelBitKey, load.measureBitKey,
+                        rollup);
+                if (aggStar != null && !rollup[0]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimates the number of rows in an aggregate table grouped by the given
+     * columns, as the product of the columns' cardinalities, capped by the
+     * number of rows in the fact table.
+     */
+    private long estimateRowCount(
+        RolapStar.Column[] columns,
+        long factRowCount)
+    {
+        long rowCount = 1;
+        for (RolapStar.Column column : columns) {
+            final int cardinality = column.getCardinality();
+            if (cardinality > 0) {
+                rowCount *= cardinality;
+            }
+            if (rowCount >= factRowCount) {
+                return factRowCount;
+            }
+        }
+        return rowCount;
+    }
+
+    /**
+     * Counts the rows in the fact table of a star. Returns -1 if the count
+     * fails.
+     */
+    private long getFactRowCount(RolapStar star) {
+        final SqlQuery query = star.getSqlQuery();
+        query.addSelect("count(*)");
+        star.getFactTable().addToFrom(query, false, false);
+        final SqlStatement stmt =
+            RolapUtil.executeQuery(
+                star.getDataSource(), query.toString(),
+                "AggAdvisor.getFactRowCount",
+                "Counting rows in fact table");
+        try {
+            ResultSet resultSet = stmt.getResultSet();
+            if (resultSet.next()) {
+                ++stmt.rowCount;
+                return resultSet.getLong(1);
+            }
+            return -1;
+        } catch (SQLException e) {
+            throw stmt.handle(e);
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * A segment load recorded by the advisor.
+     */
+    private static class Load {
+        final RolapStar star;
+        final String cubeName;
+        final RolapStar.Column[] columns;
+        final BitKey levelBitKey;
+        final BitKey measureBitKey;
+        final boolean distinct;
+        final int rowCount;
+        final long sqlMillis;
+
+        Load(
+            RolapStar star,
+            String cubeName,
+            RolapStar.Column[] columns,
+            BitKey levelBitKey,
+            BitKey measureBitKey,
+            boolean distinct,
+            int rowCount,
+            long sqlMillis)
+        {
+            this.star = star;
+            this.cubeName = cubeName;
+            this.columns = columns;
+            this.levelBitKey = levelBitKey;
+            this.measureBitKey = measureBitKey;
+            this.distinct = distinct;
+            this.rowCount = rowCount;
+            this.sqlMillis = sqlMillis;
+        }
+    }
+
+    /**
+     * A candidate aggregate table recommended by the advisor.
+     */
+    public static class Recommendation {
+        private final RolapStar star;
+        private final String cubeName;
+        private final RolapStar.Column[] columns;
+        private final BitKey levelBitKey;
+        private BitKey measureBitKey;
+        private int loadCount;
+        private long estimatedRowCount;
+        private double benefit;
+        private int ordinal;
+        private AggGen aggGen;
+
+        Recommendation(
+            RolapStar star,
+            String cubeName,
+            RolapStar.Column[] columns,
+            BitKey levelBitKey)
+        {
+            this.star = star;
+            this.cubeName = cubeName;
+            this.columns = columns;
+            this.levelBitKey = levelBitKey;
+        }
+
+        /**
+         * Returns whether an aggregate table with this candidate's columns
+         * could answer a given load.
+         */
+        boolean canAnswer(Load load) {
+            return load.distinct
+                ? levelBitKey.equals(load.levelBitKey)
+                : levelBitKey.isSuperSetOf(load.levelBitKey);
+        }
+
+        public RolapStar getStar() {
+            return star;
+        }
+
+        /**
+         * Returns the columns the aggregate table is grouped by.
+         */
+        public RolapStar.Column[] getColumns() {
+            return columns.clone();
+        }
+
+        public BitKey getLevelBitKey() {
+            return levelBitKey;
+        }
+
+        /**
+         * Returns the union of the measures of the loads this candidate can
+         * answer.
+         */
+        public BitKey getMeasureBitKey() {
+            return measureBitKey;
+        }
+
+        /**
+         * Returns the number of recorded loads this candidate can answer.
+         */
+        public int getLoadCount() {
+            return loadCount;
+        }
+
+        /**
+         * Returns the estimated number of rows in the aggregate table.
+         */
+        public long getEstimatedRowCount() {
+            return estimatedRowCount;
+        }
+
+        /**
+         * Returns the estimated SQL time, in milliseconds, which this
+         * aggregate table would have saved over the recorded workload.
+         */
+        public double getBenefit() {
+            return benefit;
+        }
+
+        /**
+         * Returns the name of the aggregate table.
+         */
+        public String getTableName() {
+            return "agg_" + ordinal + "_" + star.getFactTable().getAlias();
+        }
+
+        /**
+         * Returns the generator of SQL and schema elements for this
+         * aggregate table. Reads the JDBC metadata of the fact and dimension
+         * tables on first call.
+         */
+        public synchronized AggGen getAggGen() {
+            if (aggGen == null) {
+                final String tableName = getTableName();
+                aggGen =
+                    new AggGen(cubeName, star, columns) {
+                        String makeCollapsedAggregateTableName(
+                            String factTableName)
+                        {
+                            return tableName;
+                        }
+                    };
+            }
+            return aggGen;
+        }
+
+        public String toString() {
+            StringBuilder buf = new StringBuilder(256);
+            buf.append(getTableName())
+                .append(": cube=").append(cubeName)
+                .append(", columns=[");
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    buf.append(", ");
+                }
+                buf.append(columns[i].getExpression().getGenericExpression());
+            }
+            buf.append("], loads=").append(loadCount)
+                .append(", estimatedRows=").append(estimatedRowCount)
+                .append(", benefitMs=").append(Math.round(benefit));
+            return buf.toString();
+        }
+    }
+}
+
+// End AggAdvisor.java
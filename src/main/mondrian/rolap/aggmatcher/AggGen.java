@@ -10,8 +10,10 @@
 
 package mondrian.rolap.aggmatcher;
 
-import mondrian.olap.MondrianDef;
-import mondrian.olap.Util;
+import mondrian.olap.*;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapCubeLevel;
+import mondrian.rolap.RolapLevel;
 import mondrian.rolap.RolapStar;
 import mondrian.rolap.sql.SqlQuery;
 import mondrian.rolap.RolapAggregator;
@@ -877,7 +879,83 @@ public class AggGen {
         return sw.toString();
     }
 
+    /**
+     * Return a String containing the schema <code>&lt;AggName&gt;</code>
+     * element which maps the collapsed dimension table created by
+     * {@link #createCollapsed()} onto its fact table. Each of the columns
+     * this generator was created with is mapped to its level.
+     *
+     * @return collapsed dimension AggName element
+     */
+    public String createCollapsedAggName() {
+        StringWriter sw = new StringWriter(512);
+        PrintWriter pw = new PrintWriter(sw);
+        String prefix = "    ";
+
+        pw.print("<AggName name=\"");
+        pw.print(makeCollapsedAggregateTableName(getFactTableName()));
+        pw.println("\">");
 
+        pw.print(prefix);
+        pw.print("<AggFactCount column=\"");
+        pw.print(getFactCount());
+        pw.println("\"/>");
+
+        for (JdbcSchema.Table.Column.Usage usage : measures) {
+            pw.print(prefix);
+            pw.print("<AggMeasure name=\"[Measures].[");
+            pw.print(usage.getSymbolicName());
+            pw.print("]\" column=\"");
+            pw.print(getUsageName(usage));
+            pw.println("\"/>");
+        }
+
+        final RolapCube cube =
+            (RolapCube) star.getSchema().lookupCube(cubeName, true);
+        for (RolapStar.Column column : columns) {
+            final RolapLevel level = findLevel(cube, column);
+            if (level == null) {
+                getLogger().warn(
+                    "No level for RolapStar.Column: " + column);
+                continue;
+            }
+            final String name = getRolapStarColumnName(column);
+            pw.print(prefix);
+            pw.print("<AggLevel name=\"");
+            pw.print(level.getUniqueName());
+            pw.print("\" column=\"");
+            if (column.getUsagePrefix() != null) {
+                pw.print(column.getUsagePrefix());
+            }
+            pw.print(name);
+            pw.println("\"/>");
+        }
+
+        pw.println("</AggName>");
+        return sw.toString();
+    }
+
+    /**
+     * Returns the level of a cube whose key is a given star column, or null.
+     */
+    private static RolapLevel findLevel(
+        RolapCube cube,
+        RolapStar.Column column)
+    {
+        for (Dimension dimension : cube.getDimensions()) {
+            for (Hierarchy hierarchy : dimension.getHierarchies()) {
+                for (Level level : hierarchy.getLevels()) {
+                    if (level instanceof RolapCubeLevel
+                        && ((RolapCubeLevel) level).getStarKeyColumn()
+                        == column)
+                    {
+                        return (RolapLevel) level;
+                    }
+                }
+            }
+        }
+        return null;
+    }
 
     private String getUsageName(final JdbcSchema.Table.Column.Usage usage) {
         JdbcSchema.Table.Column c = usage.getColumn();
@@ -3,25 +3,95 @@
 // This software is subject to the terms of the Eclipse Public License v1.0
 // Agreement, available at the following URL:
 // http://www.eclipse.org/legal/epl-v10.html.
-// Copyright (C) 2004-2009 Julian Hyde and others
+// Copyright (C) 2004-2010 Julian Hyde and others
 // All Rights Reserved.
 // You must accept the terms of that agreement to use this software.
 */
 package mondrian.rolap.cache;
 
-import mondrian.rolap.RolapSchema;
+import mondrian.olap.MondrianProperties;
+
+import org.apache.log4j.Logger;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A <code>CachePool</code> manages the objects in a collection of
  * caches.
  *
+ * <p>Each cache registers itself by calling
+ * {@link #register(String, int, Cache)}, providing a name, a priority, and a
+ * {@link Cache} which estimates its size and can evict entries. If
+ * {@link MondrianProperties#CachePoolMaxMegabytes} is set,
+ * {@link #checkBudget()} enforces that limit on the total size of all
+ * caches by asking caches to evict entries: first caches of lower priority,
+ * whose entries are cheapest to rebuild relative to their size; and among
+ * caches of the same priority, the largest first. Since measuring the caches
+ * has a cost, the budget is checked at most once every
+ * {@link #CHECK_INTERVAL_MILLIS} milliseconds, and by only one thread at a
+ * time.
+ *
+ * <p>The pool holds caches via weak references, so a cache which is no
+ * longer used (for example, because its schema has been flushed) is
+ * unregistered when it is garbage-collected.
+ *
  * @author av
  */
 public class CachePool {
+    private static final Logger LOGGER = Logger.getLogger(CachePool.class);
+
+    /**
+     * Priority of the cache of query results. A result can be recomputed
+     * from cached segments and members, so results are evicted first.
+     */
+    public static final int RESULT_PRIORITY = 0;
+
+    /**
+     * Priority of a cache of segments.
+     */
+    public static final int SEGMENT_PRIORITY = 1;
+
+    /**
+     * Priority of a cache of members. Members are small, and are needed to
+     * execute every query, so they are evicted last.
+     */
+    public static final int MEMBER_PRIORITY = 2;
+
+    /**
+     * Minimum interval between two checks of the budget, in milliseconds.
+     */
+    static final long CHECK_INTERVAL_MILLIS = 1000;
 
     /** The singleton. */
     private static CachePool instance = new CachePool();
 
+    /**
+     * Registered caches. Guarded by this pool.
+     */
+    private final List<Registration> registrations =
+        new ArrayList<Registration>();
+
+    /**
+     * Size of {@link #registrations} after it was last purged of caches
+     * which have been garbage-collected. Guarded by this pool.
+     */
+    private int purgedSize;
+
+    /**
+     * Lock held while checking the budget, so that only one thread measures
+     * and evicts at a time.
+     */
+    private final Lock evictionLock = new ReentrantLock();
+
+    /**
+     * Time at which the budget was last checked. Guarded by
+     * {@link #evictionLock}.
+     */
+    private long lastCheckMillis;
+
     /** Returns the singleton. */
     public static CachePool instance() {
         return instance;
@@ -29,6 +99,245 @@ public class CachePool {
 
     private CachePool() {
     }
+
+    /**
+     * Registers a cache.
+     *
+     * @param name Name of cache, used when reporting usage
+     * @param priority Priority; caches of lower priority are evicted first
+     * @param cache Cache
+     * @return Registration, which can be used to unregister the cache
+     */
+    public synchronized Registration register(
+        String name,
+        int priority,
+        Cache cache)
+    {
+        // Purge when the list has doubled since the last purge, so that the
+        // list does not grow without limit even if the budget is never
+        // checked.
+        if (registrations.size() > 2 * purgedSize + 16) {
+            purge();
+        }
+        final Registration registration =
+            new Registration(name, priority, cache);
+        registrations.add(registration);
+        return registration;
+    }
+
+    /**
+     * Returns a list of the registrations of caches which have not been
+     * garbage-collected, and removes the others.
+     */
+    private synchronized List<Registration> liveRegistrations() {
+        purge();
+        return new ArrayList<Registration>(registrations);
+    }
+
+    /**
+     * Removes the registrations of caches which have been garbage-collected.
+     * Caller must hold the lock on this pool.
+     */
+    private void purge() {
+        for (Iterator<Registration> iterator = registrations.iterator();
+             iterator.hasNext();)
+        {
+            if (iterator.next().cacheRef.get() == null) {
+                iterator.remove();
+            }
+        }
+        purgedSize = registrations.size();
+    }
+
+    /**
+     * Returns the estimated size of each registered cache, in bytes. If
+     * several caches have the same name, their sizes are added.
+     *
+     * @return Map from cache name to size in bytes, sorted by name
+     */
+    public Map<String, Long> getUsage() {
+        final Map<String, Long> usage = new TreeMap<String, Long>();
+        for (Registration registration : liveRegistrations()) {
+            final long byteCount = registration.getByteCount();
+            final Long previous = usage.get(registration.name);
+            usage.put(
+                registration.name,
+                previous == null ? byteCount : previous + byteCount);
+        }
+        return usage;
+    }
+
+    /**
+     * Returns the estimated total size of all registered caches, in bytes.
+     *
+     * @return Total size of caches
+     */
+    public long getByteCount() {
+        long byteCount = 0;
+        for (Registration registration : liveRegistrations()) {
+            byteCount += registration.getByteCount();
+        }
+        return byteCount;
+    }
+
+    /**
+     * Evicts entries from caches until their total size is within the
+     * limit set by {@link MondrianProperties#CachePoolMaxMegabytes}. Does
+     * nothing if there is no limit.
+     *
+     * <p>Caches should call this method after they have grown. The caller
+     * must not hold a lock on any cache, because evicting entries from a
+     * cache may require its lock.
+     *
+     * <p>Returns immediately if another thread is checking the budget, or if
+     * the budget was checked less than {@link #CHECK_INTERVAL_MILLIS}
+     * milliseconds ago.
+     */
+    public void checkBudget() {
+        checkBudget(false);
+    }
+
+    /**
+     * Evicts entries from caches until their total size is within the
+     * limit, optionally even if the budget was checked recently.
+     *
+     * @param force Whether to wait for any other thread which is checking
+     *   the budget, and check regardless of when the budget was last checked
+     */
+    void checkBudget(boolean force) {
+        final int maxMegabytes =
+            MondrianProperties.instance().CachePoolMaxMegabytes.get();
+        if (maxMegabytes <= 0) {
+            return;
+        }
+        if (force) {
+            evictionLock.lock();
+        } else if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            final long now = System.currentTimeMillis();
+            if (!force && now - lastCheckMillis < CHECK_INTERVAL_MILLIS) {
+                return;
+            }
+            lastCheckMillis = now;
+            evict(maxMegabytes * 1024L * 1024L);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Evicts entries from caches until their total size is at most a given
+     * number of bytes. Caller must hold {@link #evictionLock}.
+     *
+     * @param maxBytes Maximum total size of caches, in bytes
+     */
+    private void evict(long maxBytes) {
+        final List<Registration> list = liveRegistrations();
+        final Map<Registration, Long> sizes =
+            new HashMap<Registration, Long>();
+        long byteCount = 0;
+        for (Registration registration : list) {
+            final long size = registration.getByteCount();
+            sizes.put(registration, size);
+            byteCount += size;
+        }
+        if (byteCount <= maxBytes) {
+            return;
+        }
+        Collections.sort(
+            list,
+            new Comparator<Registration>() {
+                public int compare(Registration r0, Registration r1) {
+                    if (r0.priority != r1.priority) {
+                        return r0.priority < r1.priority ? -1 : 1;
+                    }
+                    final long size0 = sizes.get(r0);
+                    final long size1 = sizes.get(r1);
+                    return size0 > size1 ? -1 : size0 < size1 ? 1 : 0;
+                }
+            });
+        for (Registration registration : list) {
+            if (byteCount <= maxBytes) {
+                break;
+            }
+            final Cache cache = registration.cacheRef.get();
+            if (cache == null) {
+                continue;
+            }
+            final long evicted =
+                cache.evict(
+                    Math.min(
+                        byteCount - maxBytes,
+                        sizes.get(registration)));
+            if (LOGGER.isDebugEnabled() && evicted > 0) {
+                LOGGER.debug(
+                    "Evicted " + evicted + " bytes from cache "
+                    + registration.name);
+            }
+            byteCount -= evicted;
+        }
+        if (byteCount > maxBytes && LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "Caches use " + byteCount + " bytes, more than limit of "
+                + maxBytes + ", but contain no more evictable entries");
+        }
+    }
+
+    /**
+     * Cache which is managed by a {@link CachePool}.
+     */
+    public interface Cache {
+        /**
+         * Returns the estimated number of bytes used by this cache.
+         *
+         * <p>The pool calls this method each time it checks its budget, so
+         * it should be fast.
+         *
+         * @return Estimated size of this cache, in bytes
+         */
+        long getByteCount();
+
+        /**
+         * Evicts entries from this cache, the least valuable first, until at
+         * least a given number of bytes have been freed or there are no more
+         * entries which can be evicted.
+         *
+         * @param byteCount Number of bytes to free
+         * @return Estimated number of bytes freed
+         */
+        long evict(long byteCount);
+    }
+
+    /**
+     * Registration of a {@link Cache} with a {@link CachePool}.
+     */
+    public class Registration {
+        private final String name;
+        private final int priority;
+        private final WeakReference<Cache> cacheRef;
+
+        Registration(String name, int priority, Cache cache) {
+            this.name = name;
+            this.priority = priority;
+            this.cacheRef = new WeakReference<Cache>(cache);
+        }
+
+        private long getByteCount() {
+            final Cache cache = cacheRef.get();
+            return cache == null ? 0 : cache.getByteCount();
+        }
+
+        /**
+         * Removes the cache from the pool.
+         */
+        public void unregister() {
+            synchronized (CachePool.this) {
+                registrations.remove(this);
+            }
+        }
+    }
 }
 
 // End CachePool.java
@@ -16,6 +16,7 @@ import mondrian.mdx.MemberExpr;
 import mondrian.mdx.NamedSetExpr;
 import mondrian.mdx.ResolvedFunCall;
 import mondrian.olap.*;
+import mondrian.olap.fun.FunUtil;
 import mondrian.olap.fun.ParenthesesFunDef;
 import mondrian.olap.fun.SetFunDef;
 import mondrian.olap.fun.TupleFunDef;
@@ -79,6 +80,7 @@ public class CrossJoinArgFactory {
      * <li>descendents of a member
      * <li>member list
      * <li>filter on a dimension
+     * <li>Except, Intersect, Union and Distinct of the above
      * </ul>
      *
      * @param evaluator Evaluator
@@ -144,6 +146,10 @@ public class CrossJoinArgFactory {
         if ("NativizeSet".equalsIgnoreCase(fun.getName()) && args.length == 1) {
             return checkCrossJoinArg(evaluator, args[0], returnAny);
         }
+        allArgs = checkSetOperation(evaluator, fun, args, returnAny);
+        if (allArgs != null) {
+            return allArgs;
+        }
         return checkCrossJoin(evaluator, fun, args, returnAny);
     }
 
@@ -389,6 +395,257 @@ public class CrossJoinArgFactory {
         return allArgsBothInputs;
     }
 
+    /**
+     * Checks for a set operator whose result can be read by the same SQL
+     * statement as its first argument, with an extra predicate:
+     *
+     * <ul>
+     * <li><code>Distinct(&lt;set&gt;)</code>, which is the same as
+     *     &lt;set&gt;, because native sets never contain duplicates;
+     * <li><code>Except(&lt;set&gt;, &lt;members&gt;)</code>, which adds a
+     *     <code>NOT IN</code> predicate;
+     * <li><code>Intersect(&lt;set&gt;, &lt;members&gt;)</code>, which adds
+     *     an <code>IN</code> predicate;
+     * <li><code>Union(&lt;set1&gt;, &lt;set2&gt;)</code>, where both sets
+     *     are member lists, or children or descendants of members, at the
+     *     same level.
+     * </ul>
+     *
+     * <p>For Except and Intersect, &lt;set&gt; must have a single native
+     * argument, and &lt;members&gt; must be a list of members of the same
+     * level, or <code>&lt;Member&gt;.Children</code> or
+     * <code>Descendants(&lt;Member&gt;, &lt;Level&gt;)</code> at the same
+     * level; in the latter case, the predicate is on the ancestor member.
+     *
+     * @param evaluator Evaluator
+     * @param fun Function
+     * @param args Arguments to the function
+     * @param returnAny Whether to return any valid crossjoin args
+     * @return List of CrossJoinArg arrays, as for
+     *   {@link #checkCrossJoinArg}, or null if not a supported set operator
+     */
+    private List<CrossJoinArg[]> checkSetOperation(
+        RolapEvaluator evaluator,
+        FunDef fun,
+        Exp[] args,
+        boolean returnAny)
+    {
+        final String name = fun.getName();
+        final boolean exclude;
+        if ("Distinct".equalsIgnoreCase(name) && args.length == 1) {
+            return checkCrossJoinArg(evaluator, args[0], returnAny);
+        } else if ("Union".equalsIgnoreCase(name) && args.length == 2) {
+            return checkUnion(evaluator, args, returnAny);
+        } else if ("Except".equalsIgnoreCase(name) && args.length == 2) {
+            exclude = true;
+        } else if ("Intersect".equalsIgnoreCase(name) && args.length == 2) {
+            exclude = false;
+        } else {
+            return null;
+        }
+
+        final List<CrossJoinArg[]> allArgs =
+            checkCrossJoinArg(evaluator, args[0], returnAny);
+        if (allArgs == null
+            || allArgs.isEmpty()
+            || allArgs.get(0) == null
+            || allArgs.get(0).length != 1
+            || allArgs.get(0)[0].getLevel() == null)
+        {
+            return null;
+        }
+        final CrossJoinArg predicateArg =
+            checkMemberPredicate(
+                evaluator, allArgs.get(0)[0].getLevel(), args[1], exclude);
+        if (predicateArg == null) {
+            return null;
+        }
+        CrossJoinArg[] predicateArgs = {predicateArg};
+        if (allArgs.size() == 2 && allArgs.get(1) != null) {
+            predicateArgs = Util.appendArrays(allArgs.get(1), predicateArgs);
+        }
+        LOGGER.debug("using native " + name);
+        return Arrays.asList(allArgs.get(0), predicateArgs);
+    }
+
+    /**
+     * Converts the second argument of Except or Intersect into a predicate
+     * on members of a given level.
+     *
+     * @param evaluator Evaluator
+     * @param level Level of the members of the first argument
+     * @param exp Second argument
+     * @param exclude Whether to exclude the members
+     * @return Predicate, or null if the argument cannot be converted
+     */
+    private CrossJoinArg checkMemberPredicate(
+        RolapEvaluator evaluator,
+        RolapLevel level,
+        Exp exp,
+        boolean exclude)
+    {
+        if (exp instanceof NamedSetExpr) {
+            exp = ((NamedSetExpr) exp).getNamedSet().getExp();
+        }
+        if (!(exp instanceof ResolvedFunCall)) {
+            return null;
+        }
+        final ResolvedFunCall call = (ResolvedFunCall) exp;
+        final FunDef fun = call.getFunDef();
+        final Exp[] args = call.getArgs();
+        CrossJoinArg[] cjArgs = checkEnumeration(evaluator, fun, args, exclude);
+        if (cjArgs != null) {
+            final CrossJoinArg cjArg = cjArgs[0];
+            if (cjArg.getMembers().isEmpty()
+                || level.equals(cjArg.getLevel()))
+            {
+                return cjArg;
+            }
+            return null;
+        }
+        final Role role = evaluator.getSchemaReader().getRole();
+        cjArgs = checkMemberChildren(role, fun, args);
+        if (cjArgs == null) {
+            cjArgs = checkDescendants(role, fun, args);
+        }
+        if (cjArgs == null
+            || !level.equals(cjArgs[0].getLevel())
+            || cjArgs[0].getMembers() == null)
+        {
+            return null;
+        }
+        return MemberListCrossJoinArg.create(
+            evaluator, cjArgs[0].getMembers(), restrictMemberTypes(),
+            exclude);
+    }
+
+    /**
+     * Checks for <code>Union(&lt;set1&gt;, &lt;set2&gt;)</code> where both
+     * sets are member lists of the same level, or both are children or
+     * descendants of members at the same level.
+     *
+     * <p>A native set is returned in hierarchical order, whereas
+     * <code>Union</code> returns the members of its first argument before
+     * those of its second. Therefore the union is only evaluated natively if
+     * its members (or, for descendants, their ancestors) are already in
+     * hierarchical order.
+     *
+     * @param evaluator Evaluator
+     * @param args Arguments to Union
+     * @param returnAny Whether to return any valid crossjoin args
+     * @return List containing a single CrossJoinArg array, or null
+     */
+    private List<CrossJoinArg[]> checkUnion(
+        RolapEvaluator evaluator,
+        Exp[] args,
+        boolean returnAny)
+    {
+        final CrossJoinArg[] unionArgs = new CrossJoinArg[2];
+        for (int i = 0; i < 2; i++) {
+            final List<CrossJoinArg[]> allArgs =
+                checkCrossJoinArg(evaluator, args[i], returnAny);
+            if (allArgs == null
+                || allArgs.size() != 1
+                || allArgs.get(0) == null
+                || allArgs.get(0).length != 1)
+            {
+                return null;
+            }
+            unionArgs[i] = allArgs.get(0)[0];
+        }
+        final RolapLevel level = unionArgs[0].getLevel();
+        if (level == null || !level.equals(unionArgs[1].getLevel())) {
+            return null;
+        }
+        final CrossJoinArg cjArg;
+        if (unionArgs[0] instanceof MemberListCrossJoinArg
+            && unionArgs[1] instanceof MemberListCrossJoinArg)
+        {
+            if (((MemberListCrossJoinArg) unionArgs[0]).isExclude()
+                || ((MemberListCrossJoinArg) unionArgs[1]).isExclude())
+            {
+                return null;
+            }
+            final List<RolapMember> members =
+                removeDuplicates(
+                    concat(
+                        unionArgs[0].getMembers(),
+                        unionArgs[1].getMembers()));
+            if (!isHierarchical(members)) {
+                return null;
+            }
+            cjArg =
+                MemberListCrossJoinArg.create(
+                    evaluator, members, restrictMemberTypes(), false);
+        } else if (unionArgs[0] instanceof DescendantsCrossJoinArg
+            && unionArgs[1] instanceof DescendantsCrossJoinArg)
+        {
+            if (unionArgs[0].getMembers() == null) {
+                // The first argument is <Level>.Members, which contains the
+                // second argument.
+                cjArg = new DescendantsCrossJoinArg(level, (RolapMember) null);
+            } else if (unionArgs[1].getMembers() == null) {
+                // The second argument is <Level>.Members; the members of the
+                // first argument must come first.
+                return null;
+            } else {
+                final List<RolapMember> members =
+                    removeDuplicates(
+                        concat(
+                            unionArgs[0].getMembers(),
+                            unionArgs[1].getMembers()));
+                for (RolapMember member : members) {
+                    if (!member.getLevel().equals(
+                            members.get(0).getLevel()))
+                    {
+                        return null;
+                    }
+                }
+                if (!isHierarchical(members)
+                    || !isArgSizeSupported(evaluator, members.size()))
+                {
+                    return null;
+                }
+                cjArg = new DescendantsCrossJoinArg(level, members);
+            }
+        } else {
+            return null;
+        }
+        if (cjArg == null) {
+            return null;
+        }
+        LOGGER.debug("using native Union");
+        return Collections.singletonList(new CrossJoinArg[] {cjArg});
+    }
+
+    /**
+     * Returns whether a list of members is in hierarchical order.
+     *
+     * @param members Members
+     * @return Whether each member precedes the next in hierarchical order
+     */
+    private static boolean isHierarchical(List<RolapMember> members) {
+        for (int i = 1; i < members.size(); i++) {
+            if (FunUtil.compareHierarchically(
+                    members.get(i - 1), members.get(i), false) > 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<RolapMember> concat(
+        List<RolapMember> list0,
+        List<RolapMember> list1)
+    {
+        final List<RolapMember> list =
+            new ArrayList<RolapMember>(list0.size() + list1.size());
+        list.addAll(list0);
+        list.addAll(list1);
+        return list;
+    }
+
     /**
      * Checks for a set constructor, <code>{member1, member2,
      * &#46;&#46;&#46;}</code> that does not contain calculated members.
@@ -527,7 +784,7 @@ public class CrossJoinArgFactory {
             return null;
         }
         return new CrossJoinArg[]{
-            new DescendantsCrossJoinArg(level, null)
+            new DescendantsCrossJoinArg(level, (RolapMember) null)
         };
     }
 
@@ -568,7 +825,7 @@ public class CrossJoinArgFactory {
         if (!"Descendants".equalsIgnoreCase(fun.getName())) {
             return null;
         }
-        if (args.length != 2) {
+        if (args.length != 2 && args.length != 3) {
             return null;
         }
         if (!(args[0] instanceof MemberExpr)) {
@@ -594,9 +851,25 @@ public class CrossJoinArgFactory {
             return null;
         }
 
-        if (!level.isSimple()) {
+        if (level == null || !level.isSimple()) {
             return null;
         }
+        if (args.length == 3) {
+            // Only flags which yield the members of a single level can be
+            // read by one SQL query: SELF, or SELF_AND_AFTER or LEAVES at
+            // the leaf level.
+            if (!(args[2] instanceof Literal)) {
+                return null;
+            }
+            final String flag = String.valueOf(((Literal) args[2]).getValue());
+            if (!"SELF".equalsIgnoreCase(flag)
+                && !(("SELF_AND_AFTER".equalsIgnoreCase(flag)
+                      || "LEAVES".equalsIgnoreCase(flag))
+                     && level.getChildLevel() == null))
+            {
+                return null;
+            }
+        }
         // Descendants of a member in an access-controlled hierarchy cannot be
         // converted to SQL. (We could be smarter; we don't currently notice
         // when the member is in a part of the hierarchy that is not
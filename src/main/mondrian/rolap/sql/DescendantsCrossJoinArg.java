@@ -12,8 +12,8 @@ package mondrian.rolap.sql;
 import mondrian.rolap.*;
 import mondrian.rolap.aggmatcher.AggStar;
 
+import java.util.Collections;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * Represents one of:
@@ -23,17 +23,38 @@ import java.util.ArrayList;
  *     member.getLevel().getChildLevel()</li>
  * <li>Member.Descendants: member != null and level == some level below
  *     member.getLevel()</li>
+ * <li>Union of the descendants of several members at the same level, for
+ *     example <code>Union([USA].[CA].Children, [USA].[OR].Children)</code>:
+ *     members != null and level == some level below the members' level</li>
  * </ul>
  *
  * @version $Id$
  */
 public class DescendantsCrossJoinArg implements CrossJoinArg {
-    RolapMember member;
-    RolapLevel level;
+    private final List<RolapMember> members;
+    private final RolapLevel level;
 
     public DescendantsCrossJoinArg(RolapLevel level, RolapMember member) {
+        this(
+            level,
+            member == null ? null : Collections.singletonList(member));
+    }
+
+    /**
+     * Creates a DescendantsCrossJoinArg for the descendants of a list of
+     * members.
+     *
+     * @param level Level of the descendants
+     * @param members Ancestor members, all of the same level, or null to
+     *   represent all members of the level
+     */
+    public DescendantsCrossJoinArg(
+        RolapLevel level,
+        List<RolapMember> members)
+    {
+        assert members == null || !members.isEmpty();
         this.level = level;
-        this.member = member;
+        this.members = members;
     }
 
     public RolapLevel getLevel() {
@@ -41,12 +62,7 @@ public class DescendantsCrossJoinArg implements CrossJoinArg {
     }
 
     public List<RolapMember> getMembers() {
-        if (member == null) {
-            return null;
-        }
-        final List<RolapMember> list = new ArrayList<RolapMember>();
-        list.add(member);
-        return list;
+        return members;
     }
 
     public void addConstraint(
@@ -54,9 +70,15 @@ public class DescendantsCrossJoinArg implements CrossJoinArg {
         RolapCube baseCube,
         AggStar aggStar)
     {
-        if (member != null) {
+        if (members == null) {
+            return;
+        }
+        if (members.size() == 1) {
+            SqlConstraintUtils.addMemberConstraint(
+                sqlQuery, baseCube, aggStar, members.get(0), true);
+        } else {
             SqlConstraintUtils.addMemberConstraint(
-                sqlQuery, baseCube, aggStar, member, true);
+                sqlQuery, baseCube, aggStar, members, true, true, false);
         }
     }
 
@@ -76,7 +98,7 @@ public class DescendantsCrossJoinArg implements CrossJoinArg {
         if (!equals(this.level, that.level)) {
             return false;
         }
-        return equals(this.member, that.member);
+        return equals(this.members, that.members);
     }
 
     public int hashCode() {
@@ -84,8 +106,8 @@ public class DescendantsCrossJoinArg implements CrossJoinArg {
         if (level != null) {
             c = level.hashCode();
         }
-        if (member != null) {
-            c = 31 * c + member.hashCode();
+        if (members != null) {
+            c = 31 * c + members.hashCode();
         }
         return c;
     }
@@ -255,6 +255,16 @@ public class MemberListCrossJoinArg implements CrossJoinArg {
         return hasAllMember;
     }
 
+    /**
+     * Returns whether this argument excludes its members, rather than
+     * restricting to them.
+     *
+     * @return whether the SQL predicate is "not in {member list}"
+     */
+    public boolean isExclude() {
+        return exclude;
+    }
+
     public int hashCode() {
         int c = 12;
         for (RolapMember member : members) {
@@ -263,6 +273,9 @@ public class MemberListCrossJoinArg implements CrossJoinArg {
         if (restrictMemberTypes) {
             c += 1;
         }
+        if (exclude) {
+            c += 7;
+        }
         return c;
     }
 
@@ -271,7 +284,10 @@ public class MemberListCrossJoinArg implements CrossJoinArg {
             return false;
         }
         MemberListCrossJoinArg that = (MemberListCrossJoinArg) obj;
-        if (this.restrictMemberTypes != that.restrictMemberTypes) {
+        if (this.restrictMemberTypes != that.restrictMemberTypes
+            || this.exclude != that.exclude
+            || this.members.size() != that.members.size())
+        {
             return false;
         }
         for (int i = 0; i < members.size(); i++) {
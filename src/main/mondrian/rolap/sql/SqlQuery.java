@@ -24,6 +24,8 @@ import mondrian.spi.DialectManager;
 import javax.sql.DataSource;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -90,10 +92,42 @@ public class SqlQuery {
     private final List<ClauseList> groupingSet;
     private final ClauseList groupingFunction;
 
+    /**
+     * Maximum number of rows to return, or -1 if there is no limit. See
+     * {@link #setLimit(int, int)}.
+     */
+    private int limit = -1;
+
+    /** Number of rows to skip. Relevant only if {@link #limit} is set. */
+    private int offset;
 
     /** Controls whether table optimization hints are used */
     private boolean allowHints;
 
+    /**
+     * Array parameters of this query, or null if this query does not allow
+     * parameters. A subquery shares the list of its enclosing query.
+     */
+    private List<ArrayParameter> parameters;
+
+    /**
+     * Whether this query owns {@link #parameters}, as opposed to sharing
+     * the list of an enclosing query.
+     */
+    private boolean ownsParameters;
+
+    /**
+     * Parameters of the SQL most recently generated by {@link #toString()},
+     * in the order that their placeholders occur.
+     */
+    private final List<Object> boundParameters = new ArrayList<Object>();
+
+    /**
+     * Character which delimits the ordinal of a parameter in SQL text until
+     * the text is complete and {@link #toString()} replaces it with a '?'.
+     */
+    private static final char PARAMETER_MARK = '\u0001';
+
     /**
      * This list is used to keep track of what aliases have been  used in the
      * FROM clause. One might think that a java.util.Set would be a more
@@ -177,6 +211,110 @@ public class SqlQuery {
         this.allowHints = t;
     }
 
+    /**
+     * Chooses whether long lists of values may be bound as array parameters
+     * (assuming the dialect supports it), rather than generated as literal
+     * IN lists.
+     *
+     * <p>If parameters are allowed, whoever executes the SQL must bind the
+     * values returned by {@link #getParameters()}.
+     *
+     * @param t True to allow parameters, false otherwise
+     */
+    public void setAllowParameters(boolean t) {
+        this.parameters = t ? new ArrayList<ArrayParameter>() : null;
+        this.ownsParameters = t;
+    }
+
+    /**
+     * Makes this query, which will be a subquery of another query, share
+     * that query's parameters. The text of this query must be added to the
+     * enclosing query via {@link #addFrom(SqlQuery, String, boolean)}.
+     *
+     * @param query Enclosing query
+     */
+    public void setEnclosingQuery(SqlQuery query) {
+        this.parameters = query.parameters;
+        this.ownsParameters = false;
+    }
+
+    /**
+     * Returns whether this query allows parameters.
+     *
+     * @return whether this query allows parameters
+     */
+    public boolean allowsParameters() {
+        return parameters != null;
+    }
+
+    /**
+     * Returns whether a list of values should be bound as an array parameter
+     * of this query, rather than generated as a literal IN list.
+     *
+     * @param datatype Datatype of values
+     * @param valueCount Number of values
+     * @return whether to bind values as an array parameter
+     */
+    public boolean shouldBindArray(Dialect.Datatype datatype, int valueCount) {
+        return parameters != null
+            && shouldBindArray(dialect, datatype, valueCount);
+    }
+
+    /**
+     * Returns whether a list of values should be bound as an array
+     * parameter: that is, whether the list is longer than
+     * {@link MondrianProperties#ArrayInListThreshold} and the dialect can
+     * bind arrays of the datatype.
+     *
+     * @param dialect Dialect
+     * @param datatype Datatype of values
+     * @param valueCount Number of values
+     * @return whether to bind values as an array parameter
+     */
+    public static boolean shouldBindArray(
+        Dialect dialect,
+        Dialect.Datatype datatype,
+        int valueCount)
+    {
+        final int threshold =
+            MondrianProperties.instance().ArrayInListThreshold.get();
+        return threshold > 0
+            && valueCount > threshold
+            && datatype != null
+            && dialect.supportsArrayInList(datatype);
+    }
+
+    /**
+     * Adds an array parameter to this query, and returns the text of its
+     * placeholder. The caller must put the placeholder in a clause of this
+     * query (or of a query which shares this query's parameters).
+     *
+     * @param datatype Datatype of values
+     * @param values Values
+     * @return Text of placeholder
+     */
+    public String addArrayParameter(
+        Dialect.Datatype datatype,
+        Object[] values)
+    {
+        assert parameters != null;
+        parameters.add(new ArrayParameter(dialect, datatype, values));
+        return PARAMETER_MARK
+            + Integer.toString(parameters.size() - 1)
+            + PARAMETER_MARK;
+    }
+
+    /**
+     * Returns the values to bind to the placeholders of the SQL most
+     * recently generated by {@link #toString()}, in order. The list is
+     * empty if the query has no parameters.
+     *
+     * @return Parameter values
+     */
+    public List<Object> getParameters() {
+        return new ArrayList<Object>(boundParameters);
+    }
+
     /**
      * Adds a subquery to the FROM clause of this Query with a given alias.
      * If the query already exists it either, depending on
@@ -495,6 +633,23 @@ public class SqlQuery {
         }
     }
 
+    /**
+     * Restricts the result of this query to at most <code>limit</code> rows,
+     * after skipping the first <code>offset</code> rows.
+     *
+     * <p>Call only if the dialect supports it; see
+     * {@link Dialect#supportsLimitOffset()}.
+     *
+     * @param limit Maximum number of rows to return
+     * @param offset Number of rows to skip
+     */
+    public void setLimit(int limit, int offset) {
+        assert dialect.supportsLimitOffset();
+        assert limit >= 0 && offset >= 0;
+        this.limit = limit;
+        this.offset = offset;
+    }
+
     public String toString()
     {
         if (generateFormattedSql) {
@@ -502,7 +657,7 @@ public class SqlQuery {
             PrintWriter pw = new PrintWriter(sw);
             print(pw, "");
             pw.flush();
-            return sw.toString();
+            return bindParameters(sw.toString());
 
         } else {
             buf.setLength(0);
@@ -522,11 +677,50 @@ public class SqlQuery {
             }
             having.toBuffer(buf, " having ", " and ");
             orderBy.toBuffer(buf, " order by ", ", ");
+            if (limit >= 0) {
+                buf.append(' ')
+                    .append(dialect.generateLimitOffset(limit, offset));
+            }
 
-            return buf.toString();
+            return bindParameters(buf.toString());
         }
     }
 
+    /**
+     * Replaces each parameter placeholder in a SQL string with '?', and
+     * records the parameters in the order that they occur. A parameter may
+     * occur more than once, or not at all.
+     *
+     * <p>Does nothing if this query does not own its parameters; the
+     * enclosing query will replace the placeholders when it generates its
+     * SQL.
+     *
+     * @param sql SQL string
+     * @return SQL string with '?' in place of each placeholder
+     */
+    private String bindParameters(String sql) {
+        boundParameters.clear();
+        if (!ownsParameters || parameters.isEmpty()) {
+            return sql;
+        }
+        final StringBuilder buf = new StringBuilder(sql.length());
+        int i = 0;
+        while (true) {
+            final int start = sql.indexOf(PARAMETER_MARK, i);
+            if (start < 0) {
+                break;
+            }
+            final int end = sql.indexOf(PARAMETER_MARK, start + 1);
+            buf.append(sql, i, start).append('?');
+            boundParameters.add(
+                parameters.get(
+                    Integer.parseInt(sql.substring(start + 1, end))));
+            i = end + 1;
+        }
+        buf.append(sql, i, sql.length());
+        return buf.toString();
+    }
+
     /**
      * Prints this SqlQuery to a PrintWriter with each clause on a separate
      * line, and with the specified indentation prefix.
@@ -550,6 +744,15 @@ public class SqlQuery {
         }
         having.print(pw, generateFormattedSql, prefix, "having ", " and ");
         orderBy.print(pw, generateFormattedSql, prefix, "order by ", ", ");
+        if (limit >= 0) {
+            if (generateFormattedSql) {
+                pw.print(prefix);
+            }
+            pw.print(dialect.generateLimitOffset(limit, offset));
+            if (generateFormattedSql) {
+                pw.println();
+            }
+        }
     }
 
     private String getGroupingFunction(String prefix) {
@@ -614,6 +817,45 @@ public class SqlQuery {
         groupingFunction.add(columnExpr);
     }
 
+    /**
+     * List of values bound to a placeholder of a parameterized query.
+     */
+    public static class ArrayParameter {
+        private final Dialect dialect;
+        private final Dialect.Datatype datatype;
+        private final Object[] values;
+
+        ArrayParameter(
+            Dialect dialect,
+            Dialect.Datatype datatype,
+            Object[] values)
+        {
+            this.dialect = dialect;
+            this.datatype = datatype;
+            this.values = values;
+        }
+
+        /**
+         * Binds this parameter to a statement.
+         *
+         * @param statement Statement
+         * @param ordinal Ordinal of parameter, 1-based
+         * @throws SQLException on error
+         */
+        public void bind(PreparedStatement statement, int ordinal)
+            throws SQLException
+        {
+            statement.setArray(
+                ordinal,
+                dialect.createArray(
+                    statement.getConnection(), datatype, values));
+        }
+
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
     static class ClauseList extends ArrayList<String> {
         private final boolean allowDups;
 
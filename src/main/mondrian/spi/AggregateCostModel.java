@@ -0,0 +1,67 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.spi;
+
+import mondrian.rolap.BitKey;
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.StarColumnPredicate;
+import mondrian.rolap.aggmatcher.AggStar;
+
+import java.util.List;
+
+/**
+ * Estimates the cost of answering a segment request from the fact table or
+ * from one of its aggregate tables.
+ *
+ * <p>{@link mondrian.rolap.agg.AggregationManager#findAgg} asks the cost
+ * model to cost the fact table and each aggregate table which could answer
+ * the request, and chooses the cheapest. Ties are resolved in favor of the
+ * aggregate table which is smaller (by row count or volume, according to
+ * {@link mondrian.olap.MondrianProperties#ChooseAggregateByVolume}).
+ *
+ * <p>The cost model is specified by the property
+ * {@link mondrian.olap.MondrianProperties#AggregateCostModelClass}. The
+ * implementing class must have a public default constructor and must be
+ * thread-safe, because a single instance is shared by all connections.
+ *
+ * <p>Costs are in arbitrary units; only their order matters. A cost of
+ * {@link Double#POSITIVE_INFINITY} means that the table must not be used.
+ * An implementation might, for example, assign a low cost to the fact table
+ * if it is partitioned on a column which the request constrains.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public interface AggregateCostModel {
+    /**
+     * Estimates the cost of answering a request.
+     *
+     * @param star Star
+     * @param aggStar Aggregate table, or null to cost the fact table
+     * @param levelBitKey Columns the request is grouped by
+     * @param measureBitKey Measures requested
+     * @param rollup Whether the aggregate table is more granular than the
+     *   request, so rows must be rolled up; always false for the fact table
+     * @param predicates Predicates on the requested columns; predicates which
+     *   do not constrain their column may be omitted
+     * @return Estimated cost, or {@link Double#POSITIVE_INFINITY} if the table
+     *   must not be used
+     */
+    double computeCost(
+        RolapStar star,
+        AggStar aggStar,
+        BitKey levelBitKey,
+        BitKey measureBitKey,
+        boolean rollup,
+        List<StarColumnPredicate> predicates);
+}
+
+// End AggregateCostModel.java
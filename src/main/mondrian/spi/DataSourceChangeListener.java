@@ -36,6 +36,13 @@ import mondrian.rolap.agg.Aggregation;
  * even before cache is build.  This way, the plugin is able to register
  * the first timestamp mondrian tries to read the datasource.
  *
+ * If the property
+ * {@link mondrian.olap.MondrianProperties#DataSourceChangePollMillis} is
+ * set, mondrian does not call the listener from queries, but from a
+ * background thread at that interval (see
+ * {@link mondrian.rolap.DataSourceChangeMonitor}). A listener which takes
+ * a long time, for example to query an audit table, should be used this way.
+ *
  * @author Bart Pappyn
  * @version $Id$
  * @since Dec 12, 2006
@@ -700,6 +700,85 @@ public interface Dialect {
      */
     boolean allowsSelectNotInGroupBy();
 
+    /**
+     * Returns whether this Dialect can test whether a value is in a list
+     * by binding the list as a single array parameter, rather than
+     * generating a literal <code>IN (...)</code> list.
+     *
+     * <p>Binding the list keeps the text of the SQL statement the same
+     * regardless of the number and values of the elements, so the database
+     * can re-use its plan, and allows lists longer than the database's
+     * limit on the number of elements in an <code>IN</code> list.
+     *
+     * @see #generateArrayInList(String, String)
+     * @see #createArray(java.sql.Connection, Datatype, Object[])
+     *
+     * @param datatype Datatype of the elements of the list
+     * @return Whether this Dialect can bind lists of the given datatype
+     */
+    boolean supportsArrayInList(Datatype datatype);
+
+    /**
+     * Generates a condition which tests whether an expression is an element
+     * of an array parameter. For example, PostgreSQL generates
+     * "<code>expr = ANY (?)</code>".
+     *
+     * <p>Called only if {@link #supportsArrayInList(Datatype)} returns
+     * true.
+     *
+     * @param expr Expression to test
+     * @param parameter Text of the parameter placeholder
+     * @return Condition
+     */
+    String generateArrayInList(String expr, String parameter);
+
+    /**
+     * Creates a JDBC array, to be bound to the parameter of a condition
+     * generated by {@link #generateArrayInList(String, String)}.
+     *
+     * <p>Called only if {@link #supportsArrayInList(Datatype)} returns
+     * true.
+     *
+     * @param connection Connection
+     * @param datatype Datatype of elements
+     * @param values Elements of array; not null
+     * @return Array
+     * @throws java.sql.SQLException on error
+     */
+    java.sql.Array createArray(
+        java.sql.Connection connection,
+        Datatype datatype,
+        Object[] values)
+        throws java.sql.SQLException;
+
+    /**
+     * Returns whether this Dialect can restrict the result of a query to a
+     * range of rows, by appending a clause such as
+     * "<code>limit 10 offset 20</code>" to the statement.
+     *
+     * <p>Mondrian uses this to page through a sorted set in the database,
+     * rather than reading every row and discarding all but a few.
+     *
+     * @see #generateLimitOffset(int, int)
+     *
+     * @return Whether this Dialect supports a row limit and offset
+     */
+    boolean supportsLimitOffset();
+
+    /**
+     * Generates a clause which, appended to a SELECT statement, restricts
+     * its result to at most <code>limit</code> rows, after skipping the first
+     * <code>offset</code> rows. For example, MySQL generates
+     * "<code>limit 10 offset 20</code>".
+     *
+     * <p>Called only if {@link #supportsLimitOffset()} returns true.
+     *
+     * @param limit Maximum number of rows to return
+     * @param offset Number of rows to skip; zero means none
+     * @return Clause
+     */
+    String generateLimitOffset(int limit, int offset);
+
     /**
      * Enumeration of common database types.
      *
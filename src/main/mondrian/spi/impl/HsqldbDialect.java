@@ -78,6 +78,14 @@ public class HsqldbDialect extends JdbcDialectImpl {
             columnNames, columnTypes, valueList,
             " from \"days\" where \"day\" = 1", false);
     }
+
+    public boolean supportsLimitOffset() {
+        return true;
+    }
+
+    public String generateLimitOffset(int limit, int offset) {
+        return generateLimitOffsetStandard(limit, offset);
+    }
 }
 
 // End HsqldbDialect.java
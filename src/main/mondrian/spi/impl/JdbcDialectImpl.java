@@ -820,6 +820,82 @@ public class JdbcDialectImpl implements Dialect {
         return false;
     }
 
+    public boolean supportsArrayInList(Datatype datatype) {
+        return false;
+    }
+
+    public String generateArrayInList(String expr, String parameter) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Array createArray(
+        Connection connection,
+        Datatype datatype,
+        Object[] values)
+        throws SQLException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean supportsLimitOffset() {
+        return false;
+    }
+
+    public String generateLimitOffset(int limit, int offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Generates a row limit clause in the syntax
+     * "<code>limit n offset m</code>", which is accepted by several
+     * databases. Helper method for dialects whose
+     * {@link #supportsLimitOffset()} method returns true.
+     *
+     * @param limit Maximum number of rows to return
+     * @param offset Number of rows to skip
+     * @return Clause
+     */
+    protected static String generateLimitOffsetStandard(int limit, int offset) {
+        return offset > 0
+            ? "limit " + limit + " offset " + offset
+            : "limit " + limit;
+    }
+
+    /**
+     * Creates a JDBC array by calling the JDBC 4.0 method
+     * <code>Connection.createArrayOf</code>. Uses reflection, so that
+     * mondrian can still be built against JDBC 3.0.
+     *
+     * @param connection Connection
+     * @param typeName SQL name of the type of the elements
+     * @param values Elements
+     * @return Array
+     * @throws SQLException on error
+     */
+    protected static Array createArrayOf(
+        Connection connection,
+        String typeName,
+        Object[] values)
+        throws SQLException
+    {
+        try {
+            final java.lang.reflect.Method method =
+                Connection.class.getMethod(
+                    "createArrayOf", String.class, Object[].class);
+            return (Array) method.invoke(connection, typeName, values);
+        } catch (NoSuchMethodException e) {
+            throw Util.newInternal(
+                e, "JDBC driver does not support Connection.createArrayOf");
+        } catch (IllegalAccessException e) {
+            throw Util.newInternal(e, "while creating array");
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw Util.newInternal(e.getCause(), "while creating array");
+        }
+    }
+
     public boolean supportsResultSetConcurrency(
         int type,
         int concurrency)
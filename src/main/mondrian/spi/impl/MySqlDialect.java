@@ -225,6 +225,14 @@ public class MySqlDialect extends JdbcDialectImpl {
         return true;
     }
 
+    public boolean supportsLimitOffset() {
+        return true;
+    }
+
+    public String generateLimitOffset(int limit, int offset) {
+        return generateLimitOffsetStandard(limit, offset);
+    }
+
     private enum Scope {
         SESSION,
         GLOBAL
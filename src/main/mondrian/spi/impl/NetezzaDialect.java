@@ -35,5 +35,8 @@ public class NetezzaDialect extends PostgreSqlDialect {
         super(connection);
     }
 
+    public boolean supportsArrayInList(Datatype datatype) {
+        return false;
+    }
 }
 // End NetezzaDialect.java
\ No newline at end of file
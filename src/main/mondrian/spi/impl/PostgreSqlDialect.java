@@ -65,6 +65,51 @@ public class PostgreSqlDialect extends JdbcDialectImpl {
         }
     }
 
+    public boolean supportsArrayInList(Datatype datatype) {
+        return getArrayElementType(datatype) != null;
+    }
+
+    public String generateArrayInList(String expr, String parameter) {
+        return expr + " = ANY (" + parameter + ")";
+    }
+
+    public Array createArray(
+        Connection connection,
+        Datatype datatype,
+        Object[] values)
+        throws SQLException
+    {
+        return createArrayOf(
+            connection, getArrayElementType(datatype), values);
+    }
+
+    /**
+     * Returns the name of the type of the elements of an array which can be
+     * compared to values of a given datatype, or null if arrays of that
+     * datatype are not supported.
+     *
+     * <p>Integer keys are bound as <code>int8</code>, because PostgreSQL
+     * can use an index to compare an <code>int2</code>, <code>int4</code>
+     * or <code>int8</code> column with an <code>int8</code> value.
+     *
+     * @param datatype Datatype
+     * @return Element type name, or null
+     */
+    private static String getArrayElementType(Datatype datatype) {
+        switch (datatype) {
+        case String:
+            return "varchar";
+        case Integer:
+            return "int8";
+        case Numeric:
+            return "numeric";
+        case Boolean:
+            return "bool";
+        default:
+            return null;
+        }
+    }
+
     /**
      * Detects whether this database is Greenplum.
      *
@@ -115,6 +160,14 @@ public class PostgreSqlDialect extends JdbcDialectImpl {
     public DatabaseProduct getDatabaseProduct() {
         return DatabaseProduct.POSTGRESQL;
     }
+
+    public boolean supportsLimitOffset() {
+        return true;
+    }
+
+    public String generateLimitOffset(int limit, int offset) {
+        return generateLimitOffsetStandard(limit, offset);
+    }
 }
 
 // End PostgreSqlDialect.java
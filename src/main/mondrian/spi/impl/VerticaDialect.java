@@ -51,6 +51,13 @@ public class VerticaDialect extends JdbcDialectImpl {
         }
     }
 
+    public boolean supportsLimitOffset() {
+        return true;
+    }
+
+    public String generateLimitOffset(int limit, int offset) {
+        return generateLimitOffsetStandard(limit, offset);
+    }
 }
 
 // End VerticaDialect.java
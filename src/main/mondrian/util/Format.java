@@ -19,6 +19,8 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <code>Format</code> formats numbers, strings and dates according to the
@@ -66,7 +68,7 @@ public class Format {
     private FormatLocale locale;
 
     /**
-     * Maximum number of entries in the format cache used by
+     * Maximum number of entries per locale in the format cache used by
      * {@link #get(String, java.util.Locale)}.
      */
     public static final int CacheLimit = 1000;
@@ -83,16 +85,21 @@ public class Format {
     }
 
     /**
-     * Maps (formatString, locale) pairs to {@link Format} objects.
+     * Maps locales to caches of {@link Format} objects.
      *
-     * <p>If the number of entries in the cache exceeds 1000,
+     * <p>The cache is partitioned by locale, so that a lookup does not need
+     * to build a composite key, and so that each locale's
+     * {@link FormatLocale} is resolved only once. The null locale, which
+     * cannot be a key of a {@link ConcurrentHashMap}, has its own partition,
+     * {@link #nullLocaleCache}.
      */
-    private static final Map<String, Format> cache =
-        new LinkedHashMap<String, Format>() {
-            public boolean removeEldestEntry(Map.Entry<String, Format> entry) {
-                return size() > CacheLimit;
-            }
-        };
+    private static final ConcurrentMap<Locale, LocaleCache> cache =
+        new ConcurrentHashMap<Locale, LocaleCache>();
+
+    /**
+     * Cache of {@link Format} objects for the null locale.
+     */
+    private static final LocaleCache nullLocaleCache = new LocaleCache(null);
 
     static final char thousandSeparator_en = ',';
     static final char decimalPlaceholder_en = '.';
@@ -702,6 +709,15 @@ public class Format {
 
         void format(double n, StringBuilder buf)
         {
+            if (isSimple() && Math.abs(n) < MAX_SIMPLE_DOUBLE) {
+                if (n == Math.rint(n)) {
+                    formatSimple((long) n, buf);
+                    return;
+                }
+                if (formatSimple(n, buf)) {
+                    return;
+                }
+            }
             FloatingDecimal fd = new FloatingDecimal(n);
             fd.shift(decimalShift);
             final int formatDigitsRightOfPoint =
@@ -754,6 +770,10 @@ public class Format {
 
         void format(long n, StringBuilder buf)
         {
+            if (isSimple() && n != Long.MIN_VALUE) {
+                formatSimple(n, buf);
+                return;
+            }
             mondrian.util.Format.FloatingDecimal fd =
                 new mondrian.util.Format.FloatingDecimal(n);
             fd.shift(decimalShift);
@@ -769,8 +789,170 @@ public class Format {
                 useDecimal);
             buf.append(s);
         }
+
+        /**
+         * Returns whether this format can print numbers using
+         * {@link #formatSimple}; that is, it has no exponent and does not
+         * shift the decimal point (as a percent format does).
+         */
+        private boolean isSimple() {
+            return expChar == 0 && decimalShift == 0;
+        }
+
+        /**
+         * Formats an integer, writing digits directly into the buffer.
+         *
+         * <p>This is the fast path for common formats such as "#,##0" and
+         * "#,##0.00". It produces the same result as
+         * {@link FloatingDecimal#toJavaFormatString} but does not create
+         * intermediate objects. The caller must ensure that the format
+         * {@link #isSimple() is simple} and that <code>n</code> is not
+         * {@link Long#MIN_VALUE}.
+         *
+         * @param n Value
+         * @param buf Buffer
+         */
+        private void formatSimple(long n, StringBuilder buf) {
+            if (n < 0) {
+                buf.append('-');
+                n = -n;
+            }
+            formatWhole(n, buf);
+            if (zeroesRightOfPoint > 0 || useDecimal) {
+                buf.append(locale.decimalPlaceholder);
+                for (int j = 0; j < zeroesRightOfPoint; j++) {
+                    buf.append('0');
+                }
+            }
+        }
+
+        /**
+         * Formats a non-integral value, writing digits directly into the
+         * buffer.
+         *
+         * <p>Scales the value by the maximum number of decimal places,
+         * rounds it to a <code>long</code>, then writes the integer and
+         * fraction digits. This is the fast path for formats such as
+         * "#,##0.00" and "0.0#".
+         *
+         * <p>{@link FloatingDecimal} rounds the shortest decimal
+         * representation of the value, half up. Scaling introduces a small
+         * error, so a value within a few ulps of a rounding boundary (such
+         * as 1.005 in the format "0.00") could round differently. For
+         * those values, and for values too large to scale exactly, this
+         * method does nothing and returns false; the caller must use the
+         * general path.
+         *
+         * @param n Value
+         * @param buf Buffer
+         * @return Whether the value was formatted
+         */
+        private boolean formatSimple(double n, StringBuilder buf) {
+            final int maxFractionDigits =
+                zeroesRightOfPoint + digitsRightOfPoint;
+            if (maxFractionDigits >= POWERS_OF_TEN.length) {
+                return false;
+            }
+            final long scale = POWERS_OF_TEN[maxFractionDigits];
+            final double scaled = Math.abs(n) * scale;
+            if (scaled >= MAX_SIMPLE_DOUBLE) {
+                return false;
+            }
+            final double remainder = scaled - Math.floor(scaled);
+            if (Math.abs(remainder - 0.5) <= 4 * Math.ulp(scaled)) {
+                return false;
+            }
+            final long m = Math.round(scaled);
+            if (n < 0 && m != 0) {
+                buf.append('-');
+            }
+            formatWhole(m / scale, buf);
+
+            // Trim trailing zeroes from the optional ('#') decimal places.
+            long fraction = m % scale;
+            int fractionDigits = maxFractionDigits;
+            while (fractionDigits > zeroesRightOfPoint
+                && fraction % 10 == 0)
+            {
+                fraction /= 10;
+                --fractionDigits;
+            }
+            if (fractionDigits > 0 || useDecimal) {
+                buf.append(locale.decimalPlaceholder);
+                for (int j = fractionDigits; j > 0; --j) {
+                    buf.append(
+                        (char) ('0' + fraction / POWERS_OF_TEN[j - 1] % 10));
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Writes the digits left of the decimal point, with leading zeroes
+         * and thousand separators as the format requires.
+         *
+         * @param n Non-negative value
+         * @param buf Buffer
+         */
+        private void formatWhole(long n, StringBuilder buf) {
+            int digitCount = 0;
+            for (long m = n; m != 0; m /= 10) {
+                ++digitCount;
+            }
+            final int wholeDigits = Math.max(digitCount, zeroesLeftOfPoint);
+            final char thousandChar =
+                useThouSep ? locale.thousandSeparator : '\0';
+            for (int j = wholeDigits; j > 0; --j) {
+                if (thousandChar != '\0'
+                    && j % 3 == 0
+                    && j < wholeDigits)
+                {
+                    buf.append(thousandChar);
+                }
+                if (j > digitCount) {
+                    buf.append('0');
+                } else {
+                    buf.append((char) ('0' + n / POWERS_OF_TEN[j - 1] % 10));
+                }
+            }
+        }
     }
 
+    /**
+     * Powers of ten which fit into a <code>long</code>, used by
+     * {@link NumericFormat#formatSimple}.
+     */
+    private static final long[] POWERS_OF_TEN = {
+        1L,
+        10L,
+        100L,
+        1000L,
+        10000L,
+        100000L,
+        1000000L,
+        10000000L,
+        100000000L,
+        1000000000L,
+        10000000000L,
+        100000000000L,
+        1000000000000L,
+        10000000000000L,
+        100000000000000L,
+        1000000000000000L,
+        10000000000000000L,
+        100000000000000000L,
+        1000000000000000000L,
+    };
+
+    /**
+     * Largest magnitude of a double, after scaling by the number of decimal
+     * places, which {@link NumericFormat} formats using its fast path. Below
+     * this, every integral double has an exact decimal representation with
+     * no more than 15 digits, the same digits that {@link FloatingDecimal}
+     * would produce.
+     */
+    private static final double MAX_SIMPLE_DOUBLE = 1e15;
+
     /**
      * DateFormat is an element of a {@link Format.CompoundFormat} which has a
      * value when applied to a {@link Calendar} object.  (Values of type {@link
@@ -1869,28 +2051,88 @@ public class Format {
      * Constructs a <code>Format</code> in a specific locale, or retrieves
      * one from the cache if one already exists.
      *
-     * <p>If the number of entries in the cache exceeds {@link #CacheLimit},
-     * replaces the eldest entry in the cache.
+     * <p>This method is thread-safe, and does not lock if the format is
+     * already in the cache. If the number of entries for a locale exceeds
+     * {@link #CacheLimit}, removes an arbitrary entry for that locale.
      *
      * @param formatString the format string; see
      *   <a href="http://www.apostate.com/programming/vb-format.html">this
      *   description</a> for more details
+     * @param locale The locale, or null for the default locale
      *
      * @return format for given format string in given locale
      */
     public static Format get(String formatString, Locale locale) {
-        String key = formatString + "@@@" + locale;
-        Format format = cache.get(key);
-        if (format == null) {
-            synchronized (cache) {
-                format = cache.get(key);
-                if (format == null) {
-                    format = new Format(formatString, locale);
-                    cache.put(key, format);
+        final LocaleCache localeCache;
+        if (locale == null) {
+            localeCache = nullLocaleCache;
+        } else {
+            LocaleCache existing = cache.get(locale);
+            if (existing == null) {
+                existing = new LocaleCache(locale);
+                final LocaleCache previous =
+                    cache.putIfAbsent(locale, existing);
+                if (previous != null) {
+                    existing = previous;
+                }
+            }
+            localeCache = existing;
+        }
+        return localeCache.get(formatString);
+    }
+
+    /**
+     * Cache of {@link Format} objects for a particular locale.
+     */
+    private static class LocaleCache {
+        private final Locale locale;
+        private final ConcurrentMap<String, Format> formats =
+            new ConcurrentHashMap<String, Format>();
+        private volatile FormatLocale formatLocale;
+
+        LocaleCache(Locale locale) {
+            this.locale = locale;
+        }
+
+        Format get(String formatString) {
+            if (formatString == null) {
+                // Format treats a null format string as the empty string.
+                formatString = "";
+            }
+            Format format = formats.get(formatString);
+            if (format == null) {
+                FormatLocale formatLocale = this.formatLocale;
+                if (formatLocale == null) {
+                    // Benign race: getBestFormatLocale always returns the
+                    // same object for the same locale.
+                    formatLocale = getBestFormatLocale(locale);
+                    this.formatLocale = formatLocale;
+                }
+                format = new Format(formatString, formatLocale);
+                final Format previous =
+                    formats.putIfAbsent(formatString, format);
+                if (previous != null) {
+                    return previous;
+                }
+                if (formats.size() > CacheLimit) {
+                    evict(formatString);
+                }
+            }
+            return format;
+        }
+
+        /**
+         * Removes entries other than the one just added until the cache is
+         * within its limit.
+         */
+        private void evict(String formatString) {
+            final Iterator<String> iterator = formats.keySet().iterator();
+            while (formats.size() > CacheLimit && iterator.hasNext()) {
+                if (!iterator.next().equals(formatString)) {
+                    iterator.remove();
                 }
             }
         }
-        return format;
     }
 
     /**
@@ -0,0 +1,278 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.util;
+
+import java.math.BigInteger;
+
+/**
+ * Sketch which estimates the number of distinct values in a collection,
+ * using the HyperLogLog algorithm of Flajolet et al.
+ *
+ * <p>A sketch of precision <i>p</i> uses 2<sup><i>p</i></sup> one-byte
+ * registers, and its estimate has a relative standard error of about
+ * 1.04 / &radic;2<sup><i>p</i></sup>; for the default precision, 12, that
+ * is 1.6% using 4KB. Unlike an exact distinct count, sketches can be
+ * merged: the sketch of a union of collections is the merge of their
+ * sketches. Merging is idempotent, so a value which occurs in several
+ * collections is counted once.
+ *
+ * <p>A sketch can be serialized by {@link #toBytes()} and read by
+ * {@link #fromBytes(byte[])}. The format is a version byte (currently 1),
+ * a precision byte, then the registers. Sketches stored in a column of an
+ * aggregate table must use this format.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class HyperLogLog {
+    /**
+     * Default precision.
+     */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final byte VERSION = 1;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Cached estimate, or -1 if registers have changed since the estimate
+     * was computed.
+     */
+    private volatile long estimate;
+
+    /**
+     * Creates an empty sketch with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates an empty sketch.
+     *
+     * @param precision Number of bits of hash used to choose a register;
+     *   between 4 and 16
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException(
+                "precision out of range: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        this.estimate = 0;
+    }
+
+    /**
+     * Creates a sketch from its serialized form.
+     *
+     * @param bytes Serialized sketch, as created by {@link #toBytes()}
+     * @return Sketch
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length < 2 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("not a sketch");
+        }
+        final HyperLogLog sketch = new HyperLogLog(bytes[1]);
+        if (bytes.length != sketch.registers.length + 2) {
+            throw new IllegalArgumentException("sketch has wrong length");
+        }
+        System.arraycopy(
+            bytes, 2, sketch.registers, 0, sketch.registers.length);
+        sketch.estimate = -1;
+        return sketch;
+    }
+
+    /**
+     * Returns the serialized form of this sketch.
+     *
+     * @return Serialized sketch
+     */
+    public byte[] toBytes() {
+        final byte[] bytes = new byte[registers.length + 2];
+        bytes[0] = VERSION;
+        bytes[1] = (byte) precision;
+        System.arraycopy(registers, 0, bytes, 2, registers.length);
+        return bytes;
+    }
+
+    /**
+     * Creates a copy of this sketch.
+     *
+     * @return Copy
+     */
+    public HyperLogLog copy() {
+        final HyperLogLog sketch = new HyperLogLog(precision);
+        System.arraycopy(
+            registers, 0, sketch.registers, 0, registers.length);
+        sketch.estimate = estimate;
+        return sketch;
+    }
+
+    /**
+     * Returns the precision of this sketch.
+     *
+     * @return Precision
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * <p>Numbers which have the same integral value, such as
+     * <code>Integer</code> 5 and <code>Double</code> 5.0, are treated as the
+     * same value, because a key may be read from the database as a
+     * different type than the one which was used to build a stored sketch.
+     *
+     * @param value Value; must not be null
+     */
+    public void add(Object value) {
+        addHash(hash(value));
+    }
+
+    private void addHash(long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        final long w = hash << precision;
+        final int rank =
+            w == 0
+                ? 64 - precision + 1
+                : Long.numberOfLeadingZeros(w) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+            estimate = -1;
+        }
+    }
+
+    /**
+     * Merges another sketch into this one.
+     *
+     * @param sketch Sketch; must have the same precision as this
+     */
+    public void merge(HyperLogLog sketch) {
+        if (sketch.precision != precision) {
+            throw new IllegalArgumentException(
+                "cannot merge sketches of precision " + precision
+                + " and " + sketch.precision);
+        }
+        final byte[] otherRegisters = sketch.registers;
+        for (int i = 0; i < registers.length; i++) {
+            if (otherRegisters[i] > registers[i]) {
+                registers[i] = otherRegisters[i];
+                estimate = -1;
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values added to this sketch
+     * and the sketches merged into it.
+     *
+     * @return Estimated number of distinct values
+     */
+    public long estimate() {
+        long estimate = this.estimate;
+        if (estimate < 0) {
+            estimate = computeEstimate();
+            this.estimate = estimate;
+        }
+        return estimate;
+    }
+
+    private long computeEstimate() {
+        final int m = registers.length;
+        double sum = 0;
+        int zeroCount = 0;
+        for (byte register : registers) {
+            sum += 1d / (1L << register);
+            if (register == 0) {
+                ++zeroCount;
+            }
+        }
+        final double alpha;
+        switch (m) {
+        case 16:
+            alpha = 0.673;
+            break;
+        case 32:
+            alpha = 0.697;
+            break;
+        case 64:
+            alpha = 0.709;
+            break;
+        default:
+            alpha = 0.7213 / (1d + 1.079 / m);
+            break;
+        }
+        double e = alpha * m * m / sum;
+        if (e <= 2.5 * m && zeroCount > 0) {
+            // Small range correction: linear counting.
+            e = m * Math.log((double) m / zeroCount);
+        }
+        return Math.round(e);
+    }
+
+    /**
+     * Computes a 64-bit hash of a value.
+     *
+     * @param value Value
+     * @return Hash
+     */
+    static long hash(Object value) {
+        long h;
+        if (value instanceof Integer
+            || value instanceof Long
+            || value instanceof Short
+            || value instanceof Byte
+            || value instanceof BigInteger)
+        {
+            h = ((Number) value).longValue();
+        } else if (value instanceof Number) {
+            final double d = ((Number) value).doubleValue();
+            final long l = (long) d;
+            h = l == d ? l : Double.doubleToLongBits(d);
+        } else if (value instanceof String) {
+            // FNV-1a; String.hashCode has only 32 bits.
+            final String s = (String) value;
+            h = 0xcbf29ce484222325L;
+            for (int i = 0; i < s.length(); i++) {
+                h ^= s.charAt(i);
+                h *= 0x100000001b3L;
+            }
+        } else {
+            h = value.hashCode();
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finalization step of MurmurHash3, which spreads the bits of a value
+     * over all 64 bits.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public String toString() {
+        return "HyperLogLog(" + estimate() + ")";
+    }
+}
+
+// End HyperLogLog.java
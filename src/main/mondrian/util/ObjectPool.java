@@ -144,6 +144,21 @@ public class ObjectPool<T> {
         return (i < 0);
     }
 
+    /**
+     * Returns the object in the ObjectPool that matches a given object, or
+     * null if there is none.
+     *
+     * <p>Unlike {@link #add}, never modifies the pool, so it is safe to call
+     * from several threads provided that no thread is modifying the pool.
+     *
+     * @param key Object to look up
+     * @return Equivalent object in the pool, or null
+     */
+    public T get(T key) {
+        int i = indexOfInsertion(key);
+        return (i < 0) ? this.values[-i - 1] : null;
+    }
+
     /**
      * Adds an object to the ObjectPool if it is not
      * already in the pool or returns the object that is already in the
@@ -706,6 +706,12 @@ public class XmlaHandler {
         }
 
         writer.endDocument();
+
+        if (result instanceof MDDataSet) {
+            // The response is complete, so another request can re-use the
+            // compiled query.
+            QueryPlanCache.checkIn(((MDDataSet) result).result.getQuery());
+        }
     }
 
     /**
@@ -1652,7 +1658,7 @@ public class XmlaHandler {
 
             final Query query;
             try {
-                query = connection.parseQuery(statement);
+                query = QueryPlanCache.parseQuery(connection, statement);
                 query.setResultStyle(ResultStyle.LIST);
             } catch (XmlaException ex) {
                 throw ex;
@@ -6884,6 +6884,27 @@ public class FunctionTest extends FoodMartTestCase {
             + "{[Product].[All Products], [Gender].[All Gender]}");
     }
 
+    /**
+     * Tests that Hierarchize sorts tuples which are not the output of a
+     * crossjoin, and which contain duplicates, by every column.
+     */
+    public void testHierarchizeTuplesDuplicates() {
+        assertAxisReturns(
+            "Hierarchize(\n"
+            + "  {([Gender].[M], [Product].[Food]),\n"
+            + "   ([Gender].[F], [Product].[Food].[Eggs]),\n"
+            + "   ([Gender].[M], [Product].[Drink]),\n"
+            + "   ([Gender].[F], [Product].[Food]),\n"
+            + "   ([Gender].[M], [Product].[Food]),\n"
+            + "   ([Gender].[All Gender], [Product].[Drink])})",
+            "{[Gender].[All Gender], [Product].[Drink]}\n"
+            + "{[Gender].[F], [Product].[Food]}\n"
+            + "{[Gender].[F], [Product].[Food].[Eggs]}\n"
+            + "{[Gender].[M], [Product].[Drink]}\n"
+            + "{[Gender].[M], [Product].[Food]}\n"
+            + "{[Gender].[M], [Product].[Food]}");
+    }
+
     /**
      * Tests that the Hierarchize function works correctly when applied to
      * a level whose ordering is determined by an 'ordinal' property.
@@ -8288,6 +8309,59 @@ public class FunctionTest extends FoodMartTestCase {
             "");
     }
 
+    /**
+     * Tests that TopCount returns a list that its caller can modify without
+     * changing the set it was applied to. Hierarchize sorts its argument in
+     * place; the named set must keep its original order when it is used
+     * again in the same query.
+     */
+    public void testTopCountResultIsCopy() {
+        assertQueryReturns(
+            "with set [S] as '{[Product].[All Products],\n"
+            + "  [Product].[Drink], [Product].[Food],\n"
+            + "  [Product].[Non-Consumable]}'\n"
+            + "select {[Measures].[Unit Sales]} on 0,\n"
+            + "  {Hierarchize(TopCount([S], 3), POST),\n"
+            + "   [S],\n"
+            + "   Hierarchize(\n"
+            + "     TopCount([S], 3, [Measures].[Unit Sales]), POST),\n"
+            + "   [S]} on 1\n"
+            + "from [Sales]",
+            "Axis #0:\n"
+            + "{}\n"
+            + "Axis #1:\n"
+            + "{[Measures].[Unit Sales]}\n"
+            + "Axis #2:\n"
+            + "{[Product].[Drink]}\n"
+            + "{[Product].[Food]}\n"
+            + "{[Product].[All Products]}\n"
+            + "{[Product].[All Products]}\n"
+            + "{[Product].[Drink]}\n"
+            + "{[Product].[Food]}\n"
+            + "{[Product].[Non-Consumable]}\n"
+            + "{[Product].[Food]}\n"
+            + "{[Product].[Non-Consumable]}\n"
+            + "{[Product].[All Products]}\n"
+            + "{[Product].[All Products]}\n"
+            + "{[Product].[Drink]}\n"
+            + "{[Product].[Food]}\n"
+            + "{[Product].[Non-Consumable]}\n"
+            + "Row #0: 24,597\n"
+            + "Row #1: 191,940\n"
+            + "Row #2: 266,773\n"
+            + "Row #3: 266,773\n"
+            + "Row #4: 24,597\n"
+            + "Row #5: 191,940\n"
+            + "Row #6: 50,236\n"
+            + "Row #7: 191,940\n"
+            + "Row #8: 50,236\n"
+            + "Row #9: 266,773\n"
+            + "Row #10: 266,773\n"
+            + "Row #11: 24,597\n"
+            + "Row #12: 191,940\n"
+            + "Row #13: 50,236\n");
+    }
+
     public void testTopCountDepends() {
         checkTopBottomCountPercentDepends("TopCount");
         checkTopBottomCountPercentDepends("TopPercent");
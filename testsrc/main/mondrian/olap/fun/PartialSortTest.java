@@ -506,6 +506,30 @@ public class PartialSortTest extends TestCase
         randomItemTests(50000, 12000);
     }
 
+    // tests that the bounded heap used by TopCount and BottomCount gives the
+    // same result as the stable partial sort
+    private void topHeapTest(int length, int maxKey, int limit, boolean desc) {
+        final Item[] vec = newRandomItems(length, 0, maxKey);
+        final FunUtil.TopHeap<Item> heap =
+            new FunUtil.TopHeap<Item>(limit, desc);
+        for (Item item : vec) {
+            heap.add(item, item.key);
+        }
+        final Item[] expected = doStablePartialSort(vec, desc, limit);
+        assertEquals(Arrays.asList(expected), heap.toList());
+    }
+
+    public void testTopHeap() {
+        for (boolean desc : new boolean[] {true, false}) {
+            topHeapTest(0, 10, 5, desc);
+            topHeapTest(3, 10, 5, desc);
+            topHeapTest(100, 10, 0, desc);
+            topHeapTest(100, 10, 20, desc);
+            topHeapTest(50000, 50000, 10, desc);
+            topHeapTest(50000, 100, 500, desc);
+        }
+    }
+
 
     // Compares elapsed time of full sort (mergesort), partial sort, and stable
     // partial sort on the same input set.
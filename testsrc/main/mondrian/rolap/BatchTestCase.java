@@ -846,6 +846,33 @@ public class BatchTestCase extends FoodMartTestCase {
         return connection.execute(query);
     }
 
+    /**
+     * Executes a query, and adds to a list the SQL statements which this
+     * thread executes on its behalf.
+     *
+     * @param testContext Test context
+     * @param mdx MDX query
+     * @param sqlList List to which to add SQL statements
+     * @return Result of query
+     */
+    protected Result executeQueryRecordingSql(
+        TestContext testContext,
+        String mdx,
+        final List<String> sqlList)
+    {
+        RolapUtil.threadHooks.set(
+            new RolapUtil.ExecuteQueryHook() {
+                public void onExecuteQuery(String sql) {
+                    sqlList.add(sql);
+                }
+            });
+        try {
+            return testContext.executeQuery(mdx);
+        } finally {
+            RolapUtil.threadHooks.set(null);
+        }
+    }
+
     /**
      * Convenience method for debugging; please do not delete.
      */
@@ -0,0 +1,127 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.calc.Calc;
+import mondrian.calc.DoubleBlockCalc;
+import mondrian.olap.*;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Unit test for evaluating blocks of cells; see
+ * {@link mondrian.calc.DoubleBlockCalc} and
+ * {@link MondrianProperties#EvaluateBlockSize}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class BlockEvaluationTest extends FoodMartTestCase {
+    public BlockEvaluationTest() {
+    }
+
+    public BlockEvaluationTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that arithmetic, IIf, CoalesceEmpty and measure references
+     * compile to expressions which can evaluate blocks, and that other
+     * functions do not.
+     */
+    public void testCompile() {
+        assertBlock(true, "[Measures].[Store Sales] - [Measures].[Store Cost]");
+        assertBlock(true, "-([Measures].[Unit Sales] * 2) / 3");
+        assertBlock(
+            true,
+            "IIf([Measures].[Unit Sales] > 100, [Measures].[Store Sales],"
+            + " [Measures].[Store Cost])");
+        assertBlock(
+            true, "CoalesceEmpty([Measures].[Unit Sales], 0)");
+        assertBlock(
+            false, "Sum([Store].Children, [Measures].[Unit Sales])");
+    }
+
+    /**
+     * Tests that evaluating cells in blocks gives the same results as
+     * evaluating them one at a time, including empty cells and blocks which
+     * are split across the innermost axis.
+     */
+    public void testSameResult() {
+        final String mdx =
+            "with member [Measures].[Margin] as\n"
+            + " '([Measures].[Store Sales] - [Measures].[Store Cost])\n"
+            + "  / [Measures].[Store Sales]'\n"
+            + " member [Measures].[Neg] as '- [Measures].[Unit Sales] * 2'\n"
+            + " member [Measures].[Big] as\n"
+            + " 'IIf([Measures].[Unit Sales] > 1000,\n"
+            + "   [Measures].[Store Sales], [Measures].[Store Cost] + 1)'\n"
+            + " member [Measures].[Coalesced] as\n"
+            + " 'CoalesceEmpty([Measures].[Unit Sales],"
+            + " [Measures].[Store Cost], -1)'\n"
+            + "select CrossJoin(\n"
+            + "  {[Measures].[Unit Sales], [Measures].[Margin],"
+            + " [Measures].[Neg],\n"
+            + "   [Measures].[Big], [Measures].[Coalesced]},\n"
+            + "  [Gender].Members) on columns,\n"
+            + " {[Product].[Drink].Children,"
+            + " [Product].[Food].[Produce].Children} on rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[1997].[Q2].[4]";
+        propSaver.set(propSaver.properties.EvaluateBlockSize, 0);
+        final String expected = execute(mdx);
+        for (int blockSize : new int[] {1, 4, 100}) {
+            propSaver.set(propSaver.properties.EvaluateBlockSize, blockSize);
+            assertEquals(
+                "block size " + blockSize, expected, execute(mdx));
+        }
+    }
+
+    /**
+     * Tests that a block in which a constant member is of a dimension
+     * unrelated to the measure of some cells, but not of the first cell,
+     * gives those cells the null value, as evaluating them one at a time
+     * does.
+     */
+    public void testUnrelatedDimension() {
+        final String mdx =
+            "with member [Warehouse].[Double USA] as '[Warehouse].[USA] * 2'\n"
+            + "select {[Measures].[Units Shipped], [Measures].[Unit Sales],\n"
+            + "  [Measures].[Warehouse Sales]} on columns,\n"
+            + " {[Warehouse].[USA], [Warehouse].[Double USA]} on rows\n"
+            + "from [Warehouse and Sales]";
+        propSaver.set(propSaver.properties.EvaluateBlockSize, 0);
+        final String expected = execute(mdx);
+        propSaver.set(propSaver.properties.EvaluateBlockSize, 100);
+        assertEquals(expected, execute(mdx));
+    }
+
+    private void assertBlock(boolean expected, String expression) {
+        final Connection connection = getConnection();
+        final Query query =
+            connection.parseQuery(
+                "with member [Measures].[Foo] as "
+                + Util.singleQuoteString(expression)
+                + " select {[Measures].[Foo]} on columns from [Sales]");
+        final Calc calc =
+            query.compileExpression(
+                query.formulas[0].getExpression(), true, null);
+        assertEquals(expression, expected, calc instanceof DoubleBlockCalc);
+    }
+
+    private String execute(String mdx) {
+        final Connection connection = getConnection();
+        return TestContext.toString(
+            connection.execute(connection.parseQuery(mdx)));
+    }
+}
+
+// End BlockEvaluationTest.java
@@ -0,0 +1,170 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.rolap.agg.AggregationManager;
+import mondrian.rolap.agg.CellRequest;
+import mondrian.rolap.agg.ValueColumnPredicate;
+import mondrian.test.FoodMartTestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit test for {@link CacheWarmer}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class CacheWarmerTest extends FoodMartTestCase {
+    private File file;
+
+    public CacheWarmerTest() {
+    }
+
+    public CacheWarmerTest(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("cacheWarming", ".log");
+        propSaver.set(
+            propSaver.properties.CacheWarmingLogFile, file.getAbsolutePath());
+    }
+
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        file.delete();
+    }
+
+    /**
+     * Tests that a batch survives conversion to a signature and back, even
+     * if its names and values contain separators.
+     */
+    public void testSignature() {
+        final CacheWarmer.Batch batch =
+            new CacheWarmer.Batch("Food|Mart", "Sales\tCube");
+        batch.measureNames.add("Unit Sales");
+        batch.measureNames.add("Store\\Sales");
+        batch.columns.add(
+            new CacheWarmer.ColumnValues(
+                "customer", "gender",
+                Arrays.<Object>asList("F", "M|x", "a\nb", "")));
+        batch.columns.add(
+            new CacheWarmer.ColumnValues(
+                "time_by_day", "the_year",
+                Arrays.<Object>asList(
+                    1997, 2L, 3.5d, new BigDecimal("1.25"), true,
+                    RolapUtil.sqlNullValue)));
+        final String signature = batch.signature();
+        final CacheWarmer.Batch batch2 = CacheWarmer.Batch.parse(signature);
+        assertNotNull(batch2);
+        assertEquals("Food|Mart", batch2.schemaName);
+        assertEquals("Sales\tCube", batch2.cubeName);
+        assertEquals(batch.measureNames, batch2.measureNames);
+        assertEquals(2, batch2.columns.size());
+        assertEquals("gender", batch2.columns.get(0).columnName);
+        assertEquals(4, batch2.columns.get(0).values.size());
+        assertTrue(batch2.columns.get(0).values.contains("M|x"));
+        assertTrue(batch2.columns.get(0).values.contains("a\nb"));
+        assertTrue(batch2.columns.get(0).values.contains(""));
+        final List<Object> values = batch2.columns.get(1).values;
+        assertTrue(values.contains(1997));
+        assertTrue(values.contains(2L));
+        assertTrue(values.contains(3.5d));
+        assertTrue(values.contains(new BigDecimal("1.25")));
+        assertTrue(values.contains(Boolean.TRUE));
+        assertTrue(values.contains(RolapUtil.sqlNullValue));
+        assertEquals(signature, batch2.signature());
+
+        assertNull(CacheWarmer.Batch.parse("x\ty"));
+        assertNull(CacheWarmer.Batch.parse("x\ty\tz\tt\tc\tq1"));
+    }
+
+    /**
+     * Tests that the requests of a query are recorded, that the log is
+     * compacted, and that replaying the log after a flush loads the cells
+     * into the cache.
+     */
+    public void testRecordAndReplay() throws IOException {
+        // Do not warm in the background while the test runs.
+        propSaver.set(propSaver.properties.CacheWarmingTopN, 0);
+        final Connection connection = getConnection();
+        final RolapCube cube =
+            (RolapCube) connection.getSchema().lookupCube("Sales", true);
+        final RolapStar star = cube.getStar();
+        flush(connection, cube);
+
+        final String query =
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " {[Gender].Members} on rows\n"
+            + "from [Sales]";
+        executeQuery(query);
+        flush(connection, cube);
+        executeQuery(query);
+        flush(connection, cube);
+
+        propSaver.set(propSaver.properties.CacheWarmingTopN, 10);
+        List<CacheWarmer.Batch> batches = CacheWarmer.instance().compact();
+        assertFalse(batches.isEmpty());
+        final CacheWarmer.Batch batch = batches.get(0);
+        assertEquals("Sales", batch.cubeName);
+        assertEquals(Arrays.asList("Unit Sales"), batch.measureNames);
+
+        // The log now has one line per distinct batch, and compacting it
+        // again gives the same result.
+        batches = CacheWarmer.instance().compact();
+        assertEquals(batch.signature(), batches.get(0).signature());
+
+        final CellRequest request = makeRequest(star, batch);
+        assertNull(AggregationManager.instance().getCellFromCache(request));
+        final int count =
+            CacheWarmer.instance().replay(
+                (RolapSchema) connection.getSchema(), star);
+        assertTrue(count >= 1);
+        assertNotNull(AggregationManager.instance().getCellFromCache(request));
+
+        // Replaying does not record the batches it loads.
+        batches = CacheWarmer.instance().compact();
+        assertEquals(batch.signature(), batches.get(0).signature());
+        propSaver.set(propSaver.properties.CacheWarmingTopN, 0);
+        flush(connection, cube);
+    }
+
+    private CellRequest makeRequest(RolapStar star, CacheWarmer.Batch batch) {
+        final RolapStar.Measure measure =
+            star.getFactTable().lookupMeasureByName(
+                batch.cubeName, batch.measureNames.get(0));
+        assertNotNull(measure);
+        final CellRequest request = new CellRequest(measure, false, false);
+        for (CacheWarmer.ColumnValues columnValues : batch.columns) {
+            final RolapStar.Column column =
+                CacheWarmer.lookupColumn(star, columnValues);
+            assertNotNull(column);
+            request.addConstrainedColumn(
+                column,
+                new ValueColumnPredicate(column, columnValues.values.get(0)));
+        }
+        return request;
+    }
+
+    private void flush(Connection connection, Cube cube) {
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        cacheControl.flush(cacheControl.createMeasuresRegion(cube));
+    }
+}
+
+// End CacheWarmerTest.java
@@ -0,0 +1,180 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.mdx.MemberExpr;
+import mondrian.mdx.ResolvedFunCall;
+import mondrian.olap.*;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Unit test for {@link CalculatedMeasureCompiler}, which computes simple
+ * calculated measures in SQL.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class CompiledMeasureTest extends FoodMartTestCase {
+    private static final String MEMBER_DEFS =
+        "<CalculatedMember name=\"Half Profit\" dimension=\"Measures\">\n"
+        + "  <Formula>([Measures].[Store Sales] - [Measures].[Store Cost])"
+        + " / 2</Formula>\n"
+        + "</CalculatedMember>\n"
+        + "<CalculatedMember name=\"Weighted\" dimension=\"Measures\">\n"
+        + "  <Formula>-[Measures].[Unit Sales] + 3 * [Measures].[Store Sales]"
+        + "</Formula>\n"
+        + "</CalculatedMember>\n"
+        + "<CalculatedMember name=\"Sales Ratio\" dimension=\"Measures\">\n"
+        + "  <Formula>[Measures].[Store Sales] / [Measures].[Store Cost]"
+        + "</Formula>\n"
+        + "</CalculatedMember>\n";
+
+    private static final String WAREHOUSE_MEMBER_DEFS =
+        "<CalculatedMember name=\"Half Units\" dimension=\"Measures\"\n"
+        + "    formatString=\"#.000\">\n"
+        + "  <Formula>[Measures].[Units Shipped] / 2</Formula>\n"
+        + "</CalculatedMember>\n"
+        + "<CalculatedMember name=\"Unshipped\" dimension=\"Measures\"\n"
+        + "    formatString=\"#.000\">\n"
+        + "  <Formula>[Measures].[Units Ordered]"
+        + " - [Measures].[Units Shipped]</Formula>\n"
+        + "</CalculatedMember>\n";
+
+    public CompiledMeasureTest() {
+    }
+
+    public CompiledMeasureTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that compiled calculated measures give the same results as
+     * calculated measures evaluated cell by cell.
+     */
+    public void testSameResult() {
+        final String mdx =
+            "select {[Measures].[Profit], [Measures].[Half Profit],\n"
+            + "  [Measures].[Weighted], [Measures].[Sales Ratio]} on columns,\n"
+            + " CrossJoin([Gender].Members,\n"
+            + "  {[Time].[1997].[Q1], [Time].[1997].[Q2].[5]}) on rows\n"
+            + "from [Sales]\n"
+            + "where [Store].[USA].[CA]";
+        checkSameResult("Sales", MEMBER_DEFS, mdx);
+    }
+
+    /**
+     * Tests that dividing a measure over an integer column by an integer
+     * constant does not truncate, and that cells whose measures are all null
+     * remain empty.
+     */
+    public void testIntegerColumnAndNulls() {
+        checkSameResult(
+            "Warehouse",
+            WAREHOUSE_MEMBER_DEFS,
+            "select {[Measures].[Half Units], [Measures].[Unshipped]}\n"
+            + " on columns,\n"
+            + " CrossJoin([Store Type].Members,\n"
+            + "  {[Time].[1997].[Q1], [Time].[1997].[Q1].[2]}) on rows\n"
+            + "from [Warehouse]");
+    }
+
+    /**
+     * Tests that a compiled measure which intersects a non-linear calculated
+     * member of another dimension, and wins on solve order, evaluates its
+     * formula against the values of that member.
+     */
+    public void testSolveOrder() {
+        checkSameResult(
+            "Sales",
+            MEMBER_DEFS,
+            "with member [Gender].[Ratio] as '[Gender].[F] / [Gender].[M]'\n"
+            + "select {[Measures].[Half Profit], [Measures].[Weighted]}\n"
+            + " on columns,\n"
+            + " {[Gender].[F], [Gender].[Ratio]} on rows\n"
+            + "from [Sales]");
+    }
+
+    /**
+     * Tests that linear formulas are replaced by hidden stored measures, and
+     * that other formulas are not.
+     */
+    public void testFormulaReplaced() {
+        propSaver.set(propSaver.properties.CompileCalculatedMeasures, true);
+        final SchemaReader schemaReader =
+            connect("Sales", MEMBER_DEFS).getSchema().lookupCube("Sales", true)
+                .getSchemaReader(null);
+        final String[] names = {"Profit", "Half Profit", "Weighted"};
+        for (String name : names) {
+            final Exp exp = lookup(schemaReader, name).getExpression();
+            assertTrue(name, exp instanceof ResolvedFunCall);
+            final Exp arg = ((ResolvedFunCall) exp).getArg(0);
+            assertTrue(name, arg instanceof MemberExpr);
+            final Member measure = ((MemberExpr) arg).getMember();
+            assertTrue(measure instanceof RolapBaseCubeMeasure);
+            assertEquals("$" + name, measure.getName());
+            assertEquals(
+                Boolean.FALSE,
+                measure.getPropertyValue(Property.VISIBLE.name));
+        }
+        final Exp ratioExp =
+            lookup(schemaReader, "Sales Ratio").getExpression();
+        assertEquals("/", ((ResolvedFunCall) ratioExp).getFunName());
+    }
+
+    private Member lookup(SchemaReader schemaReader, String name) {
+        return schemaReader.getMemberByUniqueName(
+            Util.parseIdentifier("[Measures].[" + name + "]"), true);
+    }
+
+    /**
+     * Runs a query with compilation of calculated measures disabled and
+     * enabled, and checks that the results are the same.
+     *
+     * @param cubeName Name of cube to add calculated members to
+     * @param memberDefs Definitions of calculated members
+     * @param mdx Query
+     */
+    private void checkSameResult(
+        String cubeName,
+        String memberDefs,
+        String mdx)
+    {
+        propSaver.set(propSaver.properties.CompileCalculatedMeasures, false);
+        final String expected = execute(cubeName, memberDefs, mdx);
+        propSaver.set(propSaver.properties.CompileCalculatedMeasures, true);
+        final String actual = execute(cubeName, memberDefs, mdx);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Creates a connection to a new copy of the schema, so that the schema
+     * is loaded with the current value of
+     * {@link MondrianProperties#CompileCalculatedMeasures}.
+     *
+     * @param cubeName Name of cube to add calculated members to
+     * @param memberDefs Definitions of calculated members
+     * @return Connection
+     */
+    private Connection connect(String cubeName, String memberDefs) {
+        getConnection().getCacheControl(null).flushSchemaCache();
+        return TestContext.createSubstitutingCube(cubeName, null, memberDefs)
+            .getFoodMartConnection(false);
+    }
+
+    private String execute(String cubeName, String memberDefs, String mdx) {
+        final Connection connection = connect(cubeName, memberDefs);
+        return TestContext.toString(
+            connection.execute(connection.parseQuery(mdx)));
+    }
+}
+
+// End CompiledMeasureTest.java
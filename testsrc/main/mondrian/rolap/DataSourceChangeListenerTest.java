@@ -11,6 +11,7 @@ package mondrian.rolap;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Random;
 
 import mondrian.olap.Id;
@@ -19,6 +20,8 @@ import mondrian.olap.Query;
 import mondrian.olap.Result;
 import mondrian.olap.Util;
 import mondrian.olap.MondrianProperties;
+import mondrian.rolap.agg.Aggregation;
+import mondrian.rolap.agg.AggregationKey;
 import mondrian.rolap.cache.HardSmartCache;
 import mondrian.test.FoodMartTestCase;
 import mondrian.test.TestContext;
@@ -233,6 +236,99 @@ public class DataSourceChangeListenerTest extends FoodMartTestCase {
         checkCacheFlushing(5, 8);
     }
 
+    /**
+     * Tests that a {@link DataSourceChangeMonitor} registers a hierarchy and
+     * an aggregation the first time it polls the listener, and records a
+     * change each time after that: the member cache sees a new epoch, and
+     * the next query replaces the aggregation.
+     *
+     * <p>Uses a private schema, not in the schema pool, so that the
+     * changes do not affect other tests.
+     */
+    public void testDataSourceChangeMonitor() {
+        // Poll explicitly; the monitor's own timer will not fire during the
+        // test.
+        propSaver.set(
+            propSaver.properties.DataSourceChangePollMillis, 3600000);
+        final TestContext testContext =
+            new TestContext() {
+                public Util.PropertyList getFoodMartConnectionProperties() {
+                    final Util.PropertyList properties =
+                        super.getFoodMartConnectionProperties();
+                    properties.put(
+                        RolapConnectionProperties.UseSchemaPool.name(),
+                        "false");
+                    properties.put(
+                        RolapConnectionProperties.DataSourceChangeListener
+                            .name(),
+                        DataSourceChangeListenerImpl3.class.getName());
+                    return properties;
+                }
+            };
+        final Connection connection = testContext.getConnection();
+        final RolapSchema schema = (RolapSchema) connection.getSchema();
+        assertNotSame(
+            schema, getTestContext().getConnection().getSchema());
+        final DataSourceChangeMonitor monitor =
+            schema.getDataSourceChangeMonitor();
+        assertNotNull(monitor);
+        try {
+            final String query =
+                "select {[Measures].[Unit Sales]} on 0,\n"
+                + " [Store].[USA].Children on 1\n"
+                + "from [Sales]";
+            testContext.executeQuery(query);
+
+            final MemberCacheHelper memberCache =
+                (MemberCacheHelper)
+                    getSharedSmartMemberReader(connection, "Store")
+                        .getMemberCache();
+            final RolapCube cube =
+                (RolapCube) schema.lookupCube("Sales", true);
+            final RolapHierarchy hierarchy =
+                ((RolapCubeHierarchy) cube.lookupHierarchy(
+                    new Id.Segment("Store", Id.Quoting.UNQUOTED), false))
+                    .getRolapHierarchy();
+            final DataSourceChangeMonitor.Watch watch =
+                monitor.watch(hierarchy);
+            assertSame(watch, monitor.watch(hierarchy));
+
+            final RolapStar star = cube.getStar();
+            final Map<AggregationKey, Aggregation> aggregations =
+                star.copySharedAggregations();
+            assertFalse(aggregations.isEmpty());
+            final Map.Entry<AggregationKey, Aggregation> entry =
+                aggregations.entrySet().iterator().next();
+
+            // The first poll registers the hierarchy and the aggregation.
+            assertEquals(0, watch.getEpoch());
+            monitor.poll();
+            assertEquals(0, watch.getEpoch());
+            assertFalse(memberCache.isHierarchyChanged());
+            testContext.executeQuery(query);
+            assertSame(
+                entry.getValue(),
+                star.copySharedAggregations().get(entry.getKey()));
+
+            // The second poll records a change. The member cache sees the
+            // new epoch once, and the next query replaces the aggregation.
+            monitor.poll();
+            assertEquals(1, watch.getEpoch());
+            assertTrue(memberCache.isHierarchyChanged());
+            assertFalse(memberCache.isHierarchyChanged());
+            testContext.executeQuery(query);
+            final Aggregation replacement =
+                star.copySharedAggregations().get(entry.getKey());
+            assertNotNull(replacement);
+            assertNotSame(entry.getValue(), replacement);
+
+            monitor.poll();
+            assertEquals(2, watch.getEpoch());
+        } finally {
+            monitor.stop();
+        }
+    }
+
     /**
      * Tests several threads, each of which is creating connections and
      * periodically flushing the schema cache.
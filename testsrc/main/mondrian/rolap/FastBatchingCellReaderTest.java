@@ -13,6 +13,9 @@ import mondrian.olap.*;
 import mondrian.rolap.agg.SegmentLoader;
 import mondrian.rolap.agg.GroupingSet;
 import mondrian.rolap.agg.AggregationKey;
+import mondrian.rolap.agg.AggregationManager;
+import mondrian.rolap.agg.CellProbe;
+import mondrian.rolap.agg.CellRequest;
 import mondrian.test.TestContext;
 import mondrian.test.SqlPattern;
 import mondrian.spi.Dialect;
@@ -1959,6 +1962,62 @@ public class FastBatchingCellReaderTest extends BatchTestCase {
 
         assertQuerySql(query, patterns);
     }
+
+    /**
+     * Tests that looking up cells using a {@link CellProbe} gives the same
+     * values as using a {@link mondrian.rolap.agg.CellRequest}, and that
+     * calculated members fall back to a request.
+     */
+    public void testCellProbe() {
+        executeQuery(
+            "select {[Measures].[Unit Sales], [Measures].[Store Sales]}"
+            + " on columns,\n"
+            + " CrossJoin([Gender].Members, [Store].[USA].Children) on rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[1997].[Q1]");
+        final RolapCube cube = getCube(cubeNameSales);
+        final SchemaReader schemaReader = cube.getSchemaReader(null);
+        final AggregationManager aggMgr = AggregationManager.instance();
+        final CellProbe probe = new CellProbe();
+        final Member q1 = member(schemaReader, "[Time].[1997].[Q1]");
+        int count = 0;
+        for (String measureName
+            : new String[] {"Unit Sales", "Store Sales"})
+        {
+            final Member measure =
+                member(schemaReader, "[Measures].[" + measureName + "]");
+            for (String gender : new String[] {"M", "F"}) {
+                for (String state : new String[] {"CA", "OR", "WA"}) {
+                    final Member[] members = {
+                        measure,
+                        member(schemaReader, "[Gender].[" + gender + "]"),
+                        member(schemaReader, "[Store].[USA].[" + state + "]"),
+                        q1
+                    };
+                    final CellRequest request =
+                        RolapAggregationManager.makeRequest(members);
+                    assertTrue(
+                        RolapAggregationManager.makeProbe(members, probe));
+                    final Object value = aggMgr.getCellFromCache(request);
+                    assertNotNull(value);
+                    assertEquals(value, aggMgr.getCellFromCache(probe, null));
+                    ++count;
+                }
+            }
+        }
+        assertEquals(12, count);
+
+        final Member[] calculated = {
+            member(schemaReader, "[Measures].[Profit]"),
+            member(schemaReader, "[Gender].[M]")
+        };
+        assertFalse(RolapAggregationManager.makeProbe(calculated, probe));
+    }
+
+    private static Member member(SchemaReader schemaReader, String name) {
+        return schemaReader.getMemberByUniqueName(
+            Util.parseIdentifier(name), true);
+    }
 }
 
 // End FastBatchingCellReaderTest.java
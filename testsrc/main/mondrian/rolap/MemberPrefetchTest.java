@@ -0,0 +1,215 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.rolap.sql.MemberChildrenConstraint;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit test for prefetching members into the cache, as requested via
+ * {@link SchemaReader#prefetchMemberDescendants} and
+ * {@link SchemaReader#prefetchMembersByName} and implemented by
+ * {@link SmartMemberReader}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class MemberPrefetchTest extends FoodMartTestCase {
+    public MemberPrefetchTest() {
+    }
+
+    public MemberPrefetchTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that prefetching the descendants of a member puts the children of
+     * the member and of its descendants above the target level into the
+     * cache.
+     */
+    public void testPrefetchDescendants() {
+        final Connection connection =
+            getTestContext().getFoodMartConnection(false);
+        final SchemaReader schemaReader =
+            connection.getSchema().lookupCube("Sales", true)
+                .getSchemaReader(null);
+        final Member usa =
+            schemaReader.getMemberByUniqueName(
+                Util.parseIdentifier("[Store].[USA]"), true);
+        final Level storeCity = usa.getHierarchy().getLevels()[3];
+        assertEquals("Store City", storeCity.getName());
+        final MemberCache cache = getSharedCache(usa);
+        final MemberChildrenConstraint constraint =
+            DefaultMemberChildrenConstraint.instance();
+        final RolapMember rolapUsa = ((RolapCubeMember) usa).getRolapMember();
+        assertNull(cache.getChildrenFromCache(rolapUsa, constraint));
+
+        schemaReader.prefetchMemberDescendants(
+            Collections.singletonList(usa), storeCity, null);
+        final List<RolapMember> states =
+            cache.getChildrenFromCache(rolapUsa, constraint);
+        assertNotNull(states);
+        assertEquals(
+            "[[Store].[USA].[CA], [Store].[USA].[OR], [Store].[USA].[WA]]",
+            states.toString());
+        for (RolapMember state : states) {
+            final List<RolapMember> cities =
+                cache.getChildrenFromCache(state, constraint);
+            assertNotNull(cities);
+            assertFalse(cities.isEmpty());
+            for (RolapMember city : cities) {
+                // Members below the target level are not read.
+                assertNull(cache.getChildrenFromCache(city, constraint));
+            }
+        }
+        assertEquals(
+            "[[Store].[USA].[OR].[Portland], [Store].[USA].[OR].[Salem]]",
+            cache.getChildrenFromCache(states.get(1), constraint).toString());
+    }
+
+    /**
+     * Tests that Descendants and DrilldownLevel, which prefetch, return the
+     * same members as equivalent expressions which read whole levels.
+     */
+    public void testPrefetchSameResult() {
+        checkSameResult(
+            "Descendants([Store].[USA], [Store].[Store Name])",
+            "Filter([Store].[Store Name].Members,\n"
+            + "  Ancestor([Store].CurrentMember, [Store].[Store Country])\n"
+            + "  IS [Store].[USA])");
+        checkSameResult(
+            "Descendants([Product].[Drink], , LEAVES)",
+            "Filter([Product].[Product Name].Members,\n"
+            + "  Ancestor([Product].CurrentMember,\n"
+            + "    [Product].[Product Family])\n"
+            + "  IS [Product].[Drink])");
+        checkSameResult(
+            "DrilldownLevel([Customers].[Country].Members)",
+            "Hierarchize({[Customers].[Country].Members,\n"
+            + "  [Customers].[State Province].Members})");
+    }
+
+    /**
+     * Tests that resolving a list of member names reads, for each parent,
+     * the children with the names asked for, and that a query which
+     * references many members returns the same members as an equivalent
+     * expression.
+     */
+    public void testPrefetchMembersByName() {
+        final String[] names = {
+            "[Customers].[USA].[CA].[Berkeley]",
+            "[Customers].[USA].[CA].[Burlingame]",
+            "[Customers].[USA].[OR].[Portland]",
+            "[Customers].[USA].[OR].[Nowhere]",
+            "[Customers].[All Customers].[USA].[WA].[Seattle]",
+        };
+        final Connection connection =
+            getTestContext().getFoodMartConnection(false);
+        final Cube cube = connection.getSchema().lookupCube("Sales", true);
+        final SchemaReader schemaReader =
+            cube.getSchemaReader(null).withoutAccessControl();
+        final List<List<Id.Segment>> nameList =
+            new ArrayList<List<Id.Segment>>();
+        for (String name : names) {
+            nameList.add(Util.parseIdentifier(name));
+        }
+        schemaReader.prefetchMembersByName(cube, nameList);
+
+        final Member ca =
+            schemaReader.getMemberByUniqueName(
+                Util.parseIdentifier("[Customers].[USA].[CA]"), true);
+        final MemberCache cache = getSharedCache(ca);
+        final RolapMember rolapCa = ((RolapCubeMember) ca).getRolapMember();
+        assertEquals(
+            "[[Customers].[USA].[CA].[Berkeley]]",
+            String.valueOf(
+                cache.getChildrenFromCache(
+                    rolapCa, childByName("Berkeley"))));
+        assertEquals(
+            "[[Customers].[USA].[CA].[Burlingame]]",
+            String.valueOf(
+                cache.getChildrenFromCache(
+                    rolapCa, childByName("Burlingame"))));
+
+        // A name which was not found is left to the usual path.
+        final Member or =
+            schemaReader.getMemberByUniqueName(
+                Util.parseIdentifier("[Customers].[USA].[OR]"), true);
+        final RolapMember rolapOr = ((RolapCubeMember) or).getRolapMember();
+        assertNull(cache.getChildrenFromCache(rolapOr, childByName("Nowhere")));
+
+        // StrToMember resolves names one at a time, as the query is
+        // evaluated.
+        checkSameResult(
+            "{[Customers].[USA].[CA].[Berkeley],\n"
+            + " [Customers].[USA].[CA].[Burlingame],\n"
+            + " [Customers].[USA].[OR].[Portland],\n"
+            + " [Customers].[USA].[WA].[Seattle]}",
+            "{StrToMember(\"[Customers].[USA].[CA].[Berkeley]\"),\n"
+            + " StrToMember(\"[Customers].[USA].[CA].[Burlingame]\"),\n"
+            + " StrToMember(\"[Customers].[USA].[OR].[Portland]\"),\n"
+            + " StrToMember(\"[Customers].[USA].[WA].[Seattle]\")}");
+    }
+
+    /**
+     * Tests that resolving a list of member names works when the names of
+     * the children of a parent do not fit into one IN list, per
+     * {@link MondrianProperties#MaxConstraints}.
+     */
+    public void testPrefetchMembersByNameMaxConstraints() {
+        propSaver.set(propSaver.properties.MaxConstraints, 1);
+        getTestContext().flushSchemaCache();
+        testPrefetchMembersByName();
+    }
+
+    private MemberChildrenConstraint childByName(String name) {
+        return new ChildByNameConstraint(
+            new Id.Segment(name, Id.Quoting.QUOTED));
+    }
+
+    /**
+     * Checks that two set expressions, each evaluated with a fresh cache,
+     * return the same result.
+     */
+    private void checkSameResult(String set, String expectedSet) {
+        assertEquals(
+            set,
+            execute(expectedSet),
+            execute(set));
+    }
+
+    private String execute(String set) {
+        final Connection connection =
+            getTestContext().getFoodMartConnection(false);
+        final String query =
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " " + set + " on rows\n"
+            + "from [Sales]";
+        return TestContext.toString(
+            connection.execute(connection.parseQuery(query)));
+    }
+
+    private MemberCache getSharedCache(Member member) {
+        final RolapHierarchy hierarchy =
+            ((RolapCubeHierarchy) member.getHierarchy()).getRolapHierarchy();
+        final MemberReader memberReader = hierarchy.getMemberReader();
+        assertTrue(memberReader instanceof SmartMemberReader);
+        return ((SmartMemberReader) memberReader).getMemberCache();
+    }
+}
+
+// End MemberPrefetchTest.java
@@ -0,0 +1,219 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.test.TestContext;
+
+/**
+ * Unit test for {@link RolapNativeAggregate}, which computes
+ * <code>Count</code>, <code>Sum</code> and <code>Aggregate</code> of a set
+ * in SQL.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class NativeAggregateTest extends BatchTestCase {
+    public NativeAggregateTest() {
+    }
+
+    public NativeAggregateTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that counting the non-empty members of a set gives the same
+     * result natively as in the interpreter.
+     */
+    public void testCount() {
+        checkNativeAggregate(
+            "with member [Customers].[City Count] as\n"
+            + " 'Count(Descendants([Customers].[USA], [Customers].[City]),\n"
+            + "    EXCLUDEEMPTY)'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[Sales Count]}\n"
+            + " on columns,\n"
+            + " {[Time].[1997].[Q1], [Time].[1997].[Q2].[5]} on rows\n"
+            + "from [Sales]\n"
+            + "where [Customers].[City Count]");
+        checkNativeAggregate(
+            "with member [Product].[Tuple Count] as\n"
+            + " 'Count(NonEmptyCrossJoin([Gender].[Gender].Members,\n"
+            + "    [Product].[Product Department].Members))'\n"
+            + "select {[Measures].[Unit Sales]} on columns,\n"
+            + " {[Store].[Store State].Members} on rows\n"
+            + "from [Sales]\n"
+            + "where [Product].[Tuple Count]");
+    }
+
+    /**
+     * Tests that summing and aggregating an additive measure over a set
+     * gives the same result natively as in the interpreter.
+     */
+    public void testSumAndAggregate() {
+        checkNativeAggregate(
+            "with member [Store].[Sum Cities] as\n"
+            + " 'Sum([Store].[Store City].Members)'\n"
+            + " member [Store].[Aggregate States] as\n"
+            + " 'Aggregate(Descendants([Store].[USA],"
+            + " [Store].[Store State]))'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[Sales Count]}\n"
+            + " on columns,\n"
+            + " CrossJoin({[Store].[Sum Cities], [Store].[Aggregate States]},\n"
+            + "  {[Time].[1997].[Q1], [Time].[1997].[Q3]}) on rows\n"
+            + "from [Sales]\n"
+            + "where [Gender].[F]");
+        checkNativeAggregate(
+            "with member [Measures].[Drink Sales] as\n"
+            + " 'Sum(Descendants([Product].[Drink],"
+            + " [Product].[Product Category]),\n"
+            + "    [Measures].[Store Sales])'\n"
+            + "select {[Measures].[Drink Sales]} on columns,\n"
+            + " {[Store].[Store State].Members} on rows\n"
+            + "from [Sales]");
+    }
+
+    /**
+     * Tests that a measure whose values cannot be rolled up in SQL is
+     * evaluated by the interpreter.
+     */
+    public void testDistinctCountNotNative() {
+        propSaver.set(propSaver.properties.EnableNativeAggregate, true);
+        assertEquals(
+            0,
+            execute(
+                "with member [Store].[Sum Cities] as\n"
+                + " 'Aggregate([Store].[Store City].Members)'\n"
+                + "select {[Measures].[Customer Count]} on columns,\n"
+                + " {[Store].[Sum Cities]} on rows\n"
+                + "from [Sales]",
+                new StringBuilder()));
+    }
+
+    /**
+     * Tests that the result of a native aggregate is cached, and that the
+     * cached result is discarded when the cells of the star are flushed.
+     */
+    public void testCache() {
+        propSaver.set(propSaver.properties.EnableNativeAggregate, true);
+        getConnection().getCacheControl(null).flushSchemaCache();
+        final Connection connection =
+            getTestContext().getFoodMartConnection(false);
+        final int[] counts = {0, 0};
+        getRegistry(connection).setListener(
+            new RolapNative.Listener() {
+                public void foundEvaluator(RolapNative.NativeEvent e) {
+                }
+
+                public void foundInCache(RolapNative.TupleEvent e) {
+                    if (e.getSource()
+                        instanceof RolapNativeAggregate.AggregateEvaluator)
+                    {
+                        ++counts[0];
+                    }
+                }
+
+                public void executingSql(RolapNative.TupleEvent e) {
+                    if (e.getSource()
+                        instanceof RolapNativeAggregate.AggregateEvaluator)
+                    {
+                        ++counts[1];
+                    }
+                }
+            });
+        final String mdx =
+            "with member [Store].[Sum Cities] as\n"
+            + " 'Sum([Store].[Store City].Members)'\n"
+            + "select {[Measures].[Unit Sales]} on columns,\n"
+            + " {[Time].[1997].[Q1], [Time].[1997].[Q3]} on rows\n"
+            + "from [Sales]\n"
+            + "where [Store].[Sum Cities]";
+        final String result =
+            TestContext.toString(
+                connection.execute(connection.parseQuery(mdx)));
+        final int sqlCount = counts[1];
+        assertTrue(sqlCount > 0);
+
+        // Second time, all results come from the cache.
+        counts[0] = counts[1] = 0;
+        assertEquals(
+            result,
+            TestContext.toString(
+                connection.execute(connection.parseQuery(mdx))));
+        assertTrue(counts[0] > 0);
+        assertEquals(0, counts[1]);
+
+        // After a flush, the results are computed again.
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        cacheControl.flush(
+            cacheControl.createMeasuresRegion(
+                connection.getSchema().lookupCube("Sales", true)));
+        counts[0] = counts[1] = 0;
+        assertEquals(
+            result,
+            TestContext.toString(
+                connection.execute(connection.parseQuery(mdx))));
+        assertEquals(sqlCount, counts[1]);
+    }
+
+    /**
+     * Runs a query with native aggregation disabled and enabled, and checks
+     * that the native evaluator is used and that the results are the same.
+     *
+     * @param mdx Query
+     */
+    private void checkNativeAggregate(String mdx) {
+        propSaver.set(propSaver.properties.EnableNativeAggregate, false);
+        final StringBuilder expected = new StringBuilder();
+        assertEquals(0, execute(mdx, expected));
+        propSaver.set(propSaver.properties.EnableNativeAggregate, true);
+        final StringBuilder actual = new StringBuilder();
+        assertTrue(mdx, execute(mdx, actual) > 0);
+        assertEquals(mdx, expected.toString(), actual.toString());
+    }
+
+    /**
+     * Executes a query with a fresh connection, and returns how many times
+     * the native aggregate evaluator was used.
+     *
+     * @param mdx Query
+     * @param buf Buffer to which to append the result of the query
+     * @return Number of native aggregate evaluations
+     */
+    private int execute(String mdx, StringBuilder buf) {
+        // The registry reads the property when the schema is created.
+        getConnection().getCacheControl(null).flushSchemaCache();
+        final Connection connection =
+            getTestContext().getFoodMartConnection(false);
+        final int[] counts = {0};
+        getRegistry(connection).setListener(
+            new RolapNative.Listener() {
+                public void foundEvaluator(RolapNative.NativeEvent e) {
+                    if (e.getNativeEvaluator()
+                        instanceof RolapNativeAggregate.AggregateEvaluator)
+                    {
+                        ++counts[0];
+                    }
+                }
+
+                public void foundInCache(RolapNative.TupleEvent e) {
+                }
+
+                public void executingSql(RolapNative.TupleEvent e) {
+                }
+            });
+        buf.append(
+            TestContext.toString(
+                connection.execute(connection.parseQuery(mdx))));
+        return counts[0];
+    }
+}
+
+// End NativeAggregateTest.java
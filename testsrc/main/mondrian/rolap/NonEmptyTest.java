@@ -765,6 +765,117 @@ public class NonEmptyTest extends BatchTestCase {
             requestFreshConnection);
     }
 
+    /**
+     * Verifies that a page of a sorted set, as requested by
+     * {@code Head} or {@code Subset} of {@code Order(..., BDESC)}, is
+     * evaluated natively and returns the same tuples as the interpreter.
+     */
+    public void testNativeOrderPage() {
+        propSaver.set(MondrianProperties.instance().EnableNativeOrder, true);
+        checkNative(
+            0,
+            5,
+            "select {[Measures].[Store Sales]} on columns,\n"
+            + " non empty Head(Order([Customers].[Name].Members,\n"
+            + "   [Measures].[Store Sales], BDESC), 5) on rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[1997].[Q1]",
+            null,
+            true);
+        checkNative(
+            0,
+            5,
+            "select {[Measures].[Store Sales]} on columns,\n"
+            + " non empty Subset(Order(\n"
+            + "   CrossJoin([Gender].[Gender].Members,\n"
+            + "     [Customers].[Name].Members),\n"
+            + "   [Measures].[Store Sales], BDESC), 20, 5) on rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[1997].[Q1]",
+            null,
+            true);
+    }
+
+    /**
+     * Verifies that {@code Except} and {@code Intersect} of a native set and
+     * a list of members, or the children of a member, are evaluated natively
+     * with an extra predicate.
+     */
+    public void testNativeExceptIntersect() {
+        checkNative(
+            0,
+            4,
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " non empty CrossJoin(\n"
+            + "   Except([Product].[Product Family].Members,\n"
+            + "     {[Product].[Non-Consumable]}),\n"
+            + "   [Gender].[Gender].Members) on rows\n"
+            + "from [Sales]",
+            null,
+            true);
+        checkNative(
+            0,
+            16,
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " non empty CrossJoin(\n"
+            + "   Except([Product].[Product Department].Members,\n"
+            + "     [Product].[Food].Children),\n"
+            + "   [Gender].[Gender].Members) on rows\n"
+            + "from [Sales]",
+            null,
+            true);
+        checkNative(
+            0,
+            4,
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " non empty CrossJoin(\n"
+            + "   Intersect([Product].[Product Family].Members,\n"
+            + "     {[Product].[Drink], [Product].[Food]}),\n"
+            + "   [Gender].[Gender].Members) on rows\n"
+            + "from [Sales]",
+            null,
+            true);
+    }
+
+    /**
+     * Verifies that {@code Union} of the children of two members, and
+     * {@code Descendants} with the {@code SELF} flag, are evaluated natively,
+     * and that a {@code Union} whose members are not in hierarchical order is
+     * not, because SQL would return them in hierarchical order.
+     */
+    public void testNativeUnionDescendants() {
+        checkNative(
+            0,
+            16,
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " non empty CrossJoin(\n"
+            + "   Union([Product].[Drink].Children,\n"
+            + "     [Product].[Non-Consumable].Children),\n"
+            + "   [Gender].[Gender].Members) on rows\n"
+            + "from [Sales]",
+            null,
+            true);
+        checkNotNative(
+            16,
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " non empty CrossJoin(\n"
+            + "   Union([Product].[Non-Consumable].Children,\n"
+            + "     [Product].[Drink].Children),\n"
+            + "   [Gender].[Gender].Members) on rows\n"
+            + "from [Sales]");
+        checkNative(
+            0,
+            6,
+            "select {[Measures].[Unit Sales]} on columns,\n"
+            + " non empty CrossJoin(\n"
+            + "   Descendants([Product].[Drink],"
+            + " [Product].[Product Department], SELF),\n"
+            + "   [Gender].[Gender].Members) on rows\n"
+            + "from [Sales]",
+            null,
+            true);
+    }
+
     /**
      * Verifies that CrossJoins with two non native inputs can be natively
      * evaluated.
@@ -3724,6 +3835,25 @@ public class NonEmptyTest extends BatchTestCase {
             + "Axis #2:\n");
     }
 
+    /**
+     * Verifies that removing empty positions from a large axis using several
+     * threads gives the same result as using one thread.
+     */
+    public void testNonEmptyThreadCount() {
+        propSaver.set(
+            MondrianProperties.instance().EnableNativeNonEmpty, false);
+        final String mdx =
+            "select NON EMPTY {[Measures].[Unit Sales],"
+            + " [Measures].[Store Cost]} ON columns,\n"
+            + " NON EMPTY [Customers].[Name].Members ON rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[1997].[Q2]";
+        propSaver.set(MondrianProperties.instance().NonEmptyThreadCount, 1);
+        final String expected = TestContext.toString(executeQuery(mdx));
+        propSaver.set(MondrianProperties.instance().NonEmptyThreadCount, 4);
+        assertEquals(expected, TestContext.toString(executeQuery(mdx)));
+    }
+
     /**
      * Test case for <a href="http://jira.pentaho.com/browse/MONDRIAN-412">
      * MONDRIAN-412, "NON EMPTY and Filter() breaking aggregate
@@ -0,0 +1,117 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Unit test for {@link QueryPlanCache}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class QueryPlanCacheTest extends FoodMartTestCase {
+    private static final String MDX =
+        "select {[Measures].[Unit Sales]} on columns,\n"
+        + " [Store].[USA].Children on rows\n"
+        + "from [Sales]\n"
+        + "where [Time].[1997].[Q1]";
+
+    public QueryPlanCacheTest() {
+    }
+
+    public QueryPlanCacheTest(String name) {
+        super(name);
+    }
+
+    public void testNormalize() {
+        assertEquals(
+            "select [a  b] from 'x  y' where \"p  q\"",
+            QueryPlanCache.normalize(
+                "\n select  [a  b]\tfrom 'x  y'\n\nwhere \"p  q\"  "));
+    }
+
+    /**
+     * Tests that a second execution of the same statement, from a different
+     * connection and with different white space, re-uses the compiled
+     * query, and gives the same result.
+     */
+    public void testReuse() {
+        propSaver.set(propSaver.properties.QueryPlanCacheSize, 10);
+        final Connection connection1 = newConnection(getTestContext());
+        final Query query1 = QueryPlanCache.parseQuery(connection1, MDX);
+        final String result1 =
+            TestContext.toString(connection1.execute(query1));
+        QueryPlanCache.checkIn(query1);
+
+        final Connection connection2 = newConnection(getTestContext());
+        final Query query2 =
+            QueryPlanCache.parseQuery(
+                connection2, MDX.replaceAll("\n", "\n   "));
+        assertSame(query1, query2);
+        assertSame(connection2, query2.getConnection());
+        assertEquals(
+            result1, TestContext.toString(connection2.execute(query2)));
+
+        // While query2 is checked out, another execution must get its own.
+        final Query query3 = QueryPlanCache.parseQuery(connection2, MDX);
+        assertNotSame(query2, query3);
+        QueryPlanCache.checkIn(query2);
+        QueryPlanCache.checkIn(query3);
+    }
+
+    /**
+     * Tests that a plan is not shared between connections with different
+     * roles.
+     */
+    public void testRole() {
+        propSaver.set(propSaver.properties.QueryPlanCacheSize, 10);
+        final Connection connection1 = newConnection(getTestContext());
+        final Query query1 = QueryPlanCache.parseQuery(connection1, MDX);
+        QueryPlanCache.checkIn(query1);
+
+        final Connection connection2 =
+            newConnection(getTestContext().withRole("California manager"));
+        final Query query2 = QueryPlanCache.parseQuery(connection2, MDX);
+        assertNotSame(query1, query2);
+        // The role can only see California, so the rows axis has one member.
+        final Result result = connection2.execute(query2);
+        assertEquals(1, result.getAxes()[1].getPositions().size());
+    }
+
+    /**
+     * Tests that flushing members from the cache discards plans, and that
+     * the cache does nothing if disabled.
+     */
+    public void testInvalidateAndDisable() {
+        propSaver.set(propSaver.properties.QueryPlanCacheSize, 10);
+        final Connection connection = newConnection(getTestContext());
+        final Query query1 = QueryPlanCache.parseQuery(connection, MDX);
+        QueryPlanCache.checkIn(query1);
+        QueryPlanCache.invalidateAll();
+        final Query query2 = QueryPlanCache.parseQuery(connection, MDX);
+        assertNotSame(query1, query2);
+        QueryPlanCache.checkIn(query2);
+
+        propSaver.set(propSaver.properties.QueryPlanCacheSize, 0);
+        final Query query3 = QueryPlanCache.parseQuery(connection, MDX);
+        assertNotSame(query2, query3);
+    }
+
+    private static Connection newConnection(TestContext testContext) {
+        return DriverManager.getConnection(
+            testContext.getFoodMartConnectionProperties(), null);
+    }
+}
+
+// End QueryPlanCacheTest.java
@@ -0,0 +1,162 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+/**
+ * Unit test for {@link RolapResultCache}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class RolapResultCacheTest extends FoodMartTestCase {
+    private static final String MDX =
+        "select {[Measures].[Unit Sales]} on columns,\n"
+        + " [Store].[USA].Children on rows\n"
+        + "from [Sales]\n"
+        + "where [Time].[1997].[Q1]";
+
+    public RolapResultCacheTest() {
+    }
+
+    public RolapResultCacheTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that executing the same query twice, from different connections,
+     * returns the cached result, and that the hit ratio is recorded.
+     */
+    public void testHit() {
+        propSaver.set(
+            propSaver.properties.ResultCacheMaxBytes, 1000000);
+        final Connection connection1 = newConnection(getTestContext());
+        final RolapResultCache cache =
+            ((RolapSchema) connection1.getSchema()).getResultCache();
+        cache.clear();
+        final long hitCount = cache.getHitCount();
+        final Query query1 = connection1.parseQuery(MDX);
+        final Result result1 = connection1.execute(query1);
+        final String expected = TestContext.toString(result1);
+        assertSame(query1, result1.getQuery());
+        assertEquals(1, cache.size());
+        assertTrue(cache.getByteCount() > 0);
+
+        final Connection connection2 = newConnection(getTestContext());
+        final Query query2 = connection2.parseQuery(MDX);
+        final Result result2 = connection2.execute(query2);
+        assertEquals(hitCount + 1, cache.getHitCount());
+        assertTrue(cache.getHitRatio() > 0d);
+        assertSame(query2, result2.getQuery());
+        assertEquals(expected, TestContext.toString(result2));
+
+        // Different role, different result.
+        final Connection connection3 =
+            newConnection(getTestContext().withRole("California manager"));
+        final Result result3 = connection3.execute(connection3.parseQuery(MDX));
+        assertEquals(hitCount + 1, cache.getHitCount());
+        assertEquals(1, result3.getAxes()[1].getPositions().size());
+    }
+
+    /**
+     * Tests that flushing a region of the cell cache discards results which
+     * use it.
+     */
+    public void testFlush() {
+        propSaver.set(
+            propSaver.properties.ResultCacheMaxBytes, 1000000);
+        final Connection connection = newConnection(getTestContext());
+        final RolapResultCache cache =
+            ((RolapSchema) connection.getSchema()).getResultCache();
+        cache.clear();
+        connection.execute(connection.parseQuery(MDX));
+        assertEquals(1, cache.size());
+
+        final CacheControl cacheControl = connection.getCacheControl(null);
+        final Cube salesCube =
+            connection.getSchema().lookupCube("Sales", true);
+        cacheControl.flush(cacheControl.createMeasuresRegion(salesCube));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getByteCount());
+    }
+
+    /**
+     * Tests that results larger than the limit are not cached, and that the
+     * cache does nothing if disabled.
+     */
+    public void testLimitAndDisable() {
+        propSaver.set(propSaver.properties.ResultCacheMaxBytes, 10);
+        final Connection connection = newConnection(getTestContext());
+        final RolapResultCache cache =
+            ((RolapSchema) connection.getSchema()).getResultCache();
+        cache.clear();
+        connection.execute(connection.parseQuery(MDX));
+        assertEquals(0, cache.size());
+
+        propSaver.set(propSaver.properties.ResultCacheMaxBytes, 0);
+        final long missCount = cache.getMissCount();
+        connection.execute(connection.parseQuery(MDX));
+        assertEquals(missCount, cache.getMissCount());
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Tests that a query which calls a volatile function, such as
+     * <code>Now()</code>, directly or via a calculated member of the cube,
+     * is executed each time rather than returned from the cache.
+     */
+    public void testVolatileFunction() {
+        propSaver.set(
+            propSaver.properties.ResultCacheMaxBytes, 1000000);
+        final TestContext testContext =
+            TestContext.createSubstitutingCube(
+                "Sales",
+                null,
+                "<CalculatedMember name=\"Today\" dimension=\"Measures\">\n"
+                + "  <Formula>CurrentDateString(\"yyyy-mm-dd\")</Formula>\n"
+                + "</CalculatedMember>");
+        final Connection connection = newConnection(testContext);
+        final RolapResultCache cache =
+            ((RolapSchema) connection.getSchema()).getResultCache();
+        cache.clear();
+        final long hitCount = cache.getHitCount();
+        final String[] queries = {
+            "with member [Measures].[Now] as 'Now()'\n"
+            + "select {[Measures].[Now]} on columns\n"
+            + "from [Sales]",
+            "select {[Measures].[Today]} on columns\n"
+            + "from [Sales]",
+        };
+        for (String mdx : queries) {
+            for (int i = 0; i < 2; i++) {
+                connection.execute(connection.parseQuery(mdx));
+                assertEquals(mdx, 0, cache.size());
+            }
+        }
+        assertEquals(hitCount, cache.getHitCount());
+
+        // A query which calls no volatile function is cached.
+        connection.execute(connection.parseQuery(MDX));
+        connection.execute(connection.parseQuery(MDX));
+        assertEquals(1, cache.size());
+        assertEquals(hitCount + 1, cache.getHitCount());
+    }
+
+    private static Connection newConnection(TestContext testContext) {
+        return DriverManager.getConnection(
+            testContext.getFoodMartConnectionProperties(), null);
+    }
+}
+
+// End RolapResultCacheTest.java
@@ -14,8 +14,10 @@ package mondrian.rolap;
 
 import mondrian.olap.*;
 import mondrian.rolap.agg.*;
+import mondrian.rolap.aggmatcher.AggStar;
 import mondrian.test.TestContext;
 import mondrian.test.SqlPattern;
+import mondrian.spi.AggregateCostModel;
 import mondrian.spi.Dialect;
 import org.olap4j.impl.Olap4jUtil;
 
@@ -181,6 +183,248 @@ public class TestAggregationManager extends BatchTestCase {
         assertRequestSql(new CellRequest[]{request}, patterns);
     }
 
+    /**
+     * Tests that a pluggable {@link AggregateCostModel} can veto the aggregate
+     * table chosen in {@link #testFemaleUnitSalesSql()}, so that the request
+     * is answered from the fact table.
+     */
+    public void testCostModelPrefersFactTable() {
+        if (!(MondrianProperties.instance().UseAggregates.get()
+              && MondrianProperties.instance().ReadAggregates.get()))
+        {
+            return;
+        }
+        CellRequest request = createRequest(
+            "Sales", "[Measures].[Unit Sales]", "customer", "gender", "F");
+
+        SqlPattern[] patterns = {
+            new SqlPattern(
+                ACCESS_MYSQL,
+                "select `customer`.`gender` as `c0`,"
+                + " sum(`sales_fact_1997`.`unit_sales`) as `m0` "
+                + "from `customer` as `customer`,"
+                + " `sales_fact_1997` as `sales_fact_1997` "
+                + "where `sales_fact_1997`.`customer_id` = `customer`.`customer_id` "
+                + "and `customer`.`gender` = 'F' "
+                + "group by `customer`.`gender`",
+                26)
+        };
+
+        AggregationManager.AggregateCostModelFactory.setThreadLocalClassName(
+            FactTableCostModel.class.getName());
+        try {
+            assertRequestSql(new CellRequest[]{request}, patterns);
+        } finally {
+            AggregationManager.AggregateCostModelFactory
+                .clearThreadLocalClassName();
+        }
+    }
+
+    /**
+     * Tests that the default cost model prefers an aggregate table in which
+     * the requested column is collapsed to a slightly smaller table which
+     * must be joined to the dimension table.
+     */
+    public void testDefaultCostModelJoin() {
+        final CellRequest request = createRequest(
+            "Sales", "[Measures].[Unit Sales]", "customer", "gender", "F");
+        final AggStar[] pair = findCollapsedAndJoinedAggStars(request);
+        if (pair == null) {
+            return;
+        }
+        final AggStar collapsed = pair[0];
+        final AggStar joined = pair[1];
+
+        // Both tables are rolled up, so with no predicates, cost is
+        // size * 2 for the collapsed table and size * 2.1 for the joined.
+        assertSame(
+            collapsed,
+            findAggWithSizes(
+                request, Collections.<StarColumnPredicate>emptyList(),
+                sizes(request, collapsed, 100, joined, 97)));
+        assertSame(
+            joined,
+            findAggWithSizes(
+                request, Collections.<StarColumnPredicate>emptyList(),
+                sizes(request, collapsed, 100, joined, 90)));
+    }
+
+    /**
+     * Tests that the default cost model takes into account the selectivity
+     * of a request's predicates. The predicate "gender = 'F'" halves the
+     * number of rows to be rolled up, which makes the cost of the join a
+     * larger part of the total, and tips the choice to the table in which
+     * gender is collapsed.
+     */
+    public void testDefaultCostModelSelectivity() {
+        final CellRequest request = createRequest(
+            "Sales", "[Measures].[Unit Sales]", "customer", "gender", "F");
+        final AggStar[] pair = findCollapsedAndJoinedAggStars(request);
+        if (pair == null) {
+            return;
+        }
+        final AggStar collapsed = pair[0];
+        final AggStar joined = pair[1];
+        final Map<String, Integer> sizes =
+            sizes(request, collapsed, 106, joined, 100);
+
+        // No predicates: 106 * (1 + 1) = 212 versus 100 * (1.1 + 1) = 210.
+        assertSame(
+            joined,
+            findAggWithSizes(
+                request, Collections.<StarColumnPredicate>emptyList(),
+                sizes));
+
+        // Selectivity 1/2: 106 * 1.5 = 159 versus 100 * 1.6 = 160.
+        assertSame(
+            collapsed,
+            findAggWithSizes(request, request.getValueList(), sizes));
+    }
+
+    /**
+     * Tests that, of aggregate tables whose cost is equal, the default cost
+     * model chooses the one which is smallest, which comes first in
+     * {@link RolapStar#getAggStars()}.
+     */
+    public void testDefaultCostModelTieBreak() {
+        if (!(MondrianProperties.instance().UseAggregates.get()
+              && MondrianProperties.instance().ReadAggregates.get()))
+        {
+            return;
+        }
+        final CellRequest request = createRequest(
+            "Sales", "[Measures].[Unit Sales]", "customer", "gender", "F");
+
+        // Find two tables which are rolled up and join to one dimension
+        // table, and so cost the same at the same size.
+        final BitKey levelBitKey = request.getConstrainedColumnsBitKey();
+        final List<AggStar> aggStars =
+            request.getMeasure().getStar().getAggStars();
+        AggStar first = null;
+        AggStar second = null;
+        for (AggStar aggStar : aggStars) {
+            if (isSuitable(request, aggStar)
+                && !aggStar.getLevelBitKey().equals(levelBitKey)
+                && joinCount(aggStar, levelBitKey) == 1)
+            {
+                if (first == null) {
+                    first = aggStar;
+                } else {
+                    second = aggStar;
+                    break;
+                }
+            }
+        }
+        if (second == null) {
+            return;
+        }
+        assertSame(
+            first,
+            findAggWithSizes(
+                request, Collections.<StarColumnPredicate>emptyList(),
+                sizes(request, first, 100, second, 100)));
+    }
+
+    /**
+     * Returns two aggregate tables which can answer a request on one column
+     * and both need to be rolled up: one in which the column is collapsed,
+     * and one which must be joined to the column's dimension table. Returns
+     * null if aggregate tables are disabled or there is no such pair.
+     */
+    private AggStar[] findCollapsedAndJoinedAggStars(CellRequest request) {
+        if (!(MondrianProperties.instance().UseAggregates.get()
+              && MondrianProperties.instance().ReadAggregates.get()))
+        {
+            return null;
+        }
+        final BitKey levelBitKey = request.getConstrainedColumnsBitKey();
+        AggStar collapsed = null;
+        AggStar joined = null;
+        for (AggStar aggStar : request.getMeasure().getStar().getAggStars()) {
+            if (!isSuitable(request, aggStar)
+                || aggStar.getLevelBitKey().equals(levelBitKey))
+            {
+                continue;
+            }
+            final int joinCount = joinCount(aggStar, levelBitKey);
+            if (joinCount == 0 && collapsed == null) {
+                collapsed = aggStar;
+            } else if (joinCount == 1 && joined == null) {
+                joined = aggStar;
+            }
+        }
+        if (collapsed == null || joined == null) {
+            return null;
+        }
+        return new AggStar[] {collapsed, joined};
+    }
+
+    private static boolean isSuitable(CellRequest request, AggStar aggStar) {
+        final BitKey bitKey = request.getConstrainedColumnsBitKey().copy();
+        bitKey.set(request.getMeasure().getBitPosition());
+        return aggStar.superSetMatch(bitKey);
+    }
+
+    private static int joinCount(AggStar aggStar, BitKey levelBitKey) {
+        final Set<AggStar.Table> tables = new HashSet<AggStar.Table>();
+        for (int bitPos = levelBitKey.nextSetBit(0); bitPos >= 0;
+             bitPos = levelBitKey.nextSetBit(bitPos + 1))
+        {
+            final AggStar.Table table = aggStar.lookupColumn(bitPos).getTable();
+            if (!(table instanceof AggStar.FactTable)) {
+                tables.add(table);
+            }
+        }
+        return tables.size();
+    }
+
+    /**
+     * Creates a map of simulated sizes of aggregate tables, giving two tables
+     * the sizes specified and every other table a size so large that it is
+     * never chosen.
+     */
+    private static Map<String, Integer> sizes(
+        CellRequest request,
+        AggStar aggStar0,
+        int size0,
+        AggStar aggStar1,
+        int size1)
+    {
+        final Map<String, Integer> sizes = new HashMap<String, Integer>();
+        for (AggStar aggStar : request.getMeasure().getStar().getAggStars()) {
+            sizes.put(aggStar.getFactTable().getName(), Integer.MAX_VALUE);
+        }
+        sizes.put(aggStar0.getFactTable().getName(), size0);
+        sizes.put(aggStar1.getFactTable().getName(), size1);
+        return sizes;
+    }
+
+    /**
+     * Finds the aggregate table for a request using the default cost model,
+     * with simulated table sizes.
+     */
+    private static AggStar findAggWithSizes(
+        CellRequest request,
+        List<StarColumnPredicate> predicates,
+        Map<String, Integer> sizes)
+    {
+        final BitKey levelBitKey = request.getConstrainedColumnsBitKey();
+        final BitKey measureBitKey = levelBitKey.emptyCopy();
+        measureBitKey.set(request.getMeasure().getBitPosition());
+        SizedCostModel.sizes = sizes;
+        AggregationManager.AggregateCostModelFactory.setThreadLocalClassName(
+            SizedCostModel.class.getName());
+        try {
+            return AggregationManager.instance().findAgg(
+                request.getMeasure().getStar(), levelBitKey, measureBitKey,
+                predicates, new boolean[1]);
+        } finally {
+            AggregationManager.AggregateCostModelFactory
+                .clearThreadLocalClassName();
+            SizedCostModel.sizes = null;
+        }
+    }
+
     /**
      * Test a batch containing multiple measures:
      *   (store_state=CA, gender=F, measure=[Unit Sales])
@@ -1527,6 +1771,35 @@ public class TestAggregationManager extends BatchTestCase {
             + "Row #0: 131,558\n"
             + "Row #0: 135,215\n");
     }
+
+    /**
+     * Cost model which always prefers the fact table to an aggregate table.
+     */
+    public static class FactTableCostModel implements AggregateCostModel {
+        public double computeCost(
+            RolapStar star,
+            AggStar aggStar,
+            BitKey levelBitKey,
+            BitKey measureBitKey,
+            boolean rollup,
+            List<StarColumnPredicate> predicates)
+        {
+            return aggStar == null ? 0d : 1d;
+        }
+    }
+
+    /**
+     * Default cost model, with simulated sizes of aggregate tables.
+     */
+    public static class SizedCostModel
+        extends AggregationManager.DefaultAggregateCostModel
+    {
+        static Map<String, Integer> sizes;
+
+        protected double getSize(AggStar aggStar) {
+            return sizes.get(aggStar.getFactTable().getName());
+        }
+    }
 }
 
 // End TestAggregationManager.java
@@ -0,0 +1,191 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap;
+
+import mondrian.olap.*;
+import mondrian.test.FoodMartTestCase;
+import mondrian.test.TestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Unit test for aggregating measures over ranges of time periods in a
+ * single cell request; see
+ * {@link MondrianProperties#TimeRangeAggregation}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class TimeRangeAggregationTest extends FoodMartTestCase {
+    public TimeRangeAggregationTest() {
+    }
+
+    public TimeRangeAggregationTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests <code>Sum</code> over <code>Ytd</code>, which is a contiguous
+     * range of months within a year. Time is on an axis, so the set is
+     * different for each cell and the result must be computed member by
+     * member in both settings.
+     */
+    public void testSumYtd() {
+        assertSameResult(
+            "with member [Measures].[YTD Sales] as\n"
+            + " 'Sum(Ytd(), [Measures].[Unit Sales])'\n"
+            + " member [Measures].[YTD Count] as\n"
+            + " 'Sum(Ytd(), [Measures].[Sales Count])'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[YTD Sales],\n"
+            + "  [Measures].[YTD Count]} on columns,\n"
+            + " CrossJoin({[Gender].[F], [Gender].[M]},\n"
+            + "  Descendants([Time].[1997], [Time].[Month])) on rows\n"
+            + "from [Sales]");
+    }
+
+    /**
+     * Tests <code>Aggregate</code> over <code>PeriodsToDate</code>, in the
+     * context of a calculated member of the time dimension.
+     */
+    public void testAggregatePeriodsToDate() {
+        assertSameResult(
+            "with member [Time].[To Date] as\n"
+            + " 'Aggregate(PeriodsToDate([Time].[Year],"
+            + " [Time].[1997].[Q3].[8]))'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[Store Sales],\n"
+            + "  [Measures].[Customer Count]} on columns,\n"
+            + " {[Time].[1997].[Q3].[8], [Time].[To Date]} on rows\n"
+            + "from [Sales]\n"
+            + "where [Store].[USA].[WA]");
+    }
+
+    /**
+     * Tests <code>LastPeriods</code>, including ranges which span two years
+     * (which are not contiguous ranges of month keys), and an aggregate
+     * which cannot be computed in one request (<code>Avg</code>). As in
+     * {@link #testSumYtd()}, Time is on an axis.
+     */
+    public void testLastPeriods() {
+        assertSameResult(
+            "with member [Measures].[Last 3] as\n"
+            + " 'Sum(LastPeriods(3, [Time].CurrentMember),"
+            + " [Measures].[Store Sales])'\n"
+            + " member [Measures].[Avg 3] as\n"
+            + " 'Avg(LastPeriods(3, [Time].CurrentMember),"
+            + " [Measures].[Store Sales])'\n"
+            + "select {[Measures].[Last 3], [Measures].[Avg 3]} on columns,\n"
+            + " {[Time].[1997].[Q4].Children,"
+            + " [Time].[1998].[Q1].Children} on rows\n"
+            + "from [Sales]");
+    }
+
+    /**
+     * Tests that aggregating a set which is the same for every cell issues
+     * one statement, which constrains the month column by a range, for all
+     * of the cells.
+     */
+    public void testOneRangeQuery() {
+        assertOneRangeQuery(
+            "with member [Time].[To Date] as\n"
+            + " 'Aggregate(PeriodsToDate([Time].[Year],"
+            + " [Time].[1997].[Q3].[8]))'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[Store Sales]}\n"
+            + " on columns,\n"
+            + " {[Gender].[F], [Gender].[M]} on rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[To Date]");
+    }
+
+    /**
+     * Tests <code>Sum</code> over <code>Ytd</code> when Time is only in the
+     * slicer, so that the set is the same for every cell and the sum is
+     * computed by a range request.
+     */
+    public void testSumYtdOneRangeQuery() {
+        assertOneRangeQuery(
+            "with member [Measures].[YTD Sales] as\n"
+            + " 'Sum(Ytd(), [Measures].[Unit Sales])'\n"
+            + "select {[Measures].[Unit Sales], [Measures].[YTD Sales]}\n"
+            + " on columns,\n"
+            + " {[Gender].[F], [Gender].[M]} on rows\n"
+            + "from [Sales]\n"
+            + "where [Time].[1997].[Q3].[8]");
+    }
+
+    /**
+     * Tests <code>Sum</code> over <code>PeriodsToDate</code> of a constant
+     * member, with Time on no axis.
+     */
+    public void testSumPeriodsToDateOneRangeQuery() {
+        assertOneRangeQuery(
+            "with member [Measures].[To Date Sales] as\n"
+            + " 'Sum(PeriodsToDate([Time].[Year], [Time].[1997].[Q3].[8]),"
+            + " [Measures].[Store Sales])'\n"
+            + "select {[Measures].[To Date Sales]} on columns,\n"
+            + " {[Gender].[F], [Gender].[M]} on rows\n"
+            + "from [Sales]");
+    }
+
+    /**
+     * Checks that a query gives the same result with and without
+     * {@link MondrianProperties#TimeRangeAggregation}, and that with it, the
+     * query issues exactly one statement which constrains the month column
+     * to the range January to August.
+     *
+     * @param mdx MDX query
+     */
+    private void assertOneRangeQuery(String mdx) {
+        propSaver.set(propSaver.properties.EnableNativeAggregate, false);
+        assertSameResult(mdx);
+        final Pattern rangePattern =
+            Pattern.compile(
+                "month_of_year\\W* >= 1 and \\S*month_of_year\\W* <= 8");
+        getConnection().getCacheControl(null).flushSchemaCache();
+        propSaver.set(propSaver.properties.TimeRangeAggregation, true);
+        final List<String> sqlList = new ArrayList<String>();
+        RolapUtil.threadHooks.set(
+            new RolapUtil.ExecuteQueryHook() {
+                public void onExecuteQuery(String sql) {
+                    sqlList.add(sql);
+                }
+            });
+        try {
+            execute(mdx);
+        } finally {
+            RolapUtil.threadHooks.set(null);
+        }
+        int count = 0;
+        for (String sql : sqlList) {
+            if (rangePattern.matcher(sql).find()) {
+                ++count;
+            }
+        }
+        assertEquals(sqlList.toString(), 1, count);
+    }
+
+    private void assertSameResult(String mdx) {
+        propSaver.set(propSaver.properties.TimeRangeAggregation, false);
+        final String expected = execute(mdx);
+        getConnection().getCacheControl(null).flushSchemaCache();
+        propSaver.set(propSaver.properties.TimeRangeAggregation, true);
+        assertEquals(expected, execute(mdx));
+    }
+
+    private String execute(String mdx) {
+        final Connection connection = getConnection();
+        return TestContext.toString(
+            connection.execute(connection.parseQuery(mdx)));
+    }
+}
+
+// End TimeRangeAggregationTest.java
@@ -0,0 +1,122 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.olap.Connection;
+import mondrian.olap.Result;
+import mondrian.rolap.BatchTestCase;
+import mondrian.rolap.RolapCube;
+import mondrian.rolap.RolapStar;
+import mondrian.test.TestContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link InMemoryPartition}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class InMemoryPartitionTest extends BatchTestCase {
+    private static final String QUERY =
+        "select {[Measures].[Store Invoice], [Measures].[Units Shipped],\n"
+        + "  [Measures].[Warehouse Sales]} on columns,\n"
+        + " non empty crossjoin([Store Type].[Store Type].Members,\n"
+        + "  [Time].[Quarter].Members) on rows\n"
+        + "from [Warehouse]\n"
+        + "where [Store].[USA].[CA]";
+
+    public InMemoryPartitionTest() {
+    }
+
+    public InMemoryPartitionTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that a star can be read into memory, and that the property
+     * which limits the number of rows is respected.
+     */
+    public void testMaterialize() {
+        final RolapStar star = getStar(getConnection());
+        assertFalse(star.isInMemory());
+        assertNull(star.getInMemoryPartition());
+        final InMemoryPartition partition =
+            InMemoryPartition.materialize(star);
+        assertNotNull(partition);
+        assertTrue(partition.getRowCount() > 0);
+        assertTrue(partition.getByteCount() > 0);
+
+        propSaver.set(
+            propSaver.properties.InMemoryPartitionMaxRows,
+            partition.getRowCount() - 1);
+        assertNull(InMemoryPartition.materialize(star));
+    }
+
+    /**
+     * Tests that a query against a cube whose data is in memory returns the
+     * same result as a query which uses SQL, that the cell values are of
+     * the same types, and that no cells are read from the fact table.
+     */
+    public void testQueryInMemory() throws InterruptedException {
+        final Result expectedResult = getTestContext().executeQuery(QUERY);
+        final String expected = TestContext.toString(expectedResult);
+        final TestContext testContext =
+            TestContext.create(
+                TestContext.getRawFoodMartSchema().replace(
+                    "<Cube name=\"Warehouse\">",
+                    "<Cube name=\"Warehouse\" inMemory=\"true\">"));
+        final RolapStar star = getStar(testContext.getConnection());
+        assertTrue(star.isInMemory());
+
+        // The partition is read in a background thread.
+        for (int i = 0; i < 600 && star.getInMemoryPartition() == null; i++) {
+            Thread.sleep(100);
+        }
+        assertNotNull(star.getInMemoryPartition());
+        final List<String> sqlList = new ArrayList<String>();
+        final Result result =
+            executeQueryRecordingSql(testContext, QUERY, sqlList);
+        assertEquals(expected, TestContext.toString(result));
+
+        // Segments are loaded from the partition. Statements which read
+        // members may still join to the fact table, but none aggregates it.
+        for (String sql : sqlList) {
+            final String s = sql.toLowerCase();
+            assertFalse(
+                sql,
+                s.contains("inventory_fact_1997") && s.contains("sum("));
+        }
+        final int columnCount =
+            result.getAxes()[0].getPositions().size();
+        final int rowCount = result.getAxes()[1].getPositions().size();
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                final int[] pos = {column, row};
+                final Object expectedValue =
+                    expectedResult.getCell(pos).getValue();
+                final Object value = result.getCell(pos).getValue();
+                assertEquals(
+                    expectedValue == null ? null : expectedValue.getClass(),
+                    value == null ? null : value.getClass());
+            }
+        }
+    }
+
+    private RolapStar getStar(Connection connection) {
+        final RolapCube cube =
+            (RolapCube) connection.getSchema().lookupCube("Warehouse", true);
+        return cube.getStar();
+    }
+}
+
+// End InMemoryPartitionTest.java
@@ -0,0 +1,151 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import mondrian.rolap.*;
+
+import org.apache.log4j.Logger;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * Unit test for {@link SegmentIndex}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class SegmentIndexTest extends BatchTestCase {
+    private static final Logger LOGGER =
+        Logger.getLogger(SegmentIndexTest.class);
+
+    private static final int SEGMENT_COUNT = 1000;
+
+    public SegmentIndexTest() {
+    }
+
+    public SegmentIndexTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that, for an aggregation with 1000 segments, the index returns
+     * exactly the segments which would contain each cell, and times
+     * lookups against a linear scan.
+     */
+    public void testCandidates() {
+        final GroupingSet groupingSet =
+            getGroupingSet(
+                new String[] {tableCustomer, tableProductClass, tableTime},
+                new String[] {fieldGender, fieldProductFamily, fieldYear},
+                new String[][] {
+                    fieldValuesGender, fieldValuesProductFamily,
+                    fieldValuesYear},
+                cubeNameSales,
+                measureUnitSales);
+        final Segment template = groupingSet.getSegments().get(0);
+        final RolapStar.Column[] columns = template.aggregation.getColumns();
+        assertEquals(3, columns.length);
+
+        final List<Segment> segments = new ArrayList<Segment>();
+        final List<SoftReference<Segment>> segmentRefs =
+            new ArrayList<SoftReference<Segment>>();
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            final Aggregation.Axis[] axes = {
+                // Every third segment is unconstrained on gender.
+                new Aggregation.Axis(
+                    i % 3 == 0
+                        ? LiteralStarPredicate.TRUE
+                        : new ValueColumnPredicate(
+                            columns[0], i % 3 == 1 ? "M" : "F")),
+                new Aggregation.Axis(
+                    new ValueColumnPredicate(columns[1], "F" + (i % 50))),
+                new Aggregation.Axis(
+                    new ListColumnPredicate(
+                        columns[2],
+                        Arrays.<StarColumnPredicate>asList(
+                            new ValueColumnPredicate(
+                                columns[2], 1990 + i % 7),
+                            new ValueColumnPredicate(
+                                columns[2], 1991 + i % 7)))),
+            };
+            final Segment segment =
+                new Segment(
+                    template.aggregation, template.measure, axes,
+                    Collections.<Segment.Region>emptyList());
+            segments.add(segment);
+            segmentRefs.add(new SoftReference<Segment>(segment));
+        }
+        final SegmentIndex index = new SegmentIndex(segmentRefs);
+        final SegmentIndex.MeasureIndex measureIndex =
+            index.get(template.measure);
+        assertEquals(SEGMENT_COUNT, measureIndex.size());
+
+        final List<Object[]> probes = new ArrayList<Object[]>();
+        for (String gender : new String[] {"M", "F", "X"}) {
+            for (int family = 0; family < 55; family++) {
+                for (int year = 1988; year < 2000; year++) {
+                    probes.add(new Object[] {gender, "F" + family, year});
+                }
+            }
+        }
+        int matchCount = 0;
+        for (Object[] keys : probes) {
+            final BitSet expected = new BitSet();
+            for (int i = 0; i < segments.size(); i++) {
+                if (segments.get(i).wouldContain(keys)) {
+                    expected.set(i);
+                }
+            }
+            assertEquals(expected, measureIndex.getCandidates(keys));
+            matchCount += expected.cardinality();
+        }
+        assertTrue(matchCount > 0);
+
+        // Time index lookups against a linear scan.
+        final int repeat = 10;
+        long t0 = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+            for (Object[] keys : probes) {
+                for (Segment segment : segments) {
+                    segment.wouldContain(keys);
+                }
+            }
+        }
+        long t1 = System.nanoTime();
+        for (int r = 0; r < repeat; r++) {
+            for (Object[] keys : probes) {
+                measureIndex.getCandidates(keys);
+            }
+        }
+        long t2 = System.nanoTime();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                "SegmentIndexTest.testCandidates: "
+                + repeat * probes.size() + " lookups over "
+                + SEGMENT_COUNT + " segments; linear scan "
+                + (t1 - t0) / 1000000 + " ms, index "
+                + (t2 - t1) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Tests that an index has no entry for a measure with no segments.
+     */
+    public void testEmpty() {
+        final SegmentIndex index =
+            new SegmentIndex(
+                Collections.<SoftReference<Segment>>emptyList());
+        assertNull(index.get(getMeasure(cubeNameSales, measureUnitSales)));
+    }
+}
+
+// End SegmentIndexTest.java
@@ -0,0 +1,129 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.agg;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link ValueDictionary} and the dictionary-coded keys of
+ * {@link Aggregation.Axis}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class ValueDictionaryTest extends TestCase {
+    public ValueDictionaryTest(String name) {
+        super(name);
+    }
+
+    public void testDictionary() {
+        final ValueDictionary dictionary = new ValueDictionary();
+        assertEquals(-1, dictionary.lookup("a"));
+        assertEquals(-1, dictionary.lookup(null));
+        final int a = dictionary.code("a");
+        final int b = dictionary.code("b");
+        assertTrue(a >= 0);
+        assertTrue(a != b);
+        assertEquals(a, dictionary.code("a"));
+        assertEquals(b, dictionary.lookup("b"));
+        assertEquals(2, dictionary.size());
+    }
+
+    /**
+     * Tests that axes on the same column share codes, and that looking up
+     * a key by code gives the same offset as looking it up by value.
+     */
+    public void testAxisCodes() {
+        final ValueDictionary dictionary = new ValueDictionary();
+        final Aggregation.Axis axis1 =
+            new Aggregation.Axis(
+                LiteralStarPredicate.TRUE, dictionary,
+                new Comparable[] {"a", "b", "c"});
+        final Aggregation.Axis axis2 =
+            new Aggregation.Axis(
+                LiteralStarPredicate.TRUE, dictionary,
+                new Comparable[] {"b", "d"});
+        assertEquals(4, dictionary.size());
+        assertEquals(axis1.getCodes()[1], axis2.getCodes()[0]);
+        assertEquals(1, axis1.getOffset("b"));
+        assertEquals(0, axis2.getOffset("b"));
+        assertEquals(-1, axis2.getOffset("a"));
+        assertEquals(-1, axis1.getOffset("d"));
+        assertEquals(-1, axis1.getOffset("z"));
+        assertEquals(2, axis1.getOffsetForCode(dictionary.lookup("c")));
+        assertEquals(-1, axis1.getOffsetForCode(dictionary.lookup("d")));
+
+        // An axis which has not loaded its keys contains nothing.
+        final Aggregation.Axis axis3 =
+            new Aggregation.Axis(LiteralStarPredicate.TRUE, dictionary);
+        assertEquals(-1, axis3.getOffset("a"));
+    }
+
+    /**
+     * Tests that each dictionary assigns codes from 0, so that a code from
+     * one dictionary may identify a different value in another, and that an
+     * axis searched by value uses only its own dictionary.
+     */
+    public void testCodesPerDictionary() {
+        final ValueDictionary dictionary = new ValueDictionary();
+        final Aggregation.Axis axis =
+            new Aggregation.Axis(
+                LiteralStarPredicate.TRUE, dictionary,
+                new Comparable[] {"a", "b"});
+        assertEquals(0, dictionary.lookup("a"));
+        assertEquals(1, dictionary.lookup("b"));
+
+        // A column which is flushed gets a new dictionary, which codes
+        // values from 0 again. The axis still holds the old dictionary.
+        final ValueDictionary dictionary2 = new ValueDictionary();
+        assertEquals(0, dictionary2.size());
+        assertEquals(0, dictionary2.getByteCount());
+        assertEquals(-1, dictionary2.lookup("a"));
+        final int c = dictionary2.code("c");
+        final int a = dictionary2.code("a");
+        assertEquals(0, c);
+        assertEquals(1, a);
+        assertSame(dictionary, axis.getDictionary());
+
+        // The code of "c" in the new dictionary is the code of "a" in the
+        // old; which is why Segment.getCellValue searches by code only if
+        // the axis was coded by the same dictionary as the key.
+        assertEquals(0, axis.getOffsetForCode(c));
+        assertEquals(0, axis.getOffset("a"));
+        assertEquals(1, axis.getOffset("b"));
+        assertEquals(-1, axis.getOffset("c"));
+    }
+
+    /**
+     * Tests an axis with many keys, so that the table from code to offset
+     * has collisions.
+     */
+    public void testLargeAxis() {
+        final ValueDictionary dictionary = new ValueDictionary();
+        // Assign codes in a different order than the keys' order.
+        for (int i = 999; i >= 0; i -= 3) {
+            dictionary.code(i);
+        }
+        final Comparable[] keys = new Comparable[1000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        final Aggregation.Axis axis =
+            new Aggregation.Axis(LiteralStarPredicate.TRUE, dictionary, keys);
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, axis.getOffset(i));
+            assertEquals(i, axis.getOffsetForCode(axis.getCodes()[i]));
+        }
+        assertEquals(-1, axis.getOffset(1000));
+    }
+}
+
+// End ValueDictionaryTest.java
@@ -13,6 +13,7 @@ import javax.sql.DataSource;
 import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.*;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -100,6 +101,59 @@ public class AggGenTest extends FoodMartTestCase {
         }
     }
 
+    /**
+     * Tests that {@link AggAdvisor} records segment loads and recommends
+     * aggregate tables for them, most beneficial first.
+     */
+    public void testAggAdvisor() {
+        final MondrianProperties props = MondrianProperties.instance();
+        propSaver.set(props.AggregateAdvisor, true);
+        propSaver.set(props.DisableCaching, true);
+        propSaver.set(props.UseAggregates, false);
+        final AggAdvisor advisor = AggAdvisor.instance();
+        advisor.clear();
+        try {
+            executeQuery(
+                "select {[Measures].[Unit Sales]} on columns,\n"
+                + " [Gender].[Gender].Members on rows\n"
+                + "from [Sales]");
+            executeQuery(
+                "select {[Measures].[Unit Sales]} on columns,\n"
+                + " CrossJoin([Time].[Quarter].Members,\n"
+                + "   [Gender].[Gender].Members) on rows\n"
+                + "from [Sales]");
+            assertTrue(advisor.getLoadCount() > 0);
+
+            final List<AggAdvisor.Recommendation> list = advisor.recommend(5);
+            assertFalse(list.isEmpty());
+            for (int i = 1; i < list.size(); i++) {
+                assertTrue(
+                    list.get(i - 1).getBenefit() >= list.get(i).getBenefit());
+            }
+            final AggAdvisor.Recommendation first = list.get(0);
+            assertTrue(first.getLoadCount() > 0);
+            assertTrue(first.getEstimatedRowCount() > 0);
+
+            final String script = advisor.generateScript(1);
+            assertTrue(
+                script,
+                script.indexOf("CREATE TABLE " + first.getTableName()) >= 0);
+            assertTrue(
+                script,
+                script.indexOf("<AggName name=\"" + first.getTableName())
+                >= 0);
+            assertTrue(
+                script,
+                script.indexOf("<AggFactCount column=\"fact_count\"/>") >= 0);
+            assertTrue(
+                script,
+                script.indexOf("<AggLevel name=\"[Gender].[Gender]\"") >= 0);
+            assertTrue(
+                script, script.indexOf("<AggForeignKey") < 0);
+        } finally {
+            advisor.clear();
+        }
+    }
 }
 
 // End AggGenTest.java
@@ -0,0 +1,153 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.rolap.cache;
+
+import mondrian.test.FoodMartTestCase;
+
+import java.util.Map;
+
+/**
+ * Unit test for {@link CachePool}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class CachePoolTest extends FoodMartTestCase {
+    private static final long MB = 1024L * 1024L;
+
+    public CachePoolTest() {
+    }
+
+    public CachePoolTest(String name) {
+        super(name);
+    }
+
+    /**
+     * Tests that the pool evicts from caches of lower priority first, and
+     * only as much as it needs to.
+     */
+    public void testEvictByPriority() {
+        final CachePool pool = CachePool.instance();
+        final long baseByteCount = pool.getByteCount();
+        final FakeCache low = new FakeCache(4 * MB);
+        final FakeCache high = new FakeCache(4 * MB);
+        final CachePool.Registration lowRegistration =
+            pool.register("test:low", -1, low);
+        final CachePool.Registration highRegistration =
+            pool.register("test:high", 100, high);
+        try {
+            // Caches are between 2MB and 3MB over the limit.
+            final int maxMegabytes = (int) ((baseByteCount + MB - 1) / MB) + 5;
+            propSaver.set(
+                propSaver.properties.CachePoolMaxMegabytes, maxMegabytes);
+            pool.checkBudget(true);
+            assertEquals(MB, low.byteCount);
+            assertEquals(4 * MB, high.byteCount);
+            assertTrue(pool.getByteCount() <= maxMegabytes * MB);
+
+            // Within budget; nothing more is evicted.
+            pool.checkBudget(true);
+            assertEquals(MB, low.byteCount);
+            assertEquals(4 * MB, high.byteCount);
+        } finally {
+            lowRegistration.unregister();
+            highRegistration.unregister();
+        }
+    }
+
+    /**
+     * Tests that the budget is checked at most once per interval, unless
+     * the check is forced.
+     */
+    public void testCheckInterval() {
+        final CachePool pool = CachePool.instance();
+        final long baseByteCount = pool.getByteCount();
+        final int maxMegabytes = (int) ((baseByteCount + MB - 1) / MB) + 5;
+        propSaver.set(
+            propSaver.properties.CachePoolMaxMegabytes, maxMegabytes);
+        pool.checkBudget(true);
+        final FakeCache cache = new FakeCache(8 * MB);
+        final CachePool.Registration registration =
+            pool.register("test:interval", -1, cache);
+        try {
+            // The budget was checked just now, so this check is skipped.
+            pool.checkBudget();
+            assertEquals(8 * MB, cache.byteCount);
+
+            pool.checkBudget(true);
+            assertTrue(cache.byteCount < 8 * MB);
+            assertTrue(pool.getByteCount() <= maxMegabytes * MB);
+        } finally {
+            registration.unregister();
+        }
+    }
+
+    /**
+     * Tests that nothing is evicted if there is no limit.
+     */
+    public void testNoLimit() {
+        propSaver.set(propSaver.properties.CachePoolMaxMegabytes, 0);
+        final CachePool pool = CachePool.instance();
+        final FakeCache cache = new FakeCache(4 * MB);
+        final CachePool.Registration registration =
+            pool.register("test:unlimited", -1, cache);
+        try {
+            pool.checkBudget(true);
+            assertEquals(4 * MB, cache.byteCount);
+        } finally {
+            registration.unregister();
+        }
+    }
+
+    /**
+     * Tests that usage is reported per cache, and that an unregistered cache
+     * is no longer reported.
+     */
+    public void testUsage() {
+        final CachePool pool = CachePool.instance();
+        final FakeCache cache = new FakeCache(1000);
+        final CachePool.Registration registration =
+            pool.register("test:usage", 0, cache);
+        Map<String, Long> usage = pool.getUsage();
+        assertEquals(Long.valueOf(1000), usage.get("test:usage"));
+        registration.unregister();
+        usage = pool.getUsage();
+        assertNull(usage.get("test:usage"));
+    }
+
+    /**
+     * Cache which holds a given number of bytes, and evicts them 1MB at a
+     * time.
+     */
+    private static class FakeCache implements CachePool.Cache {
+        long byteCount;
+
+        FakeCache(long byteCount) {
+            this.byteCount = byteCount;
+        }
+
+        public long getByteCount() {
+            return byteCount;
+        }
+
+        public long evict(long byteCount) {
+            long evicted = 0;
+            while (evicted < byteCount && this.byteCount > 0) {
+                final long chunk = Math.min(MB, this.byteCount);
+                this.byteCount -= chunk;
+                evicted += chunk;
+            }
+            return evicted;
+        }
+    }
+}
+
+// End CachePoolTest.java
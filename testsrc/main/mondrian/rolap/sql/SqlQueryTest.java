@@ -12,11 +12,18 @@ package mondrian.rolap.sql;
 import mondrian.olap.MondrianProperties;
 import mondrian.olap.MondrianDef;
 import mondrian.rolap.BatchTestCase;
+import mondrian.rolap.RolapStar;
+import mondrian.rolap.RolapUtil;
+import mondrian.rolap.StarColumnPredicate;
+import mondrian.rolap.agg.ListColumnPredicate;
+import mondrian.rolap.agg.ValueColumnPredicate;
 import mondrian.test.SqlPattern;
 import mondrian.test.TestContext;
 import mondrian.spi.Dialect;
+import mondrian.util.DelegatingInvocationHandler;
 import mondrian.util.Pair;
 
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -612,6 +619,128 @@ public class SqlQueryTest extends BatchTestCase {
             "select {[Time.Weekly].[All Time.Weeklys]} ON COLUMNS from [Sales]",
             patterns);
     }
+
+    /**
+     * Tests that, if {@link MondrianProperties#ArrayInListThreshold} is set
+     * and the dialect supports it, a long list of values is bound as an
+     * array parameter, and that parameters are returned in the order that
+     * their placeholders occur in the SQL.
+     */
+    public void testArrayInList() {
+        propSaver.set(prop.ArrayInListThreshold, 2);
+        final Dialect testDialect = getTestContext().getDialect();
+        final Dialect dialect =
+            (Dialect) Proxy.newProxyInstance(
+                null,
+                new Class<?>[] {Dialect.class},
+                new DelegatingInvocationHandler() {
+                    protected Object getTarget() {
+                        return testDialect;
+                    }
+
+                    public boolean supportsArrayInList(
+                        Dialect.Datatype datatype)
+                    {
+                        return true;
+                    }
+
+                    public String generateArrayInList(
+                        String expr,
+                        String parameter)
+                    {
+                        return expr + " = ANY (" + parameter + ")";
+                    }
+                });
+
+        // A query which does not allow parameters generates literal lists.
+        final SqlQuery literalQuery = new SqlQuery(dialect, false);
+        assertEquals(
+            "x in (1, 2, 3)",
+            inExpr(literalQuery, "x", valueList(1, 2, 3)));
+
+        final SqlQuery sqlQuery = new SqlQuery(dialect, false);
+        sqlQuery.setAllowParameters(true);
+        final SqlQuery subQuery = new SqlQuery(dialect, false);
+        subQuery.setEnclosingQuery(sqlQuery);
+        subQuery.addSelect("w", "w");
+        subQuery.addWhere(inExpr(subQuery, "w", valueList(7, 8, 9)));
+
+        // A list no longer than the threshold is literal.
+        final String where1 = inExpr(sqlQuery, "x", valueList(1, 2));
+        assertEquals("x in (1, 2)", where1);
+        final String where2 = inExpr(sqlQuery, "y", valueList(1, 2, 3));
+        final String where3 =
+            inExpr(
+                sqlQuery, "z",
+                valueList(4, RolapUtil.sqlNullValue, 5, 6));
+        sqlQuery.addWhere(where3);
+        sqlQuery.addWhere(where1);
+        sqlQuery.addWhere(where2);
+        sqlQuery.addWhere("not (" + where3 + ")");
+        sqlQuery.addFrom(subQuery, "s", false);
+
+        final String sql = sqlQuery.toString();
+        assertTrue(sql, sql.indexOf(" where (z = ANY (?) or z is null)"
+            + " and x in (1, 2) and y = ANY (?)"
+            + " and not ((z = ANY (?) or z is null))") >= 0);
+        assertTrue(sql, sql.indexOf("w = ANY (?)") >= 0);
+        assertEquals(
+            "[[7, 8, 9], [4, 5, 6], [1, 2, 3], [4, 5, 6]]",
+            sqlQuery.getParameters().toString());
+    }
+
+    /**
+     * Tests that, if the dialect supports it, a limit and offset set on a
+     * query are generated after the ORDER BY clause.
+     */
+    public void testLimitOffset() {
+        final Dialect testDialect = getTestContext().getDialect();
+        final Dialect dialect =
+            (Dialect) Proxy.newProxyInstance(
+                null,
+                new Class<?>[] {Dialect.class},
+                new DelegatingInvocationHandler() {
+                    protected Object getTarget() {
+                        return testDialect;
+                    }
+
+                    public boolean supportsLimitOffset() {
+                        return true;
+                    }
+
+                    public String generateLimitOffset(int limit, int offset) {
+                        return "limit " + limit + " offset " + offset;
+                    }
+                });
+        final SqlQuery sqlQuery = new SqlQuery(dialect, false);
+        sqlQuery.addSelect("x", "x");
+        sqlQuery.addFromQuery("select x from u", "t", false);
+        sqlQuery.addOrderBy("x", true, false, false);
+        String sql = sqlQuery.toString();
+        assertTrue(sql, sql.indexOf("limit") < 0);
+        sqlQuery.setLimit(10, 20);
+        sql = sqlQuery.toString();
+        assertTrue(sql, sql.endsWith(" limit 10 offset 20"));
+        assertTrue(sql, sql.indexOf("order by") < sql.indexOf("limit 10"));
+    }
+
+    private static String inExpr(
+        SqlQuery sqlQuery,
+        String expr,
+        StarColumnPredicate predicate)
+    {
+        return RolapStar.Column.createInExpr(
+            expr, predicate, Dialect.Datatype.Integer, sqlQuery);
+    }
+
+    private static StarColumnPredicate valueList(Object... values) {
+        final List<StarColumnPredicate> list =
+            new ArrayList<StarColumnPredicate>();
+        for (Object value : values) {
+            list.add(new ValueColumnPredicate(null, value));
+        }
+        return new ListColumnPredicate(null, list);
+    }
 }
 
 // End SqlQueryTest.java
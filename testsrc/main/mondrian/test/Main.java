@@ -41,7 +41,11 @@ import mondrian.test.clearview.*;
 import mondrian.test.build.CodeComplianceTest;
 import mondrian.calc.impl.ConstantCalcTest;
 import mondrian.rolap.agg.AggregationOnDistinctCountMeasuresTest;
+import mondrian.rolap.agg.InMemoryPartitionTest;
+import mondrian.rolap.agg.SegmentIndexTest;
+import mondrian.rolap.agg.ValueDictionaryTest;
 import mondrian.rolap.aggmatcher.MultipleColsInTupleAggTest;
+import mondrian.rolap.cache.CachePoolTest;
 
 import org.apache.log4j.Logger;
 
@@ -209,6 +213,15 @@ public class Main extends TestSuite {
             addTest(suite, TopBottomTest.class, "suite");
             addTest(suite, OrderTest.class, "suite");
             addTest(suite, CacheControlTest.class);
+            addTest(suite, QueryPlanCacheTest.class);
+            addTest(suite, RolapResultCacheTest.class);
+            addTest(suite, CachePoolTest.class);
+            addTest(suite, CacheWarmerTest.class);
+            addTest(suite, MemberPrefetchTest.class);
+            addTest(suite, NativeAggregateTest.class);
+            addTest(suite, CompiledMeasureTest.class);
+            addTest(suite, BlockEvaluationTest.class);
+            addTest(suite, TimeRangeAggregationTest.class);
             addTest(suite, MemberCacheControlTest.class);
             addTest(suite, FunctionTest.class);
             addTest(suite, PartialSortTest.class);
@@ -283,6 +296,10 @@ public class Main extends TestSuite {
                 IgnoreMeasureForNonJoiningDimensionInAggregationTest.class);
             addTest(suite, SetFunDefTest.class);
             addTest(suite, AggregationOnDistinctCountMeasuresTest.class);
+            addTest(suite, SegmentIndexTest.class);
+            addTest(suite, ValueDictionaryTest.class);
+            addTest(suite, InMemoryPartitionTest.class);
+            addTest(suite, HyperLogLogTest.class);
             addTest(suite, BitKeyTest.class);
             addTest(suite, TypeTest.class);
             addTest(suite, SteelWheelsTestCase.class);
@@ -615,6 +615,68 @@ public class FormatTest extends TestCase {
         }
     }
 
+    /**
+     * Tests that {@link Format#get} returns the same object for the same
+     * format string and locale, a different object for a different locale,
+     * and treats a null format string as the empty string.
+     */
+    public void testCachePartitionedByLocale() {
+        final Format format = Format.get("#,##0.00", Locale.GERMANY);
+        assertSame(format, Format.get("#,##0.00", Locale.GERMANY));
+        final Format formatUs = Format.get("#,##0.00", Locale.US);
+        assertNotSame(format, formatUs);
+        assertEquals("1,234.50", formatUs.format(1234.5));
+        assertSame(Format.get(null, null), Format.get("", null));
+        assertEquals("", Format.get(null, null).getFormatString());
+    }
+
+    /**
+     * Tests integer values in formats which have a fast path for integers.
+     * The results must be the same as for non-integral values which take
+     * the general path.
+     */
+    public void testIntegerFastPath() {
+        checkFormat(null, 0, "#,##0", "0");
+        checkFormat(null, 0, "#", "");
+        checkFormat(null, 0L, "#,##0.00", "0.00");
+        checkFormat(null, -0.0, "#,##0", "0");
+        checkFormat(null, 1234567, "#,##0", "1,234,567");
+        checkFormat(null, -1234567L, "#,##0", "-1,234,567");
+        checkFormat(null, 1234567.0, "#,##0.00", "1,234,567.00");
+        checkFormat(null, 123.0, "#,##0.", "123.");
+        checkFormat(null, 12, "00,000", "00,012");
+        checkFormat(null, 999.0, "#,##0", "999");
+        checkFormat(null, 1000.0, "#,##0", "1,000");
+        checkFormat(null, 123456789012345.0, "#,##0", "123,456,789,012,345");
+        checkFormat(null, Long.MAX_VALUE, "0", "9223372036854775807");
+        checkFormat(null, 12, "0%", "1200%");
+        checkFormat(localeFra, 1234567, "#,##0.00", "1.234.567,00");
+        checkFormat(localeFra, 1234566.999, "#,##0.00", "1.234.567,00");
+    }
+
+    /**
+     * Tests non-integral values in formats which have a fast path for a
+     * fixed number of decimal places, including values near a rounding
+     * boundary, which must round the same way as the general path.
+     */
+    public void testFractionFastPath() {
+        checkFormat(null, 1234.56, "#,##0.00", "1,234.56");
+        checkFormat(null, -1234.56, "#,##0.00", "-1,234.56");
+        checkFormat(null, 1234.5, "#,##0.00", "1,234.50");
+        checkFormat(null, 999.996, "#,##0.00", "1,000.00");
+        checkFormat(null, 0.5, "#.00", ".50");
+        checkFormat(null, 0.004, "0.00", "0.00");
+        checkFormat(null, -0.004, "0.00", "0.00");
+        checkFormat(null, 1.005, "0.00", "1.01");
+        checkFormat(null, 2.5, "0", "3");
+        checkFormat(null, 2.4, "0.", "2.");
+        checkFormat(null, 1.5, "0.0#", "1.5");
+        checkFormat(null, 1.25, "0.0#", "1.25");
+        checkFormat(null, 1.999, "0.0#", "2.0");
+        checkFormat(null, 123456.789, "#,##0.###", "123,456.789");
+        checkFormat(localeFra, 1234.56, "#,##0.00", "1.234,56");
+    }
+
     public void testString() {
         checkFormat(null, "This Is A Test", ">", "THIS IS A TEST");
         checkFormat(null, "This Is A Test", "<", "this is a test");
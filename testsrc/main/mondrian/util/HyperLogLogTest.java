@@ -0,0 +1,135 @@
+/*
+// $Id$
+// This software is subject to the terms of the Eclipse Public License v1.0
+// Agreement, available at the following URL:
+// http://www.eclipse.org/legal/epl-v10.html.
+// Copyright (C) 2010-2010 Julian Hyde and others
+// All Rights Reserved.
+// You must accept the terms of that agreement to use this software.
+*/
+package mondrian.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link HyperLogLog}.
+ *
+ * @author jhyde
+ * @version $Id$
+ * @since Oct 19, 2010
+ */
+public class HyperLogLogTest extends TestCase {
+    public HyperLogLogTest(String name) {
+        super(name);
+    }
+
+    public void testEmpty() {
+        final HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.estimate());
+    }
+
+    /**
+     * Tests that small counts are exact, or nearly so, and that duplicates
+     * are not counted.
+     */
+    public void testSmall() {
+        final HyperLogLog sketch = new HyperLogLog();
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 10; i++) {
+                sketch.add("value " + i);
+            }
+        }
+        assertEquals(10, sketch.estimate());
+    }
+
+    /**
+     * Tests that the estimate of a large count is within a few standard
+     * errors of the true count.
+     */
+    public void testLarge() {
+        final HyperLogLog sketch = new HyperLogLog();
+        final int n = 100000;
+        for (int i = 0; i < n; i++) {
+            sketch.add(i);
+        }
+        assertWithin(n, sketch.estimate(), 0.08);
+    }
+
+    /**
+     * Tests that merging the sketches of two overlapping collections
+     * estimates the size of their union.
+     */
+    public void testMerge() {
+        final HyperLogLog sketch1 = new HyperLogLog();
+        final HyperLogLog sketch2 = new HyperLogLog();
+        for (int i = 0; i < 6000; i++) {
+            sketch1.add(i);
+        }
+        for (int i = 4000; i < 10000; i++) {
+            sketch2.add(i);
+        }
+        final HyperLogLog union = sketch1.copy();
+        union.merge(sketch2);
+        assertWithin(10000, union.estimate(), 0.08);
+
+        // Merge is idempotent.
+        union.merge(sketch1);
+        union.merge(sketch2);
+        assertWithin(10000, union.estimate(), 0.08);
+
+        // Copy was not affected.
+        assertEquals(sketch1.estimate(), sketch1.copy().estimate());
+        assertWithin(6000, sketch1.estimate(), 0.08);
+
+        try {
+            union.merge(new HyperLogLog(10));
+            fail("expected error");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    public void testBytes() {
+        final HyperLogLog sketch = new HyperLogLog(10);
+        for (int i = 0; i < 1000; i++) {
+            sketch.add("x" + i);
+        }
+        final byte[] bytes = sketch.toBytes();
+        assertEquals(1026, bytes.length);
+        final HyperLogLog sketch2 = HyperLogLog.fromBytes(bytes);
+        assertEquals(10, sketch2.getPrecision());
+        assertEquals(sketch.estimate(), sketch2.estimate());
+
+        try {
+            HyperLogLog.fromBytes(new byte[] {7, 10});
+            fail("expected error");
+        } catch (IllegalArgumentException e) {
+            // ok
+        }
+    }
+
+    /**
+     * Tests that a key has the same hash whichever numeric type it is read
+     * as.
+     */
+    public void testNumericKeys() {
+        assertEquals(HyperLogLog.hash(5), HyperLogLog.hash(5L));
+        assertEquals(HyperLogLog.hash(5), HyperLogLog.hash(5.0));
+        assertEquals(
+            HyperLogLog.hash(5), HyperLogLog.hash(new java.math.BigDecimal(5)));
+        assertFalse(HyperLogLog.hash(5) == HyperLogLog.hash(5.5));
+        assertFalse(HyperLogLog.hash(5) == HyperLogLog.hash("5"));
+    }
+
+    private static void assertWithin(
+        long expected,
+        long actual,
+        double tolerance)
+    {
+        assertTrue(
+            "expected " + expected + ", was " + actual,
+            Math.abs(actual - expected) <= expected * tolerance);
+    }
+}
+
+// End HyperLogLogTest.java